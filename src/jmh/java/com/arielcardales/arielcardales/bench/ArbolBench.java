@@ -0,0 +1,49 @@
+package com.arielcardales.arielcardales.bench;
+
+import com.arielcardales.arielcardales.DAO.InventarioDAO;
+import com.arielcardales.arielcardales.Entidades.ItemInventario;
+import com.arielcardales.arielcardales.Util.TreeItemFiltrable;
+import javafx.scene.control.TreeItem;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Armado del árbol de InventarioDAO.cargarArbol (sin la consulta): foto por columnas + TreeItems.
+ * construirArbolConMapper es el armado anterior (un ItemInventario con todas sus properties por fila).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArbolBench {
+
+    @Param({"10000", "100000"})
+    int filas;
+
+    private List<CatalogoSintetico.Fila> datos;
+
+    @Setup
+    public void preparar() {
+        datos = CatalogoSintetico.filas(filas);
+    }
+
+    @Benchmark
+    public TreeItem<ItemInventario> construirArbol() throws SQLException {
+        TreeItem<ItemInventario> root = new TreeItemFiltrable<>();
+        try (ResultSet rs = CatalogoSintetico.resultSet(datos)) {
+            InventarioDAO.construirArbol(rs, root);
+        }
+        return root;
+    }
+
+    @Benchmark
+    public TreeItem<ItemInventario> construirArbolConMapper() {
+        return CatalogoSintetico.arbolConMapper(datos);
+    }
+}
@@ -0,0 +1,46 @@
+package com.arielcardales.arielcardales.bench;
+
+import com.arielcardales.arielcardales.DAO.Database;
+import com.arielcardales.arielcardales.DAO.InventarioDAO;
+import com.arielcardales.arielcardales.Entidades.ItemInventario;
+import javafx.scene.control.TreeItem;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Búsqueda contra la base: LIKE sobre la vista (cargarArbol) vs trigramas sobre las tablas base (buscarArbol).
+ * Necesita la base local cargada con GeneradorCatalogo (PG_PERFIL=local), p. ej. 100k filas:
+ *   --productos 30000 --variantes 6
+ * Ojo al comparar: buscarArbol limita la cantidad de productos (es parte de la mejora).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusquedaBench {
+
+    // Nombre poco frecuente, material común, color y etiqueta (prefijo)
+    @Param({"00123", "croco", "negro", "p123"})
+    String texto;
+
+    @Setup
+    public void verificarBase() {
+        if (!Database.esLocal()) {
+            throw new IllegalStateException("BusquedaBench corre solo contra la base local (PG_PERFIL=local)");
+        }
+    }
+
+    @Benchmark
+    public TreeItem<ItemInventario> likeVista() throws SQLException {
+        return InventarioDAO.cargarArbol(texto);
+    }
+
+    @Benchmark
+    public TreeItem<ItemInventario> trigramas() throws SQLException {
+        return InventarioDAO.buscarArbol(texto, InventarioDAO.LIMITE_BUSQUEDA);
+    }
+}
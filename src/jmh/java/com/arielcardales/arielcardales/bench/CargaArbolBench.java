@@ -0,0 +1,87 @@
+package com.arielcardales.arielcardales.bench;
+
+import com.arielcardales.arielcardales.DAO.Database;
+import com.arielcardales.arielcardales.DAO.InventarioDAO;
+import com.arielcardales.arielcardales.Entidades.SnapshotInventario;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Carga de la foto del árbol contra la base local (PG_PERFIL=local, datos de GeneradorCatalogo):
+ * - deUnaVez: como era cargarSnapshot (select *, todo el resultado en memoria del driver, columnas por nombre).
+ * - enTandas: cargarSnapshot actual (columnas explícitas, cursor de solo lectura, posiciones resueltas).
+ * - primeraParte: hasta que está lista la foto parcial que se muestra antes de terminar.
+ * Con -prof gc se ve además la memoria que pide cada una. Tamaño de tanda: PG_FETCH_FILAS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CargaArbolBench {
+
+    // Sin filtro (todo el inventario) y un material común
+    @Param({"", "croco"})
+    String filtro;
+
+    // La consulta de antes (mismo filtro que InventarioDAO)
+    private static final String SQL_ANTERIOR = """
+            select * from vInventario_variantes
+             where ( ? = ''
+                or lower(producto_etiqueta) like lower(?)
+                or lower(producto_nombre) like lower(?)
+                or lower(coalesce(color,'')) like lower(?)
+                or lower(coalesce(talle,'')) like lower(?) )
+             order by producto_nombre, color, talle
+            """;
+
+    // Corta la carga apenas llega el adelanto
+    private static final class Adelanto extends RuntimeException {
+        final SnapshotInventario parcial;
+
+        Adelanto(SnapshotInventario parcial) {
+            super(null, null, false, false);
+            this.parcial = parcial;
+        }
+    }
+
+    @Setup
+    public void verificarBase() {
+        if (!Database.esLocal()) {
+            throw new IllegalStateException("CargaArbolBench corre solo contra la base local (PG_PERFIL=local)");
+        }
+    }
+
+    @Benchmark
+    public SnapshotInventario deUnaVez() throws SQLException {
+        String like = "%" + filtro + "%";
+        try (Connection cn = Database.get();
+             PreparedStatement ps = cn.prepareStatement(SQL_ANTERIOR)) {
+            ps.setString(1, filtro);
+            for (int i = 2; i <= 5; i++) ps.setString(i, like);
+            try (ResultSet rs = ps.executeQuery()) {
+                return CatalogoSintetico.snapshotPorNombre(rs);
+            }
+        }
+    }
+
+    @Benchmark
+    public SnapshotInventario enTandas() throws SQLException {
+        return InventarioDAO.cargarSnapshot(filtro);
+    }
+
+    @Benchmark
+    public SnapshotInventario primeraParte() throws SQLException {
+        try {
+            return InventarioDAO.cargarSnapshot(filtro, parcial -> { throw new Adelanto(parcial); });
+        } catch (Adelanto a) {
+            return a.parcial;
+        }
+    }
+}
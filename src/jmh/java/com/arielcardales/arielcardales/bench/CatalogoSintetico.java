@@ -0,0 +1,263 @@
+package com.arielcardales.arielcardales.bench;
+
+import com.arielcardales.arielcardales.DAO.InventarioDAO;
+import com.arielcardales.arielcardales.Entidades.ItemInventario;
+import com.arielcardales.arielcardales.Entidades.SnapshotInventario;
+import com.arielcardales.arielcardales.Util.Mapper;
+import com.arielcardales.arielcardales.Util.PlanFila;
+import com.arielcardales.arielcardales.Util.TreeItemFiltrable;
+import javafx.scene.control.TreeItem;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Datos de prueba para los benchmarks: filas con la forma de vInventario_variantes,
+ * siempre las mismas para una misma cantidad (semilla fija), sin tocar la BD.
+ */
+public final class CatalogoSintetico {
+
+    // Vocabulario compartido con GeneradorCatalogo (mismos nombres en memoria y en la base local)
+    static final String[] TIPOS = {"Cinturón", "Billetera", "Cartera", "Campera", "Riñonera", "Mochila", "Portadocumentos", "Llavero"};
+    static final String[] MATERIALES = {"cuero vacuno", "gamuza", "cuero croco", "charol", "cuero engrasado"};
+    static final String[] CATEGORIAS = {"Cinturones", "Billeteras", "Carteras de Cuero", "Camperas", "Accesorios", "Marroquinería"};
+    static final String[] COLORES = {"Negro", "Marrón", "Suela", "Habano", "Rojo", "Blanco"};
+    static final String[] TALLES = {"S", "M", "L", "XL", "85", "90", "95", "100"};
+
+    /** Una fila de vInventario_variantes (varianteId null = producto sin variantes). */
+    public record Fila(long productoId, Long varianteId, String etiqueta, String nombre, String categoria,
+                       String unidad, String color, String talle, BigDecimal precio, BigDecimal costo,
+                       int stock, boolean active, Timestamp updatedAt) {}
+
+    private CatalogoSintetico() {}
+
+    /** Exactamente {@code cantidad} filas: productos con 0 a 6 variantes, ordenadas como la vista. */
+    public static List<Fila> filas(int cantidad) {
+        Random rnd = new Random(42);
+        Timestamp ahora = Timestamp.valueOf("2025-01-01 10:00:00");
+        List<List<Fila>> productos = new ArrayList<>();
+        long varianteId = 1;
+        int total = 0;
+
+        for (long p = 1; total < cantidad; p++) {
+            String nombre = TIPOS[rnd.nextInt(TIPOS.length)] + " " + MATERIALES[rnd.nextInt(MATERIALES.length)]
+                    + " " + String.format("%05d", p);
+            String categoria = CATEGORIAS[rnd.nextInt(CATEGORIAS.length)];
+            String etiqueta = "p" + p;
+            BigDecimal costo = BigDecimal.valueOf(2_000 + rnd.nextInt(40_000));
+            BigDecimal precio = costo.multiply(BigDecimal.valueOf(2));
+
+            int variantes = Math.min(rnd.nextInt(7), cantidad - total);
+            List<Fila> filasProducto = new ArrayList<>();
+            if (variantes == 0) {
+                filasProducto.add(new Fila(p, null, etiqueta, nombre, categoria, "unidad", null, null,
+                        precio, costo, rnd.nextInt(20), true, ahora));
+            } else {
+                for (int v = 0; v < variantes; v++) {
+                    filasProducto.add(new Fila(p, varianteId++, etiqueta, nombre, categoria, "unidad",
+                            COLORES[rnd.nextInt(COLORES.length)], TALLES[v % TALLES.length],
+                            precio, costo, rnd.nextInt(10), true, ahora));
+                }
+            }
+            total += filasProducto.size();
+            productos.add(filasProducto);
+        }
+
+        // Mismo orden que la vista (producto_nombre, color, talle)
+        productos.sort(Comparator.comparing(l -> l.get(0).nombre()));
+        List<Fila> out = new ArrayList<>(cantidad);
+        for (List<Fila> l : productos) {
+            l.sort(Comparator.comparing(Fila::color, Comparator.nullsFirst(Comparator.naturalOrder()))
+                    .thenComparing(Fila::talle, Comparator.nullsFirst(Comparator.naturalOrder())));
+            out.addAll(l);
+        }
+        return out;
+    }
+
+    // Columnas de vInventario_variantes en el orden de la vista (findColumn devuelve posición + 1)
+    static final String[] COLUMNAS = {"producto_id", "variante_id", "producto_etiqueta", "producto_nombre",
+            "categoria", "unidad", "color", "talle", "precio", "costo", "stockOnHand", "active", "updatedAt"};
+
+    /**
+     * ResultSet en memoria sobre las filas (solo lo que usan Mapper e InventarioDAO), por nombre o por posición.
+     * Por nombre busca la columna como pgjdbc: mapa exacto y, si no está, de nuevo en minúsculas
+     * (las columnas de Postgres llegan en minúsculas, así que "stockOnHand" paga el toLowerCase en cada fila).
+     */
+    public static ResultSet resultSet(List<Fila> filas) {
+        return (ResultSet) Proxy.newProxyInstance(
+                CatalogoSintetico.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                new ResultSetEnMemoria(filas));
+    }
+
+    /** Árbol armado con el mismo código que usa InventarioDAO.cargarArbol. */
+    public static TreeItem<ItemInventario> arbol(List<Fila> filas) {
+        TreeItem<ItemInventario> root = new TreeItemFiltrable<>();
+        try (ResultSet rs = resultSet(filas)) {
+            InventarioDAO.construirArbol(rs, root);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return root;
+    }
+
+    /**
+     * Árbol como se armaba antes de SnapshotInventario: un ItemInventario de Mapper por fila.
+     * Referencia para comparar tiempo y memoria.
+     */
+    public static TreeItem<ItemInventario> arbolConMapper(List<Fila> filas) {
+        TreeItem<ItemInventario> root = new TreeItemFiltrable<>();
+        Map<Long, TreeItem<ItemInventario>> padres = new LinkedHashMap<>();
+        try (ResultSet rs = resultSet(filas)) {
+            PlanFila.Lector<ItemInventario> base = Mapper.ITEM_INVENTARIO_BASE.sobre(rs);
+            PlanFila.Lector<ItemInventario> variante = Mapper.ITEM_INVENTARIO_VARIANTE.sobre(rs);
+            while (rs.next()) {
+                long prodId = rs.getLong("producto_id");
+                TreeItem<ItemInventario> padre = padres.get(prodId);
+                if (padre == null) {
+                    padre = new TreeItemFiltrable<>(base.leer());
+                    padres.put(prodId, padre);
+                }
+                if (rs.getObject("variante_id") != null) {
+                    TreeItemFiltrable.hijos(padre).add(new TreeItem<>(variante.leer()));
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        TreeItemFiltrable.hijos(root).addAll(padres.values());
+        return root;
+    }
+
+    /**
+     * Lectura como era InventarioDAO.leerSnapshot antes de resolver las posiciones:
+     * cada valor se pide por nombre en cada fila. Referencia para LecturaBench y CargaArbolBench.
+     */
+    public static SnapshotInventario snapshotPorNombre(ResultSet rs) throws SQLException {
+        SnapshotInventario.Constructor c = new SnapshotInventario.Constructor();
+
+        while (rs.next()) {
+            long prodId = rs.getLong("producto_id");
+            Long varId = (Long) rs.getObject("variante_id");
+            BigDecimal precio = rs.getBigDecimal("precio");
+            BigDecimal costo = rs.getBigDecimal("costo");
+            int stock = rs.getInt("stockOnHand");
+            boolean activo = rs.getBoolean("active");
+            Timestamp updatedAt = rs.getTimestamp("updatedAt");
+
+            if (!c.tieneProducto(prodId)) {
+                c.producto(prodId, rs.getString("producto_etiqueta"), rs.getString("producto_nombre"),
+                        rs.getString("categoria"), rs.getString("unidad"),
+                        precio, costo, stock, activo, updatedAt);
+            }
+            if (varId != null) {
+                c.variante(prodId, varId, rs.getString("color"), rs.getString("talle"),
+                        precio, costo, stock, activo, updatedAt);
+            }
+        }
+        return c.construir();
+    }
+
+    /** Lista plana en preorden (lo que reciben los exportadores). */
+    public static List<ItemInventario> planos(TreeItem<ItemInventario> root) {
+        List<ItemInventario> out = new ArrayList<>();
+        for (TreeItem<ItemInventario> producto : TreeItemFiltrable.hijos(root)) {
+            out.add(producto.getValue());
+            for (TreeItem<ItemInventario> variante : TreeItemFiltrable.hijos(producto)) {
+                out.add(variante.getValue());
+            }
+        }
+        return out;
+    }
+
+    private static final class ResultSetEnMemoria implements InvocationHandler {
+        private static final Map<String, Integer> POSICIONES = new HashMap<>();
+
+        static {
+            for (int i = 0; i < COLUMNAS.length; i++) POSICIONES.put(COLUMNAS[i].toLowerCase(Locale.ROOT), i + 1);
+        }
+
+        // Solo lo que usa PlanFila: cantidad de columnas y sus nombres (en minúsculas, como Postgres)
+        private static final ResultSetMetaData METADATA = (ResultSetMetaData) Proxy.newProxyInstance(
+                CatalogoSintetico.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class},
+                (proxy, m, args) -> switch (m.getName()) {
+                    case "getColumnCount" -> COLUMNAS.length;
+                    case "getColumnLabel", "getColumnName" -> COLUMNAS[(Integer) args[0] - 1].toLowerCase(Locale.ROOT);
+                    default -> throw new UnsupportedOperationException("Metadata de prueba: " + m.getName());
+                });
+
+        private final List<Fila> filas;
+        private int pos = -1;
+        private boolean ultimoNull;
+        private boolean cerrado;
+
+        ResultSetEnMemoria(List<Fila> filas) { this.filas = filas; }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) {
+            switch (m.getName()) {
+                case "next":     return ++pos < filas.size();
+                case "wasNull":  return ultimoNull;
+                case "close":    cerrado = true; return null;
+                case "isClosed": return cerrado;
+                case "findColumn": return posicion((String) args[0]);
+                case "getMetaData": return METADATA;
+                case "getObject", "getString", "getBigDecimal", "getTimestamp":
+                    return valor(args[0]);
+                case "getLong": {
+                    Object v = valor(args[0]);
+                    return v == null ? 0L : ((Number) v).longValue();
+                }
+                case "getInt": {
+                    Object v = valor(args[0]);
+                    return v == null ? 0 : ((Number) v).intValue();
+                }
+                case "getBoolean": {
+                    Object v = valor(args[0]);
+                    return v != null && (Boolean) v;
+                }
+                default:
+                    throw new UnsupportedOperationException("ResultSet de prueba: " + m.getName());
+            }
+        }
+
+        private static int posicion(String columna) {
+            Integer i = POSICIONES.get(columna);
+            if (i == null) i = POSICIONES.get(columna.toLowerCase(Locale.US));
+            if (i == null) throw new IllegalArgumentException("Columna desconocida: " + columna);
+            return i;
+        }
+
+        // Columna por posición (Integer) o por nombre (String)
+        private Object valor(Object columna) {
+            int i = columna instanceof Integer n ? n : posicion((String) columna);
+            Fila f = filas.get(pos);
+            Object v = switch (i) {
+                case 1  -> f.productoId();
+                case 2  -> f.varianteId();
+                case 3  -> f.etiqueta();
+                case 4  -> f.nombre();
+                case 5  -> f.categoria();
+                case 6  -> f.unidad();
+                case 7  -> f.color();
+                case 8  -> f.talle();
+                case 9  -> f.precio();
+                case 10 -> f.costo();
+                case 11 -> f.stock();
+                case 12 -> f.active();
+                case 13 -> f.updatedAt();
+                default -> throw new IllegalArgumentException("Columna desconocida: " + columna);
+            };
+            ultimoNull = v == null;
+            return v;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.arielcardales.arielcardales.bench;
+
+import com.arielcardales.arielcardales.Entidades.ItemInventario;
+import com.arielcardales.arielcardales.Util.ExportadorExcel;
+import com.arielcardales.arielcardales.Util.ExportadorPDF;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exportación del inventario a Excel y PDF. Cada llamada escribe el archivo completo,
+ * así que se mide de a una (SingleShotTime) y con heap amplio para las 100k filas.
+ * Ambos escriben en streaming (Excel con SXSSF, PDF por tandas); el PDF sigue siendo el más lento:
+ * para una corrida rápida usar -p filas=10000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Timeout(time = 60, timeUnit = TimeUnit.MINUTES)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Djava.awt.headless=true"})
+public class ExportadoresBench {
+
+    @Param({"10000", "100000"})
+    int filas;
+
+    private List<ItemInventario> planos;
+    private Path destino;
+
+    @Setup
+    public void preparar() throws IOException {
+        planos = CatalogoSintetico.planos(CatalogoSintetico.arbol(CatalogoSintetico.filas(filas)));
+        destino = Files.createTempDirectory("bench-export");
+    }
+
+    @TearDown
+    public void limpiar() throws IOException {
+        try (var archivos = Files.list(destino)) {
+            for (Path p : archivos.toList()) Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(destino);
+    }
+
+    @Benchmark
+    public void excel() {
+        ExportadorExcel.exportarInventarioTree(planos, destino.resolve("inventario.xlsx").toString());
+    }
+
+    @Benchmark
+    public void pdf() {
+        ExportadorPDF.exportarInventarioTree(null, planos, destino.resolve("inventario.pdf").toString());
+    }
+}
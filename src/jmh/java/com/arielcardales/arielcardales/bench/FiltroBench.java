@@ -0,0 +1,94 @@
+package com.arielcardales.arielcardales.bench;
+
+import com.arielcardales.arielcardales.Entidades.ItemInventario;
+import com.arielcardales.arielcardales.Util.TreeItemFiltrable;
+import com.arielcardales.arielcardales.service.IndiceInventario;
+import javafx.scene.control.TreeItem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Filtros del ProductoTreeController.
+ * - clonarYFiltrar: el método anterior (copiar el árbol y borrar lo que no coincide), como referencia.
+ * - filtrarNombre/stockBajo: el actual (predicado sobre TreeItemFiltrable, con o sin índice).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FiltroBench {
+
+    @Param({"10000", "100000"})
+    int filas;
+
+    @Param({"cuero croco"})
+    String texto;
+
+    private TreeItem<ItemInventario> root;
+    private IndiceInventario indice;
+
+    @Setup
+    public void preparar() {
+        root = CatalogoSintetico.arbol(CatalogoSintetico.filas(filas));
+        indice = IndiceInventario.construir(root);
+    }
+
+    // Cada medición arranca con el árbol sin filtro, como al empezar a tipear
+    @Setup(Level.Invocation)
+    public void sinFiltro() {
+        TreeItemFiltrable.filtrar(root, null);
+    }
+
+    @Benchmark
+    public TreeItem<ItemInventario> clonarYFiltrar() {
+        TreeItem<ItemInventario> copia = clonar(root);
+        String valor = texto.toLowerCase();
+        filtrarRecursivo(copia, it -> it.getNombreProducto() != null && it.getNombreProducto().toLowerCase().contains(valor));
+        return copia;
+    }
+
+    @Benchmark
+    public IndiceInventario construirIndice() {
+        return IndiceInventario.construir(root);
+    }
+
+    @Benchmark
+    public int filtrarNombre() {
+        TreeItemFiltrable.filtrar(root, indice.predicado(IndiceInventario.Campo.NOMBRE, texto));
+        return root.getChildren().size();
+    }
+
+    @Benchmark
+    public int stockBajo() {
+        TreeItemFiltrable.filtrar(root, it -> it.getStockOnHand() <= 2);
+        return root.getChildren().size();
+    }
+
+    // --- Método anterior, copiado tal cual para comparar ---
+
+    private static TreeItem<ItemInventario> clonar(TreeItem<ItemInventario> original) {
+        TreeItem<ItemInventario> copia = new TreeItem<>(original.getValue());
+        for (TreeItem<ItemInventario> hijo : TreeItemFiltrable.hijos(original)) {
+            copia.getChildren().add(clonar(hijo));
+        }
+        return copia;
+    }
+
+    private static boolean filtrarRecursivo(TreeItem<ItemInventario> nodo, Predicate<ItemInventario> coincide) {
+        Iterator<TreeItem<ItemInventario>> it = nodo.getChildren().iterator();
+        boolean algunHijoVisible = false;
+        while (it.hasNext()) {
+            TreeItem<ItemInventario> hijo = it.next();
+            boolean ok = hijo.getValue() != null && coincide.test(hijo.getValue());
+            boolean hijosCoinciden = filtrarRecursivo(hijo, coincide);
+            if (!ok && !hijosCoinciden) it.remove();
+            else algunHijoVisible = true;
+        }
+        return algunHijoVisible;
+    }
+}
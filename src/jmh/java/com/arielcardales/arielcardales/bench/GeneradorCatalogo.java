@@ -0,0 +1,226 @@
+package com.arielcardales.arielcardales.bench;
+
+import com.arielcardales.arielcardales.DAO.Database;
+import com.arielcardales.arielcardales.DAO.Migraciones;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Carga una base local con un catálogo y ventas sintéticos para pruebas de carga.
+ * Solo corre con PG_PERFIL=local (nunca contra Supabase). Borra los datos que hubiera.
+ *
+ *   PG_PERFIL=local mvn -Pjmh test-compile exec:exec \
+ *       -Djmh.main=com.arielcardales.arielcardales.bench.GeneradorCatalogo \
+ *       -Djmh.args="--productos 50000 --variantes 6 --ventas 1000000 --items 3"
+ *
+ * Crea el esquema (db/local/esquema.sql), aplica las migraciones y llena las tablas con COPY.
+ * Con la misma semilla genera siempre los mismos datos.
+ */
+public final class GeneradorCatalogo {
+
+    private static final int BUFFER_COPY = 1 << 20;
+    private static final String[] MEDIOS_PAGO = {"Efectivo", "Débito", "Crédito", "Transferencia"};
+    private static final LocalDateTime DESDE = LocalDateTime.of(2024, 1, 1, 9, 0);
+
+    private final int productos;
+    private final int maxVariantes;
+    private final int ventas;
+    private final int maxItems;
+    private final long semilla;
+
+    private int[] precios; // precio de lista por producto (índice = id)
+
+    private GeneradorCatalogo(Map<String, String> op) {
+        productos = Integer.parseInt(op.getOrDefault("productos", "50000"));
+        maxVariantes = Integer.parseInt(op.getOrDefault("variantes", "6"));
+        ventas = Integer.parseInt(op.getOrDefault("ventas", "1000000"));
+        maxItems = Integer.parseInt(op.getOrDefault("items", "3"));
+        semilla = Long.parseLong(op.getOrDefault("semilla", "42"));
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (!Database.esLocal()) {
+            System.err.println("❌ El generador solo corre contra la base local: definir PG_PERFIL=local");
+            System.exit(1);
+        }
+        new GeneradorCatalogo(opciones(args)).generar();
+    }
+
+    private void generar() throws SQLException, IOException {
+        long t0 = System.nanoTime();
+
+        try (Connection cn = Database.get(); Statement st = cn.createStatement()) {
+            st.execute(leer("/db/local/esquema.sql"));
+        }
+        Migraciones.aplicarPendientes();
+
+        try (Connection cn = Database.get(); Statement st = cn.createStatement()) {
+            st.execute("truncate ventaItem, venta, producto_variante, producto, categoria, unidad, inventario_baja restart identity cascade");
+
+            CopyManager copy = cn.unwrap(PGConnection.class).getCopyAPI();
+            cargarCategoriasYUnidades(copy);
+            cargarProductos(copy);
+            long variantes = cargarVariantes(copy);
+            cargarVentas(copy);
+            long items = cargarItems(copy);
+
+            // Los ids se cargaron explícitos: las secuencias siguen desde el máximo
+            for (String tabla : new String[]{"categoria", "unidad", "producto", "producto_variante", "venta", "ventaItem"}) {
+                st.execute("select setval(pg_get_serial_sequence('" + tabla + "', 'id'), coalesce((select max(id) from " + tabla + "), 1))");
+            }
+            st.execute("analyze");
+
+            System.out.printf("✅ %,d productos, %,d variantes, %,d ventas, %,d ítems en %.1f s%n",
+                    productos, variantes, ventas, items, (System.nanoTime() - t0) / 1e9);
+        }
+    }
+
+    private void cargarCategoriasYUnidades(CopyManager copy) throws SQLException {
+        try (Copia c = new Copia(copy, "copy categoria (id, nombre) from stdin")) {
+            for (int i = 0; i < CatalogoSintetico.CATEGORIAS.length; i++) {
+                c.fila((i + 1) + "\t" + CatalogoSintetico.CATEGORIAS[i]);
+            }
+        }
+        try (Copia c = new Copia(copy, "copy unidad (id, nombre, abreviatura) from stdin")) {
+            c.fila("1\tunidad\tu");
+            c.fila("2\tpar\tpar");
+        }
+    }
+
+    private void cargarProductos(CopyManager copy) throws SQLException {
+        Random rnd = new Random(semilla);
+        precios = new int[productos + 1];
+        String sql = "copy producto (id, etiqueta, nombre, descripcion, categoriaId, unidadId, precio, costo, stockOnHand, active) from stdin";
+        try (Copia c = new Copia(copy, sql)) {
+            for (int p = 1; p <= productos; p++) {
+                String nombre = CatalogoSintetico.TIPOS[rnd.nextInt(CatalogoSintetico.TIPOS.length)] + " "
+                        + CatalogoSintetico.MATERIALES[rnd.nextInt(CatalogoSintetico.MATERIALES.length)]
+                        + " " + String.format("%05d", p);
+                int costo = 2_000 + rnd.nextInt(40_000);
+                precios[p] = costo * 2;
+                c.fila(p + "\tp" + p + "\t" + nombre + "\t\\N\t"
+                        + (1 + rnd.nextInt(CatalogoSintetico.CATEGORIAS.length)) + "\t1\t"
+                        + precios[p] + "\t" + costo + "\t" + rnd.nextInt(30) + "\tt");
+            }
+        }
+    }
+
+    private long cargarVariantes(CopyManager copy) throws SQLException {
+        Random rnd = new Random(semilla + 1);
+        long id = 0;
+        String sql = "copy producto_variante (id, producto_id, color, talle, stock, etiqueta, active) from stdin";
+        try (Copia c = new Copia(copy, sql)) {
+            for (int p = 1; p <= productos; p++) {
+                int cantidad = rnd.nextInt(maxVariantes + 1);
+                for (int v = 0; v < cantidad; v++) {
+                    id++;
+                    String color = CatalogoSintetico.COLORES[(p + v) % CatalogoSintetico.COLORES.length];
+                    String talle = CatalogoSintetico.TALLES[v % CatalogoSintetico.TALLES.length];
+                    c.fila(id + "\t" + p + "\t" + color + "\t" + talle + "\t" + rnd.nextInt(10) + "\tp" + p + "-" + (v + 1) + "\tt");
+                }
+            }
+        }
+        return id;
+    }
+
+    private void cargarVentas(CopyManager copy) throws SQLException {
+        long segundos = Duration.between(DESDE, DESDE.plusYears(2)).getSeconds();
+        try (Copia c = new Copia(copy, "copy venta (id, clienteNombre, fecha, medioPago, total) from stdin")) {
+            for (long v = 1; v <= ventas; v++) {
+                SplittableRandom r = rndVenta(v);
+                LocalDateTime fecha = DESDE.plusSeconds(r.nextLong(segundos));
+                String medio = MEDIOS_PAGO[r.nextInt(MEDIOS_PAGO.length)];
+                long total = 0;
+                int items = 1 + r.nextInt(maxItems);
+                for (int i = 0; i < items; i++) {
+                    int producto = 1 + r.nextInt(productos);
+                    total += (long) precios[producto] * (1 + r.nextInt(3));
+                }
+                c.fila(v + "\tCliente " + (v % 5_000) + "\t" + fecha + "\t" + medio + "\t" + total);
+            }
+        }
+    }
+
+    // Repite la misma secuencia aleatoria de cargarVentas para que los ítems sumen el total de cada venta
+    private long cargarItems(CopyManager copy) throws SQLException {
+        long segundos = Duration.between(DESDE, DESDE.plusYears(2)).getSeconds();
+        long id = 0;
+        try (Copia c = new Copia(copy, "copy ventaItem (id, ventaId, productoId, qty, precioUnit) from stdin")) {
+            for (long v = 1; v <= ventas; v++) {
+                SplittableRandom r = rndVenta(v);
+                r.nextLong(segundos);
+                r.nextInt(MEDIOS_PAGO.length);
+                int items = 1 + r.nextInt(maxItems);
+                for (int i = 0; i < items; i++) {
+                    int producto = 1 + r.nextInt(productos);
+                    int qty = 1 + r.nextInt(3);
+                    c.fila(++id + "\t" + v + "\t" + producto + "\t" + qty + "\t" + precios[producto]);
+                }
+            }
+        }
+        return id;
+    }
+
+    private SplittableRandom rndVenta(long venta) {
+        return new SplittableRandom(semilla * 1_000_003L + venta);
+    }
+
+    // ------------------------------------------------------------------
+
+    /** COPY ... FROM STDIN en formato texto (tabs, \N = null), enviado en bloques de 1 MB. */
+    private static final class Copia implements AutoCloseable {
+        private final CopyIn in;
+        private final StringBuilder sb = new StringBuilder(BUFFER_COPY + 1024);
+
+        Copia(CopyManager copy, String sql) throws SQLException {
+            in = copy.copyIn(sql);
+        }
+
+        void fila(String linea) throws SQLException {
+            sb.append(linea).append('\n');
+            if (sb.length() >= BUFFER_COPY) enviar();
+        }
+
+        private void enviar() throws SQLException {
+            byte[] b = sb.toString().getBytes(StandardCharsets.UTF_8);
+            in.writeToCopy(b, 0, b.length);
+            sb.setLength(0);
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (!sb.isEmpty()) enviar();
+            in.endCopy();
+        }
+    }
+
+    private static Map<String, String> opciones(String[] args) {
+        Map<String, String> op = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Opción inválida: " + args[i]);
+            op.put(args[i].substring(2), args[i + 1]);
+        }
+        return op;
+    }
+
+    private static String leer(String recurso) throws IOException {
+        try (InputStream in = GeneradorCatalogo.class.getResourceAsStream(recurso)) {
+            if (in == null) throw new IOException("No se encontró " + recurso);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.arielcardales.arielcardales.bench;
+
+import com.arielcardales.arielcardales.DAO.InventarioDAO;
+import com.arielcardales.arielcardales.Entidades.SnapshotInventario;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lectura de filas de vInventario_variantes a la foto (sin la consulta):
+ * columnas pedidas por nombre en cada fila (lectura anterior) vs posiciones resueltas una vez (InventarioDAO).
+ * El ResultSet en memoria busca los nombres como pgjdbc (ver CatalogoSintetico.resultSet).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LecturaBench {
+
+    @Param({"10000", "100000"})
+    int filas;
+
+    private List<CatalogoSintetico.Fila> datos;
+
+    @Setup
+    public void preparar() {
+        datos = CatalogoSintetico.filas(filas);
+    }
+
+    @Benchmark
+    public SnapshotInventario porNombre() throws SQLException {
+        try (ResultSet rs = CatalogoSintetico.resultSet(datos)) {
+            return CatalogoSintetico.snapshotPorNombre(rs);
+        }
+    }
+
+    @Benchmark
+    public SnapshotInventario porPosicion() throws SQLException {
+        try (ResultSet rs = CatalogoSintetico.resultSet(datos)) {
+            return InventarioDAO.leerSnapshot(rs);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.arielcardales.arielcardales.bench;
+
+import com.arielcardales.arielcardales.Entidades.ItemInventario;
+import com.arielcardales.arielcardales.Util.Mapper;
+import com.arielcardales.arielcardales.Util.PlanFila;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filas de vInventario_variantes a ItemInventario recorriendo un ResultSet en memoria:
+ * - porNombre: como era Mapper (cada valor por nombre en cada fila; la variante leía la base y después pisaba).
+ * - conPlan: planes de Mapper (posiciones resueltas una vez, una sola pasada por fila).
+ * El ResultSet es un Proxy: su costo entra en la medición, sirve para comparar cambios en Mapper, no como valor absoluto.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBench {
+
+    @Param({"10000", "100000"})
+    int filas;
+
+    private List<CatalogoSintetico.Fila> datos;
+
+    @Setup
+    public void preparar() {
+        datos = CatalogoSintetico.filas(filas);
+    }
+
+    @Benchmark
+    public void porNombre(Blackhole bh) throws SQLException {
+        try (ResultSet rs = CatalogoSintetico.resultSet(datos)) {
+            while (rs.next()) {
+                if (rs.getObject("variante_id") == null) {
+                    bh.consume(basePorNombre(rs));
+                } else {
+                    bh.consume(variantePorNombre(rs));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void conPlan(Blackhole bh) throws SQLException {
+        try (ResultSet rs = CatalogoSintetico.resultSet(datos)) {
+            PlanFila.Lector<ItemInventario> base = Mapper.ITEM_INVENTARIO_BASE.sobre(rs);
+            PlanFila.Lector<ItemInventario> variante = Mapper.ITEM_INVENTARIO_VARIANTE.sobre(rs);
+            int colVariante = rs.findColumn("variante_id");
+            while (rs.next()) {
+                rs.getLong(colVariante);
+                bh.consume(rs.wasNull() ? base.leer() : variante.leer());
+            }
+        }
+    }
+
+    // Referencia: lo que cuesta solo recorrer el ResultSet de prueba
+    @Benchmark
+    public void soloRecorrer(Blackhole bh) throws SQLException {
+        try (ResultSet rs = CatalogoSintetico.resultSet(datos)) {
+            while (rs.next()) bh.consume(rs.getObject("variante_id"));
+        }
+    }
+
+    // Mapper.getItemInventarioBase antes de los planes
+    private static ItemInventario basePorNombre(ResultSet rs) throws SQLException {
+        ItemInventario it = new ItemInventario();
+        it.setProductoId(rs.getLong("producto_id"));
+        it.setVarianteId(null);
+        it.setEtiquetaProducto(rs.getString("producto_etiqueta"));
+        it.setNombreProducto(rs.getString("producto_nombre"));
+        it.setCategoria(rs.getString("categoria"));
+        it.setUnidad(rs.getString("unidad"));
+        it.setColor(rs.getString("color"));
+        it.setTalle(rs.getString("talle"));
+        it.setPrecio(rs.getBigDecimal("precio"));
+        it.setCosto(rs.getBigDecimal("costo"));
+        it.setStockOnHand(rs.getInt("stockOnHand"));
+        it.setActive(rs.getBoolean("active"));
+        it.setUpdatedAt(rs.getTimestamp("updatedAt").toLocalDateTime());
+        it.setEsVariante(false);
+        return it;
+    }
+
+    // Mapper.getItemInventarioVariante antes de los planes
+    private static ItemInventario variantePorNombre(ResultSet rs) throws SQLException {
+        ItemInventario it = basePorNombre(rs);
+        it.setVarianteId(rs.getLong("variante_id"));
+        it.setEsVariante(true);
+        return it;
+    }
+}
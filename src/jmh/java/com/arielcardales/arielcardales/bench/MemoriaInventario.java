@@ -0,0 +1,107 @@
+package com.arielcardales.arielcardales.bench;
+
+import com.arielcardales.arielcardales.DAO.InventarioDAO;
+import com.arielcardales.arielcardales.Entidades.ItemInventario;
+import com.arielcardales.arielcardales.Entidades.SnapshotInventario;
+import com.arielcardales.arielcardales.Util.TreeItemFiltrable;
+import javafx.scene.control.TreeItem;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Memoria que queda retenida por el árbol del inventario, con una pantalla de filas mostradas
+ * (sus properties creadas, como hace la tabla):
+ * - con Mapper y todas las properties creadas en cada fila (lo que costaba un ItemInventario con properties fijas);
+ * - con Mapper y valores en campos comunes;
+ * - sobre SnapshotInventario.
+ * No es JMH: mide heap usado después de varios GC, así que correrlo solo y con la JVM sin otra carga.
+ *
+ *   mvn -Pjmh test-compile exec:exec \
+ *       -Djmh.main=com.arielcardales.arielcardales.bench.MemoriaInventario -Djmh.args="100000"
+ */
+public final class MemoriaInventario {
+
+    // Filas que entran en pantalla (las que la tabla termina pidiendo)
+    private static final int FILAS_VISIBLES = 60;
+    private static final String[] COLUMNAS = {"productoId", "varianteId", "etiquetaProducto", "nombreProducto",
+            "descripcion", "categoria", "unidad", "color", "talle", "precio", "costo", "stockOnHand",
+            "active", "updatedAt", "esVariante"};
+
+    private MemoriaInventario() {}
+
+    public static void main(String[] args) throws Exception {
+        int filas = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        List<CatalogoSintetico.Fila> datos = CatalogoSintetico.filas(filas);
+
+        long base = usado();
+        TreeItem<ItemInventario> conMapper = CatalogoSintetico.arbolConMapper(datos);
+        crearPropiedades(conMapper, Integer.MAX_VALUE);
+        long mapperPropiedades = usado() - base;
+        tocar(conMapper);
+        conMapper = null;
+
+        base = usado();
+        conMapper = CatalogoSintetico.arbolConMapper(datos);
+        crearPropiedades(conMapper, FILAS_VISIBLES);
+        long mapper = usado() - base;
+        tocar(conMapper);
+        conMapper = null;
+
+        base = usado();
+        SnapshotInventario foto;
+        try (ResultSet rs = CatalogoSintetico.resultSet(datos)) {
+            foto = InventarioDAO.leerSnapshot(rs);
+        }
+        long soloFoto = usado() - base;
+        TreeItem<ItemInventario> conFoto = new TreeItemFiltrable<>();
+        InventarioDAO.construirArbol(foto, conFoto);
+        crearPropiedades(conFoto, FILAS_VISIBLES);
+        long arbolFoto = usado() - base;
+
+        System.out.printf("%,d filas de la vista → %,d filas en el árbol (%,d productos)%n",
+                filas, foto.filas(), foto.productos());
+        System.out.printf("  Mapper, todas las properties: %,8d KB%n", mapperPropiedades / 1024);
+        System.out.printf("  Mapper, campos comunes:       %,8d KB%n", mapper / 1024);
+        System.out.printf("  Sobre la foto:                %,8d KB  (foto sola %,d KB, columnas ~%,d KB)%n",
+                arbolFoto / 1024, soloFoto / 1024, foto.bytesColumnas() / 1024);
+        System.out.printf("  Ahorro contra todas las properties: campos comunes %.0f%%, foto %.0f%%%n",
+                100.0 * (mapperPropiedades - mapper) / mapperPropiedades,
+                100.0 * (mapperPropiedades - arbolFoto) / mapperPropiedades);
+        tocar(conFoto);
+    }
+
+    // Lo que hace TreeItemPropertyValueFactory con las filas en pantalla (las primeras {@code cantidad})
+    private static void crearPropiedades(TreeItem<ItemInventario> root, int cantidad)
+            throws ReflectiveOperationException {
+        int n = 0;
+        for (TreeItem<ItemInventario> producto : root.getChildren()) {
+            List<TreeItem<ItemInventario>> filas = new ArrayList<>();
+            filas.add(producto);
+            filas.addAll(producto.getChildren());
+            for (TreeItem<ItemInventario> fila : filas) {
+                for (String col : COLUMNAS) ItemInventario.class.getMethod(col + "Property").invoke(fila.getValue());
+                if (++n >= cantidad) return;
+            }
+        }
+    }
+
+    private static long usado() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        long anterior = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(50);
+            long actual = rt.totalMemory() - rt.freeMemory();
+            if (actual >= anterior) return actual;
+            anterior = actual;
+        }
+        return anterior;
+    }
+
+    // Mantiene vivo el árbol hasta después de medir
+    private static void tocar(TreeItem<ItemInventario> root) {
+        if (root.getChildren().size() == -1) System.out.println(root);
+    }
+}
@@ -0,0 +1,56 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.Entidades.ItemInventario;
+import com.arielcardales.arielcardales.bench.CatalogoSintetico;
+import javafx.scene.control.TreeItem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Pasadas de InventarioService sobre el árbol recién cargado (en este paquete porque son package-private). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InventarioServiceBench {
+
+    @Param({"10000", "100000"})
+    int filas;
+
+    private final InventarioService service = new InventarioService();
+    private List<CatalogoSintetico.Fila> datos;
+    private TreeItem<ItemInventario> root;
+
+    @Setup
+    public void preparar() {
+        datos = CatalogoSintetico.filas(filas);
+    }
+
+    // limpiarCamposPadres modifica los productos: cada medición parte de un árbol recién armado
+    @Setup(Level.Invocation)
+    public void arbolNuevo() {
+        root = CatalogoSintetico.arbol(datos);
+    }
+
+    @Benchmark
+    public TreeItem<ItemInventario> limpiarCamposPadres() {
+        service.limpiarCamposPadres(root);
+        return root;
+    }
+
+    @Benchmark
+    public TreeItem<ItemInventario> expandirNodos() {
+        service.expandirNodos(root);
+        return root;
+    }
+
+    @Benchmark
+    public TreeItem<ItemInventario> limpiarYExpandir() {
+        service.limpiarCamposPadres(root);
+        service.expandirNodos(root);
+        return root;
+    }
+}
@@ -2,6 +2,11 @@ package com.arielcardales.arielcardales;
 
 import com.arielcardales.arielcardales.Updates.UpdateDialog;
 import com.arielcardales.arielcardales.Updates.UpdateManager;
+import com.arielcardales.arielcardales.Util.Tareas;
+import com.arielcardales.arielcardales.service.AvisosInventario;
+import com.arielcardales.arielcardales.service.CompactadorStock;
+import com.arielcardales.arielcardales.service.EscrituraDiferida;
+import com.arielcardales.arielcardales.service.FotoLocal;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
@@ -10,6 +15,8 @@ import javafx.scene.Scene;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 
+import java.time.Duration;
+
 public class App extends Application {
 
     private UpdateManager updateManager;
@@ -45,14 +52,14 @@ public class App extends Application {
 
         // Verificar actualizaciones en segundo plano
         // Esperar 3 segundos para que la UI esté completamente cargada
-        new Thread(() -> {
+        Tareas.FONDO.execute(() -> {
             try {
                 Thread.sleep(3000);
                 checkForUpdates(stage);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
-        }).start();
+        });
     }
 
     /**
@@ -127,8 +134,18 @@ public class App extends Application {
 
     @Override
     public void stop() throws Exception {
+        // 💾 Grabar las ediciones que siguen en la cola antes de cerrar
+        if (EscrituraDiferida.get().cerrar(Duration.ofSeconds(10))) {
+            // 📸 Foto del inventario para el próximo arranque (ya con las ediciones grabadas)
+            FotoLocal.get().guardar();
+        } else {
+            // La pantalla puede tener valores que no llegaron a la base y ningún delta los corregiría:
+            // queda la foto anterior (más vieja, pero coherente con su marca)
+            System.err.println("⚠ Quedaron ediciones sin grabar al cerrar: no se guarda la foto del inventario");
+        }
+        CompactadorStock.get().detener();
+        AvisosInventario.get().detener();
         super.stop();
-        // Cleanup si es necesario
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,193 @@
+package com.arielcardales.arielcardales.DAO;
+
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ajuste de precios por categoría (incluye subcategorías, vía categoria.parentId) calculado en el servidor:
+ * la vista previa y la aplicación usan la misma expresión, y aplicar es un único UPDATE en una transacción.
+ *
+ * Variantes: si la variante no tiene precio propio hereda el del producto. Cuando se ajustan también los
+ * productos esas variantes no se tocan (siguen heredando); si solo se ajustan variantes, se les fija el
+ * precio ajustado partiendo del heredado.
+ */
+public class AjustePrecioDAO {
+
+    public enum Modo { PORCENTAJE, MONTO }
+
+    /** Múltiplo al que se redondea el precio nuevo. */
+    public enum Redondeo {
+        CENTAVOS("0.01", "Centavos"), PESOS("1", "Pesos"), DECENAS("10", "Decenas"), CENTENAS("100", "Centenas");
+
+        private final BigDecimal multiplo;
+        private final String texto;
+
+        Redondeo(String multiplo, String texto) {
+            this.multiplo = new BigDecimal(multiplo);
+            this.texto = texto;
+        }
+
+        public BigDecimal getMultiplo() { return multiplo; }
+
+        @Override public String toString() { return texto; }
+    }
+
+    /**
+     * Parámetros del ajuste. valor: porcentaje (10 = +10%, -5 = -5%) o monto a sumar según el modo.
+     * haciaArriba: redondea siempre para arriba (si no, al más cercano).
+     */
+    public record AjustePrecio(long categoriaId, Modo modo, BigDecimal valor,
+                               Redondeo redondeo, boolean haciaArriba,
+                               boolean productos, boolean variantes) {}
+
+    /** Una fila de la vista previa (varianteId null = producto). */
+    public record CambioPrecio(long productoId, Long varianteId, String etiqueta, String nombre,
+                               String color, String talle, BigDecimal precioActual, BigDecimal precioNuevo) {}
+
+    /** Filas modificadas y productos afectados (para refrescar el árbol). */
+    public record ResultadoAjuste(int productos, int variantes, Set<Long> productosAfectados) {}
+
+    // Categoría elegida y todas sus descendientes + parámetros del cálculo (una sola vez)
+    private static final String CTE_BASE = """
+        with recursive cats as (
+            select id from categoria where id = ?
+            union
+            select c.id from categoria c join cats on c.parentId = cats.id
+        ), par as (
+            select ?::numeric as factor, ?::numeric as suma, ?::numeric as multiplo
+        )
+        """;
+
+    public List<CambioPrecio> previsualizar(AjustePrecio a) throws SQLException {
+        if (!a.productos() && !a.variantes()) return List.of();
+
+        StringBuilder sql = new StringBuilder(CTE_BASE).append(", cambios as (");
+        boolean union = false;
+        if (a.productos()) {
+            sql.append("""
+                select p.id as producto_id, null::bigint as variante_id, p.etiqueta, p.nombre,
+                       null as color, null as talle, p.precio as actual,
+                """).append(precioNuevo(a, "p.precio")).append("""
+                 as nuevo
+                  from producto p, par
+                 where p.categoriaId in (select id from cats)
+                """);
+            union = true;
+        }
+        if (a.variantes()) {
+            if (union) sql.append(" union all ");
+            sql.append("""
+                select p.id as producto_id, v.id as variante_id, p.etiqueta, p.nombre, v.color, v.talle,
+                       coalesce(v.precio, p.precio) as actual,
+                """).append(precioNuevo(a, "coalesce(v.precio, p.precio)")).append("""
+                 as nuevo
+                  from producto_variante v
+                  join producto p on p.id = v.producto_id, par
+                 where p.categoriaId in (select id from cats)
+                """).append(a.productos() ? " and v.precio is not null" : "");
+        }
+        sql.append("""
+            )
+            select * from cambios where nuevo is distinct from actual
+             order by nombre, producto_id, variante_id nulls first
+            """);
+
+        try (Connection cn = Database.get();
+             PreparedStatement ps = cn.prepareStatement(sql.toString())) {
+            setParametros(ps, a);
+            List<CambioPrecio> out = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new CambioPrecio(
+                            rs.getLong("producto_id"), (Long) rs.getObject("variante_id"),
+                            rs.getString("etiqueta"), rs.getString("nombre"),
+                            rs.getString("color"), rs.getString("talle"),
+                            rs.getBigDecimal("actual"), rs.getBigDecimal("nuevo")));
+                }
+            }
+            return out;
+        }
+    }
+
+    /** Aplica el ajuste con un solo statement (UPDATEs de productos y variantes en CTEs) en una transacción. */
+    public ResultadoAjuste aplicar(AjustePrecio a) throws SQLException {
+        if (!a.productos() && !a.variantes()) return new ResultadoAjuste(0, 0, Set.of());
+
+        // Variantes primero: leen el precio del producto anterior al ajuste (mismo snapshot)
+        String updVar = !a.variantes() ? "select null::bigint as producto_id where false" : """
+            update producto_variante v
+               set precio = %s
+              from producto p, par
+             where p.id = v.producto_id
+               and p.categoriaId in (select id from cats)
+               %s
+               and %s is distinct from coalesce(v.precio, p.precio)
+            returning v.producto_id
+            """.formatted(precioNuevo(a, "coalesce(v.precio, p.precio)"),
+                          a.productos() ? "and v.precio is not null" : "",
+                          precioNuevo(a, "coalesce(v.precio, p.precio)"));
+
+        String updProd = !a.productos() ? "select null::bigint as id where false" : """
+            update producto p
+               set precio = %s
+              from par
+             where p.categoriaId in (select id from cats)
+               and %s is distinct from p.precio
+            returning p.id
+            """.formatted(precioNuevo(a, "p.precio"), precioNuevo(a, "p.precio"));
+
+        String sql = CTE_BASE + ", upd_var as (" + updVar + "), upd_prod as (" + updProd + ")" + """
+            select 'p' as tipo, id from upd_prod
+            union all
+            select 'v', producto_id from upd_var
+            """;
+
+        try (Connection cn = Database.get()) {
+            cn.setAutoCommit(false);
+            try (PreparedStatement ps = cn.prepareStatement(sql)) {
+                setParametros(ps, a);
+                int productos = 0, variantes = 0;
+                Set<Long> afectados = new LinkedHashSet<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        if ("p".equals(rs.getString(1))) productos++; else variantes++;
+                        afectados.add(rs.getLong(2));
+                    }
+                }
+                cn.commit();
+                return new ResultadoAjuste(productos, variantes, afectados);
+            } catch (SQLException | RuntimeException e) {
+                cn.rollback();
+                throw e;
+            } finally {
+                cn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------
+
+    // Expresión SQL del precio nuevo a partir de "base" (usa los valores de la CTE par)
+    private static String precioNuevo(AjustePrecio a, String base) {
+        String funcion = a.haciaArriba() ? "ceil" : "round";
+        return "greatest(" + funcion + "((" + base + " * par.factor + par.suma) / par.multiplo) * par.multiplo, 0)";
+    }
+
+    private static void setParametros(PreparedStatement ps, AjustePrecio a) throws SQLException {
+        BigDecimal factor = BigDecimal.ONE;
+        BigDecimal suma = BigDecimal.ZERO;
+        if (a.modo() == Modo.PORCENTAJE) {
+            factor = BigDecimal.ONE.add(a.valor().movePointLeft(2));
+        } else {
+            suma = a.valor();
+        }
+        ps.setLong(1, a.categoriaId());
+        ps.setBigDecimal(2, factor);
+        ps.setBigDecimal(3, suma);
+        ps.setBigDecimal(4, a.redondeo().getMultiplo());
+    }
+}
@@ -0,0 +1,93 @@
+package com.arielcardales.arielcardales.DAO;
+
+import com.arielcardales.arielcardales.Util.Tareas;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Permite cortar de verdad una carga en curso: no solo dejar de esperarla, sino cancelar la consulta
+ * en el servidor (Statement.cancel) para que no siga ocupando la conexión y la base.
+ *
+ * Quien lanza la carga la corre con {@link #correr}; los DAO registran su sentencia con {@link #registrar}
+ * (si el hilo no está dentro de una cancelación, no hace nada). {@link #cancelar} se puede llamar desde
+ * cualquier hilo, antes o durante la consulta.
+ */
+public final class Cancelacion {
+
+    private static final ThreadLocal<Cancelacion> ACTUAL = new ThreadLocal<>();
+
+    /** Sentencia registrada; al cerrarlo (en el finally de la consulta) deja de ser cancelable. */
+    public record Registro(Cancelacion cancelacion, Statement sentencia) implements AutoCloseable {
+        @Override
+        public void close() {
+            if (cancelacion != null) cancelacion.soltar(sentencia);
+        }
+    }
+
+    private static final Registro NINGUNO = new Registro(null, null);
+
+    private Statement sentencia;
+    private boolean cancelada;
+
+    /** Corre la llamada en el hilo actual con esta cancelación activa. */
+    public <T> T correr(Tareas.Llamada<T> llamada) throws Exception {
+        verificar(this);
+        Cancelacion anterior = ACTUAL.get();
+        ACTUAL.set(this);
+        try {
+            return llamada.llamar();
+        } finally {
+            if (anterior == null) ACTUAL.remove();
+            else ACTUAL.set(anterior);
+        }
+    }
+
+    /**
+     * Marca la carga como cancelada y corta la sentencia en curso si hay una.
+     * El cancel abre una conexión aparte al servidor: no llamarlo desde el FX thread.
+     */
+    public void cancelar() {
+        Statement st;
+        synchronized (this) {
+            cancelada = true;
+            st = sentencia;
+        }
+        if (st == null) return;
+        try {
+            st.cancel();   // el driver no hace nada si la sentencia ya terminó
+        } catch (SQLException e) {
+            System.err.println("⚠ No se pudo cancelar la consulta: " + e.getMessage());
+        }
+    }
+
+    public synchronized boolean isCancelada() {
+        return cancelada;
+    }
+
+    /** Registra la sentencia que está por ejecutar el hilo actual (si corre dentro de una cancelación). */
+    public static Registro registrar(Statement st) {
+        Cancelacion c = ACTUAL.get();
+        if (c == null) return NINGUNO;
+        synchronized (c) {
+            verificar(c);
+            c.sentencia = st;
+        }
+        return new Registro(c, st);
+    }
+
+    /** Corta el trabajo del hilo actual si su carga se canceló (para los pasos largos después de la consulta). */
+    public static void verificar() {
+        Cancelacion c = ACTUAL.get();
+        if (c != null) verificar(c);
+    }
+
+    private static void verificar(Cancelacion c) {
+        if (c.isCancelada()) throw new CancellationException("Carga cancelada");
+    }
+
+    private synchronized void soltar(Statement st) {
+        if (sentencia == st) sentencia = null;
+    }
+}
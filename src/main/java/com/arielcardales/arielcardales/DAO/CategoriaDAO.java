@@ -4,7 +4,6 @@ import com.arielcardales.arielcardales.Entidades.Categoria;
 import com.arielcardales.arielcardales.Util.Mapper;
 
 import java.sql.*;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -27,9 +26,7 @@ public class CategoriaDAO implements CrudDAO<Categoria, Long> {
              PreparedStatement ps = c.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
-            List<Categoria> out = new ArrayList<>();
-            while (rs.next()) out.add(Mapper.getCategoriaConPadre(rs));
-            return out;
+            return Mapper.CATEGORIA.leerTodas(rs);
 
         } catch (SQLException e) {
             throw new DaoException("Error listando categorías", e);
@@ -42,9 +39,7 @@ public class CategoriaDAO implements CrudDAO<Categoria, Long> {
         try (Connection c = Database.get();
              PreparedStatement ps = c.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
-            List<Categoria> out = new ArrayList<>();
-            while (rs.next()) out.add(Mapper.getCategoria(rs));
-            return out;
+            return Mapper.CATEGORIA.leerTodas(rs);
         } catch (SQLException e) {
             throw new DaoException("Error listando categorías (básico)", e);
         }
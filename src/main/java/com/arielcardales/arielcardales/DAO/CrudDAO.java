@@ -1,7 +1,10 @@
 package com.arielcardales.arielcardales.DAO;
 
+import com.arielcardales.arielcardales.Util.Tareas;
+
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 //interfaz genérica que define las operaciones básicas de un DAO (Data Access Object).
 public interface CrudDAO<T, ID> {
@@ -10,5 +13,13 @@ public interface CrudDAO<T, ID> {
     ID insert(T entity);             // Insertar un registro
     boolean update(T entity);        // Actualizar registro
     boolean deleteById(ID id);       // Eliminar por ID
+
+    // Lo mismo fuera del FX thread: hilo virtual con permiso del pool (ver Tareas).
+    // El resultado vuelve a la UI con Tareas.alTerminar(...).
+    default CompletableFuture<List<T>> findAllAsync()              { return Tareas.enBase(this::findAll); }
+    default CompletableFuture<Optional<T>> findByIdAsync(ID id)    { return Tareas.enBase(() -> findById(id)); }
+    default CompletableFuture<ID> insertAsync(T entity)            { return Tareas.enBase(() -> insert(entity)); }
+    default CompletableFuture<Boolean> updateAsync(T entity)       { return Tareas.enBase(() -> update(entity)); }
+    default CompletableFuture<Boolean> deleteByIdAsync(ID id)      { return Tareas.enBase(() -> deleteById(id)); }
 }
 
@@ -3,29 +3,55 @@ package com.arielcardales.arielcardales.DAO;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 
 public final class Database {
     //tengo que terminar de entender esto, se como se conecta la DB normal pero no entiendo a detalle con este metodo
-    private static final HikariDataSource DS;
 
-    static {
-        HikariConfig cfg = new HikariConfig();
+    // PG_PERFIL=local → Postgres de la máquina (pruebas de carga y benchmarks, ver db/local/esquema.sql).
+    // Sin perfil se usa Supabase. PG_URL / PG_USER / PG_PASSWORD pisan lo que defina el perfil.
+    private static final boolean LOCAL = "local".equalsIgnoreCase(getEnv("PG_PERFIL", ""));
+    private static final int POOL_SIZE = Integer.parseInt(getEnv("PG_POOL_SIZE", "5"));
+
+    // El pool se crea recién en el primer get(): consultar el perfil no abre conexiones
+    private static final class Pool {
+        static final HikariDataSource DS = crearPool();
+    }
+
+    // Datos de conexión según el perfil (los usa el pool y la conexión de avisos)
+    private static final class Conexion {
+        static final String URL;
+        static final String USER;
+        static final String PASS;
 
-        String url = getEnv("PG_URL",
-                "jdbc:postgresql://aws-1-us-east-2.pooler.supabase.com:5432/postgres" +
-                        "?sslmode=require&preferQueryMode=simple&reWriteBatchedInserts=true");
-        String user = getEnv("PG_USER", "postgres.gybuxvjuhqhjmjmwkwyb");
-        String pass = getEnv("PG_PASSWORD", "r$t13XR$^*R!U!@w");
+        static {
+            if (LOCAL) {
+                URL = getEnv("PG_URL", "jdbc:postgresql://localhost:5432/arielcardales" +
+                        "?preferQueryMode=simple&reWriteBatchedInserts=true");
+                USER = getEnv("PG_USER", "postgres");
+                PASS = getEnv("PG_PASSWORD", "postgres");
+            } else {
+                URL = getEnv("PG_URL",
+                        "jdbc:postgresql://aws-1-us-east-2.pooler.supabase.com:5432/postgres" +
+                                "?sslmode=require&preferQueryMode=simple&reWriteBatchedInserts=true");
+                USER = getEnv("PG_USER", "postgres.gybuxvjuhqhjmjmwkwyb");
+                PASS = getEnv("PG_PASSWORD", "r$t13XR$^*R!U!@w");
+            }
+        }
+    }
+
+    private static HikariDataSource crearPool() {
+        HikariConfig cfg = new HikariConfig();
 
-        cfg.setJdbcUrl(url);
-        cfg.setUsername(user);
-        cfg.setPassword(pass);
+        cfg.setJdbcUrl(Conexion.URL);
+        cfg.setUsername(Conexion.USER);
+        cfg.setPassword(Conexion.PASS);
 
         // Pool & rendimiento
-        int maxPool = Integer.parseInt(getEnv("PG_POOL_SIZE", "5"));
-        cfg.setMaximumPoolSize(maxPool);
-        cfg.setMinimumIdle(Math.min(1, maxPool));
+        cfg.setMaximumPoolSize(POOL_SIZE);
+        cfg.setMinimumIdle(Math.min(1, POOL_SIZE));
         cfg.setAutoCommit(true); // Lecturas no transaccionales; las transacciones se manejan en servicios
 
         // Timeouts razonables
@@ -33,18 +59,48 @@ public final class Database {
         cfg.setIdleTimeout(60_000);
         cfg.setMaxLifetime(30 * 60_000);
 
+        // Métricas: tiempos del pool para la ventana de diagnóstico y MBean del pool por JMX
+        cfg.setPoolName("ArielCardales");
+        cfg.setRegisterMbeans(true);
+        cfg.setMetricsTrackerFactory(MetricasSql.get().fabricaHikari());
+
         // Si llego a usar esquemas, podria: cfg.setConnectionInitSql("set search_path to public");
-        DS = new HikariDataSource(cfg);
+        return new HikariDataSource(cfg);
     }
 
-    private static String getEnv(String k, String def) {
+    // Package-private: los DAO leen de acá sus ajustes (p.ej. PG_FETCH_FILAS)
+    static String getEnv(String k, String def) {
         String v = System.getenv(k);
         return (v == null || v.isBlank()) ? def : v;
     }
 
     private Database() {}
 
+    /** true si la app apunta a la base local (PG_PERFIL=local). */
+    public static boolean esLocal() {
+        return LOCAL;
+    }
+
+    /** Conexiones del pool (PG_POOL_SIZE); no crea el pool. */
+    public static int tamanioPool() {
+        return POOL_SIZE;
+    }
+
+    /** Conexión del pool, envuelta para medir las consultas (ver {@link MetricasSql}). */
     public static Connection get() throws SQLException {
-        return DS.getConnection();
+        return MetricasSql.get().envolver(Pool.DS.getConnection());
+    }
+
+    /**
+     * Conexión propia, fuera del pool, para quedarse escuchando avisos (LISTEN).
+     * Queda abierta mientras dure la escucha: no ocupa un lugar del pool. La cierra quien la pidió.
+     */
+    public static Connection abrirConexionDedicada() throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("user", Conexion.USER);
+        props.setProperty("password", Conexion.PASS);
+        props.setProperty("ApplicationName", "ArielCardales-avisos");
+        props.setProperty("tcpKeepAlive", "true");
+        return DriverManager.getConnection(Conexion.URL, props);
     }
 }
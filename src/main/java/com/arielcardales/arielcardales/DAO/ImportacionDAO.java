@@ -0,0 +1,320 @@
+package com.arielcardales.arielcardales.DAO;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Importación masiva de precios/stock desde una planilla.
+ * Las filas se suben con COPY a una tabla temporal y desde ahí se comparan o se aplican con un solo
+ * statement: nada de un UPDATE por fila.
+ *
+ * - Producto: se busca por etiqueta. Si no existe y la fila trae nombre, se crea.
+ * - Variante: se busca por etiqueta + color + talle (sin distinguir mayúsculas). Si no existe, se crea.
+ * - Las columnas que la planilla no trae (null) conservan el valor actual.
+ * - El stock de lo que ya existe no se pisa: se registra un movimiento "importacion" por la diferencia
+ *   con el stock actual (ver StockDAO). Los productos y variantes nuevos arrancan con el stock de la planilla.
+ * - Si la misma clave aparece varias veces vale la última fila.
+ */
+public class ImportacionDAO {
+
+    /** Una fila ya validada de la planilla. fila = número de fila en el archivo (para el informe). */
+    public record FilaImportacion(int fila, String etiqueta, String nombre, String categoria,
+                                  boolean variante, String color, String talle,
+                                  BigDecimal costo, BigDecimal precio, Integer stock) {}
+
+    /** Diferencia entre la planilla y la base para una fila que cambiaría algo. */
+    public record Diferencia(int fila, String etiqueta, String color, String talle, boolean variante,
+                             String estado,
+                             BigDecimal precioActual, BigDecimal precioNuevo,
+                             BigDecimal costoActual, BigDecimal costoNuevo,
+                             Integer stockActual, Integer stockNuevo) {}
+
+    /** Filas afectadas al aplicar la importación. */
+    public record ResultadoImportacion(int productosActualizados, int productosNuevos,
+                                       int variantesActualizadas, int variantesNuevas) {
+        public int total() {
+            return productosActualizados + productosNuevos + variantesActualizadas + variantesNuevas;
+        }
+    }
+
+    public static final String NUEVO = "nuevo";
+    public static final String CAMBIA = "cambia";
+    public static final String SIN_PRODUCTO = "sin producto";
+
+    // Claves deduplicadas (última fila gana) de productos y de variantes.
+    // Si la planilla trae variantes de un producto existente, su fila solo cambia nombre y categoría:
+    // en las exportaciones esa fila repite precio/costo/stock de la primera variante (vInventario_variantes).
+    private static final String CTE_CLAVES = """
+        prod as (
+            select distinct on (t.etiqueta) t.fila, t.etiqueta, t.nombre,
+                   case when tv.etiqueta is null then t.precio end as precio,
+                   case when tv.etiqueta is null then t.costo end as costo,
+                   case when tv.etiqueta is null then t.stock end as stock,
+                   t.precio as precio_fila, t.costo as costo_fila, t.stock as stock_fila,
+                   (select c.id from categoria c where lower(c.nombre) = lower(t.categoria)
+                     order by c.id limit 1) as categoria_id
+              from importacion_tmp t
+              left join (select distinct etiqueta from importacion_tmp where variante) tv
+                     on tv.etiqueta = t.etiqueta
+             where not t.variante
+             order by t.etiqueta, t.fila desc
+        ), var as (
+            select distinct on (t.etiqueta, lower(coalesce(t.color,'')), lower(coalesce(t.talle,''))) t.*,
+                   p.id as producto_actual, p.precio as producto_precio, p.costo as producto_costo
+              from importacion_tmp t
+              left join producto p on p.etiqueta = t.etiqueta
+             where t.variante
+             order by t.etiqueta, lower(coalesce(t.color,'')), lower(coalesce(t.talle,'')), t.fila desc
+        )
+        """;
+
+    private static final String JOIN_VARIANTE =
+            "lower(coalesce(pv.color,'')) = lower(coalesce(s.color,'')) " +
+            "and lower(coalesce(pv.talle,'')) = lower(coalesce(s.talle,''))";
+
+    private static final String CAMBIA_PRODUCTO = """
+        (p.precio, p.costo, %1$s, p.nombre, p.categoriaId) is distinct from
+        (coalesce(s.precio, p.precio), coalesce(s.costo, p.costo),
+         coalesce(s.stock, %1$s), coalesce(s.nombre, p.nombre),
+         coalesce(s.categoria_id, p.categoriaId))
+        """.formatted(StockDAO.STOCK_PRODUCTO);
+
+    // Precio y costo de la variante se comparan con el valor efectivo (el del producto si la variante no tiene)
+    private static final String CAMBIA_VARIANTE = """
+        ((s.precio is not null and s.precio is distinct from coalesce(pv.precio, s.producto_precio))
+          or (s.costo is not null and s.costo is distinct from coalesce(pv.costo, s.producto_costo))
+          or (s.stock is not null and s.stock is distinct from %s))
+        """.formatted(StockDAO.STOCK_VARIANTE);
+
+    /** Compara la planilla con la base sin modificar nada (la transacción se revierte). */
+    public List<Diferencia> previsualizar(List<FilaImportacion> filas) throws SQLException {
+        String sql = "with " + CTE_CLAVES + """
+            select s.fila, s.etiqueta, null as color, null as talle, false as variante,
+                   case when p.id is null and s.nombre is null then 'sin producto'
+                        when p.id is null then 'nuevo' else 'cambia' end as estado,
+                   p.precio as precio_actual, coalesce(s.precio, p.precio, s.precio_fila, 0) as precio_nuevo,
+                   p.costo as costo_actual, coalesce(s.costo, p.costo, s.costo_fila, 0) as costo_nuevo,
+                   %1$s as stock_actual, coalesce(s.stock, %1$s, s.stock_fila, 0) as stock_nuevo
+              from prod s
+              left join producto p on p.etiqueta = s.etiqueta
+             where p.id is null or
+            """ + CAMBIA_PRODUCTO + """
+            union all
+            select s.fila, s.etiqueta, s.color, s.talle, true,
+                   case when s.producto_actual is null and np.etiqueta is null then 'sin producto'
+                        when pv.id is null then 'nuevo' else 'cambia' end,
+                   coalesce(pv.precio, s.producto_precio), coalesce(s.precio, pv.precio, s.producto_precio),
+                   coalesce(pv.costo, s.producto_costo), coalesce(s.costo, pv.costo, s.producto_costo),
+                   %2$s, coalesce(s.stock, %2$s, 0)
+              from var s
+              left join prod np on np.etiqueta = s.etiqueta and np.nombre is not null
+              left join producto_variante pv on pv.producto_id = s.producto_actual and
+            """ + JOIN_VARIANTE + """
+
+             where pv.id is null or
+            """ + CAMBIA_VARIANTE + """
+             order by 1
+            """;
+        sql = sql.formatted(StockDAO.STOCK_PRODUCTO, StockDAO.STOCK_VARIANTE);
+
+        try (Connection cn = Database.get()) {
+            cn.setAutoCommit(false);
+            try {
+                cargarTemporal(cn, filas);
+                List<Diferencia> out = new ArrayList<>();
+                try (Statement st = cn.createStatement();
+                     ResultSet rs = st.executeQuery(sql)) {
+                    while (rs.next()) {
+                        out.add(new Diferencia(
+                                rs.getInt("fila"), rs.getString("etiqueta"),
+                                rs.getString("color"), rs.getString("talle"), rs.getBoolean("variante"),
+                                rs.getString("estado"),
+                                rs.getBigDecimal("precio_actual"), rs.getBigDecimal("precio_nuevo"),
+                                rs.getBigDecimal("costo_actual"), rs.getBigDecimal("costo_nuevo"),
+                                (Integer) rs.getObject("stock_actual"), (Integer) rs.getObject("stock_nuevo")));
+                    }
+                }
+                return out;
+            } finally {
+                cn.rollback();
+                cn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Locks de stock (los de StockDAO) de lo que ya existe y trae stock en la planilla: mov_prod y mov_var
+    // calculan la diferencia con el stock actual y no se pueden cruzar con una venta
+    private static final String SQL_BLOQUEAR = "with " + CTE_CLAVES + StockDAO.sqlBloquear("""
+            select %s
+              from prod s
+              join producto p on p.etiqueta = s.etiqueta
+             where s.stock is not null
+            union all
+            select %s
+              from var s
+              join producto_variante pv on pv.producto_id = s.producto_actual and %s
+             where s.stock is not null
+            """.formatted(StockDAO.sqlItemProducto("p.id"), StockDAO.sqlItemVariante("pv.id"), JOIN_VARIANTE));
+
+    /**
+     * Aplica la planilla en una sola transacción: COPY a la temporal, los locks de stock
+     * y un statement con todos los cambios.
+     */
+    public ResultadoImportacion importar(List<FilaImportacion> filas) throws SQLException {
+        String sql = "with " + CTE_CLAVES + """
+            , upd_prod as (
+                update producto p
+                   set nombre = coalesce(s.nombre, p.nombre),
+                       precio = coalesce(s.precio, p.precio),
+                       costo = coalesce(s.costo, p.costo),
+                       categoriaId = coalesce(s.categoria_id, p.categoriaId)
+                  from prod s
+                 where p.etiqueta = s.etiqueta and
+            """ + CAMBIA_PRODUCTO + """
+                returning p.id
+            ), mov_prod as (
+                insert into stock_movimiento (producto_id, cantidad, tipo)
+                select p.id, s.stock - %1$s, 'importacion'
+                  from prod s
+                  join producto p on p.etiqueta = s.etiqueta
+                 where s.stock is not null and s.stock <> %1$s
+                returning id
+            ), ins_prod as (
+                insert into producto (etiqueta, nombre, categoriaId, precio, costo, stockOnHand)
+                select s.etiqueta, s.nombre, s.categoria_id,
+                       coalesce(s.precio_fila, 0), coalesce(s.costo_fila, 0), coalesce(s.stock_fila, 0)
+                  from prod s
+                 where s.nombre is not null
+                   and not exists (select 1 from producto p where p.etiqueta = s.etiqueta)
+                returning id, etiqueta
+            ), var_prod as (
+                select s.*, coalesce(s.producto_actual, ip.id) as producto_id
+                  from var s
+                  left join ins_prod ip on ip.etiqueta = s.etiqueta
+            ), upd_var as (
+                update producto_variante pv
+                   set precio = case when s.precio is not null
+                                      and s.precio is distinct from coalesce(pv.precio, s.producto_precio)
+                                     then s.precio else pv.precio end,
+                       costo = case when s.costo is not null
+                                     and s.costo is distinct from coalesce(pv.costo, s.producto_costo)
+                                    then s.costo else pv.costo end
+                  from var_prod s
+                 where pv.producto_id = s.producto_id and
+            """ + JOIN_VARIANTE + " and " + CAMBIA_VARIANTE + """
+                returning pv.id
+            ), mov_var as (
+                insert into stock_movimiento (producto_id, variante_id, cantidad, tipo)
+                select pv.producto_id, pv.id, s.stock - %2$s, 'importacion'
+                  from var_prod s
+                  join producto_variante pv on pv.producto_id = s.producto_id and
+            """ + JOIN_VARIANTE + """
+
+                 where s.stock is not null and s.stock <> %2$s
+                returning id
+            ), ins_var as (
+                insert into producto_variante (producto_id, color, talle, precio, costo, stock)
+                select s.producto_id, s.color, s.talle, s.precio, s.costo, coalesce(s.stock, 0)
+                  from var_prod s
+                 where s.producto_id is not null
+                   and not exists (select 1 from producto_variante pv
+                                    where pv.producto_id = s.producto_id and
+            """ + JOIN_VARIANTE + """
+            )
+                returning id
+            )
+            select (select count(*) from upd_prod), (select count(*) from ins_prod),
+                   (select count(*) from upd_var), (select count(*) from ins_var),
+                   (select count(*) from mov_prod), (select count(*) from mov_var)
+            """;
+        sql = sql.formatted(StockDAO.STOCK_PRODUCTO, StockDAO.STOCK_VARIANTE);
+
+        try (Connection cn = Database.get()) {
+            cn.setAutoCommit(false);
+            try {
+                cargarTemporal(cn, filas);
+                ResultadoImportacion r;
+                try (Statement st = cn.createStatement()) {
+                    st.execute(SQL_BLOQUEAR);
+                }
+                try (Statement st = cn.createStatement();
+                     ResultSet rs = st.executeQuery(sql)) {
+                    rs.next();
+                    r = new ResultadoImportacion(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4));
+                }
+                cn.commit();
+                return r;
+            } catch (SQLException | RuntimeException e) {
+                cn.rollback();
+                throw e;
+            } finally {
+                cn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Tabla temporal (se borra sola al terminar la transacción) cargada con COPY
+    private static void cargarTemporal(Connection cn, List<FilaImportacion> filas) throws SQLException {
+        try (Statement st = cn.createStatement()) {
+            st.execute("""
+                create temp table importacion_tmp (
+                    fila      integer not null,
+                    etiqueta  text not null,
+                    nombre    text,
+                    categoria text,
+                    variante  boolean not null,
+                    color     text,
+                    talle     text,
+                    costo     numeric(12,2),
+                    precio    numeric(12,2),
+                    stock     integer
+                ) on commit drop
+                """);
+        }
+
+        CopyIn copy = cn.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                "copy importacion_tmp (fila, etiqueta, nombre, categoria, variante, color, talle, costo, precio, stock) " +
+                "from stdin with (format csv)");
+        try {
+            StringBuilder sb = new StringBuilder(256);
+            for (FilaImportacion f : filas) {
+                sb.setLength(0);
+                sb.append(f.fila()).append(',');
+                texto(sb, f.etiqueta()).append(',');
+                texto(sb, f.nombre()).append(',');
+                texto(sb, f.categoria()).append(',');
+                sb.append(f.variante()).append(',');
+                texto(sb, f.color()).append(',');
+                texto(sb, f.talle()).append(',');
+                if (f.costo() != null) sb.append(f.costo().toPlainString());
+                sb.append(',');
+                if (f.precio() != null) sb.append(f.precio().toPlainString());
+                sb.append(',');
+                if (f.stock() != null) sb.append(f.stock());
+                sb.append('\n');
+
+                byte[] linea = sb.toString().getBytes(StandardCharsets.UTF_8);
+                copy.writeToCopy(linea, 0, linea.length);
+            }
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) copy.cancelCopy();
+        }
+
+        try (Statement st = cn.createStatement()) {
+            st.execute("analyze importacion_tmp");
+        }
+    }
+
+    // En CSV de COPY un campo sin comillas vacío es NULL; los textos van siempre entre comillas
+    private static StringBuilder texto(StringBuilder sb, String v) {
+        if (v == null) return sb;
+        return sb.append('"').append(v.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -1,84 +1,630 @@
 package com.arielcardales.arielcardales.DAO;
 
 import com.arielcardales.arielcardales.Entidades.ItemInventario;
+import com.arielcardales.arielcardales.Entidades.SnapshotInventario;
 import com.arielcardales.arielcardales.Util.Mapper;
+import com.arielcardales.arielcardales.Util.PlanFila;
+import com.arielcardales.arielcardales.Util.TreeItemFiltrable;
+import com.arielcardales.arielcardales.Util.TreeItemPerezoso;
 import javafx.scene.control.TreeItem;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.util.*;
+import java.util.function.Consumer;
 
 public class InventarioDAO {
 
-    private static final String sqlbase =
-            "select * from vInventario_variantes " +
-                    "where ( " +
+    private static final String filtroWhere =
+            "( " +
                     "  ? = '' " +
                     "  or lower(producto_etiqueta) like lower(?) " +
                     "  or lower(producto_nombre)  like lower(?) " +
                     "  or lower(coalesce(color,'')) like lower(?) " +
                     "  or lower(coalesce(talle,'')) like lower(?) " +
-                    ") order by producto_nombre, color, talle";
+                    ")";
+
+    // Productos que devuelve como mucho buscarArbol si no se indica otro límite
+    public static final int LIMITE_BUSQUEDA = 200;
+
+    // producto_id desempata productos con el mismo nombre: sus filas quedan juntas (el cursor de
+    // exportación arma un producto por cada corrida de filas con el mismo id)
+    private static final String orden = " order by producto_nombre, producto_id, color, talle";
+
+    // Tope para las cargas completas: si el servidor no contesta, el driver la cancela
+    private static final int TIMEOUT_CARGA_S = 60;
+
+    // Tandas de la carga del árbol: la primera chica (se muestra enseguida), el resto grandes
+    private static final int PRIMERA_TANDA = 500;
+    private static final int FILAS_POR_TANDA = Integer.parseInt(Database.getEnv("PG_FETCH_FILAS", "10000"));
+
+    // Solo las columnas que usa el árbol (si la vista suma columnas, no viajan de gusto).
+    // Son todas las que leen los planes ITEM_INVENTARIO_* de Mapper y leerSnapshot
+    private static final String columnasArbol =
+            "producto_id, variante_id, producto_etiqueta, producto_nombre, categoria, unidad, " +
+            "color, talle, precio, costo, stockOnHand, active, updatedAt";
+
+    // Las mismas, calificadas con el alias vi (para los join)
+    private static final String columnasArbolVi = "vi." + columnasArbol.replace(", ", ", vi.");
+
+    // Carga completa del árbol y cursor de exportación
+    private static final String sqlArbol =
+            "select " + columnasArbol + " from vInventario_variantes where " + filtroWhere + orden;
+
+    // Mismo filtro, restringido a los productos que cambiaron
+    private static final String sqlDelta =
+            "select " + columnasArbol + " from vInventario_variantes where producto_id = any(?) and "
+                    + filtroWhere + orden;
+
+    /**
+     * Resultado de un refresco incremental: productos que cambiaron desde la marca anterior
+     * (ya armados como subárbol) y la nueva marca de sincronización del servidor.
+     * Un id en productosAfectados sin subárbol en productos significa que hay que quitarlo.
+     * Si {@code vencido}, la marca es más vieja que las bajas que se conservan: no hay delta y hace falta
+     * una carga completa.
+     */
+    public record DeltaInventario(Timestamp marca,
+                                  Set<Long> productosAfectados,
+                                  List<TreeItem<ItemInventario>> productos,
+                                  boolean vencido) {
+        public DeltaInventario(Timestamp marca, Set<Long> productosAfectados, List<TreeItem<ItemInventario>> productos) {
+            this(marca, productosAfectados, productos, false);
+        }
+
+        public boolean isVacio() { return productosAfectados.isEmpty(); }
+    }
 
     public static TreeItem<ItemInventario> cargarArbol(String filtro) throws SQLException {
         String f = filtro == null ? "" : filtro.trim();
-        boolean porEtiqueta = f.matches("p\\d+");  // heurística p###
 
-        String likeEtiqueta = porEtiqueta ? f + "%" : "%" + f + "%";
-        String like = "%" + f + "%";
+        // Raíz y productos filtrables: la vista filtra sobre este mismo árbol sin clonarlo
+        TreeItem<ItemInventario> root = new TreeItemFiltrable<>();
+        SnapshotInventario snapshot = cargarSnapshot(f);
+        Cancelacion.verificar();   // no armar el árbol de una carga que ya se reemplazó
+        construirArbol(snapshot, root);
+        return root;
+    }
+
+    /**
+     * Carga perezosa: solo las filas base de los productos (con la cantidad de variantes que coinciden
+     * con el filtro), sin las variantes. Cada producto con variantes queda como {@link TreeItemPerezoso}
+     * y las trae con {@link #cargarVariantes} la primera vez que se expande.
+     * Los productos con variantes vienen sin color/talle/costo/precio/stock, igual que en cargarArbol.
+     */
+    public static TreeItem<ItemInventario> cargarProductos(
+            String filtro, Consumer<TreeItemPerezoso<ItemInventario>> cargador) throws SQLException {
+        String f = filtro == null ? "" : filtro.trim();
+
+        // Misma regla de filtro que la vista: un producto entra si alguna de sus filas coincide
+        String sql = """
+            with filas as (
+                select producto_id, count(variante_id) as variantes
+                  from vInventario_variantes
+                 where %s
+                 group by producto_id
+            )
+            select p.id as producto_id, null::bigint as variante_id,
+                   p.etiqueta as producto_etiqueta, p.nombre as producto_nombre,
+                   c.nombre as categoria, u.nombre as unidad,
+                   case when f.variantes = 0 then '-' end as color,
+                   case when f.variantes = 0 then '-' end as talle,
+                   case when f.variantes = 0 then p.precio end as precio,
+                   case when f.variantes = 0 then p.costo end as costo,
+                   case when f.variantes = 0 then p.stockOnHand else 0 end as stockOnHand,
+                   p.active, p.updatedAt, f.variantes
+              from filas f
+              join producto p on p.id = f.producto_id
+              left join categoria c on c.id = p.categoriaId
+              left join unidad u on u.id = p.unidadId
+             order by p.nombre
+            """.formatted(filtroWhere);
 
-        TreeItem<ItemInventario> root = new TreeItem<>();
-        Map<Long, TreeItem<ItemInventario>> padres = new LinkedHashMap<>();
+        TreeItem<ItemInventario> root = new TreeItemFiltrable<>();
+        List<TreeItem<ItemInventario>> productos = new ArrayList<>();
 
         try (Connection cn = Database.get();
-             PreparedStatement ps = cn.prepareStatement(
-                     "SELECT * FROM vInventario_variantes " +
-                             "WHERE (? = '' " +
-                             "OR lower(producto_etiqueta) LIKE lower(?) " +
-                             "OR lower(producto_nombre) LIKE lower(?) " +
-                             "OR lower(coalesce(color,'')) LIKE lower(?) " +
-                             "OR lower(coalesce(talle,'')) LIKE lower(?)) " +
-                             "ORDER BY producto_nombre, color, talle")) {
-
-            ps.setString(1, f);
-            ps.setString(2, likeEtiqueta);
-            ps.setString(3, like);
-            ps.setString(4, like);
-            ps.setString(5, like);
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            Cancelacion.Registro registro = Cancelacion.registrar(ps);
+            try {
+                ps.setQueryTimeout(TIMEOUT_CARGA_S);
+                setFiltro(ps, 1, f);
+                try (ResultSet rs = ps.executeQuery()) {
+                    PlanFila.Lector<ItemInventario> base = Mapper.ITEM_INVENTARIO_BASE.sobre(rs);
+                    int colVariantes = rs.findColumn("variantes");
+                    while (rs.next()) {
+                        TreeItemPerezoso<ItemInventario> nodo =
+                                new TreeItemPerezoso<>(base.leer(), rs.getInt(colVariantes));
+                        nodo.setCargador(cargador);
+                        productos.add(nodo);
+                    }
+                }
+            } finally {
+                registro.close();   // deja de ser cancelable antes de cerrar la sentencia
+            }
+        }
+
+        // Un solo addAll, como en construirArbol
+        TreeItemFiltrable.hijos(root).addAll(productos);
+        return root;
+    }
+
+    /**
+     * Variantes de varios productos en una consulta (las que coinciden con el filtro de la carga),
+     * agrupadas por producto y ordenadas por color y talle.
+     */
+    public static Map<Long, List<TreeItem<ItemInventario>>> cargarVariantes(
+            Collection<Long> productoIds, String filtro) throws SQLException {
+        Map<Long, List<TreeItem<ItemInventario>>> out = new HashMap<>();
+        if (productoIds.isEmpty()) return out;
 
+        String sql = "select " + columnasArbol + " from vInventario_variantes"
+                + " where producto_id = any(?) and variante_id is not null and "
+                + filtroWhere + " order by producto_id, color, talle";
+
+        try (Connection cn = Database.get();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setArray(1, cn.createArrayOf("bigint", productoIds.toArray()));
+            setFiltro(ps, 2, filtro == null ? "" : filtro.trim());
             try (ResultSet rs = ps.executeQuery()) {
+                PlanFila.Lector<ItemInventario> variante = Mapper.ITEM_INVENTARIO_VARIANTE.sobre(rs);
                 while (rs.next()) {
-                    long prodId = rs.getLong("producto_id");
-                    Long varId = (Long) rs.getObject("variante_id");
-
-                    TreeItem<ItemInventario> padre = padres.get(prodId);
-                    if (padre == null) {
-                        ItemInventario base = Mapper.getItemInventarioBase(rs);
-                        padre = new TreeItem<>(base);
-                        padres.put(prodId, padre);
-                        root.getChildren().add(padre);
-                    }
+                    ItemInventario it = variante.leer();
+                    out.computeIfAbsent(it.getProductoId(), k -> new ArrayList<>()).add(new TreeItem<>(it));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Búsqueda con índices de trigramas (V002): busca sobre las tablas base en vez de la vista,
+     * ordena por similitud y trae como mucho {@code limite} productos.
+     * Mantiene la regla de cargarArbol: de cada producto encontrado solo vienen las filas que coinciden.
+     * Además del "contiene", acepta nombres parecidos (operador % de pg_trgm) para errores de tipeo.
+     */
+    public static TreeItem<ItemInventario> buscarArbol(String texto, int limite) throws SQLException {
+        String f = texto == null ? "" : texto.trim();
+        if (f.isEmpty()) return cargarArbol("");
+
+        String sql = """
+            with coincidencias as (
+                select p.id as producto_id,
+                       greatest(similarity(p.nombre, ?), similarity(p.etiqueta, ?)) as puntaje
+                  from producto p
+                 where p.nombre ilike ? or p.etiqueta ilike ? or p.nombre %% ?
+                union all
+                select v.producto_id,
+                       greatest(similarity(v.color, ?), similarity(v.talle, ?)) * 0.9
+                  from producto_variante v
+                 where v.color ilike ? or v.talle ilike ?
+            ), ranking as (
+                select producto_id, max(puntaje) as puntaje
+                  from coincidencias
+                 group by producto_id
+                 order by puntaje desc, producto_id
+                 limit ?
+            )
+            select %s
+              from ranking r
+              join vInventario_variantes vi on vi.producto_id = r.producto_id
+             where vi.producto_nombre ilike ? or vi.producto_etiqueta ilike ?
+                or vi.producto_nombre %% ?
+                or coalesce(vi.color,'') ilike ? or coalesce(vi.talle,'') ilike ?
+             order by r.puntaje desc, vi.producto_nombre, vi.color, vi.talle
+        """.formatted(columnasArbolVi);
+
+        String like = "%" + f + "%";
+        String likeEtiqueta = likeEtiqueta(f);
+        TreeItem<ItemInventario> root = new TreeItemFiltrable<>();
 
-                    if (varId != null) {
-                        ItemInventario hijo = Mapper.getItemInventarioVariante(rs);
-                        padre.getChildren().add(new TreeItem<>(hijo));
+        try (Connection cn = Database.get();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            int i = 1;
+            ps.setString(i++, f);
+            ps.setString(i++, f);
+            ps.setString(i++, like);
+            ps.setString(i++, likeEtiqueta);
+            ps.setString(i++, f);
+            ps.setString(i++, f);
+            ps.setString(i++, f);
+            ps.setString(i++, like);
+            ps.setString(i++, like);
+            ps.setInt(i++, limite <= 0 ? LIMITE_BUSQUEDA : limite);
+            ps.setString(i++, like);
+            ps.setString(i++, likeEtiqueta);
+            ps.setString(i++, f);
+            ps.setString(i++, like);
+            ps.setString(i, like);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                construirArbol(rs, root);
+            }
+        }
+
+        return root;
+    }
+
+    /**
+     * Cantidad de filas que da {@link #abrirCursor(String)} con ese filtro
+     * (cada variante más una fila por producto), para mostrar el avance de una exportación.
+     */
+    public static long contarFilas(String filtro) throws SQLException {
+        String sql = "select count(*) + count(distinct producto_id) filter (where variante_id is not null) " +
+                "from vInventario_variantes where " + filtroWhere;
+
+        try (Connection cn = Database.get();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            setFiltro(ps, 1, filtro == null ? "" : filtro.trim());
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Recorre el inventario con el mismo filtro y orden que cargarArbol, pero sin armar el árbol:
+     * devuelve las filas ya aplanadas (producto seguido de sus variantes) a medida que llegan de la base.
+     * Usa un cursor del servidor (DECLARE/FETCH) porque con preferQueryMode=simple el driver ignora fetchSize
+     * y traería todo el resultado de una vez. Hay que cerrarlo (try-with-resources) para liberar la conexión.
+     */
+    public static CursorInventario abrirCursor(String filtro) throws SQLException {
+        return new CursorInventario(filtro == null ? "" : filtro.trim());
+    }
+
+    public static final class CursorInventario implements Iterator<ItemInventario>, AutoCloseable {
+        private static final int FILAS_POR_FETCH = 1000;
+
+        private final Connection cn;
+        private final PreparedStatement fetch;
+        private final ArrayDeque<ItemInventario> pendientes = new ArrayDeque<>();
+        private long productoActual = -1;
+        private boolean agotado;
+
+        private CursorInventario(String f) throws SQLException {
+            cn = Database.get();
+            try {
+                cn.setAutoCommit(false);   // el cursor vive dentro de la transacción
+                try (PreparedStatement ps = cn.prepareStatement(
+                        "declare cursor_inventario no scroll cursor for " + sqlArbol)) {
+                    setFiltro(ps, 1, f);
+                    ps.execute();
+                }
+                fetch = cn.prepareStatement("fetch forward " + FILAS_POR_FETCH + " from cursor_inventario");
+            } catch (SQLException e) {
+                cerrarConexion();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (pendientes.isEmpty() && !agotado) traerTanda();
+            return !pendientes.isEmpty();
+        }
+
+        @Override
+        public ItemInventario next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return pendientes.poll();
+        }
+
+        // El padre sale de la primera fila de cada corrida de filas del mismo producto
+        // (el orden por producto_nombre, producto_id las deja juntas)
+        private void traerTanda() {
+            try (ResultSet rs = fetch.executeQuery()) {
+                PlanFila.Lector<ItemInventario> base = Mapper.ITEM_INVENTARIO_BASE.sobre(rs);
+                PlanFila.Lector<ItemInventario> variante = Mapper.ITEM_INVENTARIO_VARIANTE.sobre(rs);
+                int colProducto = rs.findColumn("producto_id");
+                int colVariante = rs.findColumn("variante_id");
+                int leidas = 0;
+                while (rs.next()) {
+                    leidas++;
+                    long prodId = rs.getLong(colProducto);
+                    rs.getLong(colVariante);
+                    boolean esVariante = !rs.wasNull();
+
+                    if (prodId != productoActual) {
+                        productoActual = prodId;
+                        ItemInventario it = base.leer();
+                        if (!esVariante) {
+                            it.setColor("-");
+                            it.setTalle("-");
+                        }
+                        pendientes.add(it);
                     }
+                    if (esVariante) pendientes.add(variante.leer());
                 }
+                if (leidas < FILAS_POR_FETCH) agotado = true;
+            } catch (SQLException e) {
+                throw new DaoException("Error leyendo inventario: " + e.getMessage(), e);
             }
         }
 
-        // 🔧 Mejora: marcar los que no tienen hijos
-        for (TreeItem<ItemInventario> padre : padres.values()) {
-            if (padre.getChildren().isEmpty()) {
-                ItemInventario base = padre.getValue();
-                base.setColor("-");
-                base.setTalle("-");
+        @Override
+        public void close() throws SQLException {
+            try {
+                fetch.close();
+                cn.rollback();   // solo lectura: cierra el cursor y la transacción
+            } finally {
+                cerrarConexion();
             }
         }
 
-        return root;
+        private void cerrarConexion() throws SQLException {
+            try {
+                cn.setAutoCommit(true);
+            } finally {
+                cn.close();
+            }
+        }
+    }
+
+    /** Hora actual del servidor: se usa como marca de sincronización (evita desfasajes de reloj con la PC). */
+    public static Timestamp marcaServidor() throws SQLException {
+        try (Connection cn = Database.get();
+             Statement st = cn.createStatement();
+             ResultSet rs = st.executeQuery("select now()")) {
+            rs.next();
+            return rs.getTimestamp(1);
+        }
+    }
+
+    /**
+     * Hora del servidor y si las bajas desde {@code desde} siguen todas en inventario_baja.
+     * La purga de V001 borra las de más de 30 días, siempre las más viejas primero: si la marca es
+     * reciente, o no es anterior a la baja más vieja que queda, no se perdió ninguna.
+     */
+    private static final String sqlMarcaDelta = """
+            select now(),
+                   coalesce(? >= now() - interval '30 days'
+                            or ? >= (select min(eliminadoEn) from inventario_baja), false)
+            """;
+
+    /**
+     * Trae solo los productos con cambios (producto, variantes, movimientos de stock o bajas) posteriores
+     * a {@code desde}, aplicando el mismo filtro que cargarArbol.
+     * Las ventas e importaciones solo insertan en stock_movimiento (no tocan updatedAt), por eso van aparte.
+     */
+    public static DeltaInventario cargarDelta(String filtro, Timestamp desde) throws SQLException {
+        String f = filtro == null ? "" : filtro.trim();
+
+        String sqlAfectados = """
+            select id from producto where updatedAt > ?
+            union
+            select producto_id from producto_variante where updatedAt > ?
+            union
+            select producto_id from stock_movimiento where creadoEn > ?
+            union
+            select producto_id from inventario_baja where eliminadoEn > ?
+        """;
+
+        try (Connection cn = Database.get()) {
+            Timestamp marca;
+            try (PreparedStatement ps = cn.prepareStatement(sqlMarcaDelta)) {
+                ps.setTimestamp(1, desde);
+                ps.setTimestamp(2, desde);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    marca = rs.getTimestamp(1);
+                    if (!rs.getBoolean(2)) return new DeltaInventario(marca, Set.of(), List.of(), true);
+                }
+            }
+
+            Set<Long> afectados = new LinkedHashSet<>();
+            try (PreparedStatement ps = cn.prepareStatement(sqlAfectados)) {
+                ps.setTimestamp(1, desde);
+                ps.setTimestamp(2, desde);
+                ps.setTimestamp(3, desde);
+                ps.setTimestamp(4, desde);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) afectados.add(rs.getLong(1));
+                }
+            }
+
+            if (afectados.isEmpty()) return new DeltaInventario(marca, afectados, List.of());
+
+            TreeItem<ItemInventario> root = new TreeItemFiltrable<>();
+            try (PreparedStatement ps = cn.prepareStatement(sqlDelta)) {
+                ps.setArray(1, cn.createArrayOf("bigint", afectados.toArray()));
+                setFiltro(ps, 2, f);
+                try (ResultSet rs = ps.executeQuery()) {
+                    construirArbol(rs, root);
+                }
+            }
+
+            return new DeltaInventario(marca, afectados, new ArrayList<>(TreeItemFiltrable.hijos(root)));
+        }
+    }
+
+    private static String likeEtiqueta(String f) {
+        boolean porEtiqueta = f.matches("p\\d+");  // heurística p###
+        return porEtiqueta ? f + "%" : "%" + f + "%";
+    }
+
+    // Completa los 5 parámetros de filtroWhere a partir de la posición indicada
+    private static void setFiltro(PreparedStatement ps, int desde, String f) throws SQLException {
+        String like = "%" + f + "%";
+        ps.setString(desde, f);
+        ps.setString(desde + 1, likeEtiqueta(f));
+        ps.setString(desde + 2, like);
+        ps.setString(desde + 3, like);
+        ps.setString(desde + 4, like);
+    }
+
+    /**
+     * Arma productos (padres) y variantes (hijos) a partir de filas ordenadas de vInventario_variantes.
+     * Público para poder armar el árbol desde otras fuentes de filas (benchmarks, snapshots).
+     */
+    public static void construirArbol(ResultSet rs, TreeItem<ItemInventario> root) throws SQLException {
+        construirArbol(leerSnapshot(rs), root);
+    }
+
+    /**
+     * Árbol sobre la foto: cada fila es un ItemInventario liviano que lee de ella
+     * (las properties se crean recién para las filas que muestra la tabla).
+     */
+    public static void construirArbol(SnapshotInventario snapshot, TreeItem<ItemInventario> root) {
+        List<TreeItem<ItemInventario>> productos = new ArrayList<>(snapshot.productos());
+
+        for (int p = 0; p < snapshot.productos(); p++) {
+            int fila = snapshot.filaDeProducto(p);
+            TreeItemFiltrable<ItemInventario> padre = new TreeItemFiltrable<>(snapshot.item(fila));
+
+            int variantes = snapshot.cantidadVariantes(p);
+            if (variantes > 0) {
+                List<TreeItem<ItemInventario>> hijos = new ArrayList<>(variantes);
+                for (int v = 1; v <= variantes; v++) hijos.add(new TreeItem<>(snapshot.item(fila + v)));
+                padre.getFuente().setAll(hijos);
+            }
+            productos.add(padre);
+        }
+
+        // Un solo addAll: la raíz notifica un único cambio en vez de uno por producto
+        TreeItemFiltrable.hijos(root).addAll(productos);
+    }
+
+    /**
+     * Lee filas de vInventario_variantes a una {@link SnapshotInventario}.
+     * Los datos del producto salen de su primera fila (igual que antes con Mapper.getItemInventarioBase).
+     */
+    public static SnapshotInventario leerSnapshot(ResultSet rs) throws SQLException {
+        SnapshotInventario.Constructor c = new SnapshotInventario.Constructor();
+        leerFilas(rs, Columnas.de(rs), c);
+        return c.construir();
+    }
+
+    /**
+     * Posición de cada columna en el ResultSet: se busca una vez y no en cada fila.
+     * No usa un {@link PlanFila}: la foto es columnar (no hay un objeto por fila) y leerFilas lee los textos
+     * del producto solo en su primera fila y color/talle solo en las variantes; un plan lee todo en cada fila.
+     */
+    private record Columnas(int productoId, int varianteId, int etiqueta, int nombre, int categoria, int unidad,
+                            int color, int talle, int precio, int costo, int stock, int activo, int updatedAt) {
+        static Columnas de(ResultSet rs) throws SQLException {
+            return new Columnas(rs.findColumn("producto_id"), rs.findColumn("variante_id"),
+                    rs.findColumn("producto_etiqueta"), rs.findColumn("producto_nombre"),
+                    rs.findColumn("categoria"), rs.findColumn("unidad"),
+                    rs.findColumn("color"), rs.findColumn("talle"),
+                    rs.findColumn("precio"), rs.findColumn("costo"), rs.findColumn("stockOnHand"),
+                    rs.findColumn("active"), rs.findColumn("updatedAt"));
+        }
+    }
+
+    // Agrega las filas al constructor y devuelve cuántas leyó
+    private static int leerFilas(ResultSet rs, Columnas col, SnapshotInventario.Constructor c) throws SQLException {
+        int leidas = 0;
+        while (rs.next()) {
+            leidas++;
+            long prodId = rs.getLong(col.productoId());
+            long varId = rs.getLong(col.varianteId());
+            boolean esVariante = !rs.wasNull();
+            BigDecimal precio = rs.getBigDecimal(col.precio());
+            BigDecimal costo = rs.getBigDecimal(col.costo());
+            int stock = rs.getInt(col.stock());
+            boolean activo = rs.getBoolean(col.activo());
+            Timestamp updatedAt = rs.getTimestamp(col.updatedAt());
+
+            if (!c.tieneProducto(prodId)) {
+                c.producto(prodId, rs.getString(col.etiqueta()), rs.getString(col.nombre()),
+                        rs.getString(col.categoria()), rs.getString(col.unidad()),
+                        precio, costo, stock, activo, updatedAt);
+            }
+            if (esVariante) {
+                c.variante(prodId, varId, rs.getString(col.color()), rs.getString(col.talle()),
+                        precio, costo, stock, activo, updatedAt);
+            }
+        }
+        return leidas;
+    }
+
+    /** Foto del inventario con el mismo filtro y orden que cargarArbol (para quien necesite los datos sin árbol). */
+    public static SnapshotInventario cargarSnapshot(String filtro) throws SQLException {
+        return cargarSnapshot(filtro, null);
+    }
+
+    /**
+     * Igual que {@link #cargarSnapshot(String)}, pero las filas llegan en tandas a medida que se leen:
+     * - Cursor del servidor (DECLARE/FETCH) en una transacción de solo lectura. Con preferQueryMode=simple
+     *   el driver ignora fetchSize, así que el tamaño de tanda se controla con el FETCH (PG_FETCH_FILAS).
+     * - Si {@code adelanto} no es null, recibe una foto parcial con la primera tanda (500 filas)
+     *   apenas llegan (el último producto puede venir con parte de sus variantes). Se llama en este hilo.
+     * - Entre tandas se revisa la {@link Cancelacion} de la carga.
+     */
+    public static SnapshotInventario cargarSnapshot(String filtro, Consumer<SnapshotInventario> adelanto)
+            throws SQLException {
+        SnapshotInventario.Constructor c = new SnapshotInventario.Constructor();
+
+        try (Connection cn = Database.get()) {
+            cn.setAutoCommit(false);   // el cursor vive dentro de la transacción
+            cn.setReadOnly(true);
+            try {
+                try (PreparedStatement ps = cn.prepareStatement("declare cursor_arbol no scroll cursor for " + sqlArbol)) {
+                    setFiltro(ps, 1, filtro == null ? "" : filtro.trim());
+                    ps.execute();
+                }
+
+                try (Statement st = cn.createStatement()) {
+                    Cancelacion.Registro registro = Cancelacion.registrar(st);
+                    try {
+                        st.setQueryTimeout(TIMEOUT_CARGA_S);
+                        Columnas col = null;
+                        int tanda = PRIMERA_TANDA;
+                        while (true) {
+                            int leidas;
+                            try (ResultSet rs = st.executeQuery("fetch forward " + tanda + " from cursor_arbol")) {
+                                if (col == null) col = Columnas.de(rs);
+                                leidas = leerFilas(rs, col, c);
+                            }
+                            if (leidas < tanda) break;
+
+                            Cancelacion.verificar();
+                            if (tanda == PRIMERA_TANDA && adelanto != null) adelanto.accept(c.construir());
+                            tanda = FILAS_POR_TANDA;
+                        }
+                    } finally {
+                        registro.close();
+                    }
+                }
+            } finally {
+                cn.rollback();   // solo lectura: cierra el cursor y la transacción
+                cn.setReadOnly(false);
+                cn.setAutoCommit(true);
+            }
+        }
+        return c.construir();
     }
 
     public static boolean updateVarianteCampo(Long idVariante, String campo, String valor) {
+        String sql = sqlUpdateVarianteCampo(campo);
+
+        try (Connection conn = Database.get();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            conn.setAutoCommit(false);
+            try {
+                // El ajuste calcula la diferencia con el stock actual: que no se cruce con una venta
+                if (StockDAO.esCampoStock(campo)) StockDAO.bloquearVariantes(conn, List.of(idVariante));
+                stmt.setString(1, valor);
+                stmt.setLong(2, idVariante);
+                int filas = stmt.executeUpdate();
+                conn.commit();
+                return filas > 0;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /** UPDATE de un campo de variante: parámetros (valor como texto, id). */
+    static String sqlUpdateVarianteCampo(String campo) {
         String columna = campo;
 
         // 🔄 Mapear nombres del modelo Java a columnas reales de la BD
@@ -87,19 +633,46 @@ public class InventarioDAO {
         if (campo.equalsIgnoreCase("precio")) columna = "precio";
         if (campo.equalsIgnoreCase("costo")) columna = "costo";
 
-        String sql = "UPDATE producto_variante SET " + columna + " = ? WHERE id = ?";
+        // El stock no se pisa: se registra un ajuste por la diferencia con el stock actual
+        if (columna.equalsIgnoreCase("stock")) {
+            return """
+                INSERT INTO stock_movimiento (producto_id, variante_id, cantidad, tipo)
+                SELECT pv.producto_id, pv.id, ?::int - %s, 'ajuste' FROM producto_variante pv WHERE pv.id = ?
+                """.formatted(StockDAO.STOCK_VARIANTE);
+        }
 
-        try (Connection conn = Database.get();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        return "UPDATE producto_variante SET " + columna + " = ? WHERE id = ?";
+    }
 
-            stmt.setString(1, valor);
-            stmt.setLong(2, idVariante);
-            int filas = stmt.executeUpdate();
-            return filas > 0;
+    /**
+     * Aplica el mismo campo a varios productos o variantes en un batch y una sola transacción.
+     * Devuelve las filas afectadas por cada id (0 = no existe). Si falla alguno no se guarda ninguno.
+     */
+    public static int[] updateCampoEnBatch(boolean variantes, String campo,
+                                           List<Long> ids, List<String> valores) throws SQLException {
+        String sql = variantes ? sqlUpdateVarianteCampo(campo) : ProductoDAO.sqlUpdateCampo(campo);
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return false;
+        try (Connection conn = Database.get()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                if (StockDAO.esCampoStock(campo)) {
+                    if (variantes) StockDAO.bloquearVariantes(conn, ids);
+                    else StockDAO.bloquearProductos(conn, ids);
+                }
+                for (int i = 0; i < ids.size(); i++) {
+                    ps.setString(1, valores.get(i));
+                    ps.setLong(2, ids.get(i));
+                    ps.addBatch();
+                }
+                int[] filas = ps.executeBatch();
+                conn.commit();
+                return filas;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         }
     }
 
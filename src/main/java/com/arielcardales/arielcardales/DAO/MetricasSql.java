@@ -0,0 +1,391 @@
+package com.arielcardales.arielcardales.DAO;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Métricas de acceso a la base: el pool de Hikari y cada consulta que pasa por él.
+ *
+ * - Las conexiones de {@link Database#get()} salen envueltas en un Proxy que mide cada execute*:
+ *   por SQL se guardan llamadas, errores, filas (leídas o modificadas) y un histograma de tiempos.
+ *   Los ResultSet van en un {@link ResultadoContado} (clase escrita, sin reflexión en los get*).
+ * - PG_METRICAS=false (o MedirConsultas por JMX) deja las conexiones sin envolver; el pool se sigue midiendo.
+ * - Del pool: conexiones activas / ociosas / esperando, tiempo para conseguir una conexión y cuánto se retiene.
+ * - Las consultas que tardan más que el umbral (PG_LENTA_MS, 500 por defecto) se anotan en la consola.
+ * - Se ve en Ayuda → Diagnóstico y por JMX (com.arielcardales:type=MetricasSql; Hikari publica el suyo
+ *   como com.zaxxer.hikari:type=Pool (ArielCardales)).
+ *
+ * El tiempo medido es el del execute (con preferQueryMode=simple el driver ya trae todas las filas);
+ * lo que tarde quien recorre el ResultSet no cuenta.
+ */
+public final class MetricasSql implements MetricasSqlMXBean {
+
+    /** Fila de la tabla de consultas. Tiempos en ms; los percentiles son el borde del balde (aproximados). */
+    public record Resumen(String sql, long llamadas, long errores, long lentas, long filas,
+                          double totalMs, double promedioMs, double p50Ms, double p95Ms, double maxMs) {}
+
+    /** Estado del pool (los contadores de Hikari se refrescan cada ~1 s). */
+    public record EstadoPool(int activas, int ociosas, int total, int maximo, int esperando,
+                             long adquisiciones, double adquisicionP95Ms, double adquisicionMaxMs,
+                             double usoP95Ms, long timeouts) {}
+
+    private static final int MAX_CONSULTAS = 500;      // SQL distintos que se siguen; el resto va junto
+    private static final int MAX_SQL = 300;
+    private static final String OTRAS = "(otras consultas)";
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+    private static final Pattern NUMERO = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");   // literales (no los de int4, p1...)
+    private static final Pattern LISTA = Pattern.compile("\\?(\\s*,\\s*\\?)+");   // in (?, ?, ?...)
+    private static final MetricasSql INSTANCIA = new MetricasSql();
+
+    private final Map<String, Consulta> consultas = new ConcurrentHashMap<>();
+    private final Histograma adquisicion = new Histograma();
+    private final Histograma uso = new Histograma();
+    private final LongAdder timeouts = new LongAdder();
+    private volatile PoolStats pool;
+    private volatile long umbralLentaNanos = Long.parseLong(getEnv("PG_LENTA_MS", "500")) * 1_000_000;
+    private volatile boolean medirConsultas = Boolean.parseBoolean(getEnv("PG_METRICAS", "true"));
+
+    private MetricasSql() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(this, new ObjectName("com.arielcardales:type=MetricasSql"));
+        } catch (Exception e) {
+            System.err.println("⚠ No se pudieron publicar las métricas por JMX: " + e.getMessage());
+        }
+    }
+
+    public static MetricasSql get() { return INSTANCIA; }
+
+    // ---------------------------------------------------------------
+    // Pool (Hikari)
+    // ---------------------------------------------------------------
+
+    /** Para {@code HikariConfig.setMetricsTrackerFactory}: Hikari avisa cada préstamo de conexión. */
+    MetricsTrackerFactory fabricaHikari() {
+        return (nombre, stats) -> {
+            pool = stats;
+            return new IMetricsTracker() {
+                @Override
+                public void recordConnectionAcquiredNanos(long nanos) { adquisicion.anotar(nanos); }
+
+                @Override
+                public void recordConnectionUsageMillis(long ms) { uso.anotar(ms * 1_000_000); }
+
+                @Override
+                public void recordConnectionTimeout() { timeouts.increment(); }
+            };
+        };
+    }
+
+    public EstadoPool estadoPool() {
+        PoolStats p = pool;
+        return new EstadoPool(
+                p == null ? 0 : p.getActiveConnections(),
+                p == null ? 0 : p.getIdleConnections(),
+                p == null ? 0 : p.getTotalConnections(),
+                p == null ? 0 : p.getMaxConnections(),
+                p == null ? 0 : p.getPendingThreads(),
+                adquisicion.cantidad(), adquisicion.percentilMs(0.95), adquisicion.maxMs(),
+                uso.percentilMs(0.95), timeouts.sum());
+    }
+
+    // ---------------------------------------------------------------
+    // Consultas
+    // ---------------------------------------------------------------
+
+    /**
+     * Envuelve una conexión del pool para medir lo que se ejecute con ella (unwrap sigue llegando al driver).
+     * Con la medición apagada la devuelve tal cual.
+     */
+    Connection envolver(Connection cn) {
+        if (!medirConsultas) return cn;
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConexionMedida(cn));
+    }
+
+    /** Consultas vistas desde el arranque (o el último reinicio), las que más tiempo se llevaron primero. */
+    public List<Resumen> resumen() {
+        List<Resumen> out = new ArrayList<>(consultas.size());
+        for (Consulta c : consultas.values()) out.add(c.resumen());
+        out.sort(Comparator.comparingDouble(Resumen::totalMs).reversed());
+        return out;
+    }
+
+    @Override
+    public void reiniciar() {
+        consultas.clear();
+        adquisicion.reiniciar();
+        uso.reiniciar();
+        timeouts.reset();
+    }
+
+    @Override
+    public long getUmbralLentaMs() { return umbralLentaNanos / 1_000_000; }
+
+    @Override
+    public void setUmbralLentaMs(long ms) { umbralLentaNanos = Math.max(0, ms) * 1_000_000; }
+
+    @Override
+    public boolean isMedirConsultas() { return medirConsultas; }
+
+    /** Vale para las conexiones que se pidan desde ahora; las que están en uso siguen como estaban. */
+    @Override
+    public void setMedirConsultas(boolean medir) { medirConsultas = medir; }
+
+    @Override
+    public long getConsultas() {
+        long n = 0;
+        for (Consulta c : consultas.values()) n += c.tiempos.cantidad();
+        return n;
+    }
+
+    @Override
+    public long getErrores() {
+        long n = 0;
+        for (Consulta c : consultas.values()) n += c.errores.sum();
+        return n;
+    }
+
+    @Override
+    public long getLentas() {
+        long n = 0;
+        for (Consulta c : consultas.values()) n += c.lentas.sum();
+        return n;
+    }
+
+    @Override
+    public int getConexionesActivas() { return estadoPool().activas(); }
+
+    @Override
+    public int getConexionesOciosas() { return estadoPool().ociosas(); }
+
+    @Override
+    public int getConexionesEsperando() { return estadoPool().esperando(); }
+
+    @Override
+    public double getAdquisicionP95Ms() { return adquisicion.percentilMs(0.95); }
+
+    @Override
+    public String[] getResumen() {
+        return resumen().stream()
+                .map(r -> String.format("%,d× total %.0f ms · p50 %.0f · p95 %.0f · max %.0f ms · %,d filas · %d errores · %s",
+                        r.llamadas(), r.totalMs(), r.p50Ms(), r.p95Ms(), r.maxMs(), r.filas(), r.errores(), r.sql()))
+                .toArray(String[]::new);
+    }
+
+    // ---------------------------------------------------------------
+
+    private Consulta consulta(String sql) {
+        String clave = clave(sql);
+        Consulta c = consultas.get(clave);
+        if (c != null) return c;
+        if (consultas.size() >= MAX_CONSULTAS) clave = OTRAS;
+        return consultas.computeIfAbsent(clave, Consulta::new);
+    }
+
+    // Mismo SQL con distinto formato, números literales (ids, límites) o largo de lista "in (?, ?...)"
+    // cuenta como una sola consulta
+    static String clave(String sql) {
+        if (sql == null) return "(sin SQL)";
+        String s = ESPACIOS.matcher(sql.strip()).replaceAll(" ");
+        s = LISTA.matcher(NUMERO.matcher(s).replaceAll("?")).replaceAll("?, …");
+        return s.length() > MAX_SQL ? s.substring(0, MAX_SQL) + " …" : s;
+    }
+
+    private void anotar(Consulta c, long nanos, long filas) {
+        c.tiempos.anotar(nanos);
+        if (filas > 0) c.filas.add(filas);
+        if (nanos >= umbralLentaNanos) {
+            c.lentas.increment();
+            System.err.printf("🐢 Consulta lenta (%,d ms): %s%n", nanos / 1_000_000, c.sql);
+        }
+    }
+
+    private static String getEnv(String k, String def) {
+        String v = System.getenv(k);
+        return (v == null || v.isBlank()) ? def : v;
+    }
+
+    private static Object delegar(Object destino, Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(destino, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Connection: las sentencias que crea salen envueltas
+    private final class ConexionMedida implements InvocationHandler {
+        private final Connection cn;
+
+        ConexionMedida(Connection cn) { this.cn = cn; }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            Object r = delegar(cn, m, args);
+            return switch (m.getName()) {
+                case "prepareStatement" -> envolverSentencia((PreparedStatement) r, PreparedStatement.class, (String) args[0]);
+                case "prepareCall" -> envolverSentencia((CallableStatement) r, CallableStatement.class, (String) args[0]);
+                case "createStatement" -> envolverSentencia((Statement) r, Statement.class, null);
+                default -> r;
+            };
+        }
+    }
+
+    private <T extends Statement> T envolverSentencia(T st, Class<T> tipo, String sql) {
+        return tipo.cast(Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{tipo}, new SentenciaMedida(st, sql)));
+    }
+
+    // Statement / PreparedStatement: mide cada execute*
+    private final class SentenciaMedida implements InvocationHandler {
+        private final Statement st;
+        private final String sql;         // null en un Statement común: el SQL llega en cada execute
+        private String primeroDelLote;    // Statement.addBatch(sql)
+        private Consulta ultima;          // para las filas de getResultSet() después de execute()
+
+        SentenciaMedida(Statement st, String sql) {
+            this.st = st;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            String nombre = m.getName();
+            if (nombre.equals("addBatch") && args != null && args.length == 1 && primeroDelLote == null) {
+                primeroDelLote = (String) args[0];
+            }
+            if (nombre.equals("getResultSet")) {
+                ResultSet rs = (ResultSet) delegar(st, m, args);
+                return rs == null || ultima == null ? rs : envolverResultado(rs, ultima);
+            }
+            if (!nombre.startsWith("execute")) return delegar(st, m, args);
+
+            String texto = args != null && args.length > 0 && args[0] instanceof String s ? s
+                    : sql != null ? sql : primeroDelLote;
+            Consulta c = consulta(texto);
+            ultima = c;
+            if (nombre.equals("executeBatch") || nombre.equals("executeLargeBatch")) primeroDelLote = null;
+
+            long t0 = System.nanoTime();
+            Object r;
+            try {
+                r = delegar(st, m, args);
+            } catch (Throwable e) {
+                c.tiempos.anotar(System.nanoTime() - t0);
+                c.errores.increment();
+                throw e;
+            }
+            long nanos = System.nanoTime() - t0;
+
+            switch (r) {
+                case ResultSet rs -> {
+                    anotar(c, nanos, 0);
+                    return envolverResultado(rs, c);
+                }
+                case Integer n -> anotar(c, nanos, n);
+                case Long n -> anotar(c, nanos, n);
+                case int[] lote -> {
+                    long n = 0;
+                    for (int x : lote) if (x > 0) n += x;   // SUCCESS_NO_INFO (-2) con reWriteBatchedInserts
+                    anotar(c, nanos, n);
+                }
+                case long[] lote -> {
+                    long n = 0;
+                    for (long x : lote) if (x > 0) n += x;
+                    anotar(c, nanos, n);
+                }
+                case Boolean hayResultado -> anotar(c, nanos, hayResultado ? 0 : Math.max(0, st.getUpdateCount()));
+                case null, default -> anotar(c, nanos, 0);
+            }
+            return r;
+        }
+    }
+
+    // Cuenta las filas leídas y las suma a la consulta al terminar o cerrar
+    private static ResultSet envolverResultado(ResultSet rs, Consulta c) {
+        return new ResultadoContado(rs, c.filas::add);
+    }
+
+    private static final class Consulta {
+        final String sql;
+        final Histograma tiempos = new Histograma();
+        final LongAdder filas = new LongAdder();
+        final LongAdder errores = new LongAdder();
+        final LongAdder lentas = new LongAdder();
+
+        Consulta(String sql) { this.sql = sql; }
+
+        Resumen resumen() {
+            long n = tiempos.cantidad();
+            double total = tiempos.totalMs();
+            return new Resumen(sql, n, errores.sum(), lentas.sum(), filas.sum(), total,
+                    n == 0 ? 0 : total / n, tiempos.percentilMs(0.50), tiempos.percentilMs(0.95), tiempos.maxMs());
+        }
+    }
+
+    /**
+     * Histograma de tiempos con baldes fijos en potencias de 2 (≤1 ms, ≤2 ms, ≤4 ms … ≤8 s, más).
+     * Anotar no bloquea; los percentiles dan el borde superior del balde (acotado por el máximo visto).
+     */
+    static final class Histograma {
+        private static final int BALDES = 15;
+        private final AtomicLongArray baldes = new AtomicLongArray(BALDES);
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void anotar(long nanos) {
+            long ms = Math.max(0, nanos - 1) / 1_000_000;            // (k, k+1] ms → k
+            int b = Math.min(BALDES - 1, 64 - Long.numberOfLeadingZeros(ms));
+            baldes.incrementAndGet(b);
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        long cantidad() {
+            long n = 0;
+            for (int i = 0; i < BALDES; i++) n += baldes.get(i);
+            return n;
+        }
+
+        double totalMs() { return totalNanos.sum() / 1e6; }
+
+        double maxMs() { return maxNanos.get() / 1e6; }
+
+        double percentilMs(double p) {
+            long n = cantidad();
+            if (n == 0) return 0;
+            long objetivo = (long) Math.ceil(p * n);
+            long acumulado = 0;
+            for (int i = 0; i < BALDES - 1; i++) {
+                acumulado += baldes.get(i);
+                if (acumulado >= objetivo) return Math.min(1L << i, maxMs());
+            }
+            return maxMs();
+        }
+
+        void reiniciar() {
+            for (int i = 0; i < BALDES; i++) baldes.set(i, 0);
+            totalNanos.reset();
+            maxNanos.set(0);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.arielcardales.arielcardales.DAO;
+
+/**
+ * Lo que {@link MetricasSql} publica por JMX (com.arielcardales:type=MetricasSql),
+ * para mirarlo con JConsole / VisualVM sin abrir la ventana de diagnóstico.
+ */
+public interface MetricasSqlMXBean {
+
+    long getConsultas();
+
+    long getErrores();
+
+    long getLentas();
+
+    long getUmbralLentaMs();
+
+    void setUmbralLentaMs(long ms);
+
+    /** false: las conexiones nuevas salen sin envolver (arranca con PG_METRICAS, true por defecto). */
+    boolean isMedirConsultas();
+
+    void setMedirConsultas(boolean medir);
+
+    int getConexionesActivas();
+
+    int getConexionesOciosas();
+
+    int getConexionesEsperando();
+
+    double getAdquisicionP95Ms();
+
+    /** Una línea por SQL, las que más tiempo se llevaron primero. */
+    String[] getResumen();
+
+    void reiniciar();
+}
@@ -0,0 +1,89 @@
+package com.arielcardales.arielcardales.DAO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Aplica los scripts versionados de /db/migraciones sobre la base.
+ * Cada script corre una sola vez (queda registrado en schema_migracion) y en su propia transacción.
+ */
+public final class Migraciones {
+
+    // ⚠️ Agregar acá cada script nuevo, en orden
+    private static final List<String> SCRIPTS = List.of(
+            "V001__inventario_delta.sql",
+            "V002__busqueda_trigramas.sql",
+            "V003__notificaciones_inventario.sql",
+            "V004__stock_movimiento.sql",
+            "V005__vistas_stock_pendiente.sql",
+            "V006__stock_para_venta.sql"
+    );
+
+    private static final long LOCK_MIGRACIONES = 0x41524945_4C4DL; // clave fija para pg_advisory_xact_lock
+
+    private Migraciones() {}
+
+    public static void aplicarPendientes() {
+        try (Connection cn = Database.get()) {
+            try (Statement st = cn.createStatement()) {
+                st.execute("""
+                    create table if not exists schema_migracion (
+                        version    text primary key,
+                        aplicadaEn timestamptz not null default now()
+                    )
+                """);
+            }
+
+            cn.setAutoCommit(false);
+            try {
+                // Evita que dos terminales abiertas a la vez apliquen el mismo script
+                try (PreparedStatement ps = cn.prepareStatement("select pg_advisory_xact_lock(?)")) {
+                    ps.setLong(1, LOCK_MIGRACIONES);
+                    ps.execute();
+                }
+
+                Set<String> aplicadas = new HashSet<>();
+                try (Statement st = cn.createStatement();
+                     ResultSet rs = st.executeQuery("select version from schema_migracion")) {
+                    while (rs.next()) aplicadas.add(rs.getString(1));
+                }
+
+                for (String script : SCRIPTS) {
+                    if (aplicadas.contains(script)) continue;
+
+                    System.out.println("🗄️ Aplicando migración " + script);
+                    try (Statement st = cn.createStatement()) {
+                        st.execute(leerScript(script));
+                    }
+                    try (PreparedStatement ps = cn.prepareStatement(
+                            "insert into schema_migracion (version) values (?)")) {
+                        ps.setString(1, script);
+                        ps.executeUpdate();
+                    }
+                }
+                cn.commit();
+            } catch (SQLException | RuntimeException e) {
+                cn.rollback();
+                throw e;
+            } finally {
+                cn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new DaoException("Error aplicando migraciones: " + e.getMessage(), e);
+        }
+    }
+
+    private static String leerScript(String nombre) {
+        try (InputStream in = Migraciones.class.getResourceAsStream("/db/migraciones/" + nombre)) {
+            if (in == null) throw new DaoException("No se encontró el script " + nombre);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new DaoException("Error leyendo " + nombre, e);
+        }
+    }
+}
@@ -4,14 +4,13 @@ import com.arielcardales.arielcardales.Entidades.Producto;
 import com.arielcardales.arielcardales.Util.Mapper;
 
 import java.sql.*;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 public class ProductoDAO implements CrudDAO<Producto, Long> {
 
     // Lectura desde la vista vInventario
-    // Espera que Mapper.getProducto(rs) lea estas columnas:
+    // Espera que Mapper.PRODUCTO lea estas columnas:
     // id, etiqueta, nombre, categoria (string), unidad (string), precio, costo, stockOnHand, active, updatedAt
     private static final String sqlBase = """
     select p.id,
@@ -34,9 +33,7 @@ public class ProductoDAO implements CrudDAO<Producto, Long> {
              PreparedStatement ps = c.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
-            List<Producto> resultado = new ArrayList<>();
-            while (rs.next()) resultado.add(Mapper.getProducto(rs));
-            return resultado;
+            return Mapper.PRODUCTO.leerTodas(rs);
 
         }catch (SQLException e) {
             e.printStackTrace(); // 🔥 Esto imprime la causa real en consola
@@ -65,9 +62,7 @@ public class ProductoDAO implements CrudDAO<Producto, Long> {
             ps.setInt(5, lim);
 
             try (ResultSet rs = ps.executeQuery()) {
-                List<Producto> resultado = new ArrayList<>();
-                while (rs.next()) resultado.add(Mapper.getProducto(rs));
-                return resultado;
+                return Mapper.PRODUCTO.leerTodas(rs);
             }
         }catch (SQLException e) {
             e.printStackTrace(); // Esto imprime la causa real en consola
@@ -127,43 +122,67 @@ public class ProductoDAO implements CrudDAO<Producto, Long> {
         }
     }
 
+    /** Guarda los datos del producto. El stock no se toca (ver {@link #update(Producto, Integer)}). */
     @Override
     public boolean update(Producto p) {
+        return update(p, null);
+    }
+
+    /**
+     * Guarda los datos del producto y, si {@code stockNuevo} no es null, lo registra como ajuste por la diferencia
+     * con el stock actual (igual que sqlUpdateCampo), en la misma transacción y con el lock de stock del producto.
+     * El stockOnHand que trae {@code p} no se escribe: es la foto que cargó la pantalla, no el stock actual.
+     */
+    public boolean update(Producto p, Integer stockNuevo) {
         String sql = """
         update producto
            set nombre = ?,
                descripcion = ?,
                categoriaId = ?,
-               precio = ?,
-               stockOnHand = ?
+               precio = ?
          where id = ?
     """;
-        try (Connection c = Database.get();
-             PreparedStatement ps = c.prepareStatement(sql)) {
 
-            ps.setString(1, p.getNombre());
-            ps.setString(2, p.getDescripcion());
-
-            // Si categoriaId == 0 → dejarlo igual que en DB
-            if (p.getCategoriaId() == 0) {
-                // Busca el original para conservar la categoría
-                Optional<Producto> original = findById(p.getId());
-                if (original.isPresent()) {
-                    ps.setLong(3, original.get().getCategoriaId());
-                } else {
-                    throw new DaoException("No se encontró producto id=" + p.getId());
-                }
-            } else {
-                ps.setLong(3, p.getCategoriaId());
-            }
+        // Si categoriaId == 0 → dejarlo igual que en DB
+        long categoriaId = p.getCategoriaId();
+        if (categoriaId == 0) {
+            // Busca el original para conservar la categoría
+            categoriaId = findById(p.getId())
+                    .orElseThrow(() -> new DaoException("No se encontró producto id=" + p.getId()))
+                    .getCategoriaId();
+        }
 
-            ps.setBigDecimal(4, p.getPrecio());
-            ps.setInt(5, p.getStockOnHand());
-            ps.setLong(6, p.getId());
+        try (Connection c = Database.get()) {
+            c.setAutoCommit(false);
+            try {
+                boolean actualizado;
+                try (PreparedStatement ps = c.prepareStatement(sql)) {
+                    ps.setString(1, p.getNombre());
+                    ps.setString(2, p.getDescripcion());
+                    ps.setLong(3, categoriaId);
+                    ps.setBigDecimal(4, p.getPrecio());
+                    ps.setLong(5, p.getId());
+                    actualizado = ps.executeUpdate() == 1;
+                }
 
-            return ps.executeUpdate() == 1;
+                if (actualizado && stockNuevo != null) {
+                    StockDAO.bloquearProductos(c, List.of(p.getId()));
+                    try (PreparedStatement ps = c.prepareStatement(sqlUpdateCampo("stockOnHand"))) {
+                        ps.setString(1, stockNuevo.toString());
+                        ps.setLong(2, p.getId());
+                        ps.executeUpdate();
+                    }
+                }
+                c.commit();
+                return actualizado;
+            } catch (SQLException | RuntimeException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
         } catch (SQLException e) {
-            if (e.getSQLState().equals("23505")) { // unique_violation
+            if ("23505".equals(e.getSQLState())) { // unique_violation
                 throw new DaoException("Ya existe un producto con la etiqueta: " + p.getEtiqueta(), e);
             }
             throw new DaoException("Error insertando producto: " + e.getMessage(), e);
@@ -211,18 +230,10 @@ public class ProductoDAO implements CrudDAO<Producto, Long> {
         }
     }
 
+    // Queda como movimiento de venta en el libro de stock (ver StockDAO)
     public boolean descontarStock(long idProducto, int cantidadVendida) {
-        String sql = "UPDATE producto SET stockOnHand = stockOnHand - ? WHERE id = ? AND stockOnHand >= ?";
-        try (Connection c = Database.get();
-             PreparedStatement ps = c.prepareStatement(sql)) {
-
-            ps.setInt(1, cantidadVendida);
-            ps.setLong(2, idProducto);
-            ps.setInt(3, cantidadVendida);
-
-            int filas = ps.executeUpdate();
-            return filas == 1; // devuelve true si se actualizó correctamente
-
+        try {
+            return new StockDAO().descontar(idProducto, null, cantidadVendida);
         } catch (SQLException e) {
             throw new DaoException("Error al descontar stock del producto ID " + idProducto, e);
         }
@@ -233,31 +244,25 @@ public class ProductoDAO implements CrudDAO<Producto, Long> {
         boolean actualizado = false;
 
         try (Connection conn = Database.get()) {
-            campo = campo.trim().toLowerCase();
-            String sql;
-
-            // 🔧 Normaliza nombres de campos según la BD real
-            switch (campo) {
-                case "categoria", "categoría" ->
-                        sql = "UPDATE producto SET categoriaid = (SELECT id FROM categoria WHERE LOWER(nombre) = LOWER(?)) WHERE id = ?";
-                case "stock", "stockonhand" ->
-                        sql = "UPDATE producto SET stockonhand = ? WHERE id = ?";
-                case "precio" ->
-                        sql = "UPDATE producto SET precio = ? WHERE id = ?";
-                case "costo" ->
-                        sql = "UPDATE producto SET costo = ? WHERE id = ?";
-                default ->
-                        sql = "UPDATE producto SET " + campo + " = ? WHERE id = ?";
-            }
+            String sql = sqlUpdateCampo(campo);
 
             System.out.println("🔧 Ejecutando SQL: " + sql);
             System.out.println("📦 Parámetros → valor='" + valor + "' | id=" + idProducto);
 
+            conn.setAutoCommit(false);
             try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                // El ajuste calcula la diferencia con el stock actual: que no se cruce con una venta
+                if (StockDAO.esCampoStock(campo)) StockDAO.bloquearProductos(conn, List.of(idProducto));
                 stmt.setString(1, valor);
                 stmt.setLong(2, idProducto);
                 int filas = stmt.executeUpdate();
+                conn.commit();
                 actualizado = filas > 0;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
 
             System.out.println("📊 Filas afectadas: " + (actualizado ? "1" : "0"));
@@ -269,6 +274,28 @@ public class ProductoDAO implements CrudDAO<Producto, Long> {
         return actualizado;
     }
 
+    /** UPDATE de un campo de producto: parámetros (valor como texto, id). */
+    static String sqlUpdateCampo(String campo) {
+        campo = campo.trim().toLowerCase();
+
+        // 🔧 Normaliza nombres de campos según la BD real
+        return switch (campo) {
+            case "categoria", "categoría" ->
+                    "UPDATE producto SET categoriaid = (SELECT id FROM categoria WHERE LOWER(nombre) = LOWER(?)) WHERE id = ?";
+            // El stock no se pisa: se registra un ajuste por la diferencia con el stock actual
+            case "stock", "stockonhand" -> """
+                    INSERT INTO stock_movimiento (producto_id, cantidad, tipo)
+                    SELECT p.id, ?::int - %s, 'ajuste' FROM producto p WHERE p.id = ?
+                    """.formatted(StockDAO.STOCK_PRODUCTO);
+            case "precio" ->
+                    "UPDATE producto SET precio = ? WHERE id = ?";
+            case "costo" ->
+                    "UPDATE producto SET costo = ? WHERE id = ?";
+            default ->
+                    "UPDATE producto SET " + campo + " = ? WHERE id = ?";
+        };
+    }
+
 
 
 
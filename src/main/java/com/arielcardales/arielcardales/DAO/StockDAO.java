@@ -0,0 +1,331 @@
+package com.arielcardales.arielcardales.DAO;
+
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Libro de movimientos de stock (tabla stock_movimiento, ver V004).
+ *
+ * - Todo cambio de stock es un INSERT con la cantidad (+ entra, - sale); nunca se edita un movimiento.
+ * - producto.stockOnHand / producto_variante.stock son la foto compactada. Stock actual = foto + pendientes.
+ * - Las ventas toman un advisory lock por producto/variante (no bloquean la fila) para que dos cajas
+ *   no vendan la última unidad a la vez.
+ */
+public class StockDAO {
+
+    public static final String VENTA = "venta";
+    public static final String AJUSTE = "ajuste";
+    public static final String IMPORTACION = "importacion";
+    public static final String DEVOLUCION = "devolucion";
+
+    /** Producto o variante (varianteId null = stock del producto). */
+    public record ItemStock(long productoId, Long varianteId) {}
+
+    public record Movimiento(long id, long productoId, Long varianteId, int cantidad, String tipo,
+                             Long ventaId, String nota, Timestamp creadoEn) {}
+
+    /** Stock actual de un producto en SQL (alias p). */
+    static final String STOCK_PRODUCTO = "(p.stockOnHand + stock_pendiente(p.id, null))";
+    /** Stock actual de una variante en SQL (alias pv). */
+    static final String STOCK_VARIANTE = "(pv.stock + stock_pendiente(pv.producto_id, pv.id))";
+
+    private static final long LOCK_COMPACTAR = 0x41524945_4353L;
+    private static final int LOCK_PRODUCTO = 1; // mismas claves en stock_para_venta (V006)
+    private static final int LOCK_VARIANTE = 2;
+
+    // ---------------- Escritura ----------------
+
+    /** Agrega un movimiento (devoluciones, ajustes manuales...). Devuelve su id. */
+    public long registrar(long productoId, Long varianteId, int cantidad, String tipo,
+                          Long ventaId, String nota) throws SQLException {
+        try (Connection cn = Database.get()) {
+            return registrar(cn, productoId, varianteId, cantidad, tipo, ventaId, nota);
+        }
+    }
+
+    static long registrar(Connection cn, long productoId, Long varianteId, int cantidad, String tipo,
+                          Long ventaId, String nota) throws SQLException {
+        String sql = """
+            insert into stock_movimiento (producto_id, variante_id, cantidad, tipo, venta_id, nota)
+            values (?, ?, ?, ?, ?, ?)
+            returning id
+            """;
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setLong(1, productoId);
+            if (varianteId == null) ps.setNull(2, Types.BIGINT); else ps.setLong(2, varianteId);
+            ps.setInt(3, cantidad);
+            ps.setString(4, tipo);
+            if (ventaId == null) ps.setNull(5, Types.BIGINT); else ps.setLong(5, ventaId);
+            ps.setString(6, nota);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Descuenta {@code cantidad} si alcanza el stock (una venta suelta, sin carrito).
+     * Con varianteId el producto se toma de la variante. Devuelve false si no alcanzaba o no existe.
+     */
+    public boolean descontar(Long productoId, Long varianteId, int cantidad) throws SQLException {
+        try (Connection cn = Database.get()) {
+            cn.setAutoCommit(false);
+            try {
+                if (productoId == null) productoId = productoDeVariante(cn, varianteId);
+                if (productoId == null) {
+                    cn.rollback();
+                    return false;
+                }
+
+                ItemStock item = new ItemStock(productoId, varianteId);
+                bloquear(cn, List.of(item));
+                Integer actual = stockActual(cn, List.of(item)).get(item);
+                if (actual == null || actual < cantidad) {
+                    cn.rollback();
+                    return false;
+                }
+                registrar(cn, productoId, varianteId, -cantidad, VENTA, null, null);
+                cn.commit();
+                return true;
+            } catch (SQLException | RuntimeException e) {
+                cn.rollback();
+                throw e;
+            } finally {
+                cn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Advisory locks de la transacción para los ítems (siempre en el mismo orden, así dos cajas no se cruzan).
+     * Las consultas que vengan después ya ven lo que grabó quien tenía el lock.
+     */
+    static void bloquear(Connection cn, Collection<ItemStock> items) throws SQLException {
+        List<Integer> tipos = new ArrayList<>(items.size());
+        List<Long> ids = new ArrayList<>(items.size());
+        for (ItemStock it : items) {
+            tipos.add(it.varianteId() == null ? LOCK_PRODUCTO : LOCK_VARIANTE);
+            ids.add(it.varianteId() == null ? it.productoId() : it.varianteId());
+        }
+        bloquear(cn, tipos, ids);
+    }
+
+    /** Mismo lock que toma una venta del producto (para los "poner el stock en X"). */
+    static void bloquearProductos(Connection cn, Collection<Long> productoIds) throws SQLException {
+        bloquear(cn, Collections.nCopies(productoIds.size(), LOCK_PRODUCTO), new ArrayList<>(productoIds));
+    }
+
+    /** Mismo lock que toma una venta de la variante (para los "poner el stock en X"). */
+    static void bloquearVariantes(Connection cn, Collection<Long> varianteIds) throws SQLException {
+        bloquear(cn, Collections.nCopies(varianteIds.size(), LOCK_VARIANTE), new ArrayList<>(varianteIds));
+    }
+
+    /**
+     * SQL que toma los locks de los ítems que devuelve {@code sqlItems} (columnas tipo, id; ver
+     * {@link #sqlItemProducto} y {@link #sqlItemVariante}), para bloquear desde una consulta.
+     * La clave es hashint8(id): los ids son bigint y el lock de dos claves usa int. Si dos ids chocan,
+     * solo se serializan de más. El ORDER BY hace que el lock se tome ya ordenado.
+     */
+    static String sqlBloquear(String sqlItems) {
+        return """
+            select pg_advisory_xact_lock(k.tipo, k.clave)
+              from (select distinct i.tipo, hashint8(i.id) as clave from (%s) i) k
+             order by k.tipo, k.clave
+            """.formatted(sqlItems);
+    }
+
+    /** Columnas (tipo, id) del lock de un producto, para {@link #sqlBloquear}. */
+    static String sqlItemProducto(String id) {
+        return LOCK_PRODUCTO + " as tipo, " + id + " as id";
+    }
+
+    /** Columnas (tipo, id) del lock de una variante, para {@link #sqlBloquear}. */
+    static String sqlItemVariante(String id) {
+        return LOCK_VARIANTE + " as tipo, " + id + " as id";
+    }
+
+    /** true si el campo editado es el stock (se registra como ajuste, ver sqlUpdateCampo). */
+    static boolean esCampoStock(String campo) {
+        String c = campo.trim().toLowerCase();
+        return c.equals("stock") || c.equals("stockonhand");
+    }
+
+    // Un viaje a la base para todos los locks, con los ids como parámetros
+    private static void bloquear(Connection cn, List<Integer> tipos, List<Long> ids) throws SQLException {
+        if (ids.isEmpty()) return;
+        try (PreparedStatement ps = cn.prepareStatement(sqlBloquear("select * from unnest(?::int[], ?::bigint[])"
+                + " as u(tipo, id)"))) {
+            ps.setArray(1, cn.createArrayOf("int4", tipos.toArray()));
+            ps.setArray(2, cn.createArrayOf("int8", ids.toArray()));
+            ps.execute();
+        }
+    }
+
+    // ---------------- Lectura ----------------
+
+    /** Stock actual (foto + pendientes) de cada ítem; los que no existen no vienen en el mapa. */
+    public Map<ItemStock, Integer> stockActual(Collection<ItemStock> items) throws SQLException {
+        try (Connection cn = Database.get()) {
+            return stockActual(cn, items);
+        }
+    }
+
+    static Map<ItemStock, Integer> stockActual(Connection cn, Collection<ItemStock> items) throws SQLException {
+        Map<ItemStock, Integer> out = new HashMap<>();
+        if (items.isEmpty()) return out;
+
+        List<Long> productos = new ArrayList<>();
+        List<Long> variantes = new ArrayList<>();
+        for (ItemStock it : items) {
+            if (it.varianteId() == null) productos.add(it.productoId());
+            else variantes.add(it.varianteId());
+        }
+
+        // Ids como arrays: el mismo SQL para cualquier cantidad de ítems
+        String sql = "select p.id, null::bigint, " + STOCK_PRODUCTO + " from producto p where p.id = any(?)"
+                + " union all select pv.producto_id, pv.id, " + STOCK_VARIANTE
+                + " from producto_variante pv where pv.id = any(?)";
+
+        try (PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setArray(1, cn.createArrayOf("int8", productos.toArray()));
+            ps.setArray(2, cn.createArrayOf("int8", variantes.toArray()));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.put(new ItemStock(rs.getLong(1), (Long) rs.getObject(2)), rs.getInt(3));
+                }
+            }
+        }
+        return out;
+    }
+
+    /** Stock que había en {@code fecha}: el actual menos todo lo que se movió después. */
+    public int stockAl(long productoId, Long varianteId, Timestamp fecha) throws SQLException {
+        String sql = """
+            select coalesce((select %s from %s where %s), 0)
+                   - coalesce((select sum(m.cantidad) from stock_movimiento m
+                                where m.producto_id = ?
+                                  and (case when ?::bigint is null then m.variante_id is null
+                                            else m.variante_id = ?::bigint end)
+                                  and m.creadoEn > ?), 0)
+            """.formatted(
+                varianteId == null ? STOCK_PRODUCTO : STOCK_VARIANTE,
+                varianteId == null ? "producto p" : "producto_variante pv",
+                varianteId == null ? "p.id = ?" : "pv.id = ?");
+
+        try (Connection cn = Database.get();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            int i = 1;
+            ps.setLong(i++, varianteId == null ? productoId : varianteId);
+            ps.setLong(i++, productoId);
+            for (int k = 0; k < 2; k++) {
+                if (varianteId == null) ps.setNull(i++, Types.BIGINT); else ps.setLong(i++, varianteId);
+            }
+            ps.setTimestamp(i, fecha);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    /** Movimientos de un producto (o de una variante) entre dos fechas, del más nuevo al más viejo. */
+    public List<Movimiento> movimientos(long productoId, Long varianteId,
+                                        Timestamp desde, Timestamp hasta) throws SQLException {
+        String sql = """
+            select id, producto_id, variante_id, cantidad, tipo, venta_id, nota, creadoEn
+              from stock_movimiento
+             where producto_id = ?
+               and (case when ?::bigint is null then variante_id is null else variante_id = ?::bigint end)
+               and creadoEn >= coalesce(?, '-infinity'::timestamptz)
+               and creadoEn <  coalesce(?, 'infinity'::timestamptz)
+             order by creadoEn desc, id desc
+            """;
+        try (Connection cn = Database.get();
+             PreparedStatement ps = cn.prepareStatement(sql)) {
+            ps.setLong(1, productoId);
+            for (int i = 2; i <= 3; i++) {
+                if (varianteId == null) ps.setNull(i, Types.BIGINT); else ps.setLong(i, varianteId);
+            }
+            ps.setTimestamp(4, desde);
+            ps.setTimestamp(5, hasta);
+
+            List<Movimiento> out = new ArrayList<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    out.add(new Movimiento(rs.getLong(1), rs.getLong(2), (Long) rs.getObject(3),
+                            rs.getInt(4), rs.getString(5), (Long) rs.getObject(6), rs.getString(7),
+                            rs.getTimestamp(8)));
+                }
+            }
+            return out;
+        }
+    }
+
+    // ---------------- Compactación ----------------
+
+    /**
+     * Vuelca los movimientos pendientes a la foto (stockOnHand / stock) y los marca como compactados,
+     * todo en un statement. Si otra terminal está compactando no hace nada. Devuelve cuántos movimientos volcó.
+     */
+    public int compactar() throws SQLException {
+        String sql = """
+            with lock as (
+                select pg_try_advisory_xact_lock(?) as ok
+            ), mov as (
+                update stock_movimiento m
+                   set compactado = true
+                 where not m.compactado and (select ok from lock)
+                returning m.producto_id, m.variante_id, m.cantidad
+            ), tot as (
+                select producto_id, variante_id, sum(cantidad)::integer as cantidad
+                  from mov
+                 group by producto_id, variante_id
+            ), upd_prod as (
+                update producto p
+                   set stockOnHand = p.stockOnHand + t.cantidad
+                  from tot t
+                 where t.variante_id is null and p.id = t.producto_id and t.cantidad <> 0
+                returning p.id
+            ), upd_var as (
+                update producto_variante pv
+                   set stock = pv.stock + t.cantidad
+                  from tot t
+                 where pv.id = t.variante_id and t.cantidad <> 0
+                returning pv.id
+            )
+            select (select count(*) from mov), (select count(*) from upd_prod), (select count(*) from upd_var)
+            """;
+
+        try (Connection cn = Database.get()) {
+            cn.setAutoCommit(false);
+            try (PreparedStatement ps = cn.prepareStatement(sql)) {
+                ps.setLong(1, LOCK_COMPACTAR);
+                int movimientos;
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    movimientos = rs.getInt(1);
+                }
+                cn.commit();
+                return movimientos;
+            } catch (SQLException | RuntimeException e) {
+                cn.rollback();
+                throw e;
+            } finally {
+                cn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------
+
+    private static Long productoDeVariante(Connection cn, Long varianteId) throws SQLException {
+        if (varianteId == null) return null;
+        try (PreparedStatement ps = cn.prepareStatement("select producto_id from producto_variante where id = ?")) {
+            ps.setLong(1, varianteId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+}
@@ -1,15 +1,177 @@
 package com.arielcardales.arielcardales.DAO;
 
+import com.arielcardales.arielcardales.Entidades.ItemCarrito;
 import com.arielcardales.arielcardales.Entidades.Venta;
 import com.arielcardales.arielcardales.Entidades.VentaItem;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
 
 public class VentaDAO {
 
+    /** Venta ya grabada y stock que quedó en el producto/variante vendido. */
+    public record VentaRegistrada(long ventaId, int stockRestante) {}
+
+    /** Resultado de cobrar un carrito: la venta grabada o los ítems que no tenían stock (y no se grabó nada). */
+    public record VentaCarrito(Long ventaId, List<ItemCarrito> sinStock) {
+        public boolean isRegistrada() { return ventaId != null; }
+    }
+
+    /**
+     * Graba un carrito como una sola venta, todo en una transacción:
+     * advisory locks de los ítems, control de stock, la venta, sus ítems y los movimientos de stock
+     * en batch (con reWriteBatchedInserts el driver los manda como INSERTs multi-fila).
+     * Si algún ítem no tiene stock suficiente se deshace todo y se devuelven los que fallaron.
+     */
+    public VentaCarrito registrarVentaCarrito(List<ItemCarrito> items, String clienteNombre, String medioPago) throws SQLException {
+        if (items.isEmpty()) throw new IllegalArgumentException("El carrito está vacío");
+
+        // Cantidad pedida por producto/variante (el mismo ítem puede estar dos veces en el carrito)
+        Map<StockDAO.ItemStock, Integer> pedidos = new LinkedHashMap<>();
+        for (ItemCarrito it : items) {
+            pedidos.merge(new StockDAO.ItemStock(it.getProductoId(), it.getVarianteId()), it.getCantidad(), Integer::sum);
+        }
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (ItemCarrito it : items) total = total.add(it.getSubtotal());
+
+        try (Connection conn = Database.get()) {
+            conn.setAutoCommit(false);
+            try {
+                // Los locks van en orden fijo dentro de bloquear(): dos cajas no se cruzan
+                StockDAO.bloquear(conn, pedidos.keySet());
+                Map<StockDAO.ItemStock, Integer> disponible = StockDAO.stockActual(conn, pedidos.keySet());
+
+                List<ItemCarrito> sinStock = new ArrayList<>();
+                for (ItemCarrito it : items) {
+                    StockDAO.ItemStock clave = new StockDAO.ItemStock(it.getProductoId(), it.getVarianteId());
+                    Integer hay = disponible.get(clave);
+                    if (hay == null || hay < pedidos.get(clave)) sinStock.add(it);
+                }
+                if (!sinStock.isEmpty()) {
+                    conn.rollback();
+                    return new VentaCarrito(null, sinStock);
+                }
+
+                long ventaId;
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "insert into venta (clienteNombre, medioPago, total) values (?, ?, ?) returning id")) {
+                    ps.setString(1, clienteNombre);
+                    ps.setString(2, medioPago);
+                    ps.setBigDecimal(3, total);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        ventaId = rs.getLong(1);
+                    }
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "insert into ventaItem (ventaId, productoId, qty, precioUnit) values (?, ?, ?, ?)")) {
+                    for (ItemCarrito it : items) {
+                        ps.setLong(1, ventaId);
+                        ps.setLong(2, it.getProductoId());
+                        ps.setInt(3, it.getCantidad());
+                        ps.setBigDecimal(4, it.getPrecioUnit());
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+
+                try (PreparedStatement ps = conn.prepareStatement("""
+                        insert into stock_movimiento (producto_id, variante_id, cantidad, tipo, venta_id)
+                        values (?, ?, ?, 'venta', ?)
+                        """)) {
+                    for (var e : pedidos.entrySet()) {
+                        ps.setLong(1, e.getKey().productoId());
+                        if (e.getKey().varianteId() == null) ps.setNull(2, Types.BIGINT);
+                        else ps.setLong(2, e.getKey().varianteId());
+                        ps.setInt(3, -e.getValue());
+                        ps.setLong(4, ventaId);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+
+                conn.commit();
+                return new VentaCarrito(ventaId, List.of());
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Controla el stock, inserta la venta, su ítem y el movimiento de stock en una sola sentencia (autocommit,
+     * un viaje a la base). El advisory lock del ítem lo toma stock_para_venta (V006) antes de leer el stock.
+     * Si no alcanza el stock no se graba nada y devuelve vacío.
+     * Con varianteId se descuenta de la variante (que debe ser del producto); sin él, del producto.
+     */
+    public Optional<VentaRegistrada> registrarVentaConStock(long productoId, Long varianteId, int cantidad,
+                                                            BigDecimal precioUnit, BigDecimal total,
+                                                            String clienteNombre, String medioPago) throws SQLException {
+        // Los CTE que modifican datos corren siempre y en la misma transacción:
+        // sin fila en "alcanza" no se inserta la venta, ni el ítem, ni el movimiento.
+        // El stock se lee dentro de la función (después del lock) y no acá: esta sentencia lee con la foto
+        // de antes de esperar el lock
+        String sql = """
+            with disponible as (
+                select stock_para_venta(?, ?::bigint) as stock
+            ), alcanza as (
+                select stock - ? as restante from disponible where stock >= ?
+            ), nueva_venta as (
+                insert into venta (clienteNombre, medioPago, total)
+                select ?, ?, ? from alcanza
+                returning id
+            ), nuevo_item as (
+                insert into ventaItem (ventaId, productoId, qty, precioUnit)
+                select id, ?, ?, ? from nueva_venta
+                returning ventaId
+            ), movimiento as (
+                insert into stock_movimiento (producto_id, variante_id, cantidad, tipo, venta_id)
+                select ?, ?::bigint, ?, 'venta', id from nueva_venta
+                returning id
+            )
+            select v.id, a.restante
+              from nueva_venta v cross join alcanza a
+        """;
+
+        try (Connection conn = Database.get();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            ps.setLong(i++, productoId);
+            if (varianteId == null) ps.setNull(i++, Types.BIGINT); else ps.setLong(i++, varianteId);
+
+            ps.setInt(i++, cantidad);
+            ps.setInt(i++, cantidad);
+
+            ps.setString(i++, clienteNombre);
+            ps.setString(i++, medioPago);
+            ps.setBigDecimal(i++, total);
+
+            ps.setLong(i++, productoId);
+            ps.setInt(i++, cantidad);
+            ps.setBigDecimal(i++, precioUnit);
+
+            ps.setLong(i++, productoId);
+            if (varianteId == null) ps.setNull(i++, Types.BIGINT); else ps.setLong(i++, varianteId);
+            ps.setInt(i, -cantidad);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next()
+                        ? Optional.of(new VentaRegistrada(rs.getLong(1), rs.getInt(2)))
+                        : Optional.empty();
+            }
+        }
+    }
+
     public long registrarVenta(Venta venta) throws SQLException {
         String sql = """
             INSERT INTO venta (clienteNombre, medioPago, total)
@@ -0,0 +1,57 @@
+package com.arielcardales.arielcardales.Entidades;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Renglón del carrito de venta: un producto sin variantes o una variante, con la cantidad a vender.
+ * Vive solo en memoria hasta que se cobra el carrito.
+ */
+public class ItemCarrito {
+    private long productoId;
+    private Long varianteId;
+    private String descripcion;
+    private int cantidad;
+    private BigDecimal precioUnit;
+
+    public ItemCarrito(long productoId, Long varianteId, String descripcion, int cantidad, BigDecimal precioUnit) {
+        this.productoId = productoId;
+        this.varianteId = varianteId;
+        this.descripcion = descripcion;
+        this.cantidad = cantidad;
+        this.precioUnit = precioUnit;
+    }
+
+    public long getProductoId() {
+        return productoId;
+    }
+
+    public Long getVarianteId() {
+        return varianteId;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(int cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    public BigDecimal getPrecioUnit() {
+        return precioUnit;
+    }
+
+    public BigDecimal getSubtotal() {
+        return precioUnit.multiply(BigDecimal.valueOf(cantidad));
+    }
+
+    /** true si es el mismo producto/variante (para sumar cantidades en vez de repetir el renglón). */
+    public boolean mismoArticulo(ItemCarrito otro) {
+        return productoId == otro.productoId && Objects.equals(varianteId, otro.varianteId);
+    }
+}
@@ -7,114 +7,310 @@ import java.time.LocalDateTime;
 /**
  * Representa una fila de inventario (producto base o variante) para TreeTableView.
  * Se usa junto con la vista SQL vInventario_variantes.
+ *
+ * Los valores viven en campos comunes; las properties se crean recién cuando alguien las pide
+ * (TreeItemPropertyValueFactory al mostrar la fila, las celdas de edición, un binding) y desde ahí mandan ellas.
+ * Si la fila viene de una {@link SnapshotInventario}, los campos que nunca se asignaron se leen de la foto.
  */
 public class ItemInventario {
 
+    // Bits de "asignados": qué campos tienen valor propio en vez de leerlo de la foto
+    private static final int PRODUCTO_ID = 1, VARIANTE_ID = 1 << 1, ETIQUETA = 1 << 2, NOMBRE = 1 << 3,
+            CATEGORIA = 1 << 4, UNIDAD = 1 << 5, COLOR = 1 << 6, TALLE = 1 << 7, PRECIO = 1 << 8,
+            COSTO = 1 << 9, STOCK = 1 << 10, ACTIVE = 1 << 11, UPDATED_AT = 1 << 12, ES_VARIANTE = 1 << 13;
+    private static final int TODOS = (1 << 14) - 1;
+
+    // Fila de la foto que respalda los valores (null = ítem armado a mano o por Mapper)
+    private final SnapshotInventario snapshot;
+    private final int fila;
+    private int asignados;
+
     // Identificadores
-    private final LongProperty productoId = new SimpleLongProperty();
-    private final ObjectProperty<Long> varianteId = new SimpleObjectProperty<>(null);
+    private long productoId;
+    private Long varianteId;
 
     // Datos del producto
-    private final StringProperty etiquetaProducto = new SimpleStringProperty();
-    private final StringProperty nombreProducto = new SimpleStringProperty();
-    private final StringProperty descripcion = new SimpleStringProperty();
-    private final StringProperty categoria = new SimpleStringProperty();
-    private final StringProperty unidad = new SimpleStringProperty();
+    private String etiquetaProducto;
+    private String nombreProducto;
+    private String descripcion;
+    private String categoria;
+    private String unidad;
 
     // Datos específicos de la variante (si aplica)
-    private final StringProperty color = new SimpleStringProperty("-");
-    private final StringProperty talle = new SimpleStringProperty("-");
+    private String color = "-";
+    private String talle = "-";
 
     // Datos cuantitativos
-    private final ObjectProperty<BigDecimal> precio = new SimpleObjectProperty<>(BigDecimal.ZERO);
-    private final ObjectProperty<BigDecimal> costo  = new SimpleObjectProperty<>(BigDecimal.ZERO);
-    private final IntegerProperty stockOnHand = new SimpleIntegerProperty(0);
+    private BigDecimal precio = BigDecimal.ZERO;
+    private BigDecimal costo = BigDecimal.ZERO;
+    private int stockOnHand;
 
     // Estado
-    private final BooleanProperty active = new SimpleBooleanProperty(true);
-    private final ObjectProperty<LocalDateTime> updatedAt = new SimpleObjectProperty<>();
+    private boolean active = true;
+    private LocalDateTime updatedAt;
 
     // Flag para saber si es variante o base
-    private final BooleanProperty esVariante = new SimpleBooleanProperty(false);
+    private boolean esVariante;
+
+    // Properties ya pedidas (null hasta la primera)
+    private Propiedades props;
+
+    public ItemInventario() {
+        this(null, -1);
+    }
+
+    ItemInventario(SnapshotInventario snapshot, int fila) {
+        this.snapshot = snapshot;
+        this.fila = fila;
+        this.asignados = snapshot == null ? TODOS : 0;
+    }
+
+    private static final class Propiedades {
+        LongProperty productoId;
+        ObjectProperty<Long> varianteId;
+        StringProperty etiquetaProducto, nombreProducto, descripcion, categoria, unidad, color, talle;
+        ObjectProperty<BigDecimal> precio, costo;
+        IntegerProperty stockOnHand;
+        BooleanProperty active, esVariante;
+        ObjectProperty<LocalDateTime> updatedAt;
+    }
+
+    private Propiedades props() {
+        if (props == null) props = new Propiedades();
+        return props;
+    }
+
+    private boolean propio(int campo) { return (asignados & campo) != 0; }
 
     // ======================
     // Getters y Setters
     // ======================
 
     // --- productoId
-    public long getProductoId() { return productoId.get(); }
-    public void setProductoId(long id) { this.productoId.set(id); }
-    public LongProperty productoIdProperty() { return productoId; }
+    public long getProductoId() {
+        if (props != null && props.productoId != null) return props.productoId.get();
+        return propio(PRODUCTO_ID) ? productoId : snapshot.productoId(fila);
+    }
+    public void setProductoId(long id) {
+        if (props != null && props.productoId != null) props.productoId.set(id);
+        else { productoId = id; asignados |= PRODUCTO_ID; }
+    }
+    public LongProperty productoIdProperty() {
+        Propiedades p = props();
+        if (p.productoId == null) p.productoId = new SimpleLongProperty(this, "productoId", getProductoId());
+        return p.productoId;
+    }
 
     // --- varianteId
-    public Long getVarianteId() { return varianteId.get(); }
-    public void setVarianteId(Long id) { this.varianteId.set(id); }
-    public ObjectProperty<Long> varianteIdProperty() { return varianteId; }
+    public Long getVarianteId() {
+        if (props != null && props.varianteId != null) return props.varianteId.get();
+        return propio(VARIANTE_ID) ? varianteId : snapshot.varianteId(fila);
+    }
+    public void setVarianteId(Long id) {
+        if (props != null && props.varianteId != null) props.varianteId.set(id);
+        else { varianteId = id; asignados |= VARIANTE_ID; }
+    }
+    public ObjectProperty<Long> varianteIdProperty() {
+        Propiedades p = props();
+        if (p.varianteId == null) p.varianteId = new SimpleObjectProperty<>(this, "varianteId", getVarianteId());
+        return p.varianteId;
+    }
 
     // --- etiquetaProducto
-    public String getEtiquetaProducto() { return etiquetaProducto.get(); }
-    public void setEtiquetaProducto(String e) { this.etiquetaProducto.set(e); }
-    public StringProperty etiquetaProductoProperty() { return etiquetaProducto; }
+    public String getEtiquetaProducto() {
+        if (props != null && props.etiquetaProducto != null) return props.etiquetaProducto.get();
+        return propio(ETIQUETA) ? etiquetaProducto : snapshot.etiqueta(fila);
+    }
+    public void setEtiquetaProducto(String e) {
+        if (props != null && props.etiquetaProducto != null) props.etiquetaProducto.set(e);
+        else { etiquetaProducto = e; asignados |= ETIQUETA; }
+    }
+    public StringProperty etiquetaProductoProperty() {
+        Propiedades p = props();
+        if (p.etiquetaProducto == null)
+            p.etiquetaProducto = new SimpleStringProperty(this, "etiquetaProducto", getEtiquetaProducto());
+        return p.etiquetaProducto;
+    }
 
     // --- nombreProducto
-    public String getNombreProducto() { return nombreProducto.get(); }
-    public void setNombreProducto(String n) { this.nombreProducto.set(n); }
-    public StringProperty nombreProductoProperty() { return nombreProducto; }
+    public String getNombreProducto() {
+        if (props != null && props.nombreProducto != null) return props.nombreProducto.get();
+        return propio(NOMBRE) ? nombreProducto : snapshot.nombre(fila);
+    }
+    public void setNombreProducto(String n) {
+        if (props != null && props.nombreProducto != null) props.nombreProducto.set(n);
+        else { nombreProducto = n; asignados |= NOMBRE; }
+    }
+    public StringProperty nombreProductoProperty() {
+        Propiedades p = props();
+        if (p.nombreProducto == null)
+            p.nombreProducto = new SimpleStringProperty(this, "nombreProducto", getNombreProducto());
+        return p.nombreProducto;
+    }
 
-    // --- descripcion
-    public String getDescripcion() { return descripcion.get(); }
-    public void setDescripcion(String d) { this.descripcion.set(d); }
-    public StringProperty descripcionProperty() { return descripcion; }
+    // --- descripcion (la vista no la trae: siempre es propia)
+    public String getDescripcion() {
+        return props != null && props.descripcion != null ? props.descripcion.get() : descripcion;
+    }
+    public void setDescripcion(String d) {
+        if (props != null && props.descripcion != null) props.descripcion.set(d);
+        else descripcion = d;
+    }
+    public StringProperty descripcionProperty() {
+        Propiedades p = props();
+        if (p.descripcion == null) p.descripcion = new SimpleStringProperty(this, "descripcion", getDescripcion());
+        return p.descripcion;
+    }
 
     // --- categoria
-    public String getCategoria() { return categoria.get(); }
-    public void setCategoria(String c) { this.categoria.set(c); }
-    public StringProperty categoriaProperty() { return categoria; }
+    public String getCategoria() {
+        if (props != null && props.categoria != null) return props.categoria.get();
+        return propio(CATEGORIA) ? categoria : snapshot.categoria(fila);
+    }
+    public void setCategoria(String c) {
+        if (props != null && props.categoria != null) props.categoria.set(c);
+        else { categoria = c; asignados |= CATEGORIA; }
+    }
+    public StringProperty categoriaProperty() {
+        Propiedades p = props();
+        if (p.categoria == null) p.categoria = new SimpleStringProperty(this, "categoria", getCategoria());
+        return p.categoria;
+    }
 
     // --- unidad
-    public String getUnidad() { return unidad.get(); }
-    public void setUnidad(String u) { this.unidad.set(u); }
-    public StringProperty unidadProperty() { return unidad; }
+    public String getUnidad() {
+        if (props != null && props.unidad != null) return props.unidad.get();
+        return propio(UNIDAD) ? unidad : snapshot.unidad(fila);
+    }
+    public void setUnidad(String u) {
+        if (props != null && props.unidad != null) props.unidad.set(u);
+        else { unidad = u; asignados |= UNIDAD; }
+    }
+    public StringProperty unidadProperty() {
+        Propiedades p = props();
+        if (p.unidad == null) p.unidad = new SimpleStringProperty(this, "unidad", getUnidad());
+        return p.unidad;
+    }
 
     // --- color
-    public String getColor() { return color.get(); }
-    public void setColor(String c) { this.color.set(c); }
-    public StringProperty colorProperty() { return color; }
+    public String getColor() {
+        if (props != null && props.color != null) return props.color.get();
+        return propio(COLOR) ? color : snapshot.color(fila);
+    }
+    public void setColor(String c) {
+        if (props != null && props.color != null) props.color.set(c);
+        else { color = c; asignados |= COLOR; }
+    }
+    public StringProperty colorProperty() {
+        Propiedades p = props();
+        if (p.color == null) p.color = new SimpleStringProperty(this, "color", getColor());
+        return p.color;
+    }
 
     // --- talle
-    public String getTalle() { return talle.get(); }
-    public void setTalle(String t) { this.talle.set(t); }
-    public StringProperty talleProperty() { return talle; }
+    public String getTalle() {
+        if (props != null && props.talle != null) return props.talle.get();
+        return propio(TALLE) ? talle : snapshot.talle(fila);
+    }
+    public void setTalle(String t) {
+        if (props != null && props.talle != null) props.talle.set(t);
+        else { talle = t; asignados |= TALLE; }
+    }
+    public StringProperty talleProperty() {
+        Propiedades p = props();
+        if (p.talle == null) p.talle = new SimpleStringProperty(this, "talle", getTalle());
+        return p.talle;
+    }
 
     // --- precio
-    public BigDecimal getPrecio() { return precio.get(); }
-    public void setPrecio(BigDecimal p) { this.precio.set(p); }
-    public ObjectProperty<BigDecimal> precioProperty() { return precio; }
+    public BigDecimal getPrecio() {
+        if (props != null && props.precio != null) return props.precio.get();
+        return propio(PRECIO) ? precio : snapshot.precio(fila);
+    }
+    public void setPrecio(BigDecimal p) {
+        if (props != null && props.precio != null) props.precio.set(p);
+        else { precio = p; asignados |= PRECIO; }
+    }
+    public ObjectProperty<BigDecimal> precioProperty() {
+        Propiedades p = props();
+        if (p.precio == null) p.precio = new SimpleObjectProperty<>(this, "precio", getPrecio());
+        return p.precio;
+    }
 
     // --- costo
-    public BigDecimal getCosto() { return costo.get(); }
-    public void setCosto(BigDecimal c) { this.costo.set(c); }
-    public ObjectProperty<BigDecimal> costoProperty() { return costo; }
+    public BigDecimal getCosto() {
+        if (props != null && props.costo != null) return props.costo.get();
+        return propio(COSTO) ? costo : snapshot.costo(fila);
+    }
+    public void setCosto(BigDecimal c) {
+        if (props != null && props.costo != null) props.costo.set(c);
+        else { costo = c; asignados |= COSTO; }
+    }
+    public ObjectProperty<BigDecimal> costoProperty() {
+        Propiedades p = props();
+        if (p.costo == null) p.costo = new SimpleObjectProperty<>(this, "costo", getCosto());
+        return p.costo;
+    }
 
     // --- stockOnHand
-    public int getStockOnHand() { return stockOnHand.get(); }
-    public void setStockOnHand(int s) { this.stockOnHand.set(s); }
-    public IntegerProperty stockOnHandProperty() { return stockOnHand; }
+    public int getStockOnHand() {
+        if (props != null && props.stockOnHand != null) return props.stockOnHand.get();
+        return propio(STOCK) ? stockOnHand : snapshot.stock(fila);
+    }
+    public void setStockOnHand(int s) {
+        if (props != null && props.stockOnHand != null) props.stockOnHand.set(s);
+        else { stockOnHand = s; asignados |= STOCK; }
+    }
+    public IntegerProperty stockOnHandProperty() {
+        Propiedades p = props();
+        if (p.stockOnHand == null) p.stockOnHand = new SimpleIntegerProperty(this, "stockOnHand", getStockOnHand());
+        return p.stockOnHand;
+    }
 
     // --- active
-    public boolean isActive() { return active.get(); }
-    public void setActive(boolean a) { this.active.set(a); }
-    public BooleanProperty activeProperty() { return active; }
+    public boolean isActive() {
+        if (props != null && props.active != null) return props.active.get();
+        return propio(ACTIVE) ? active : snapshot.activo(fila);
+    }
+    public void setActive(boolean a) {
+        if (props != null && props.active != null) props.active.set(a);
+        else { active = a; asignados |= ACTIVE; }
+    }
+    public BooleanProperty activeProperty() {
+        Propiedades p = props();
+        if (p.active == null) p.active = new SimpleBooleanProperty(this, "active", isActive());
+        return p.active;
+    }
 
     // --- updatedAt
-    public LocalDateTime getUpdatedAt() { return updatedAt.get(); }
-    public void setUpdatedAt(LocalDateTime u) { this.updatedAt.set(u); }
-    public ObjectProperty<LocalDateTime> updatedAtProperty() { return updatedAt; }
+    public LocalDateTime getUpdatedAt() {
+        if (props != null && props.updatedAt != null) return props.updatedAt.get();
+        return propio(UPDATED_AT) ? updatedAt : snapshot.updatedAt(fila);
+    }
+    public void setUpdatedAt(LocalDateTime u) {
+        if (props != null && props.updatedAt != null) props.updatedAt.set(u);
+        else { updatedAt = u; asignados |= UPDATED_AT; }
+    }
+    public ObjectProperty<LocalDateTime> updatedAtProperty() {
+        Propiedades p = props();
+        if (p.updatedAt == null) p.updatedAt = new SimpleObjectProperty<>(this, "updatedAt", getUpdatedAt());
+        return p.updatedAt;
+    }
 
     // --- esVariante
-    public boolean isEsVariante() { return esVariante.get(); }
-    public void setEsVariante(boolean v) { this.esVariante.set(v); }
-    public BooleanProperty esVarianteProperty() { return esVariante; }
+    public boolean isEsVariante() {
+        if (props != null && props.esVariante != null) return props.esVariante.get();
+        return propio(ES_VARIANTE) ? esVariante : snapshot.esVariante(fila);
+    }
+    public void setEsVariante(boolean v) {
+        if (props != null && props.esVariante != null) props.esVariante.set(v);
+        else { esVariante = v; asignados |= ES_VARIANTE; }
+    }
+    public BooleanProperty esVarianteProperty() {
+        Propiedades p = props();
+        if (p.esVariante == null) p.esVariante = new SimpleBooleanProperty(this, "esVariante", isEsVariante());
+        return p.esVariante;
+    }
 
     // ======================
     // Utilidad
@@ -123,7 +319,7 @@ public class ItemInventario {
     @Override
     public String toString() {
         return (isEsVariante()
-                ? "Variante de " + nombreProducto.get() + " (" + color.get() + " / " + talle.get() + ")"
-                : "Producto base: " + nombreProducto.get());
+                ? "Variante de " + getNombreProducto() + " (" + getColor() + " / " + getTalle() + ")"
+                : "Producto base: " + getNombreProducto());
     }
 }
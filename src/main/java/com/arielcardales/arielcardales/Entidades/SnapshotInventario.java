@@ -0,0 +1,417 @@
+package com.arielcardales.arielcardales.Entidades;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Foto inmutable del inventario guardada por columnas (una posición por fila, productos seguidos de sus variantes).
+ *
+ * - Ids, stock y fechas en arrays primitivos; precio y costo en centavos (long).
+ * - Categoría, unidad, color y talle codificados contra un diccionario (se repiten muchísimo).
+ * - Etiqueta y nombre se guardan una vez por producto (las variantes los comparten).
+ *
+ * Es el modelo en memoria de la carga: el árbol no copia los datos a properties, cada fila es un
+ * {@link ItemInventario} liviano que lee de acá y crea sus properties recién cuando la tabla las pide.
+ * Ya viene con la regla de la vista aplicada: el producto con variantes no tiene color/talle/precio/costo
+ * y su stock es 0; el que no tiene variantes muestra "-" en color y talle.
+ */
+public final class SnapshotInventario {
+
+    /** Valor nulo en las columnas long (precio, costo, fechas). */
+    public static final long SIN_VALOR = Long.MIN_VALUE;
+    private static final int SIN_TEXTO = -1;
+
+    // --- Por fila
+    private final int[] productoDeFila;      // índice del producto dueño de la fila
+    private final long[] varianteId;         // 0 = fila del producto
+    private final int[] color;               // código en textos (SIN_TEXTO = null)
+    private final int[] talle;
+    private final long[] precio;             // centavos
+    private final long[] costo;
+    private final int[] stock;
+    private final long[] updatedAt;          // epoch ms
+    private final BitSet inactivas;
+
+    // --- Por producto
+    private final int[] primeraFila;         // filas del producto p: [primeraFila[p], primeraFila[p+1])
+    private final long[] productoId;
+    private final String[] etiqueta;
+    private final String[] nombre;
+    private final int[] categoria;
+    private final int[] unidad;
+
+    // --- Diccionario compartido
+    private final String[] textos;
+
+    private SnapshotInventario(Constructor c, int[] orden) {
+        int n = orden.length;
+        int productos = c.productos;
+
+        productoDeFila = new int[n];
+        varianteId = new long[n];
+        color = new int[n];
+        talle = new int[n];
+        precio = new long[n];
+        costo = new long[n];
+        stock = new int[n];
+        updatedAt = new long[n];
+        inactivas = new BitSet(n);
+
+        for (int i = 0; i < n; i++) {
+            int o = orden[i];
+            productoDeFila[i] = c.productoDeFila[o];
+            varianteId[i] = c.varianteId[o];
+            color[i] = c.color[o];
+            talle[i] = c.talle[o];
+            precio[i] = c.precio[o];
+            costo[i] = c.costo[o];
+            stock[i] = c.stock[o];
+            updatedAt[i] = c.updatedAt[o];
+            if (c.inactivas.get(o)) inactivas.set(i);
+        }
+
+        primeraFila = primeraFila(productoDeFila, productos);
+
+        productoId = Arrays.copyOf(c.productoId, productos);
+        etiqueta = Arrays.copyOf(c.etiqueta, productos);
+        nombre = Arrays.copyOf(c.nombre, productos);
+        categoria = Arrays.copyOf(c.categoria, productos);
+        unidad = Arrays.copyOf(c.unidad, productos);
+
+        int guion = c.codigo("-");
+        textos = c.textos.toArray(new String[0]);
+
+        // Regla de la vista para las filas de producto
+        for (int p = 0; p < productos; p++) {
+            int f = primeraFila[p];
+            if (primeraFila[p + 1] - f > 1) {
+                color[f] = talle[f] = SIN_TEXTO;
+                precio[f] = costo[f] = SIN_VALOR;
+                stock[f] = 0;
+            } else {
+                color[f] = talle[f] = guion;
+            }
+        }
+    }
+
+    // Lee lo que dejó escribir() (la regla de la vista ya viene aplicada)
+    private SnapshotInventario(ByteBuffer buf) {
+        int n = buf.getInt();
+        int productos = buf.getInt();
+
+        productoDeFila = leerInts(buf, n);
+        varianteId = leerLongs(buf, n);
+        color = leerInts(buf, n);
+        talle = leerInts(buf, n);
+        precio = leerLongs(buf, n);
+        costo = leerLongs(buf, n);
+        stock = leerInts(buf, n);
+        updatedAt = leerLongs(buf, n);
+        inactivas = BitSet.valueOf(leerLongs(buf, buf.getInt()));
+
+        productoId = leerLongs(buf, productos);
+        categoria = leerInts(buf, productos);
+        unidad = leerInts(buf, productos);
+        etiqueta = leerTextos(buf, productos);
+        nombre = leerTextos(buf, productos);
+        textos = leerTextos(buf, buf.getInt());
+
+        primeraFila = primeraFila(productoDeFila, productos);
+    }
+
+    private static int[] primeraFila(int[] productoDeFila, int productos) {
+        int[] out = new int[productos + 1];
+        for (int p : productoDeFila) out[p + 1]++;
+        for (int p = 0; p < productos; p++) out[p + 1] += out[p];
+        return out;
+    }
+
+    // ======================
+    // Tamaño y estructura
+    // ======================
+
+    public int filas() { return productoDeFila.length; }
+
+    public int productos() { return productoId.length; }
+
+    /** Fila del producto {@code p} (sus variantes son las siguientes). */
+    public int filaDeProducto(int p) { return primeraFila[p]; }
+
+    public int cantidadVariantes(int p) { return primeraFila[p + 1] - primeraFila[p] - 1; }
+
+    public int productoDeFila(int fila) { return productoDeFila[fila]; }
+
+    // ======================
+    // Valores por fila
+    // ======================
+
+    public boolean esVariante(int fila) { return varianteId[fila] != 0; }
+
+    public long productoId(int fila) { return productoId[productoDeFila[fila]]; }
+
+    public Long varianteId(int fila) { return varianteId[fila] == 0 ? null : varianteId[fila]; }
+
+    public String etiqueta(int fila) { return etiqueta[productoDeFila[fila]]; }
+
+    public String nombre(int fila) { return nombre[productoDeFila[fila]]; }
+
+    public String categoria(int fila) { return texto(categoria[productoDeFila[fila]]); }
+
+    public String unidad(int fila) { return texto(unidad[productoDeFila[fila]]); }
+
+    public String color(int fila) { return texto(color[fila]); }
+
+    public String talle(int fila) { return texto(talle[fila]); }
+
+    public BigDecimal precio(int fila) { return dinero(precio[fila]); }
+
+    public BigDecimal costo(int fila) { return dinero(costo[fila]); }
+
+    public int stock(int fila) { return stock[fila]; }
+
+    public boolean activo(int fila) { return !inactivas.get(fila); }
+
+    public LocalDateTime updatedAt(int fila) {
+        return updatedAt[fila] == SIN_VALOR ? null : new Timestamp(updatedAt[fila]).toLocalDateTime();
+    }
+
+    /** Fila liviana para el árbol: lee de esta foto hasta que se le pida una property o se la modifique. */
+    public ItemInventario item(int fila) {
+        return new ItemInventario(this, fila);
+    }
+
+    /** Bytes aproximados de las columnas (sin contar los textos del diccionario ni etiquetas/nombres). */
+    public long bytesColumnas() {
+        long n = filas(), p = productos();
+        return n * (4 + 8 + 4 + 4 + 8 + 8 + 4 + 8) + n / 8 + p * (4 + 8 + 4 + 4 + 8 + 8) + textos.length * 8L;
+    }
+
+    // ======================
+    // Formato binario (columnas tal cual, little endian)
+    // ======================
+
+    /** Escribe la foto en el canal (lo usa FotoLocal; el encabezado del archivo lo pone quien llama). */
+    public void escribir(WritableByteChannel canal) throws IOException {
+        long[] bits = inactivas.toLongArray();
+        byte[][] etiquetas = utf8(etiqueta), nombres = utf8(nombre), dicc = utf8(textos);
+
+        int n = filas(), productos = productos();
+        long tam = 8L + n * (4L + 8 + 4 + 4 + 8 + 8 + 4 + 8) + 4 + bits.length * 8L
+                + productos * (8L + 4 + 4) + 4 + largo(etiquetas) + largo(nombres) + largo(dicc);
+
+        ByteBuffer buf = ByteBuffer.allocate(Math.toIntExact(tam)).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(n).putInt(productos);
+        for (int v : productoDeFila) buf.putInt(v);
+        for (long v : varianteId) buf.putLong(v);
+        for (int v : color) buf.putInt(v);
+        for (int v : talle) buf.putInt(v);
+        for (long v : precio) buf.putLong(v);
+        for (long v : costo) buf.putLong(v);
+        for (int v : stock) buf.putInt(v);
+        for (long v : updatedAt) buf.putLong(v);
+        buf.putInt(bits.length);
+        for (long v : bits) buf.putLong(v);
+        for (long v : productoId) buf.putLong(v);
+        for (int v : categoria) buf.putInt(v);
+        for (int v : unidad) buf.putInt(v);
+        escribirTextos(buf, etiquetas);
+        escribirTextos(buf, nombres);
+        buf.putInt(dicc.length);
+        escribirTextos(buf, dicc);
+
+        buf.flip();
+        while (buf.hasRemaining()) canal.write(buf);
+    }
+
+    /** Lee una foto escrita con {@link #escribir} desde la posición actual del buffer (puede ser un archivo mapeado). */
+    public static SnapshotInventario leer(ByteBuffer buf) {
+        return new SnapshotInventario(buf.order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    private static int[] leerInts(ByteBuffer buf, int n) {
+        int[] out = new int[n];
+        buf.asIntBuffer().get(out);
+        buf.position(buf.position() + n * 4);
+        return out;
+    }
+
+    private static long[] leerLongs(ByteBuffer buf, int n) {
+        long[] out = new long[n];
+        buf.asLongBuffer().get(out);
+        buf.position(buf.position() + n * 8);
+        return out;
+    }
+
+    private static String[] leerTextos(ByteBuffer buf, int n) {
+        String[] out = new String[n];
+        for (int i = 0; i < n; i++) {
+            int largo = buf.getInt();
+            if (largo < 0) continue;
+            out[i] = StandardCharsets.UTF_8.decode(buf.slice(buf.position(), largo)).toString();
+            buf.position(buf.position() + largo);
+        }
+        return out;
+    }
+
+    private static byte[][] utf8(String[] textos) {
+        byte[][] out = new byte[textos.length][];
+        for (int i = 0; i < textos.length; i++) {
+            if (textos[i] != null) out[i] = textos[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return out;
+    }
+
+    private static long largo(byte[][] textos) {
+        long total = 4L * textos.length;
+        for (byte[] t : textos) if (t != null) total += t.length;
+        return total;
+    }
+
+    private static void escribirTextos(ByteBuffer buf, byte[][] textos) {
+        for (byte[] t : textos) {
+            if (t == null) {
+                buf.putInt(-1);
+            } else {
+                buf.putInt(t.length).put(t);
+            }
+        }
+    }
+
+    private String texto(int codigo) { return codigo == SIN_TEXTO ? null : textos[codigo]; }
+
+    private static BigDecimal dinero(long centavos) {
+        return centavos == SIN_VALOR ? null : BigDecimal.valueOf(centavos, 2);
+    }
+
+    // ======================
+    // Armado
+    // ======================
+
+    /**
+     * Arma la foto fila por fila. Cada producto se agrega una vez (con los datos de su primera fila)
+     * y sus variantes después, aunque vengan intercaladas con las de otro producto del mismo nombre:
+     * al construir se agrupan respetando el orden en que aparecieron.
+     */
+    public static final class Constructor {
+        private int filas, productos;
+
+        private int[] productoDeFila = new int[256];
+        private long[] varianteId = new long[256];
+        private int[] color = new int[256];
+        private int[] talle = new int[256];
+        private long[] precio = new long[256];
+        private long[] costo = new long[256];
+        private int[] stock = new int[256];
+        private long[] updatedAt = new long[256];
+        private final BitSet inactivas = new BitSet();
+
+        private long[] productoId = new long[64];
+        private String[] etiqueta = new String[64];
+        private String[] nombre = new String[64];
+        private int[] categoria = new int[64];
+        private int[] unidad = new int[64];
+        private final Map<Long, Integer> indiceProducto = new HashMap<>();
+
+        private final List<String> textos = new ArrayList<>();
+        private final Map<String, Integer> codigos = new HashMap<>();
+
+        /** true si el producto ya se agregó. */
+        public boolean tieneProducto(long id) { return indiceProducto.containsKey(id); }
+
+        public Constructor producto(long id, String etiqueta, String nombre, String categoria, String unidad,
+                                    BigDecimal precio, BigDecimal costo, int stock, boolean activo,
+                                    Timestamp updatedAt) {
+            if (indiceProducto.containsKey(id)) throw new IllegalStateException("Producto repetido: " + id);
+            if (productos == productoId.length) crecerProductos();
+            int p = productos++;
+            indiceProducto.put(id, p);
+            productoId[p] = id;
+            this.etiqueta[p] = etiqueta;
+            this.nombre[p] = nombre;
+            this.categoria[p] = codigo(categoria);
+            this.unidad[p] = codigo(unidad);
+            fila(p, 0, null, null, precio, costo, stock, activo, updatedAt);
+            return this;
+        }
+
+        /** Variante de un producto ya agregado. */
+        public Constructor variante(long productoId, long id, String color, String talle,
+                                    BigDecimal precio, BigDecimal costo, int stock, boolean activo,
+                                    Timestamp updatedAt) {
+            Integer p = indiceProducto.get(productoId);
+            if (p == null) throw new IllegalStateException("Variante " + id + " sin su producto " + productoId);
+            fila(p, id, color, talle, precio, costo, stock, activo, updatedAt);
+            return this;
+        }
+
+        public SnapshotInventario construir() {
+            // Agrupa por producto manteniendo el orden de llegada (counting sort estable)
+            int[] inicio = new int[productos + 1];
+            for (int i = 0; i < filas; i++) inicio[productoDeFila[i] + 1]++;
+            for (int p = 0; p < productos; p++) inicio[p + 1] += inicio[p];
+            int[] orden = new int[filas];
+            for (int i = 0; i < filas; i++) orden[inicio[productoDeFila[i]]++] = i;
+            return new SnapshotInventario(this, orden);
+        }
+
+        private void fila(int p, long varId, String color, String talle, BigDecimal precio, BigDecimal costo,
+                          int stock, boolean activo, Timestamp updatedAt) {
+            if (filas == productoDeFila.length) crecerFilas();
+            int i = filas++;
+            productoDeFila[i] = p;
+            varianteId[i] = varId;
+            this.color[i] = codigo(color);
+            this.talle[i] = codigo(talle);
+            this.precio[i] = centavos(precio);
+            this.costo[i] = centavos(costo);
+            this.stock[i] = stock;
+            this.updatedAt[i] = updatedAt == null ? SIN_VALOR : updatedAt.getTime();
+            if (!activo) inactivas.set(i);
+        }
+
+        private int codigo(String s) {
+            if (s == null) return SIN_TEXTO;
+            Integer c = codigos.get(s);
+            if (c == null) {
+                c = textos.size();
+                codigos.put(s, c);
+                textos.add(s);
+            }
+            return c;
+        }
+
+        // Las columnas son numeric(12,2): no se pierde nada al pasar a centavos
+        private static long centavos(BigDecimal v) {
+            return v == null ? SIN_VALOR : v.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+
+        private void crecerFilas() {
+            int n = productoDeFila.length * 2;
+            productoDeFila = Arrays.copyOf(productoDeFila, n);
+            varianteId = Arrays.copyOf(varianteId, n);
+            color = Arrays.copyOf(color, n);
+            talle = Arrays.copyOf(talle, n);
+            precio = Arrays.copyOf(precio, n);
+            costo = Arrays.copyOf(costo, n);
+            stock = Arrays.copyOf(stock, n);
+            updatedAt = Arrays.copyOf(updatedAt, n);
+        }
+
+        private void crecerProductos() {
+            int n = productoId.length * 2;
+            productoId = Arrays.copyOf(productoId, n);
+            etiqueta = Arrays.copyOf(etiqueta, n);
+            nombre = Arrays.copyOf(nombre, n);
+            categoria = Arrays.copyOf(categoria, n);
+            unidad = Arrays.copyOf(unidad, n);
+        }
+    }
+}
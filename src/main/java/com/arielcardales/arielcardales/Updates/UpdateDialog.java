@@ -1,5 +1,6 @@
 package com.arielcardales.arielcardales.Updates;
 
+import com.arielcardales.arielcardales.Util.Tareas;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -217,12 +218,12 @@ public class UpdateDialog {
                             } else {
                                 lblMessage.setText("¡Listo! Reinicia la aplicación para usar la nueva versión.");
                                 // Cerrar automáticamente después de 3 segundos
-                                new Thread(() -> {
+                                Tareas.FONDO.execute(() -> {
                                     try {
                                         Thread.sleep(3000);
                                         Platform.runLater(dialog::close);
                                     } catch (InterruptedException ignored) {}
-                                }).start();
+                                });
                             }
                         } else if (progress.getPhase() == UpdateManager.UpdatePhase.ERROR ||
                                 progress.getPhase() == UpdateManager.UpdatePhase.ROLLED_BACK) {
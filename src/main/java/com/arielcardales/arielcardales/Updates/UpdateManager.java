@@ -1,5 +1,7 @@
 package com.arielcardales.arielcardales.Updates;
 
+import com.arielcardales.arielcardales.Util.Tareas;
+
 import java.nio.file.Path;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
@@ -41,7 +43,7 @@ public class UpdateManager {
                 System.err.println("Error al verificar actualizaciones: " + e.getMessage());
                 return false;
             }
-        });
+        }, Tareas.FONDO);
     }
 
     /**
@@ -100,7 +102,7 @@ public class UpdateManager {
                 ));
                 return false;
             }
-        });
+        }, Tareas.FONDO);
     }
 
     /**
@@ -220,7 +222,7 @@ public class UpdateManager {
 
                 return false;
             }
-        });
+        }, Tareas.FONDO);
     }
 
     /**
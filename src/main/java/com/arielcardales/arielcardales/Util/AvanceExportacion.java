@@ -0,0 +1,22 @@
+package com.arielcardales.arielcardales.Util;
+
+/**
+ * Avance de una exportación larga: los exportadores informan filas escritas y consultan si hay que cortar.
+ * Si se cancela, el exportador corta con CancellationException y borra el archivo a medio escribir.
+ */
+public interface AvanceExportacion {
+
+    /** Cada cuántas filas informan avance y revisan la cancelación los exportadores. */
+    int CADA_FILAS = 1000;
+
+    /** total = -1 si no se conoce de antemano (exportación desde la base). */
+    void filas(long escritas, long total);
+
+    boolean isCancelado();
+
+    /** Sin progreso ni cancelación (exportaciones cortas o llamadas desde código). */
+    AvanceExportacion NINGUNO = new AvanceExportacion() {
+        @Override public void filas(long escritas, long total) {}
+        @Override public boolean isCancelado() { return false; }
+    };
+}
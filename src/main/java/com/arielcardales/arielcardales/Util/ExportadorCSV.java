@@ -0,0 +1,88 @@
+package com.arielcardales.arielcardales.Util;
+
+import com.arielcardales.arielcardales.Entidades.ItemInventario;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Inventario a CSV, mismas columnas que el Excel y el PDF.
+ * Separador ";" y BOM UTF-8 para que Excel en español lo abra bien; los importes van sin formato (1234.50).
+ */
+public class ExportadorCSV {
+
+    private static final char SEP = ';';
+
+    public static void exportarInventario(Iterator<ItemInventario> filas, long total, String ruta,
+                                          AvanceExportacion avance) {
+        boolean completo = false;
+        long escritas = 0;
+
+        try (Writer out = Files.newBufferedWriter(Path.of(ruta), StandardCharsets.UTF_8)) {
+            out.write('\uFEFF');
+            linea(out, "Etiqueta", "Producto", "Variante", "Color", "Talle", "Categoría", "Costo", "Precio", "Stock");
+
+            while (filas.hasNext()) {
+                ItemInventario it = filas.next();
+                linea(out,
+                        texto(it.getEtiquetaProducto()),
+                        texto(it.getNombreProducto()),
+                        it.isEsVariante() ? "S" : "N",
+                        it.isEsVariante() ? texto(it.getColor()) : "",
+                        it.isEsVariante() ? texto(it.getTalle()) : "",
+                        texto(it.getCategoria()),
+                        importe(it.getCosto()),
+                        importe(it.getPrecio()),
+                        String.valueOf(it.getStockOnHand()));
+
+                if (++escritas % AvanceExportacion.CADA_FILAS == 0) {
+                    if (avance.isCancelado()) throw new CancellationException("Exportación cancelada");
+                    avance.filas(escritas, total);
+                }
+            }
+            completo = true;
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Error exportando CSV: " + e.getMessage(), e);
+        } finally {
+            if (!completo) new File(ruta).delete();
+        }
+        avance.filas(escritas, total < 0 ? escritas : total);
+    }
+
+    // -------- helpers --------
+    private static String texto(String s) { return s == null ? "" : s; }
+    private static String importe(BigDecimal b) { return b == null ? "" : b.toPlainString(); }
+
+    private static void linea(Writer out, String... campos) throws IOException {
+        for (int i = 0; i < campos.length; i++) {
+            if (i > 0) out.write(SEP);
+            escribirCampo(out, campos[i]);
+        }
+        out.write("\r\n");
+    }
+
+    // Entre comillas solo si hace falta (separador, comillas o saltos de línea)
+    private static void escribirCampo(Writer out, String v) throws IOException {
+        boolean comillas = false;
+        for (int i = 0; i < v.length() && !comillas; i++) {
+            char c = v.charAt(i);
+            comillas = c == SEP || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!comillas) {
+            out.write(v);
+            return;
+        }
+        out.write('"');
+        out.write(v.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
@@ -3,13 +3,18 @@ package com.arielcardales.arielcardales.Util;
 import com.arielcardales.arielcardales.Entidades.ItemInventario;
 import com.arielcardales.arielcardales.Entidades.Producto;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
+import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.text.NumberFormat;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CancellationException;
 
 public class ExportadorExcel {
 
@@ -48,34 +53,83 @@ public class ExportadorExcel {
         }
     }
 
+    // Filas que SXSSF mantiene en memoria; las anteriores ya se bajaron al archivo temporal
+    private static final int VENTANA_FILAS = 200;
+    // Ancho máximo de columna (en caracteres) al calcularlo por largo de texto
+    private static final int ANCHO_MAX = 60;
+
     /** Árbol a Excel (lo visible) */
     public static void exportarInventarioTree(List<ItemInventario> flat, String ruta) {
-        try (Workbook wb = new XSSFWorkbook(); FileOutputStream out = new FileOutputStream(ruta)) {
+        exportarInventarioTree(flat, ruta, AvanceExportacion.NINGUNO);
+    }
+
+    /**
+     * Árbol a Excel en streaming (SXSSF): memoria constante aunque sean cientos de miles de filas.
+     * Costo, precio y stock van como números (con formato de celda), y el ancho de columna se calcula
+     * con el largo del texto mientras se escribe en vez de autoSizeColumn (que vuelve a medir todas las celdas).
+     * Informa avance cada {@link AvanceExportacion#CADA_FILAS} filas; si se cancela borra el archivo.
+     */
+    public static void exportarInventarioTree(List<ItemInventario> flat, String ruta, AvanceExportacion avance) {
+        exportarInventario(flat.iterator(), flat.size(), ruta, avance);
+    }
+
+    /**
+     * Núcleo del export en streaming: recorre las filas una sola vez, sin necesitar la lista completa
+     * (sirve para un cursor de la base). total = -1 si no se conoce.
+     */
+    public static void exportarInventario(Iterator<ItemInventario> filas, long total, String ruta,
+                                          AvanceExportacion avance) {
+        SXSSFWorkbook wb = new SXSSFWorkbook(VENTANA_FILAS);
+        wb.setCompressTempFiles(true);
+        boolean completo = false;
+
+        try (FileOutputStream out = new FileOutputStream(ruta)) {
             Sheet sh = wb.createSheet("Inventario");
             Styles st = new Styles(wb);
 
             String[] cols = {"Etiqueta","Nombre / Variante","Color","Talle","Categoría","Costo","Precio","Stock"};
+            int[] anchos = new int[cols.length];
             Row rh = sh.createRow(0);
-            for (int i=0;i<cols.length;i++){ Cell c=rh.createCell(i); c.setCellValue(cols[i]); c.setCellStyle(st.header); }
+            for (int i=0;i<cols.length;i++){
+                Cell c=rh.createCell(i); c.setCellValue(cols[i]); c.setCellStyle(st.header);
+                anchos[i] = cols[i].length();
+            }
+            sh.createFreezePane(0, 1);
 
             int r=1;
-            for (ItemInventario it: flat) {
+            while (filas.hasNext()) {
+                ItemInventario it = filas.next();
                 Row row = sh.createRow(r++);
                 String nombre = it.isEsVariante() ? "• " + nullSafe(it.getNombreProducto()) : nullSafe(it.getNombreProducto());
-                set(row,0, nullSafe(it.getEtiquetaProducto()), st.center);
-                set(row,1, nombre, st.wrap);
-                set(row,2, it.isEsVariante()? nullSafe(it.getColor()) : "—", st.center);
-                set(row,3, it.isEsVariante()? nullSafe(it.getTalle()) : "—", st.center);
-                set(row,4, nullSafe(it.getCategoria()), st.text);
-                set(row,5, formatMoney(it.getCosto()), st.money);
-                set(row,6, formatMoney(it.getPrecio()), st.money);
-                set(row,7, String.valueOf(it.getStockOnHand()), st.center);
+                set(row,0, nullSafe(it.getEtiquetaProducto()), st.center, anchos);
+                set(row,1, nombre, st.text, anchos);
+                set(row,2, it.isEsVariante()? nullSafe(it.getColor()) : "—", st.center, anchos);
+                set(row,3, it.isEsVariante()? nullSafe(it.getTalle()) : "—", st.center, anchos);
+                set(row,4, nullSafe(it.getCategoria()), st.text, anchos);
+                setMoney(row,5, it.getCosto(), st, anchos);
+                setMoney(row,6, it.getPrecio(), st, anchos);
+                Cell stock = row.createCell(7);
+                stock.setCellValue(it.getStockOnHand());
+                stock.setCellStyle(st.center);
+
+                if (r % AvanceExportacion.CADA_FILAS == 0) {
+                    if (avance.isCancelado()) throw new CancellationException("Exportación cancelada");
+                    avance.filas(r - 1, total);
+                }
             }
 
-            for (int i=0;i<cols.length;i++) sh.autoSizeColumn(i);
+            for (int i=0;i<cols.length;i++) sh.setColumnWidth(i, (Math.min(anchos[i], ANCHO_MAX) + 3) * 256);
             wb.write(out);
+            avance.filas(r - 1, total < 0 ? r - 1 : total);
+            completo = true;
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Error exportando Excel: " + e.getMessage(), e);
+        } finally {
+            wb.dispose();   // borra los temporales de SXSSF
+            try { wb.close(); } catch (IOException ignored) {}
+            if (!completo) new File(ruta).delete();
         }
     }
 
@@ -89,6 +143,22 @@ public class ExportadorExcel {
         c.setCellStyle(st);
     }
 
+    // Igual que set, y de paso lleva el texto más largo de cada columna
+    private static void set(Row r, int col, String v, CellStyle st, int[] anchos){
+        set(r, col, v, st);
+        if (v.length() > anchos[col]) anchos[col] = v.length();
+    }
+
+    // Importe como número con formato moneda ("—" si no hay)
+    private static void setMoney(Row r, int col, BigDecimal b, Styles st, int[] anchos){
+        if (b == null) { set(r, col, "—", st.center, anchos); return; }
+        Cell c = r.createCell(col);
+        c.setCellValue(b.doubleValue());
+        c.setCellStyle(st.money);
+        int largo = b.toPlainString().length() + 6;   // "$ " y separadores de miles
+        if (largo > anchos[col]) anchos[col] = largo;
+    }
+
     private static class Styles {
         final CellStyle header, text, wrap, center, money;
         Styles(Workbook wb){
@@ -7,6 +7,7 @@ import com.lowagie.text.Font;
 import com.lowagie.text.pdf.*;
 
 import java.awt.*;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.text.NumberFormat;
 import java.time.LocalDateTime;
@@ -14,6 +15,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CancellationException;
 
 public class ExportadorPDF {
 
@@ -22,7 +24,15 @@ public class ExportadorPDF {
     private static final Font FONT_CELL   = new Font(Font.HELVETICA, 10, Font.NORMAL, Color.BLACK);
     private static final Color ZEBRA_1    = new Color(0xFA, 0xF1, 0xE1);
     private static final Color ZEBRA_2    = new Color(0xF1, 0xE1, 0xCA);
+    private static final Font FONT_SUBTITULO = new Font(Font.HELVETICA, 9, Font.ITALIC, Color.DARK_GRAY);
+    private static final Font FONT_PIE    = new Font(Font.HELVETICA, 8, Font.ITALIC, Color.GRAY);
+    private static final Color CUERO_HEADER = new Color(0xCF, 0xA9, 0x71); // tono cuero cabecera
     private static final NumberFormat MONEDA_AR = NumberFormat.getCurrencyInstance(new Locale("es", "AR"));
+    // NumberFormat no es thread-safe y la exportación del árbol corre en segundo plano: uno por hilo
+    private static final ThreadLocal<NumberFormat> MONEDA =
+            ThreadLocal.withInitial(() -> NumberFormat.getCurrencyInstance(new Locale("es", "AR")));
+    // Filas por tanda al bajar la tabla al archivo (unas 2 páginas apaisadas)
+    private static final int FILAS_POR_TANDA = 50;
 
     /** ========= Exporta lista plana de Producto ========= */
     public static void exportarProductos(List<Producto> productos, String ruta) {
@@ -66,8 +76,28 @@ public class ExportadorPDF {
     public static void exportarInventarioTree(ItemInventario rootValue,
                                               List<ItemInventario> inOrderFlat,
                                               String ruta) {
+        exportarInventarioTree(rootValue, inOrderFlat, ruta, AvanceExportacion.NINGUNO);
+    }
+
+    /**
+     * Igual, pero la tabla se va bajando al archivo de a {@link #FILAS_POR_TANDA} filas
+     * (setComplete(false)): en memoria queda solo la tanda actual y el encabezado se repite en cada página.
+     * Informa avance y revisa la cancelación por fila escrita; si se cancela borra el archivo.
+     */
+    public static void exportarInventarioTree(ItemInventario rootValue,
+                                              List<ItemInventario> inOrderFlat,
+                                              String ruta,
+                                              AvanceExportacion avance) {
+        exportarInventario(inOrderFlat.iterator(), inOrderFlat.size(), ruta, avance);
+    }
+
+    /** Núcleo del export por tandas: recorre las filas una sola vez (sirve para un cursor de la base). total = -1 si no se conoce. */
+    public static void exportarInventario(Iterator<ItemInventario> filas, long total, String ruta,
+                                          AvanceExportacion avance) {
+        boolean completo = false;
+        Document doc = new Document(PageSize.A4.rotate(), 24, 24, 50, 36);
+
         try (FileOutputStream out = new FileOutputStream(ruta)) {
-            Document doc = new Document(PageSize.A4.rotate(), 24, 24, 50, 36);
             PdfWriter writer = PdfWriter.getInstance(doc, out);
             agregarHeaderFooter(writer);
             doc.open();
@@ -76,7 +106,7 @@ public class ExportadorPDF {
             Paragraph sub = new Paragraph(
                     "Generado: " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) +
                             "  •  Moneda: ARS",
-                    new Font(Font.HELVETICA, 9, Font.ITALIC, Color.DARK_GRAY)
+                    FONT_SUBTITULO
             );
             sub.setSpacingAfter(10f);
             doc.add(sub);
@@ -84,6 +114,8 @@ public class ExportadorPDF {
             PdfPTable table = new PdfPTable(8);
             table.setWidthPercentage(100);
             table.setWidths(new float[]{10f, 28f, 10f, 10f, 18f, 10f, 10f, 6f});
+            table.setHeaderRows(1);      // se repite arriba de cada página
+            table.setComplete(false);    // permite agregarla por partes
 
             addHeader(table, "Etiqueta");
             addHeader(table, "Nombre / Variante");
@@ -94,8 +126,12 @@ public class ExportadorPDF {
             addHeader(table, "Precio");
             addHeader(table, "Stock");
 
+            NumberFormat moneda = MONEDA.get();
             int row = 0;
-            for (ItemInventario it : inOrderFlat) {
+            while (filas.hasNext()) {
+                if (avance.isCancelado()) throw new CancellationException("Exportación cancelada");
+                ItemInventario it = filas.next();
+
                 Color bg = (row++ % 2 == 0) ? ZEBRA_1 : ZEBRA_2;
 
                 String etiqueta = safe(it.getEtiquetaProducto());
@@ -103,8 +139,8 @@ public class ExportadorPDF {
                 String categoria= safe(it.getCategoria());
                 String color    = it.isEsVariante() ? safe(it.getColor()) : "—";
                 String talle    = it.isEsVariante() ? safe(it.getTalle()) : "—";
-                String costo    = it.getCosto()!=null ? MONEDA_AR.format(it.getCosto()) : "—";
-                String precio   = it.getPrecio()!=null ? MONEDA_AR.format(it.getPrecio()) : "—";
+                String costo    = it.getCosto()!=null ? moneda.format(it.getCosto()) : "—";
+                String precio   = it.getPrecio()!=null ? moneda.format(it.getPrecio()) : "—";
                 String stock    = String.valueOf(it.getStockOnHand());
 
                 String nombreCol = it.isEsVariante() ? "• " + nombre : nombre;
@@ -117,12 +153,28 @@ public class ExportadorPDF {
                 addCell(table, costo,    bg, Element.ALIGN_RIGHT);
                 addCell(table, precio,   bg, Element.ALIGN_RIGHT);
                 addCell(table, stock,    bg, Element.ALIGN_CENTER);
+
+                // Baja a disco las filas completas; la tabla queda solo con el encabezado
+                if (row % FILAS_POR_TANDA == 0) {
+                    doc.add(table);
+                    avance.filas(row, total);
+                }
             }
 
+            table.setComplete(true);
             doc.add(table);
             doc.close();
+            avance.filas(row, total < 0 ? row : total);
+            completo = true;
+        } catch (CancellationException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Error exportando PDF: " + e.getMessage(), e);
+        } finally {
+            if (doc.isOpen()) {
+                try { doc.close(); } catch (RuntimeException ignored) {}
+            }
+            if (!completo) new File(ruta).delete();
         }
     }
 
@@ -136,7 +188,7 @@ public class ExportadorPDF {
 
     private static void addHeader(PdfPTable t, String text) {
         PdfPCell c = new PdfPCell(new Phrase(text, FONT_HEADER));
-        c.setBackgroundColor(new Color(0xCF, 0xA9, 0x71)); // tono cuero cabecera
+        c.setBackgroundColor(CUERO_HEADER);
         c.setHorizontalAlignment(Element.ALIGN_CENTER);
         c.setPadding(6f);
         t.addCell(c);
@@ -158,12 +210,11 @@ public class ExportadorPDF {
 
     private static void agregarHeaderFooter(PdfWriter writer) {
         writer.setPageEvent(new PdfPageEventHelper() {
-            final Font f = new Font(Font.HELVETICA, 8, Font.ITALIC, Color.GRAY);
             @Override
             public void onEndPage(PdfWriter w, Document d) {
                 PdfContentByte cb = w.getDirectContent();
-                Phrase left = new Phrase("Inventario Ariel", f);
-                Phrase right = new Phrase("Página " + w.getPageNumber(), f);
+                Phrase left = new Phrase("Inventario Ariel", FONT_PIE);
+                Phrase right = new Phrase("Página " + w.getPageNumber(), FONT_PIE);
                 ColumnText.showTextAligned(cb, Element.ALIGN_LEFT,  left,  d.left(),  d.bottom() - 10, 0);
                 ColumnText.showTextAligned(cb, Element.ALIGN_RIGHT, right, d.right(), d.bottom() - 10, 0);
             }
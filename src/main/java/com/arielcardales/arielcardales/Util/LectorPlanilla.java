@@ -0,0 +1,163 @@
+package com.arielcardales.arielcardales.Util;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Lee planillas fila por fila sin cargarlas enteras: CSV/TSV (separador ; , o tab, se detecta en la primera línea)
+ * y XLSX (primera hoja, con el lector por eventos de POI).
+ * Cada fila llega como lista de textos; las celdas vacías del medio vienen como "".
+ */
+public final class LectorPlanilla {
+
+    private LectorPlanilla() {}
+
+    public static void leer(Path archivo, Consumer<List<String>> fila) throws IOException {
+        String nombre = archivo.getFileName().toString().toLowerCase();
+        if (nombre.endsWith(".xlsx")) {
+            leerXlsx(archivo, fila);
+        } else {
+            leerTexto(archivo, fila);
+        }
+    }
+
+    // ---------------- CSV / TSV ----------------
+
+    private static void leerTexto(Path archivo, Consumer<List<String>> fila) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            String linea = in.readLine();
+            if (linea == null) return;
+            if (!linea.isEmpty() && linea.charAt(0) == '\uFEFF') linea = linea.substring(1);   // BOM de Excel
+            char sep = detectarSeparador(linea);
+
+            List<String> campos = new ArrayList<>();
+            StringBuilder campo = new StringBuilder();
+            boolean entreComillas = false;
+
+            while (linea != null) {
+                for (int i = 0; i < linea.length(); i++) {
+                    char c = linea.charAt(i);
+                    if (entreComillas) {
+                        if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                            campo.append('"');
+                            i++;
+                        } else if (c == '"') {
+                            entreComillas = false;
+                        } else {
+                            campo.append(c);
+                        }
+                    } else if (c == '"') {
+                        entreComillas = true;
+                    } else if (c == sep) {
+                        campos.add(campo.toString());
+                        campo.setLength(0);
+                    } else {
+                        campo.append(c);
+                    }
+                }
+
+                if (entreComillas) {
+                    campo.append('\n');   // salto de línea dentro de un campo entre comillas
+                } else {
+                    campos.add(campo.toString());
+                    campo.setLength(0);
+                    if (!esVacia(campos)) fila.accept(campos);
+                    campos = new ArrayList<>();
+                }
+                linea = in.readLine();
+            }
+        }
+    }
+
+    private static char detectarSeparador(String encabezado) {
+        char[] candidatos = {';', '\t', ','};
+        char mejor = ';';
+        long max = 0;
+        for (char c : candidatos) {
+            long n = encabezado.chars().filter(x -> x == c).count();
+            if (n > max) { max = n; mejor = c; }
+        }
+        return mejor;
+    }
+
+    private static boolean esVacia(List<String> campos) {
+        for (String c : campos) if (!c.isBlank()) return false;
+        return true;
+    }
+
+    // ---------------- XLSX ----------------
+
+    private static void leerXlsx(Path archivo, Consumer<List<String>> fila) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(archivo.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable textos = new ReadOnlySharedStringsTable(pkg);
+            StylesTable estilos = reader.getStylesTable();
+
+            Iterator<InputStream> hojas = reader.getSheetsData();
+            if (!hojas.hasNext()) return;
+
+            try (InputStream hoja = hojas.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(
+                        estilos, null, textos, new FilaXlsx(fila), new DataFormatter(), false));
+                parser.parse(new InputSource(hoja));
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("No se pudo leer la planilla: " + e.getMessage(), e);
+        }
+    }
+
+    // Arma cada fila con las celdas en su columna (las celdas vacías no llegan en el XML)
+    private static final class FilaXlsx implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Consumer<List<String>> destino;
+        private List<String> actual;
+
+        FilaXlsx(Consumer<List<String>> destino) { this.destino = destino; }
+
+        @Override
+        public void startRow(int rowNum) { actual = new ArrayList<>(); }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (!esVacia(actual)) destino.accept(actual);
+        }
+
+        @Override
+        public void cell(String ref, String valor, XSSFComment comentario) {
+            int col = columna(ref);
+            while (actual.size() < col) actual.add("");
+            actual.add(valor == null ? "" : valor);
+        }
+
+        // "C12" → 2
+        private static int columna(String ref) {
+            int col = 0;
+            for (int i = 0; i < ref.length() && Character.isLetter(ref.charAt(i)); i++) {
+                col = col * 26 + (ref.charAt(i) - 'A' + 1);
+            }
+            return col - 1;
+        }
+    }
+}
@@ -5,83 +5,100 @@ import com.arielcardales.arielcardales.Entidades.ItemInventario;
 import com.arielcardales.arielcardales.Entidades.Producto;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Timestamp;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
 
+/**
+ * Planes de lectura de filas (ver {@link PlanFila}): cada uno declara sus columnas una vez y resuelve
+ * las posiciones la primera vez que se usa. En un bucle: {@code PLAN.sobre(rs)} antes y {@code leer()} por fila.
+ * Los get* de siempre leen una fila suelta con el mismo plan.
+ */
 public class Mapper {
-// Vista vInventario
-    public static Producto getProducto(ResultSet rs) throws SQLException {
-        Producto p = new Producto();
-        p.setId(rs.getLong("id"));
-        p.setEtiqueta(rs.getString("etiqueta"));
-        p.setNombre(rs.getString("nombre"));
-        p.setDescripcion(rs.getString("descripcion"));
-        p.setCategoria(rs.getString("categoria")); // string legible
-        p.setUnidad(rs.getString("unidad"));       // string legible
-        p.setPrecio(rs.getBigDecimal("precio"));
-        p.setStockOnHand(rs.getInt("stockOnHand"));
-        return p;
+
+    // Vista vInventario
+    public static final PlanFila<Producto> PRODUCTO = PlanFila.de(Producto::new)
+            .largo("id", Producto::setId)
+            .texto("etiqueta", Producto::setEtiqueta)
+            .texto("nombre", Producto::setNombre)
+            .texto("descripcion", Producto::setDescripcion)
+            .texto("categoria", Producto::setCategoria)   // string legible
+            .texto("unidad", Producto::setUnidad)         // string legible
+            .decimal("precio", Producto::setPrecio)
+            .entero("stockOnHand", Producto::setStockOnHand)
+            .construir();
+
+    // Tabla producto (para ABM)
+    public static final PlanFila<Producto> PRODUCTO_BASICO = PlanFila.de(Producto::new)
+            .largo("id", Producto::setId)
+            .texto("etiqueta", Producto::setEtiqueta)
+            .texto("nombre", Producto::setNombre)
+            .texto("descripcion", Producto::setDescripcion)
+            .largo("categoriaId", Producto::setCategoriaId)
+            .largo("unidadId", Producto::setUnidadId)
+            .decimal("precio", Producto::setPrecio)
+            .entero("stockOnHand", Producto::setStockOnHand)
+            .construir();
+
+    // Fila de producto de vInventario_variantes (sin variante).
+    // Con los setters: las properties de ItemInventario se crean recién cuando la tabla las pide
+    public static final PlanFila<ItemInventario> ITEM_INVENTARIO_BASE =
+            columnasItem(PlanFila.de(ItemInventario::new)).construir();
+
+    // Fila de variante: las mismas columnas más variante_id, en una sola pasada
+    public static final PlanFila<ItemInventario> ITEM_INVENTARIO_VARIANTE =
+            columnasItem(PlanFila.de(Mapper::nuevaVariante))
+                    .largoONull("variante_id", ItemInventario::setVarianteId)   // no null aquí
+                    .construir();
+
+    // Categoria (parentId null = categoría raíz)
+    public static final PlanFila<Categoria> CATEGORIA = PlanFila.de(Categoria::new)
+            .largo("id", Categoria::setId)
+            .texto("nombre", Categoria::setNombre)
+            .largoONull("parentId", Categoria::setParentId)
+            .construir();
+
+    private static PlanFila.Constructor<ItemInventario> columnasItem(PlanFila.Constructor<ItemInventario> c) {
+        return c.largo("producto_id", ItemInventario::setProductoId)
+                .texto("producto_etiqueta", ItemInventario::setEtiquetaProducto)
+                .texto("producto_nombre", ItemInventario::setNombreProducto)
+                .texto("categoria", ItemInventario::setCategoria)
+                .texto("unidad", ItemInventario::setUnidad)
+                .texto("color", ItemInventario::setColor)   // vendrá "-" en la vista
+                .texto("talle", ItemInventario::setTalle)   // vendrá "-" en la vista
+                .decimal("precio", ItemInventario::setPrecio)
+                .decimal("costo", ItemInventario::setCosto)
+                .entero("stockOnHand", ItemInventario::setStockOnHand)
+                .booleano("active", ItemInventario::setActive)
+                .fecha("updatedAt", ItemInventario::setUpdatedAt);
     }
 
-    public static ItemInventario getItemInventarioBase(ResultSet rs) throws SQLException {
+    private static ItemInventario nuevaVariante() {
         ItemInventario it = new ItemInventario();
-        it.productoIdProperty().set(rs.getLong("producto_id"));
-        it.varianteIdProperty().set(null);
-        it.etiquetaProductoProperty().set(rs.getString("producto_etiqueta"));
-        it.nombreProductoProperty().set(rs.getString("producto_nombre"));
-        it.categoriaProperty().set(rs.getString("categoria"));
-        it.unidadProperty().set(rs.getString("unidad"));
-        it.colorProperty().set(rs.getString("color"));  // vendrá "-" en la vista
-        it.talleProperty().set(rs.getString("talle"));  // vendrá "-" en la vista
-        it.precioProperty().set(rs.getBigDecimal("precio"));
-        it.costoProperty().set(rs.getBigDecimal("costo"));
-        it.stockOnHandProperty().set(rs.getInt("stockOnHand"));
-        it.activeProperty().set(rs.getBoolean("active"));
-        it.updatedAtProperty().set(rs.getTimestamp("updatedAt").toLocalDateTime());
-        it.setEsVariante(false);
+        it.setEsVariante(true);
         return it;
     }
 
+    public static Producto getProducto(ResultSet rs) throws SQLException {
+        return PRODUCTO.leer(rs);
+    }
+
+    public static ItemInventario getItemInventarioBase(ResultSet rs) throws SQLException {
+        return ITEM_INVENTARIO_BASE.leer(rs);
+    }
+
     public static ItemInventario getItemInventarioVariante(ResultSet rs) throws SQLException {
-        ItemInventario it = getItemInventarioBase(rs);
-        it.varianteIdProperty().set(rs.getLong("variante_id")); // no null aquí
-        it.setEsVariante(true);
-        return it;
+        return ITEM_INVENTARIO_VARIANTE.leer(rs);
     }
 
-    // Tabla producto (para ABM)
     public static Producto getProductoBasico(ResultSet rs) throws SQLException {
-        Producto p = new Producto();
-        p.setId(rs.getLong("id"));
-        p.setEtiqueta(rs.getString("etiqueta"));
-        p.setNombre(rs.getString("nombre"));
-        p.setDescripcion(rs.getString("descripcion"));
-        p.setCategoriaId(rs.getLong("categoriaId"));
-        p.setUnidadId(rs.getLong("unidadId"));
-        p.setPrecio(rs.getBigDecimal("precio"));
-        //p.setCosto(rs.getBigDecimal("costo"));
-        p.setStockOnHand(rs.getInt("stockOnHand"));
-        //p.setActive(rs.getBoolean("active"));
-        //p.setUpdatedAt(rs.getTimestamp("updatedAt").toInstant());
-        return p;
+        return PRODUCTO_BASICO.leer(rs);
     }
 
-    // Categoria
     public static Categoria getCategoria(ResultSet rs) throws SQLException {
-        Categoria c = new Categoria();
-        c.setId(rs.getLong("id"));
-        c.setNombre(rs.getString("nombre"));
-        long parent = rs.getLong("parentId");
-        c.setParentId(rs.wasNull() ? null : parent);
-        return c;
+        return CATEGORIA.leer(rs);
     }
 
-
     public static Categoria getCategoriaConPadre(ResultSet rs) throws SQLException {
         Categoria c = getCategoria(rs);
         //c.setParentNombre(rs.getString("parentNombre")); // extra para la UI
         return c;
     }
-
 }
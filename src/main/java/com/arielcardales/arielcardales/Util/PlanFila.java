@@ -0,0 +1,186 @@
+package com.arielcardales.arielcardales.Util;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Plan para pasar filas de un ResultSet a objetos: cada columna con su setter tipado.
+ *
+ * - Se declara una vez (constante, ver {@link Mapper}) con las columnas que lee.
+ * - La primera vez que se usa con una consulta busca las posiciones con findColumn; las reusa en todas
+ *   las filas y en las llamadas siguientes mientras el ResultSet traiga las mismas columnas en el mismo orden
+ *   (si cambian, las vuelve a buscar).
+ * - Los valores se leen por posición y sin boxing (getLong/getInt + wasNull donde hace falta).
+ *
+ *   PlanFila.Lector<Categoria> lector = Mapper.CATEGORIA.sobre(rs);
+ *   while (rs.next()) out.add(lector.leer());
+ *
+ * Se puede usar desde varios hilos.
+ */
+public final class PlanFila<T> {
+
+    // Lee una columna (por posición) y la pasa al objeto
+    @FunctionalInterface
+    private interface Campo<T> {
+        void leer(ResultSet rs, int columna, T destino) throws SQLException;
+    }
+
+    // Posiciones resueltas para un juego de columnas (etiquetas tal como las da el ResultSet)
+    private record Resuelto(String[] etiquetas, int[] posiciones) {}
+
+    private final Supplier<T> nuevo;
+    private final String[] columnas;
+    private final Campo<T>[] campos;
+    private volatile Resuelto resuelto;
+
+    private PlanFila(Constructor<T> c) {
+        this.nuevo = c.nuevo;
+        this.columnas = c.columnas.toArray(new String[0]);
+        // No existe new Campo<T>[0]: el arreglo se crea raw y se usa solo con los Campo<T> del constructor
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Campo<T>[] campos = c.campos.toArray(new Campo[0]);
+        this.campos = campos;
+    }
+
+    /** Empieza un plan: {@code nuevo} crea el objeto vacío de cada fila. */
+    public static <T> Constructor<T> de(Supplier<T> nuevo) {
+        return new Constructor<>(nuevo);
+    }
+
+    /** Lector de filas para este ResultSet (resuelve las posiciones una vez). */
+    public Lector<T> sobre(ResultSet rs) throws SQLException {
+        return new Lector<>(nuevo, campos, rs, posiciones(rs));
+    }
+
+    /** Lee la fila actual (para una fila suelta; en un bucle conviene {@link #sobre}). */
+    public T leer(ResultSet rs) throws SQLException {
+        return sobre(rs).leer();
+    }
+
+    /** Lee todas las filas que quedan en el ResultSet. */
+    public List<T> leerTodas(ResultSet rs) throws SQLException {
+        Lector<T> lector = sobre(rs);
+        List<T> out = new ArrayList<>();
+        while (rs.next()) out.add(lector.leer());
+        return out;
+    }
+
+    /** Columnas que lee el plan, en orden. */
+    public List<String> columnas() {
+        return List.of(columnas);
+    }
+
+    private int[] posiciones(ResultSet rs) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        Resuelto r = resuelto;
+        if (r != null && mismasColumnas(r.etiquetas(), md)) return r.posiciones();
+
+        int[] posiciones = new int[columnas.length];
+        for (int i = 0; i < columnas.length; i++) posiciones[i] = rs.findColumn(columnas[i]);
+
+        String[] etiquetas = new String[md.getColumnCount()];
+        for (int i = 0; i < etiquetas.length; i++) etiquetas[i] = md.getColumnLabel(i + 1);
+        resuelto = new Resuelto(etiquetas, posiciones);
+        return posiciones;
+    }
+
+    private static boolean mismasColumnas(String[] etiquetas, ResultSetMetaData md) throws SQLException {
+        if (md.getColumnCount() != etiquetas.length) return false;
+        for (int i = 0; i < etiquetas.length; i++) {
+            if (!etiquetas[i].equals(md.getColumnLabel(i + 1))) return false;
+        }
+        return true;
+    }
+
+    /** Lee filas de un ResultSet con las posiciones ya resueltas. */
+    public static final class Lector<T> {
+        private final Supplier<T> nuevo;
+        private final Campo<T>[] campos;
+        private final ResultSet rs;
+        private final int[] posiciones;
+
+        private Lector(Supplier<T> nuevo, Campo<T>[] campos, ResultSet rs, int[] posiciones) {
+            this.nuevo = nuevo;
+            this.campos = campos;
+            this.rs = rs;
+            this.posiciones = posiciones;
+        }
+
+        /** Objeto de la fila actual. */
+        public T leer() throws SQLException {
+            T t = nuevo.get();
+            for (int i = 0; i < campos.length; i++) campos[i].leer(rs, posiciones[i], t);
+            return t;
+        }
+    }
+
+    /** Columnas del plan, una por método según el tipo del setter. */
+    public static final class Constructor<T> {
+        private final Supplier<T> nuevo;
+        private final List<String> columnas = new ArrayList<>();
+        private final List<Campo<T>> campos = new ArrayList<>();
+
+        private Constructor(Supplier<T> nuevo) {
+            this.nuevo = nuevo;
+        }
+
+        public Constructor<T> texto(String columna, BiConsumer<T, String> setter) {
+            return campo(columna, (rs, i, t) -> setter.accept(t, rs.getString(i)));
+        }
+
+        /** SQL NULL queda en 0. */
+        public Constructor<T> entero(String columna, ObjIntConsumer<T> setter) {
+            return campo(columna, (rs, i, t) -> setter.accept(t, rs.getInt(i)));
+        }
+
+        /** SQL NULL queda en 0. */
+        public Constructor<T> largo(String columna, ObjLongConsumer<T> setter) {
+            return campo(columna, (rs, i, t) -> setter.accept(t, rs.getLong(i)));
+        }
+
+        /** SQL NULL queda en null. */
+        public Constructor<T> largoONull(String columna, BiConsumer<T, Long> setter) {
+            return campo(columna, (rs, i, t) -> {
+                long v = rs.getLong(i);
+                setter.accept(t, rs.wasNull() ? null : v);
+            });
+        }
+
+        public Constructor<T> decimal(String columna, BiConsumer<T, BigDecimal> setter) {
+            return campo(columna, (rs, i, t) -> setter.accept(t, rs.getBigDecimal(i)));
+        }
+
+        /** SQL NULL queda en false. */
+        public Constructor<T> booleano(String columna, BiConsumer<T, Boolean> setter) {
+            return campo(columna, (rs, i, t) -> setter.accept(t, rs.getBoolean(i)));
+        }
+
+        /** Timestamp a LocalDateTime (SQL NULL queda en null). */
+        public Constructor<T> fecha(String columna, BiConsumer<T, LocalDateTime> setter) {
+            return campo(columna, (rs, i, t) -> {
+                Timestamp ts = rs.getTimestamp(i);
+                setter.accept(t, ts == null ? null : ts.toLocalDateTime());
+            });
+        }
+
+        public PlanFila<T> construir() {
+            return new PlanFila<>(this);
+        }
+
+        private Constructor<T> campo(String columna, Campo<T> campo) {
+            columnas.add(columna);
+            campos.add(campo);
+            return this;
+        }
+    }
+}
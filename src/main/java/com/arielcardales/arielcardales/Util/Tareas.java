@@ -0,0 +1,117 @@
+package com.arielcardales.arielcardales.Util;
+
+import com.arielcardales.arielcardales.DAO.Database;
+import javafx.application.Platform;
+
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Ejecutor único de la app para el trabajo en segundo plano, sobre hilos virtuales (Java 21).
+ *
+ * - Lo que usa la base ({@link #enBase}, {@link #ejecutar}) corre con un permiso de un semáforo del tamaño
+ *   del pool de Hikari: si hay más pedidos que conexiones, esperan acá y no adentro de Hikari
+ *   (donde cuentan para el connectionTimeout y se ven como "esperando" en el diagnóstico).
+ * - El permiso es por hilo: un DAO que llama a otro dentro de la misma tarea no pide otro.
+ * - Lo que no toca la base (descargas, esperas) va por {@link #FONDO}, sin permiso.
+ * - {@link #FX} y {@link #alTerminar} vuelven al FX thread con el resultado.
+ *
+ * Los hilos virtuales son daemon: no frenan el cierre de la app.
+ */
+public final class Tareas {
+
+    /** Llamada a la base (un método de DAO o de servicio) que puede tirar excepciones. */
+    @FunctionalInterface
+    public interface Llamada<T> {
+        T llamar() throws Exception;
+    }
+
+    /** Hilos virtuales sin permiso de base: HTTP, archivos, esperas. */
+    public static final ExecutorService FONDO = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("tarea-", 0).factory());
+
+    /** Ejecuta en el FX thread (directo si ya se está en él). */
+    public static final Executor FX = Tareas::enFx;
+
+    // Un permiso por conexión del pool (fair: se atiende en orden de llegada)
+    private static final Semaphore PERMISOS = new Semaphore(Database.tamanioPool(), true);
+    private static final ThreadLocal<Boolean> CON_PERMISO = new ThreadLocal<>();
+
+    private Tareas() {}
+
+    /** Corre la llamada en un hilo virtual, con permiso de base. */
+    public static <T> CompletableFuture<T> enBase(Llamada<T> llamada) {
+        CompletableFuture<T> futuro = new CompletableFuture<>();
+        FONDO.execute(() -> {
+            try {
+                futuro.complete(conPermiso(llamada));
+            } catch (Throwable e) {
+                futuro.completeExceptionally(e);
+            }
+        });
+        return futuro;
+    }
+
+    /**
+     * Corre una tarea (normalmente un {@code javafx.concurrent.Task} que consulta la base) en un hilo virtual,
+     * con permiso de base. Si se cancela mientras espera el permiso, no llega a correr.
+     */
+    public static void ejecutar(Runnable tarea) {
+        FONDO.execute(() -> {
+            try {
+                conPermiso(() -> {
+                    tarea.run();
+                    return null;
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();   // el Task ya quedó cancelado
+            } catch (Exception e) {
+                e.printStackTrace();                  // Task.run() no tira: no debería pasar
+            }
+        });
+    }
+
+    /**
+     * Corre la llamada en el hilo actual, con permiso de base (espera si no hay).
+     * Para los hilos propios (escritura diferida, compactador...) que también usan el pool.
+     */
+    public static <T> T conPermiso(Llamada<T> llamada) throws Exception {
+        if (CON_PERMISO.get() != null) return llamada.llamar();   // llamada anidada: ya tiene el suyo
+
+        PERMISOS.acquire();
+        CON_PERMISO.set(Boolean.TRUE);
+        try {
+            return llamada.llamar();
+        } finally {
+            CON_PERMISO.remove();
+            PERMISOS.release();
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // FX thread
+    // ---------------------------------------------------------------
+
+    public static void enFx(Runnable r) {
+        if (Platform.isFxApplicationThread()) r.run();
+        else Platform.runLater(r);
+    }
+
+    /**
+     * Entrega el resultado en el FX thread: {@code ok} con el valor o {@code error} con la causa real
+     * (sin el CompletionException que agrega CompletableFuture).
+     */
+    public static <T> void alTerminar(CompletableFuture<T> futuro, Consumer<? super T> ok, Consumer<Throwable> error) {
+        futuro.whenCompleteAsync((valor, e) -> {
+            if (e == null) ok.accept(valor);
+            else error.accept(causa(e));
+        }, FX);
+    }
+
+    public static Throwable causa(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e;
+    }
+}
@@ -0,0 +1,164 @@
+package com.arielcardales.arielcardales.Util;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TreeItem;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * TreeItem con filtro: guarda todos sus hijos en una lista fuente y en getChildren()
+ * deja solo los visibles según un predicado.
+ *
+ * - Un nodo queda visible si cumple el predicado o si tiene algún hijo visible.
+ * - Cambiar el predicado NO recrea nodos: se quitan/agregan los mismos TreeItem,
+ *   así se conservan expansión y selección, y el TreeTableView solo recibe los cambios puntuales.
+ * - Los hijos se agregan/quitan siempre en {@link #getFuente()} (o con {@link #hijos(TreeItem)}).
+ */
+public class TreeItemFiltrable<T> extends TreeItem<T> {
+
+    // Por encima de esta cantidad de cambios conviene un solo setAll que muchos add/remove
+    private static final int MAX_CAMBIOS_PUNTUALES = 64;
+
+    private final ObservableList<TreeItem<T>> fuente = FXCollections.observableArrayList();
+    private Predicate<T> predicado;
+    private boolean escuchandoFuente;
+
+    public TreeItemFiltrable() {
+        this(null);
+    }
+
+    public TreeItemFiltrable(T value) {
+        super(value);
+    }
+
+    /** Todos los hijos (visibles o no). Es la lista que hay que modificar. */
+    public ObservableList<TreeItem<T>> getFuente() {
+        // El listener se registra con el primer acceso y no en el constructor (no publica 'this' a medio construir).
+        // Toda modificación pasa por acá, así que ningún cambio queda sin replicar
+        if (!escuchandoFuente) {
+            fuente.addListener(this::onCambioFuente);
+            escuchandoFuente = true;
+        }
+        return fuente;
+    }
+
+    public Predicate<T> getPredicado() { return predicado; }
+
+    /** Aplica el predicado a todo el subárbol (null = mostrar todo). */
+    public void setPredicado(Predicate<T> predicado) {
+        this.predicado = predicado;
+        refiltrar();
+    }
+
+    /** Lista a modificar para agregar/quitar hijos, sea o no un nodo filtrable. */
+    public static <T> ObservableList<TreeItem<T>> hijos(TreeItem<T> nodo) {
+        return nodo instanceof TreeItemFiltrable<T> f ? f.getFuente() : nodo.getChildren();
+    }
+
+    /** Aplica el predicado si el nodo es filtrable (no hace nada si no lo es). */
+    public static <T> void filtrar(TreeItem<T> nodo, Predicate<T> predicado) {
+        if (nodo instanceof TreeItemFiltrable<T> f) f.setPredicado(predicado);
+    }
+
+    // ---------------------------------------------------------------
+
+    private void refiltrar() {
+        if (fuente.isEmpty()) return;
+
+        List<TreeItem<T>> visibles = new ArrayList<>(fuente.size());
+        for (TreeItem<T> hijo : fuente) {
+            if (hijo instanceof TreeItemFiltrable<T> f) {
+                f.predicado = predicado;
+                f.refiltrar();          // primero los nietos: definen si el hijo queda
+            }
+            if (esVisible(hijo)) visibles.add(hijo);
+        }
+        sincronizar(visibles);
+    }
+
+    private boolean esVisible(TreeItem<T> hijo) {
+        if (predicado == null) return true;
+        return predicado.test(hijo.getValue()) || !hijo.getChildren().isEmpty();
+    }
+
+    /**
+     * Lleva getChildren() a la lista de visibles con el mínimo de cambios.
+     * Ambas listas son subsecuencias de la fuente en el mismo orden, así que alcanza con una pasada.
+     */
+    private void sincronizar(List<TreeItem<T>> visibles) {
+        ObservableList<TreeItem<T>> actual = super.getChildren();
+
+        // Casos comunes sin diff: todo oculto, nada visible antes, o sin cambios
+        if (visibles.isEmpty()) {
+            if (!actual.isEmpty()) actual.clear();
+            return;
+        }
+        if (actual.isEmpty()) {
+            actual.setAll(visibles);
+            return;
+        }
+        if (mismosElementos(actual, visibles)) return;
+
+        Set<TreeItem<T>> setVisibles = Collections.newSetFromMap(new IdentityHashMap<>());
+        setVisibles.addAll(visibles);
+        int quitados = 0;
+        for (TreeItem<T> t : actual) if (!setVisibles.contains(t)) quitados++;
+        int agregados = visibles.size() - (actual.size() - quitados);
+
+        if (quitados + agregados > MAX_CAMBIOS_PUNTUALES) {
+            actual.setAll(visibles);
+            return;
+        }
+
+        int idx = 0;
+        for (TreeItem<T> h : visibles) {
+            while (idx < actual.size() && !setVisibles.contains(actual.get(idx))) actual.remove(idx);
+            if (idx < actual.size() && actual.get(idx) == h) {
+                idx++;
+            } else {
+                actual.add(idx++, h);
+            }
+        }
+        if (idx < actual.size()) actual.remove(idx, actual.size());
+    }
+
+    private static <T> boolean mismosElementos(List<TreeItem<T>> a, List<TreeItem<T>> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) if (a.get(i) != b.get(i)) return false;
+        return true;
+    }
+
+    private void onCambioFuente(ListChangeListener.Change<? extends TreeItem<T>> c) {
+        if (predicado != null) {
+            refiltrarSoloEsteNivel();
+            return;
+        }
+
+        // Sin filtro getChildren() es un espejo de la fuente: se replica el cambio tal cual
+        ObservableList<TreeItem<T>> actual = super.getChildren();
+        while (c.next()) {
+            if (c.wasPermutated()) {
+                actual.setAll(fuente);
+                return;
+            }
+            if (c.wasRemoved()) actual.remove(c.getFrom(), c.getFrom() + c.getRemovedSize());
+            if (c.wasAdded()) actual.addAll(c.getFrom(), c.getAddedSubList());
+        }
+    }
+
+    // Al cambiar la fuente alcanza con reevaluar este nivel; los hijos nuevos heredan el predicado
+    private void refiltrarSoloEsteNivel() {
+        List<TreeItem<T>> visibles = new ArrayList<>(fuente.size());
+        for (TreeItem<T> hijo : fuente) {
+            if (hijo instanceof TreeItemFiltrable<T> f && f.predicado != predicado) {
+                f.predicado = predicado;
+                f.refiltrar();
+            }
+            if (esVisible(hijo)) visibles.add(hijo);
+        }
+        sincronizar(visibles);
+    }
+}
@@ -0,0 +1,76 @@
+package com.arielcardales.arielcardales.Util;
+
+import javafx.scene.control.TreeItem;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Nodo filtrable cuyos hijos se traen recién la primera vez que se expande (carga perezosa de variantes).
+ *
+ * - Sabe cuántos hijos tiene antes de cargarlos, así muestra la flechita sin tenerlos en memoria.
+ * - Al expandirse sin hijos cargados llama al cargador, que los trae en segundo plano y los entrega
+ *   con {@link #cargar(List)} (en el FX thread).
+ * - {@link #descargar()} los suelta para liberar memoria; se vuelven a pedir en la próxima expansión.
+ */
+public class TreeItemPerezoso<T> extends TreeItemFiltrable<T> {
+
+    public enum Estado { SIN_CARGAR, CARGANDO, CARGADO }
+
+    private final int cantidadHijos;
+    private Consumer<TreeItemPerezoso<T>> cargador;
+    private Estado estado;
+
+    public TreeItemPerezoso(T value, int cantidadHijos) {
+        super(value);
+        this.cantidadHijos = cantidadHijos;
+        this.estado = cantidadHijos == 0 ? Estado.CARGADO : Estado.SIN_CARGAR;
+    }
+
+    /** Cargador que trae los hijos; el nodo lo llama al expandirse sin hijos en memoria. */
+    public void setCargador(Consumer<TreeItemPerezoso<T>> cargador) {
+        // El listener se registra acá y no en el constructor: así 'this' no se publica a medio construir
+        if (this.cargador == null && cargador != null) {
+            expandedProperty().addListener((obs, antes, expandido) -> {
+                if (expandido && estado == Estado.SIN_CARGAR && this.cargador != null) this.cargador.accept(this);
+            });
+        }
+        this.cargador = cargador;
+    }
+
+    public int getCantidadHijos() { return cantidadHijos; }
+
+    public Estado getEstado() { return estado; }
+
+    public boolean isCargado() { return estado == Estado.CARGADO; }
+
+    /** Lo marca como pedido (para no pedirlo dos veces mientras se trae). */
+    public void marcarCargando() {
+        if (estado == Estado.SIN_CARGAR) estado = Estado.CARGANDO;
+    }
+
+    /** Entrega los hijos traídos de la base. */
+    public void cargar(List<TreeItem<T>> hijos) {
+        getFuente().setAll(hijos);
+        estado = Estado.CARGADO;
+    }
+
+    /** Vuelve a SIN_CARGAR tras un error (se reintenta en la próxima expansión). */
+    public void cancelarCarga() {
+        if (estado == Estado.CARGANDO) estado = Estado.SIN_CARGAR;
+    }
+
+    /** Suelta los hijos si no está expandido. Devuelve true si los soltó. */
+    public boolean descargar() {
+        if (isExpanded() || estado != Estado.CARGADO || cantidadHijos == 0) return false;
+        getFuente().clear();
+        estado = Estado.SIN_CARGAR;
+        return true;
+    }
+
+    // Con hijos sin cargar igual se muestra la flechita
+    @Override
+    public boolean isLeaf() {
+        return estado == Estado.CARGADO ? super.isLeaf() : cantidadHijos == 0;
+    }
+}
@@ -3,6 +3,7 @@ package com.arielcardales.arielcardales.controller;
 import com.arielcardales.arielcardales.DAO.*;
 import com.arielcardales.arielcardales.Entidades.Producto;
 import com.arielcardales.arielcardales.Entidades.ProductoVariante;
+import com.arielcardales.arielcardales.Util.Tareas;
 import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
@@ -27,23 +28,35 @@ public class AgregarProductoController {
 
 
 
-    private Map<String, Long> categorias;
-    private Map<String, Long> unidades;
+    private Map<String, Long> categorias = Map.of();
+    private Map<String, Long> unidades = Map.of();
     private final ProductoDAO productoDAO = new ProductoDAO();
     private final ProductoVarianteDAO varianteDAO = new ProductoVarianteDAO();
 
     private Producto productoBase; // producto padre
 
+    // Lo que el formulario necesita de la base al abrirse (se lee en segundo plano)
+    private record DatosIniciales(Map<String, Long> categorias, Map<String, Long> unidades, String ultimaEtiqueta) {}
+
     @FXML
     public void initialize() {
-        categorias = new CategoriaDAO().mapNombreId();
-        unidades = new UnidadDAO().mapNombreId();
+        Tareas.alTerminar(Tareas.enBase(() -> new DatosIniciales(
+                new CategoriaDAO().mapNombreId(),
+                new UnidadDAO().mapNombreId(),
+                productoDAO.getUltimaEtiqueta())), this::mostrarDatos,
+                e -> mostrarError("Error al leer categorías y unidades: " + e.getMessage()));
+    }
+
+    private void mostrarDatos(DatosIniciales d) {
+        categorias = d.categorias();
+        unidades = d.unidades();
 
         cmbCategoria.setItems(FXCollections.observableArrayList(categorias.keySet()));
         cmbUnidad.setItems(FXCollections.observableArrayList(unidades.keySet()));
 
-        // 🔹 Generar automáticamente la etiqueta sugerida
-        String ultima = productoDAO.getUltimaEtiqueta();
+        // 🔹 Generar automáticamente la etiqueta sugerida (si el usuario no escribió una mientras tanto)
+        if (!txtEtiqueta.getText().isBlank()) return;
+        String ultima = d.ultimaEtiqueta();
         if (ultima != null && ultima.matches("p\\d+")) {
             int num = Integer.parseInt(ultima.substring(1)); // saca el número
             String sugerida = "p" + String.format("%03d", num + 1); // ej: p043
@@ -58,9 +71,8 @@ public class AgregarProductoController {
     // Guarda producto base (padre)
     @FXML
     private void guardar() {
+        Producto p = new Producto();
         try {
-            Producto p = new Producto();
-
             // Etiqueta
             String etiqueta = txtEtiqueta.getText();
             if (etiqueta == null || etiqueta.isBlank()) {
@@ -68,12 +80,6 @@ public class AgregarProductoController {
             }
             p.setEtiqueta(etiqueta);
 
-            // Validar duplicado
-            if (productoDAO.existsByEtiqueta(etiqueta)) {
-                mostrarError("La etiqueta ya existe: " + etiqueta);
-                return;
-            }
-
             // Datos del producto
             p.setNombre(txtNombre.getText());
             p.setDescripcion(txtDescripcion.getText());
@@ -83,9 +89,17 @@ public class AgregarProductoController {
             p.setCosto(new BigDecimal(txtCosto.getText()));
             p.setStockOnHand(Integer.parseInt(txtStock.getText()));
             p.setActive(chkActivo.isSelected());
+        } catch (Exception e) {
+            mostrarError("Error al guardar producto: " + e.getMessage());
+            return;
+        }
 
-            productoDAO.insert(p);
-
+        // Validar duplicado e insertar, fuera del FX thread (null = la etiqueta ya existe)
+        Tareas.alTerminar(Tareas.enBase(() -> productoDAO.existsByEtiqueta(p.getEtiqueta()) ? null : productoDAO.insert(p)), id -> {
+            if (id == null) {
+                mostrarError("La etiqueta ya existe: " + p.getEtiqueta());
+                return;
+            }
             mostrarOk("✅ Producto agregado correctamente.");
 
             // 🔄 Notificar al inventario que se recargue
@@ -93,11 +107,10 @@ public class AgregarProductoController {
             Stage stage = (Stage) txtNombre.getScene().getWindow();
             stage.setUserData(true); // usamos un flag simple
             stage.close();
-
-        } catch (Exception e) {
+        }, e -> {
             mostrarError("Error al guardar producto: " + e.getMessage());
             e.printStackTrace();
-        }
+        });
     }
 
 
@@ -2,6 +2,7 @@ package com.arielcardales.arielcardales.controller;
 
 import com.arielcardales.arielcardales.DAO.ProductoVarianteDAO;
 import com.arielcardales.arielcardales.Entidades.ProductoVariante;
+import com.arielcardales.arielcardales.Util.Tareas;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
@@ -18,8 +19,8 @@ public class AgregarVarianteController {
 
     @FXML
     private void guardarVariante() {
+        ProductoVariante v = new ProductoVariante();
         try {
-            ProductoVariante v = new ProductoVariante();
             v.setProductoId(productoBaseId);
             v.setColor(txtColor.getText());
             v.setTalle(txtTalle.getText());
@@ -27,13 +28,18 @@ public class AgregarVarianteController {
             v.setCosto(new BigDecimal(txtCosto.getText()));
             v.setStock(Integer.parseInt(txtStock.getText()));
             v.setActive(true);
+        } catch (Exception e) {
+            new Alert(Alert.AlertType.ERROR, "Error al guardar variante: " + e.getMessage()).showAndWait();
+            return;
+        }
 
+        Tareas.alTerminar(Tareas.enBase(() -> {
             new ProductoVarianteDAO().insert(v);
+            return null;
+        }), r -> {
             new Alert(Alert.AlertType.INFORMATION, "Variante agregada correctamente.").showAndWait();
             limpiarCampos();
-        } catch (Exception e) {
-            new Alert(Alert.AlertType.ERROR, "Error al guardar variante: " + e.getMessage()).showAndWait();
-        }
+        }, e -> new Alert(Alert.AlertType.ERROR, "Error al guardar variante: " + e.getMessage()).showAndWait());
     }
 
     private void limpiarCampos() {
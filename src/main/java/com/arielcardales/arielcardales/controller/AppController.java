@@ -2,24 +2,30 @@ package com.arielcardales.arielcardales.controller;
 
 import com.arielcardales.arielcardales.App;
 import com.arielcardales.arielcardales.DAO.InventarioDAO;
+import com.arielcardales.arielcardales.DAO.Migraciones;
 import com.arielcardales.arielcardales.Entidades.ItemInventario;
 import com.arielcardales.arielcardales.Updates.UpdateConfig;
 import com.arielcardales.arielcardales.Updates.UpdateDialog;
 import com.arielcardales.arielcardales.Updates.UpdateManager;
 import com.arielcardales.arielcardales.Util.Arboles;
+import com.arielcardales.arielcardales.Util.Tareas;
+import com.arielcardales.arielcardales.service.CompactadorStock;
+import com.arielcardales.arielcardales.service.FotoLocal;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.event.ActionEvent;  // ✅ JavaFX ActionEvent
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
+import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import javafx.geometry.Insets;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 import java.net.URI;
-import java.sql.SQLException;
 
 public class AppController {
 
@@ -30,6 +36,7 @@ public class AppController {
 
     private Parent vistaProductos;
     private UpdateManager updateManager;
+    private Stage ventanaDiagnostico;
 
     @FXML
     public void initialize() {
@@ -51,6 +58,16 @@ public class AppController {
         }
     }
 
+    // 🗄️ Scripts de BD pendientes (triggers, índices...). Si fallan, la app sigue igual.
+    private static void aplicarMigraciones() {
+        try {
+            Migraciones.aplicarPendientes();
+            CompactadorStock.get().iniciar();   // necesita la tabla de V004
+        } catch (Exception ex) {
+            System.err.println("⚠️ No se pudieron aplicar migraciones: " + ex.getMessage());
+        }
+    }
+
     /** Carga asíncrona de la vista de productos **/
     @FXML
     private void mostrarProductos() {
@@ -64,9 +81,14 @@ public class AppController {
         box.setStyle("-fx-alignment: center; -fx-padding: 50;");
         contenedorPrincipal.getChildren().add(box);
 
+        // Con foto guardada la tabla se muestra sin esperar a la base: las migraciones van después
+        boolean conFoto = FotoLocal.get().existe();
+
         Task<Parent> tareaCarga = new Task<>() {
             @Override
             protected Parent call() throws Exception {
+                if (!conFoto) aplicarMigraciones();
+
                 FXMLLoader loader = new FXMLLoader(App.class.getResource("/fxml/ProductoTree.fxml"));
                 Parent vista = loader.load();
                 productoController = loader.getController();
@@ -78,6 +100,9 @@ public class AppController {
             vistaProductos = tareaCarga.getValue();
             VBox.setMargin(vistaProductos, new Insets(0));
             contenedorPrincipal.getChildren().setAll(vistaProductos);
+            if (conFoto) {
+                Tareas.ejecutar(AppController::aplicarMigraciones);
+            }
         });
 
         tareaCarga.setOnFailed(e -> {
@@ -86,7 +111,7 @@ public class AppController {
             tareaCarga.getException().printStackTrace();
         });
 
-        new Thread(tareaCarga).start();
+        Tareas.ejecutar(tareaCarga);
     }
 
     @FXML
@@ -108,22 +133,13 @@ public class AppController {
         TreeTableView<ItemInventario> tree = Arboles.crearTreeTabla(columnas);
         tree.setShowRoot(false);
 
-        // Carga inicial
-        try {
-            tree.setRoot(InventarioDAO.cargarArbol(""));
-        } catch (SQLException e) {
-            e.printStackTrace();
-            new Alert(Alert.AlertType.ERROR, "Error cargando inventario: " + e.getMessage()).showAndWait();
-        }
+        // Carga inicial y búsquedas fuera del hilo de la UI
+        buscarInventario(tree, "");
 
-        // Filtrar con reconsulta simple
-        txtBuscar.textProperty().addListener((obs, oldV, newV) -> {
-            try {
-                tree.setRoot(InventarioDAO.cargarArbol(newV));
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
-        });
+        // Se consulta cuando el usuario deja de tipear, no en cada tecla
+        PauseTransition pausa = new PauseTransition(Duration.millis(250));
+        pausa.setOnFinished(e -> buscarInventario(tree, txtBuscar.getText()));
+        txtBuscar.textProperty().addListener((obs, oldV, newV) -> pausa.playFromStart());
 
         VBox layout = new VBox(10, txtBuscar, tree);
         layout.setFillWidth(true);
@@ -131,6 +147,33 @@ public class AppController {
         contenedorPrincipal.getChildren().setAll(layout);
     }
 
+    // Solo se muestra la respuesta de la última búsqueda pedida (las anteriores llegan tarde y se descartan)
+    private long busquedaActual;
+
+    private void buscarInventario(TreeTableView<ItemInventario> tree, String texto) {
+        long nro = ++busquedaActual;
+
+        Task<TreeItem<ItemInventario>> tarea = new Task<>() {
+            @Override
+            protected TreeItem<ItemInventario> call() throws Exception {
+                return InventarioDAO.buscarArbol(texto, InventarioDAO.LIMITE_BUSQUEDA);
+            }
+        };
+
+        tarea.setOnSucceeded(e -> {
+            if (nro == busquedaActual) tree.setRoot(tarea.getValue());
+        });
+
+        tarea.setOnFailed(e -> {
+            tarea.getException().printStackTrace();
+            if (nro == busquedaActual && tree.getRoot() == null) {
+                new Alert(Alert.AlertType.ERROR, "Error cargando inventario: " + tarea.getException().getMessage()).showAndWait();
+            }
+        });
+
+        Tareas.ejecutar(tarea);
+    }
+
     /** 🔁 Restaurar inventario sin recargar toda la vista **/
     @FXML
     public void restaurarInventarioCompleto() {
@@ -231,6 +274,34 @@ public class AppController {
         UpdateDialog.showInfo(stage, "Acerca de App Inventario", mensaje);
     }
 
+    /**
+     * Ventana de diagnóstico: pool de conexiones y tiempos por consulta.
+     * No es modal (se deja abierta mientras se usa la app); si ya está abierta se trae al frente.
+     */
+    @FXML
+    private void onDiagnostico(ActionEvent event) {
+        if (ventanaDiagnostico != null && ventanaDiagnostico.isShowing()) {
+            ventanaDiagnostico.toFront();
+            return;
+        }
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/diagnostico.fxml"));
+            Parent root = loader.load();
+            DiagnosticoController controller = loader.getController();
+
+            Stage stage = new Stage();
+            stage.setTitle("Diagnóstico");
+            stage.setScene(new Scene(root));
+            stage.initOwner(getStage());
+            stage.setOnHidden(e -> controller.detener());
+            stage.show();
+            ventanaDiagnostico = stage;
+        } catch (Exception e) {
+            e.printStackTrace();
+            UpdateDialog.showError(getStage(), "Error", "No se pudo abrir el diagnóstico: " + e.getMessage());
+        }
+    }
+
     /**
      * Abre página de issues en GitHub
      */
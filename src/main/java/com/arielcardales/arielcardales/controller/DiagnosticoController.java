@@ -0,0 +1,113 @@
+package com.arielcardales.arielcardales.controller;
+
+import com.arielcardales.arielcardales.DAO.MetricasSql;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.fxml.FXML;
+import javafx.scene.control.*;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+import java.util.function.Function;
+
+/**
+ * Ventana Ayuda → Diagnóstico: estado del pool y tiempos por consulta de {@link MetricasSql}.
+ * Se refresca cada segundo mientras está abierta.
+ */
+public class DiagnosticoController {
+
+    @FXML private Label lblConexiones, lblEsperando, lblAdquisicion, lblUso, lblConsultas;
+    @FXML private TextField txtUmbral;
+    @FXML private TableView<MetricasSql.Resumen> tablaConsultas;
+    @FXML private TableColumn<MetricasSql.Resumen, String> colSql;
+    @FXML private TableColumn<MetricasSql.Resumen, Object> colLlamadas, colTotal, colP50, colP95, colMax,
+            colFilas, colLentas, colErrores;
+
+    private final Timeline refresco = new Timeline(new KeyFrame(Duration.seconds(1), e -> refrescar()));
+
+    @FXML
+    public void initialize() {
+        colSql.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(c.getValue().sql()));
+        columna(colLlamadas, MetricasSql.Resumen::llamadas);
+        columna(colTotal, r -> Math.round(r.totalMs()));
+        columna(colP50, r -> Math.round(r.p50Ms()));
+        columna(colP95, r -> Math.round(r.p95Ms()));
+        columna(colMax, r -> Math.round(r.maxMs()));
+        columna(colFilas, MetricasSql.Resumen::filas);
+        columna(colLentas, MetricasSql.Resumen::lentas);
+        columna(colErrores, MetricasSql.Resumen::errores);
+
+        // El SQL completo en el tooltip (en la columna se corta)
+        colSql.setCellFactory(col -> new TableCell<>() {
+            @Override
+            protected void updateItem(String sql, boolean empty) {
+                super.updateItem(sql, empty);
+                setText(empty ? null : sql);
+                setTooltip(empty || sql == null ? null : new Tooltip(sql));
+            }
+        });
+
+        txtUmbral.setText(String.valueOf(MetricasSql.get().getUmbralLentaMs()));
+
+        refresco.setCycleCount(Timeline.INDEFINITE);
+        refresco.play();
+        refrescar();
+    }
+
+    /** Frena el refresco (al cerrar la ventana). */
+    public void detener() {
+        refresco.stop();
+    }
+
+    private static void columna(TableColumn<MetricasSql.Resumen, Object> col,
+                                Function<MetricasSql.Resumen, Object> valor) {
+        col.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(valor.apply(c.getValue())));
+        col.setStyle("-fx-alignment: CENTER-RIGHT;");
+    }
+
+    private void refrescar() {
+        MetricasSql m = MetricasSql.get();
+        MetricasSql.EstadoPool p = m.estadoPool();
+
+        lblConexiones.setText(String.format("%d activas · %d ociosas · %d de %d", p.activas(), p.ociosas(),
+                p.total(), p.maximo()));
+        lblEsperando.setText(p.esperando() + (p.timeouts() > 0 ? "  (" + p.timeouts() + " timeouts)" : ""));
+        lblAdquisicion.setText(String.format("%,d veces · p95 %.1f ms · máx %.1f ms", p.adquisiciones(),
+                p.adquisicionP95Ms(), p.adquisicionMaxMs()));
+        lblUso.setText(String.format("%.0f ms", p.usoP95Ms()));
+        lblConsultas.setText(String.format("%,d · %,d lentas · %,d errores", m.getConsultas(), m.getLentas(),
+                m.getErrores()));
+
+        MetricasSql.Resumen seleccionada = tablaConsultas.getSelectionModel().getSelectedItem();
+        tablaConsultas.getItems().setAll(m.resumen());
+        if (seleccionada != null) {
+            for (MetricasSql.Resumen r : tablaConsultas.getItems()) {
+                if (r.sql().equals(seleccionada.sql())) {
+                    tablaConsultas.getSelectionModel().select(r);
+                    break;
+                }
+            }
+        }
+    }
+
+    @FXML
+    private void aplicarUmbral() {
+        try {
+            MetricasSql.get().setUmbralLentaMs(Long.parseLong(txtUmbral.getText().trim()));
+        } catch (NumberFormatException e) {
+            txtUmbral.setText(String.valueOf(MetricasSql.get().getUmbralLentaMs()));
+        }
+    }
+
+    @FXML
+    private void reiniciar() {
+        MetricasSql.get().reiniciar();
+        refrescar();
+    }
+
+    @FXML
+    private void cerrar() {
+        ((Stage) tablaConsultas.getScene().getWindow()).close();
+    }
+}
@@ -3,6 +3,7 @@ package com.arielcardales.arielcardales.controller;
 import com.arielcardales.arielcardales.DAO.CategoriaDAO;
 import com.arielcardales.arielcardales.DAO.ProductoDAO;
 import com.arielcardales.arielcardales.Entidades.Producto;
+import com.arielcardales.arielcardales.Util.Tareas;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.Initializable;
@@ -25,8 +26,8 @@ import java.util.Map;
 public class EditarProductoController {
 
     private final ProductoDAO productoDAO = new ProductoDAO();
-    private Map<String, Long> categoriasNombreId;
-    private ObservableList<String> categoriasNombres;
+    private Map<String, Long> categoriasNombreId = Map.of();
+    private final ObservableList<String> categoriasNombres = FXCollections.observableArrayList();
 
     // === FORMATOS ===
     private final StringConverter<BigDecimal> moneyConv = new StringConverter<>() {
@@ -66,9 +67,12 @@ public class EditarProductoController {
         tablaProductos.setEditable(true);
 
         // === Categorías ===
-        categoriasNombreId = new CategoriaDAO().mapNombreId();
-        categoriasNombres = FXCollections.observableArrayList(categoriasNombreId.keySet());
-        FXCollections.sort(categoriasNombres);
+        // Se leen en segundo plano; el combo de la columna usa la misma lista y se llena al llegar
+        Tareas.alTerminar(Tareas.enBase(() -> new CategoriaDAO().mapNombreId()), mapa -> {
+            categoriasNombreId = mapa;
+            categoriasNombres.setAll(mapa.keySet());
+            FXCollections.sort(categoriasNombres);
+        }, e -> error("No se pudieron leer las categorías: " + e.getMessage()));
 
         // === Obtener columnas por ID (asignado en Tablas.crearColumnas) ===
         TableColumn<Producto, String> colNombre = getCol(tablaProductos, "nombre");
@@ -121,8 +125,13 @@ public class EditarProductoController {
         colStock.setOnEditCommit(e -> {
             Producto p = e.getRowValue();
             try {
-                p.setStockOnHand(e.getNewValue());
-                guardar(p);
+                Integer nuevo = e.getNewValue();
+                if (nuevo == null || nuevo.equals(e.getOldValue())) return;
+                p.setStockOnHand(nuevo);
+                // El stock va como ajuste en el libro de movimientos (ver ProductoDAO.update)
+                Tareas.alTerminar(Tareas.enBase(() -> productoDAO.update(p, nuevo)),
+                        actualizado -> ok("Producto actualizado"),
+                        ex -> error("No se pudo guardar: " + ex.getMessage()));
             } catch (Exception ex) {
                 error("Stock inválido");
             }
@@ -141,17 +150,9 @@ public class EditarProductoController {
 
     private void guardar(Producto p) {
         // Evita bloquear el hilo de JavaFX
-        javafx.concurrent.Task<Void> tarea = new javafx.concurrent.Task<>() {
-            @Override
-            protected Void call() {
-                productoDAO.update(p); // llamada a DB
-                return null;
-            }
-        };
-        tarea.setOnSucceeded(e -> ok("Producto actualizado"));
-        tarea.setOnFailed(e -> error("No se pudo guardar: " + tarea.getException().getMessage()));
-
-        new Thread(tarea).start(); // se ejecuta en background
+        Tareas.alTerminar(productoDAO.updateAsync(p),
+                actualizado -> ok("Producto actualizado"),
+                e -> error("No se pudo guardar: " + e.getMessage()));
     }
 
 
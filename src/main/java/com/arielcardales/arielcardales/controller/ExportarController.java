@@ -2,16 +2,31 @@ package com.arielcardales.arielcardales.controller;
 
 import com.arielcardales.arielcardales.Entidades.ItemInventario;
 import com.arielcardales.arielcardales.Entidades.Producto;
+import com.arielcardales.arielcardales.Util.AvanceExportacion;
 import com.arielcardales.arielcardales.Util.ExportadorExcel;
 import com.arielcardales.arielcardales.Util.ExportadorPDF;
+import com.arielcardales.arielcardales.Util.Tareas;
+import com.arielcardales.arielcardales.service.ExportacionService;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
 import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceDialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
 import javafx.stage.Window;
 
 import javax.swing.filechooser.FileSystemView;
 import java.io.File;
 import java.util.List;
+import java.util.Optional;
 
 public class ExportarController {
 
@@ -52,20 +67,102 @@ public class ExportarController {
     public static void exportarInventarioTreePDF(List<ItemInventario> flat, Window owner) {
         File f = fileChooser(owner, "PDF", "*.pdf", new File(escritorio(), "inventario.pdf"));
         if (f == null) return;
-        try {
-            ItemInventario root = flat.isEmpty() ? null : flat.get(0);
-            ExportadorPDF.exportarInventarioTree(root, flat, f.getAbsolutePath());
-            ok("PDF exportado en:\n" + f.getAbsolutePath());
-        } catch (Exception e) { error("Error al exportar PDF:\n" + e.getMessage()); }
+        ItemInventario root = flat.isEmpty() ? null : flat.get(0);
+        exportarEnSegundoPlano(owner, "PDF", f,
+                avance -> ExportadorPDF.exportarInventarioTree(root, flat, f.getAbsolutePath(), avance));
     }
 
     public static void exportarInventarioTreeExcel(List<ItemInventario> flat, Window owner) {
         File f = fileChooser(owner, "Excel", "*.xlsx", new File(escritorio(), "inventario.xlsx"));
         if (f == null) return;
-        try {
-            ExportadorExcel.exportarInventarioTree(flat, f.getAbsolutePath());
-            ok("Excel exportado en:\n" + f.getAbsolutePath());
-        } catch (Exception e) { error("Error al exportar Excel:\n" + e.getMessage()); }
+        exportarEnSegundoPlano(owner, "Excel", f,
+                avance -> ExportadorExcel.exportarInventarioTree(flat, f.getAbsolutePath(), avance));
+    }
+
+    // --------- Directo de la base (sin el árbol de la UI) ---------
+    public static void exportarInventarioDesdeBase(String filtro, Window owner) {
+        ChoiceDialog<ExportacionService.Formato> dialogo = new ChoiceDialog<>(
+                ExportacionService.Formato.EXCEL, ExportacionService.Formato.values());
+        dialogo.setTitle("Exportación");
+        dialogo.setHeaderText(filtro == null || filtro.isBlank()
+                ? "Exportar todo el inventario desde la base"
+                : "Exportar desde la base lo que coincide con \"" + filtro.trim() + "\"");
+        dialogo.setContentText("Formato:");
+        Optional<ExportacionService.Formato> formato = dialogo.showAndWait();
+        if (formato.isEmpty()) return;
+
+        String ext = formato.get().getExtension();
+        File f = fileChooser(owner, formato.get().name(), "*." + ext, new File(escritorio(), "inventario." + ext));
+        if (f == null) return;
+        exportarEnSegundoPlano(owner, formato.get().name(), f, avance ->
+                new ExportacionService().exportarDesdeBase(formato.get(), filtro, f.getAbsolutePath(), avance));
+    }
+
+    /** Exportación que recibe el avance (ver AvanceExportacion). */
+    @FunctionalInterface
+    interface Exportacion {
+        void exportar(AvanceExportacion avance) throws Exception;
+    }
+
+    /**
+     * Corre la exportación en un Task con una ventanita de progreso y botón Cancelar.
+     * La UI sigue usable mientras tanto; al terminar avisa con el resultado.
+     */
+    static void exportarEnSegundoPlano(Window owner, String tipo, File f, Exportacion exportacion) {
+        Task<Void> task = new Task<>() {
+            @Override
+            protected Void call() throws Exception {
+                updateMessage("Preparando " + tipo + "...");
+                exportacion.exportar(new AvanceExportacion() {
+                    @Override
+                    public void filas(long escritas, long total) {
+                        updateProgress(escritas, total);
+                        updateMessage(total > 0
+                                ? String.format("%,d de %,d filas", escritas, total)
+                                : String.format("%,d filas", escritas));
+                    }
+
+                    @Override
+                    public boolean isCancelado() { return isCancelled(); }
+                });
+                return null;
+            }
+        };
+
+        Stage dialogo = new Stage();
+        dialogo.initOwner(owner);
+        dialogo.initStyle(StageStyle.UTILITY);
+        dialogo.setTitle("Exportando " + tipo);
+        dialogo.setResizable(false);
+
+        ProgressBar barra = new ProgressBar();
+        barra.setPrefWidth(360);
+        barra.progressProperty().bind(task.progressProperty());
+        Label lblMensaje = new Label();
+        lblMensaje.textProperty().bind(task.messageProperty());
+        Button btnCancelar = new Button("Cancelar");
+        btnCancelar.setOnAction(e -> task.cancel());
+        dialogo.setOnCloseRequest(e -> task.cancel());
+
+        VBox root = new VBox(12, new Label(f.getName()), barra, lblMensaje, btnCancelar);
+        root.setPadding(new Insets(20));
+        root.setAlignment(Pos.CENTER);
+        dialogo.setScene(new Scene(root));
+
+        task.setOnSucceeded(e -> {
+            dialogo.close();
+            ok(tipo + " exportado en:\n" + f.getAbsolutePath());
+        });
+        task.setOnCancelled(e -> dialogo.close());   // el exportador ya borró el archivo parcial
+        task.setOnFailed(e -> {
+            dialogo.close();
+            Throwable ex = task.getException();
+            ex.printStackTrace();
+            error("Error al exportar " + tipo + ":\n" + ex.getMessage());
+        });
+
+        dialogo.show();
+        Tareas.ejecutar(task);
     }
 
     private static File fileChooser(Window owner, String desc, String pattern, File suggested) {
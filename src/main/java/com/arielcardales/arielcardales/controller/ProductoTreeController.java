@@ -3,9 +3,22 @@ package com.arielcardales.arielcardales.controller;
 import com.arielcardales.arielcardales.DAO.*;
 import com.arielcardales.arielcardales.Entidades.*;
 import com.arielcardales.arielcardales.Util.*;
+import com.arielcardales.arielcardales.service.AjustePrecioService;
+import com.arielcardales.arielcardales.service.AvisosInventario;
+import com.arielcardales.arielcardales.service.Carrito;
+import com.arielcardales.arielcardales.service.CoordinadorCargas;
+import com.arielcardales.arielcardales.service.EscrituraDiferida;
+import com.arielcardales.arielcardales.service.FotoLocal;
+import com.arielcardales.arielcardales.service.ImportacionService;
+import com.arielcardales.arielcardales.service.IndiceInventario;
 import com.arielcardales.arielcardales.service.InventarioService;
+import com.arielcardales.arielcardales.service.VariantesPerezosas;
+import com.arielcardales.arielcardales.service.VentaService;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.css.PseudoClass;
 import javafx.fxml.FXML;
@@ -19,16 +32,25 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.ComboBoxTreeTableCell;
 import javafx.scene.control.cell.TextFieldTreeTableCell;
 import javafx.scene.control.cell.TreeItemPropertyValueFactory;
+import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import org.controlsfx.control.Notifications;
 import javafx.scene.control.TreeItem;
+import java.io.File;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.prefs.Preferences;
 
 public class ProductoTreeController {
@@ -39,23 +61,130 @@ public class ProductoTreeController {
     @FXML private ToggleButton btnEtiqueta;
     @FXML private ToggleGroup grupoBusqueda;
     @FXML private VBox panelLateral;
+    @FXML private Button btnCarrito;
 
     private javafx.animation.PauseTransition pausaBusqueda = new javafx.animation.PauseTransition(javafx.util.Duration.millis(300));
     private TreeItem<ItemInventario> rootCompleto;
+    private IndiceInventario indice;   // índice de búsqueda sobre rootCompleto (null = hay que rearmarlo)
     private final InventarioService inventarioService = new InventarioService();
+    private final VariantesPerezosas variantesPerezosas = new VariantesPerezosas(inventarioService);
+    private final VentaService ventaService = new VentaService();
+    private final ImportacionService importacionService = new ImportacionService();
+    private final AjustePrecioService ajustePrecioService = new AjustePrecioService();
+    private final Carrito carrito = new Carrito();
     private final Preferences prefs = Preferences.userNodeForPackage(ProductoTreeController.class);
     private static final String PREF_EXPANDIR_NODOS = "expandir_nodos_hijos";
-    private Task<TreeItem<ItemInventario>> cargaTask;
+    private static final String PREF_VARIANTES_PEREZOSAS = "variantes_al_expandir";
+    private final CoordinadorCargas<TreeItem<ItemInventario>> cargas =
+            new CoordinadorCargas<>(this::consultarArbol, this::mostrarAdelanto, this::mostrarArbol, this::falloCarga);
+    private Task<InventarioDAO.DeltaInventario> deltaTask;
+    private boolean deltaPendiente;      // llegó otro pedido de refresco mientras corría el delta
+    private Timestamp desdeRemoto;       // marca mínima informada por los avisos de otras terminales
+    private Runnable bajaAvisos;         // para dejar de escuchar cuando la vista sale de pantalla
     private volatile boolean primeraCarga = true;
 
+    private static final PseudoClass ERROR_GUARDADO = PseudoClass.getPseudoClass("error-guardado");
+    private static final PseudoClass ACTUALIZADA = PseudoClass.getPseudoClass("actualizada");
+    private static final Duration RESALTADO = Duration.seconds(30);
+    // Filas cuya última edición falló al grabar (por identidad: el ítem no redefine equals)
+    private final Set<ItemInventario> filasConError = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Filas que cambiaron respecto de la foto guardada (ver mostrarFotoLocal)
+    private final Set<ItemInventario> filasActualizadas = Collections.newSetFromMap(new IdentityHashMap<>());
+    private boolean resaltarDelta;
+
     private final ProductoDAO productoDAO = new ProductoDAO();
     private Map<String, Long> categoriasNombreId;
     private ObservableList<String> categoriasNombres;
+    private final ObservableList<String> opcionesCategoria = FXCollections.observableArrayList();
 
     @FXML
     public void initialize() {
         configurarUI();          // columnas, listeners, rowFactory, etc. (sin BD)
-        cargarArbolAsync("");    // primera carga en background
+        configurarCarrito();
+        if (!mostrarFotoLocal()) cargarArbolAsync("");   // primera carga en background
+        escucharOtrasTerminales();
+        FotoLocal.get().setFuente(() -> inventarioService.fotoActual(rootCompleto));
+    }
+
+    /**
+     * Arranque rápido: muestra la foto del inventario que quedó guardada al cerrar y la pone al día
+     * con un delta en segundo plano. Las filas que cambiaron desde entonces quedan resaltadas un rato.
+     * Con "Variantes al expandir" no se usa (esa carga no arma el árbol completo).
+     */
+    private boolean mostrarFotoLocal() {
+        if (prefs.getBoolean(PREF_VARIANTES_PEREZOSAS, false)) return false;
+
+        Optional<FotoLocal.Guardada> guardada = FotoLocal.get().leer();
+        if (guardada.isEmpty()) return false;
+
+        rootCompleto = inventarioService.cargarFotoLocal(guardada.get());
+        indice = null;
+        tablaInventarioTree.setRoot(rootCompleto);
+        tablaInventarioTree.setShowRoot(false);
+        primeraCarga = false;
+
+        resaltarDelta = true;
+        recargarArbol("");
+        return true;
+    }
+
+    // Marca las filas que trajo el delta de puesta al día y las desmarca pasado RESALTADO
+    private void resaltar(InventarioDAO.DeltaInventario delta) {
+        for (TreeItem<ItemInventario> producto : delta.productos()) {
+            filasActualizadas.add(producto.getValue());
+            for (TreeItem<ItemInventario> variante : TreeItemFiltrable.hijos(producto)) {
+                filasActualizadas.add(variante.getValue());
+            }
+        }
+        tablaInventarioTree.refresh();
+
+        PauseTransition fin = new PauseTransition(RESALTADO);
+        fin.setOnFinished(e -> {
+            filasActualizadas.clear();
+            tablaInventarioTree.refresh();
+        });
+        fin.play();
+    }
+
+    // Mientras la vista está en pantalla, los cambios grabados desde otras terminales se traen por delta
+    private void escucharOtrasTerminales() {
+        tablaInventarioTree.sceneProperty().addListener((obs, anterior, escena) -> {
+            if (escena != null && bajaAvisos == null) {
+                bajaAvisos = AvisosInventario.get().suscribir(
+                        cambios -> Platform.runLater(() -> aplicarCambiosRemotos(cambios)));
+            } else if (escena == null && bajaAvisos != null) {
+                bajaAvisos.run();
+                bajaAvisos = null;
+            }
+        });
+    }
+
+    private void aplicarCambiosRemotos(AvisosInventario.Cambios cambios) {
+        if (rootCompleto == null) return;   // la primera carga ya va a traer todo
+
+        if (cambios.incluye("categoria")) {
+            recargarOpcionesCategoria();
+            // El nombre de la categoría viene en cada fila y renombrarla no toca updatedAt → carga completa
+            // (si ya había una en curso, se reemplaza: podía traer el nombre viejo)
+            cargarArbolAsync(inventarioService.getFiltroSincronizado());
+            return;
+        }
+
+        // Las ventas e importaciones mueven stock con inserts en stock_movimiento (la foto de producto/
+        // producto_variante cambia recién al compactar); las ediciones llegan por esas dos tablas
+        if (cambios.incluye("producto", "producto_variante", "stock_movimiento", AvisosInventario.RECONEXION)) {
+            Timestamp desde = cambios.desde();
+            if (desde != null && (desdeRemoto == null || desde.before(desdeRemoto))) desdeRemoto = desde;
+            if (cargas.isActiva()) return;   // se pide al terminar la carga
+            recargarArbol(inventarioService.getFiltroSincronizado());
+        }
+    }
+
+    // El botón del carrito muestra cuántas unidades hay cargadas
+    private void configurarCarrito() {
+        if (btnCarrito == null) return;
+        btnCarrito.textProperty().bind(Bindings.createStringBinding(
+                () -> "🧾 Carrito (" + carrito.getUnidades() + ")", carrito.getItems()));
     }
 
     /**
@@ -159,66 +288,21 @@ public class ProductoTreeController {
         btnEtiqueta.setToggleGroup(grupoBusqueda);
         grupoBusqueda.selectToggle(btnNombre); // búsqueda por nombre por defecto
 
-        // 🔍 Lógica principal del filtro dinámico
-        Runnable aplicarFiltro = () -> {
-            String filtro = Optional.ofNullable(txtBuscarEtiqueta.getText()).orElse("").trim().toLowerCase();
-
-            // Si el campo de búsqueda está vacío → restaurar inventario completo
-            if (filtro.isBlank()) {
-                if (rootCompleto != null) {
-                    TreeItem<ItemInventario> copia = clonarArbol(rootCompleto);
-                    tablaInventarioTree.setRoot(copia);
-
-                    // 🔧 Si está activa la preferencia “Expandir auto”, expandir nodos
-                    boolean expandir = prefs.getBoolean(PREF_EXPANDIR_NODOS, false);
-                    if (expandir) expandirTodo(copia);
-                } else {
-                    // Si aún no hay cache, recargar desde BD
-                    cargarArbolAsync("");
-                }
-                return;
-            }
-
-            // Si aún no terminó de cargar el árbol → abortar filtro
-            if (rootCompleto == null) return;
-
-            // Determina el tipo de filtro (Nombre, Categoría o Etiqueta)
-            String tipo = ((ToggleButton) Optional.ofNullable(grupoBusqueda.getSelectedToggle())
-                    .orElse(btnNombre)).getText().toLowerCase();
-
-            // Crea una copia del árbol original en memoria
-            TreeItem<ItemInventario> copia = clonarArbol(rootCompleto);
-
-            // Aplica el filtrado recursivo según el campo seleccionado
-            filtrarRecursivo(copia, switch (tipo) {
-                case "categoría", "categoria" -> "categoria";
-                case "etiqueta" -> "etiqueta";
-                default -> "nombre";
-            }, filtro);
-
-            // Reemplaza el árbol en pantalla por la versión filtrada
-            tablaInventarioTree.setRoot(copia);
-
-            // Si está activa la preferencia, expande los nodos filtrados
-            boolean expandir = prefs.getBoolean(PREF_EXPANDIR_NODOS, false);
-            if (expandir) expandirTodo(copia);
-        };
-
         // === Búsqueda reactiva con debounce y recuperación segura ===
         txtBuscarEtiqueta.textProperty().addListener((o, oldValue, newValue) -> {
             pausaBusqueda.stop();
-            pausaBusqueda.setOnFinished(e -> aplicarFiltro.run());
+            pausaBusqueda.setOnFinished(e -> aplicarFiltro());
             pausaBusqueda.playFromStart();
 
             // 🩹 Fallback instantáneo si el texto queda vacío (borra todo de golpe)
             if (newValue == null || newValue.isBlank()) {
-                Platform.runLater(aplicarFiltro); // fuerza ejecución inmediata
+                Platform.runLater(this::aplicarFiltro); // fuerza ejecución inmediata
             }
         });
 
 
         // Escucha cambios en el tipo de búsqueda (Nombre / Categoría / Etiqueta)
-        grupoBusqueda.selectedToggleProperty().addListener((o, a, b) -> aplicarFiltro.run());
+        grupoBusqueda.selectedToggleProperty().addListener((o, a, b) -> aplicarFiltro());
 
         // === Configura edición y renderizados ===
         aplicarRendererColorTalle();  // Renderizado especial para color/talle
@@ -231,15 +315,34 @@ public class ProductoTreeController {
         chkExpandir.setOnAction(e -> {
             // Guarda la preferencia del usuario y recarga el árbol
             prefs.putBoolean(PREF_EXPANDIR_NODOS, chkExpandir.isSelected());
-            recargarArbol(txtBuscarEtiqueta.getText());
+            cargarArbolAsync(txtBuscarEtiqueta.getText());
         });
         chkExpandir.setStyle("-fx-padding: 10 0 0 4; -fx-font-size: 13px;");
 
         if (panelLateral != null) panelLateral.getChildren().add(chkExpandir);
 
+        // === Catálogos grandes: las variantes se traen recién al abrir cada producto ===
+        CheckBox chkPerezosa = new CheckBox("Variantes al expandir");
+        chkPerezosa.setSelected(prefs.getBoolean(PREF_VARIANTES_PEREZOSAS, false));
+        chkPerezosa.setOnAction(e -> {
+            prefs.putBoolean(PREF_VARIANTES_PEREZOSAS, chkPerezosa.isSelected());
+            cargarArbolAsync(txtBuscarEtiqueta.getText());
+        });
+        chkPerezosa.setStyle("-fx-padding: 4 0 0 4; -fx-font-size: 13px;");
+
+        if (panelLateral != null) panelLateral.getChildren().add(chkPerezosa);
+
         // === RowFactory con doble clic para editar celdas ===
         tablaInventarioTree.setRowFactory(tv -> {
-            TreeTableRow<ItemInventario> row = new TreeTableRow<>();
+            TreeTableRow<ItemInventario> row = new TreeTableRow<>() {
+                // Pseudo-clase CSS “.error-guardado” → la última edición de la fila no se pudo grabar
+                @Override
+                protected void updateItem(ItemInventario item, boolean empty) {
+                    super.updateItem(item, empty);
+                    pseudoClassStateChanged(ERROR_GUARDADO, !empty && item != null && filasConError.contains(item));
+                    pseudoClassStateChanged(ACTUALIZADA, !empty && item != null && filasActualizadas.contains(item));
+                }
+            };
 
             // Pseudo-clase CSS “.hijo” → permite colorear filas hijas
             row.treeItemProperty().addListener((obs, oldItem, newItem) -> {
@@ -300,78 +403,188 @@ public class ProductoTreeController {
     }
 
 
+    // 🔍 Lógica principal del filtro dinámico (sobre el árbol cacheado, sin ir a la BD)
+    // La tabla muestra siempre rootCompleto: filtrar es solo cambiarle el predicado
+    private void aplicarFiltro() {
+        String filtro = Optional.ofNullable(txtBuscarEtiqueta.getText()).orElse("").trim().toLowerCase();
+
+        // Si aún no hay cache, recargar desde BD (solo tiene sentido sin filtro)
+        if (rootCompleto == null) {
+            if (filtro.isBlank()) cargarArbolAsync("");
+            return;
+        }
+
+        // Si el campo de búsqueda está vacío → restaurar inventario completo
+        if (filtro.isBlank()) {
+            mostrarConPredicado(null);
+            return;
+        }
+
+        // Determina el tipo de filtro (Nombre, Categoría o Etiqueta)
+        String tipo = ((ToggleButton) Optional.ofNullable(grupoBusqueda.getSelectedToggle())
+                .orElse(btnNombre)).getText().toLowerCase();
+
+        IndiceInventario.Campo campo = switch (tipo) {
+            case "categoría", "categoria" -> IndiceInventario.Campo.CATEGORIA;
+            case "etiqueta" -> IndiceInventario.Campo.ETIQUETA;
+            default -> IndiceInventario.Campo.NOMBRE;
+        };
+
+        // El índice se arma una vez por carga
+        if (indice == null) indice = IndiceInventario.construir(rootCompleto);
+        mostrarConPredicado(indice.predicado(campo, filtro));
+    }
+
+    // Aplica el predicado sobre rootCompleto (null = todo) y respeta “Expandir auto”
+    private void mostrarConPredicado(Predicate<ItemInventario> predicado) {
+        TreeItemFiltrable.filtrar(rootCompleto, predicado);
+        if (tablaInventarioTree.getRoot() != rootCompleto) tablaInventarioTree.setRoot(rootCompleto);
+
+        boolean expandir = prefs.getBoolean(PREF_EXPANDIR_NODOS, false);
+        if (expandir) expandirTodo(rootCompleto);
+    }
+
     /**
-     * Carga el árbol de inventario en segundo plano (Thread separado del FX UI Thread)
-     * para evitar bloqueos en la interfaz.
+     * Carga el árbol de inventario en segundo plano, sin bloquear el FX thread.
      *
-     * - Ejecuta inventarioService.cargarArbol(filtro).
-     * - Muestra un spinner mientras carga.
-     * - Actualiza el TreeTableView una vez finalizado.
+     * - La consulta la ordena {@link CoordinadorCargas}: un pedido nuevo corta la carga anterior en el servidor,
+     *   los pedidos en ráfaga salen como una sola consulta y un resultado viejo nunca pisa uno nuevo.
+     * - Muestra un spinner mientras carga y actualiza el TreeTableView al terminar. Si la tabla estaba vacía,
+     *   muestra antes las primeras filas que llegan (ver {@link #mostrarAdelanto}).
      */
     private void cargarArbolAsync(String filtro) {
-
-        // Si hay una carga anterior en ejecución, cancelarla para evitar colisiones
-        if (cargaTask != null && cargaTask.isRunning()) {
-            cargaTask.cancel();
-            try { Thread.sleep(50); } catch (InterruptedException ignored) {}
-        }
-
-        // Spinner de carga durante la ejecución del Task
+        // Spinner de carga mientras dura la consulta
         ProgressIndicator pi = new ProgressIndicator();
         pi.setPrefSize(40, 40);
         tablaInventarioTree.setPlaceholder(pi);
 
-        // Task que se ejecuta en background y retorna un TreeItem<ItemInventario>
-        cargaTask = new Task<>() {
-            @Override
-            protected TreeItem<ItemInventario> call() throws Exception {
-                return inventarioService.cargarArbol(filtro);
-            }
-        };
+        cargas.pedir(filtro);
+    }
 
-        // ✅ Al finalizar correctamente → mostrar los datos en la tabla
-        cargaTask.setOnSucceeded(e -> {
-            TreeItem<ItemInventario> root = cargaTask.getValue();
-            if (root == null) {
-                tablaInventarioTree.setPlaceholder(new Label("Sin datos disponibles"));
-                return;
-            }
+    // Corre en segundo plano: árbol completo o solo productos según "Variantes al expandir"
+    private TreeItem<ItemInventario> consultarArbol(String filtro,
+                                                   Consumer<TreeItem<ItemInventario>> adelanto) throws Exception {
+        return prefs.getBoolean(PREF_VARIANTES_PEREZOSAS, false)
+                ? inventarioService.cargarArbolPerezoso(filtro, variantesPerezosas::cargar)
+                : inventarioService.cargarArbol(filtro, adelanto);
+    }
 
-            rootCompleto = root;                     // Cachea la versión completa del árbol
-            tablaInventarioTree.setRoot(root);
-            tablaInventarioTree.setShowRoot(false);  // Oculta el nodo raíz técnico
+    // ⏳ Primeras filas de la carga: solo si la tabla no muestra nada todavía (no se pisa un árbol completo
+    // con uno parcial). No pasa a ser rootCompleto: filtros y deltas esperan al árbol entero.
+    private void mostrarAdelanto(String filtro, TreeItem<ItemInventario> parcial) {
+        if (rootCompleto != null || parcial == null) return;
+        tablaInventarioTree.setRoot(parcial);
+        tablaInventarioTree.setShowRoot(false);
+    }
 
-            // Si el usuario tiene activa la opción “Expandir auto”, expandir todo el árbol
-            boolean expandir = prefs.getBoolean(PREF_EXPANDIR_NODOS, false);
-            if (expandir) expandirTodo(root);
+    // ✅ Carga terminada (y vigente) → mostrar los datos en la tabla
+    private void mostrarArbol(String filtro, TreeItem<ItemInventario> root) {
+        if (root == null) {
+            tablaInventarioTree.setPlaceholder(new Label("Sin datos disponibles"));
+            return;
+        }
 
-            // Mensaje de estado visual en la tabla
-            tablaInventarioTree.setPlaceholder(new Label(
-                    primeraCarga ? "✅ Inventario cargado correctamente." : "🔄 Inventario actualizado."
-            ));
-            primeraCarga = false;
-        });
+        rootCompleto = root;                     // Cachea la versión completa del árbol
+        variantesPerezosas.limpiar();
+        indice = null;
+        tablaInventarioTree.setRoot(root);
+        tablaInventarioTree.setShowRoot(false);  // Oculta el nodo raíz técnico
 
-        // ❌ Si ocurre un error, mostrar mensaje y trazar excepción
-        cargaTask.setOnFailed(e -> {
-            tablaInventarioTree.setPlaceholder(new Label("❌ Error al cargar inventario"));
-            if (cargaTask.getException() != null) cargaTask.getException().printStackTrace();
-        });
+        // Si el usuario tiene activa la opción “Expandir auto”, expandir todo el árbol
+        boolean expandir = prefs.getBoolean(PREF_EXPANDIR_NODOS, false);
+        if (expandir) expandirTodo(root);
+
+        // Mensaje de estado visual en la tabla
+        tablaInventarioTree.setPlaceholder(new Label(
+                primeraCarga ? "✅ Inventario cargado correctamente." : "🔄 Inventario actualizado."
+        ));
+        primeraCarga = false;
 
-        // Lanza el Task en un hilo daemon separado
-        Thread t = new Thread(cargaTask);
-        t.setDaemon(true);
-        t.start();
+        // Avisos de otras terminales que llegaron durante la carga
+        if (desdeRemoto != null) recargarArbol(filtro);
+    }
+
+    // ❌ Si ocurre un error, mostrar mensaje y trazar excepción
+    private void falloCarga(Throwable e) {
+        if (rootCompleto == null) tablaInventarioTree.setRoot(null);   // no dejar a la vista un adelanto a medias
+        tablaInventarioTree.setPlaceholder(new Label("❌ Error al cargar inventario"));
+        e.printStackTrace();
     }
 
     private void expandirTodo(TreeItem<?> nodo) {
         if (nodo == null) return;
+        if (nodo instanceof TreeItemPerezoso<?> p && !p.isCargado()) return;   // no traer todas las variantes
         nodo.setExpanded(true);
         for (TreeItem<?> hijo : nodo.getChildren()) expandirTodo(hijo);
     }
 
+    /**
+     * Refresca el inventario después de una venta, edición o alta/baja.
+     * Si ya hay un árbol cacheado con el mismo filtro, trae solo el delta (filas con updatedAt
+     * posterior a la última sincronización + bajas) y lo mezcla en rootCompleto.
+     * Si no, hace la carga completa de siempre.
+     */
     private void recargarArbol(String filtro) {
-        cargarArbolAsync(filtro);
+        if (rootCompleto == null || !inventarioService.puedeRefrescarDelta(filtro)
+                || cargas.isActiva()) {
+            cargarArbolAsync(filtro);
+            return;
+        }
+
+        // Un delta a la vez: si ya hay uno en curso, se repite al terminar
+        if (deltaTask != null && deltaTask.isRunning()) {
+            deltaPendiente = true;
+            return;
+        }
+        if (desdeRemoto != null) {
+            inventarioService.retrocederMarca(desdeRemoto);
+            desdeRemoto = null;
+        }
+
+        Task<InventarioDAO.DeltaInventario> tarea = new Task<>() {
+            @Override
+            protected InventarioDAO.DeltaInventario call() throws Exception {
+                return inventarioService.cargarDelta();
+            }
+        };
+        deltaTask = tarea;
+
+        tarea.setOnSucceeded(e -> {
+            InventarioDAO.DeltaInventario delta = tarea.getValue();
+            if (delta.vencido()) {
+                // Marca más vieja que las bajas guardadas (p.ej. una foto local de hace meses): carga completa
+                deltaPendiente = false;
+                resaltarDelta = false;
+                cargarArbolAsync(filtro);
+                return;
+            }
+            inventarioService.aplicarDelta(rootCompleto, delta);
+            if (resaltarDelta) {
+                resaltarDelta = false;
+                if (!delta.isVacio()) resaltar(delta);
+            }
+
+            // Si hay un filtro activo, se vuelve a evaluar con el índice rearmado
+            if (!delta.isVacio()) {
+                indice = null;
+                if (!txtBuscarEtiqueta.getText().isBlank()) aplicarFiltro();
+            }
+
+            if (deltaPendiente) {
+                deltaPendiente = false;
+                recargarArbol(filtro);
+            }
+        });
+
+        // Si el delta falla (p.ej. falta la migración), se cae a la carga completa
+        tarea.setOnFailed(e -> {
+            if (tarea.getException() != null) tarea.getException().printStackTrace();
+            deltaPendiente = false;
+            resaltarDelta = false;
+            cargarArbolAsync(filtro);
+        });
+
+        Tareas.ejecutar(tarea);
     }
 
     private void editGeneral() {
@@ -391,72 +604,49 @@ public class ProductoTreeController {
         }
     }
 
-    private void guardarEdicion(ItemInventario item, String campo, String valor) {
-        boolean okDB = false;
-
-        try {
-            // 🚫 Evitar campos que no aplican a productos base
-            if (!item.isEsVariante() && (campo.equalsIgnoreCase("color") || campo.equalsIgnoreCase("talle"))) {
-                error("Este producto no tiene variantes, por lo que no puede editar " + campo + ".");
-                tablaInventarioTree.refresh();
-                return;
-            }
-
-            // 🚫 Evitar categoría en variantes si no querés actualizar el padre
-            if (item.isEsVariante() && campo.equalsIgnoreCase("categoria")) {
-                error("Las variantes heredan la categoría del producto base.");
-                tablaInventarioTree.refresh();
-                return;
-            }
-
-            // ✅ Guardar normalmente según tipo
-            if (item.isEsVariante()) {
-                okDB = InventarioDAO.updateVarianteCampo(item.getVarianteId(), campo, valor);
-            } else {
-                okDB = inventarioService.actualizarCampo(item.getProductoId(), campo, valor);
-            }
-
-            if (okDB)
-                ok("✔ Cambios guardados en " + campo);
-            else
-                error("⚠ No se pudo actualizar el campo " + campo);
-
-        } catch (Exception e) {
-            error("❌ Error al guardar " + campo + ": " + e.getMessage());
-            e.printStackTrace();
-        } finally {
+    /**
+     * Aplica la edición en la fila y la deja en la cola de escritura diferida (se graba en segundo plano).
+     * Si al grabar falla, la fila vuelve al valor anterior (salvo que ya se haya vuelto a editar) y queda marcada.
+     */
+    private <T> void guardarEdicion(ItemInventario item, String campo, T nuevo, T anterior,
+                                    Function<ItemInventario, T> getter, BiConsumer<ItemInventario, T> setter,
+                                    String valorBD) {
+        // 🚫 Evitar campos que no aplican a productos base
+        if (!item.isEsVariante() && (campo.equalsIgnoreCase("color") || campo.equalsIgnoreCase("talle"))) {
+            error("Este producto no tiene variantes, por lo que no puede editar " + campo + ".");
             tablaInventarioTree.refresh();
+            return;
         }
-    }
 
-    private boolean filtrarRecursivo(TreeItem<ItemInventario> nodo, String campo, String valor) {
-        if (nodo == null || nodo.getChildren() == null) return false;
-
-        Iterator<TreeItem<ItemInventario>> it = nodo.getChildren().iterator();
-        boolean algunHijoVisible = false;
+        // 🚫 Evitar categoría en variantes si no querés actualizar el padre
+        if (item.isEsVariante() && campo.equalsIgnoreCase("categoria")) {
+            error("Las variantes heredan la categoría del producto base.");
+            tablaInventarioTree.refresh();
+            return;
+        }
 
-        while (it.hasNext()) {
-            TreeItem<ItemInventario> hijo = it.next();
-            ItemInventario data = hijo.getValue();
+        setter.accept(item, nuevo);
+        tablaInventarioTree.refresh();
 
-            boolean coincide = false;
-            if (data != null) {
-                switch (campo) {
-                    case "nombre" -> coincide = data.getNombreProducto() != null && data.getNombreProducto().toLowerCase().contains(valor);
-                    case "categoria" -> coincide = data.getCategoria() != null && data.getCategoria().toLowerCase().contains(valor);
-                    case "etiqueta" -> coincide = data.getEtiquetaProducto() != null && data.getEtiquetaProducto().toLowerCase().contains(valor);
-                }
-            }
+        EscrituraDiferida.Entidad entidad = item.isEsVariante()
+                ? EscrituraDiferida.Entidad.VARIANTE
+                : EscrituraDiferida.Entidad.PRODUCTO;
+        long id = item.isEsVariante() ? item.getVarianteId() : item.getProductoId();
 
-            boolean hijosCoinciden = filtrarRecursivo(hijo, campo, valor);
-            if (!coincide && !hijosCoinciden) {
-                it.remove();
+        EscrituraDiferida.get().encolar(entidad, id, campo, valorBD, r -> Platform.runLater(() -> {
+            if (r.ok()) {
+                filasConError.remove(item);
+                // Un solo aviso por cambio grabado: las ediciones reemplazadas no muestran nada
+                if (Objects.equals(r.valor(), valorBD)) ok("✔ Cambios guardados en " + campo);
             } else {
-                algunHijoVisible = true;
+                if (Objects.equals(getter.apply(item), nuevo)) setter.accept(item, anterior);
+                filasConError.add(item);
+                if (Objects.equals(r.valor(), valorBD)) {
+                    error("❌ No se pudo guardar " + campo + " de " + item.getNombreProducto() + ": " + r.error());
+                }
             }
-        }
-
-        return algunHijoVisible;
+            tablaInventarioTree.refresh();
+        }));
     }
 
     // -------------------------------------------------------------------
@@ -476,23 +666,18 @@ public class ProductoTreeController {
                 return;
             }
 
-            try {
-                CategoriaDAO categoriaDAO = new CategoriaDAO();
-                Categoria cat = new Categoria();
-                cat.setNombre(nombre.trim());
-                cat.setParentId(null);
+            Categoria cat = new Categoria();
+            cat.setNombre(nombre.trim());
+            cat.setParentId(null);
 
-                Long id = categoriaDAO.insert(cat);
+            Tareas.alTerminar(new CategoriaDAO().insertAsync(cat), id -> {
                 if (categoriasNombreId != null) {
                     categoriasNombreId.put(nombre.trim(), id);
                     categoriasNombres.add(nombre.trim());
                     FXCollections.sort(categoriasNombres);
                 }
-
                 ok("Categoría agregada: " + nombre);
-            } catch (Exception e) {
-                error("No se pudo agregar: " + e.getMessage());
-            }
+            }, e -> error("No se pudo agregar: " + e.getMessage()));
         });
     }
 
@@ -519,13 +704,13 @@ public class ProductoTreeController {
 
             alert.showAndWait().ifPresent(res -> {
                 if (res == eliminar) {
-                    try {
+                    Tareas.alTerminar(Tareas.enBase(() -> {
                         new ProductoVarianteDAO().deleteById(item.getVarianteId());
+                        return null;
+                    }), r -> {
                         ok("Variante eliminada correctamente");
-                        recargarArbol(txtBuscarEtiqueta.getText());
-                    } catch (Exception e) {
-                        error("Error al eliminar variante: " + e.getMessage());
-                    }
+                        recargarArbol(inventarioService.getFiltroSincronizado());
+                    }, e -> error("Error al eliminar variante: " + e.getMessage()));
                 }
             });
             return; // ⚠️ Importante: evitar que siga al bloque de producto base
@@ -542,13 +727,13 @@ public class ProductoTreeController {
 
         alert.showAndWait().ifPresent(res -> {
             if (res == eliminar) {
-                try {
+                Tareas.alTerminar(Tareas.enBase(() -> {
                     inventarioService.eliminarProducto(item.getProductoId());
+                    return null;
+                }), r -> {
                     ok("Producto eliminado");
-                    recargarArbol(txtBuscarEtiqueta.getText());
-                } catch (Exception e) {
-                    error("No se pudo eliminar: " + e.getMessage());
-                }
+                    recargarArbol(inventarioService.getFiltroSincronizado());
+                }, e -> error("No se pudo eliminar: " + e.getMessage()));
             }
         });
     }
@@ -580,7 +765,7 @@ public class ProductoTreeController {
             stage.setScene(new Scene(root));
             stage.showAndWait();
 
-            recargarArbol(txtBuscarEtiqueta.getText());
+            recargarArbol(inventarioService.getFiltroSincronizado());
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -602,7 +787,7 @@ public class ProductoTreeController {
             // 🔄 Si el controlador marcó que hubo cambios, recargar tabla
             Object result = stage.getUserData();
             if (result instanceof Boolean && (Boolean) result) {
-                recargarArbol(txtBuscarEtiqueta.getText());
+                recargarArbol(inventarioService.getFiltroSincronizado());
             }
 
         } catch (Exception e) {
@@ -621,35 +806,28 @@ public class ProductoTreeController {
 
         ItemInventario item = sel.get();
 
-        // 🧩 Si es variante → traer info desde ProductoVarianteDAO
-        if (item.isEsVariante()) {
-            Optional<Producto> baseOpt = productoDAO.findById(item.getProductoId());
-            if (baseOpt.isEmpty()) {
-                error("No se encontró el producto base.");
+        Tareas.alTerminar(productoDAO.findByIdAsync(item.getProductoId()), opt -> {
+            if (opt.isEmpty()) {
+                error(item.isEsVariante() ? "No se encontró el producto base." : "No se encontró el producto en base de datos.");
+                return;
+            }
+
+            // 🧩 Si es producto base
+            if (!item.isEsVariante()) {
+                pedirCantidad(opt.get(), null);
                 return;
             }
 
-            Producto base = baseOpt.get();
-            // Creamos un producto temporal con datos combinados (para mostrar en el diálogo)
+            // 🧩 Si es variante: producto temporal con datos combinados (para mostrar en el diálogo)
+            Producto base = opt.get();
             Producto producto = new Producto();
             producto.setId(base.getId());
             producto.setNombre(base.getNombre() + " (" + item.getColor() + " " + item.getTalle() + ")");
             producto.setPrecio(item.getPrecio());
             producto.setStockOnHand(item.getStockOnHand());
 
-            pedirCantidad(producto, item.isEsVariante() ? item.getVarianteId() : null);
-            return;
-        }
-
-        // 🧩 Si es producto base
-        Optional<Producto> opt = productoDAO.findById(item.getProductoId());
-        if (opt.isEmpty()) {
-            error("No se encontró el producto en base de datos.");
-            return;
-        }
-
-        Producto producto = opt.get();
-        pedirCantidad(producto, null);
+            pedirCantidad(producto, item.getVarianteId());
+        }, e -> error("No se pudo leer el producto: " + e.getMessage()));
     }
 
     private void pedirCantidad(Producto producto, Long idVariante) {
@@ -720,49 +898,184 @@ public class ProductoTreeController {
     }
 
     private void registrarVentaEnBD(Producto producto, int cantidad, BigDecimal total, String medioPago, Long idVariante) {
-        try {
-            VentaDAO ventaDAO = new VentaDAO();
+        // 🧾 Stock + venta + detalle en una sola sentencia, fuera del hilo de la UI
+        Task<Optional<VentaDAO.VentaRegistrada>> ventaTask = new Task<>() {
+            @Override
+            protected Optional<VentaDAO.VentaRegistrada> call() {
+                return ventaService.registrarVenta(producto.getId(), idVariante, cantidad, producto.getPrecio(), medioPago);
+            }
+        };
 
-            // 🧾 1. Crear venta
-            Venta venta = new Venta();
-            venta.setClienteNombre(null); // opcional, si querés después pedirlo
-            venta.setMedioPago(medioPago);
-            venta.setTotal(total);
+        ventaTask.setOnSucceeded(e -> {
+            Optional<VentaDAO.VentaRegistrada> venta = ventaTask.getValue();
+            if (venta.isEmpty()) {
+                error("⚠ No hay suficiente stock.");
+                return;
+            }
 
-            long ventaId = ventaDAO.registrarVenta(venta);
+            // 🔁 Refrescar y notificar
+            recargarArbol(inventarioService.getFiltroSincronizado());
+            ok("✅ Venta registrada. Total: " + NumberFormat.getCurrencyInstance(new Locale("es", "AR")).format(total)
+                    + "  •  Stock restante: " + venta.get().stockRestante());
+        });
 
-            // 🧮 2. Crear detalle
-            VentaItem item = new VentaItem();
-            item.setVentaId(ventaId);
-            item.setProductoId(producto.getId());
-            item.setCantidad(cantidad);
-            item.setPrecioUnit(producto.getPrecio());
+        ventaTask.setOnFailed(e -> {
+            Throwable ex = ventaTask.getException();
+            if (ex != null) ex.printStackTrace();
+            error("❌ Error al registrar venta: " + (ex != null ? ex.getMessage() : ""));
+        });
 
-            ventaDAO.registrarItem(item);
+        Tareas.ejecutar(ventaTask);
+    }
 
-            // 🏷️ 3. Actualizar stock
-            boolean actualizado;
-            if (idVariante != null) {
-                actualizado = new ProductoVarianteDAO().descontarStock(idVariante, cantidad);
-            } else {
-                actualizado = new ProductoDAO().descontarStock(producto.getId(), cantidad);
+
+    // -------------------------------------------------------------------
+    // CARRITO: varios productos/variantes en una sola venta
+    // -------------------------------------------------------------------
+
+    @FXML
+    private void agregarAlCarrito() {
+        Optional<ItemInventario> sel = getSeleccionInventario();
+        if (sel.isEmpty()) {
+            error("Seleccioná un producto o variante primero.");
+            return;
+        }
+
+        ItemInventario item = sel.get();
+        // Los productos con variantes quedan sin precio en el árbol: se vende la variante
+        if (!item.isEsVariante() && item.getPrecio() == null) {
+            error("Elegí una variante del producto.");
+            return;
+        }
+
+        String descripcion = item.isEsVariante()
+                ? item.getNombreProducto() + " (" + item.getColor() + " " + item.getTalle() + ")"
+                : item.getNombreProducto();
+
+        TextInputDialog dialog = new TextInputDialog("1");
+        dialog.setTitle("Agregar al carrito");
+        dialog.setHeaderText("Producto: " + descripcion);
+        dialog.setContentText("Cantidad:");
+        DialogPane pane = dialog.getDialogPane();
+        pane.getStylesheets().add(getClass().getResource("/Estilos/Estilos.css").toExternalForm());
+        pane.getStyleClass().add("dialog-cuero");
+
+        dialog.showAndWait().ifPresent(valor -> {
+            int cantidad;
+            try {
+                cantidad = Integer.parseInt(valor.trim());
+                if (cantidad <= 0) throw new NumberFormatException();
+            } catch (NumberFormatException e) {
+                error("Cantidad inválida.");
+                return;
             }
 
-            if (!actualizado) {
-                error("⚠ No hay suficiente stock.");
+            // Aviso temprano con el stock que muestra el árbol (el definitivo lo controla la BD al cobrar)
+            int enCarrito = carrito.cantidadDe(item.getProductoId(), item.getVarianteId());
+            if (cantidad + enCarrito > item.getStockOnHand()) {
+                error("⚠ Stock disponible: " + item.getStockOnHand() + (enCarrito > 0 ? " (ya hay " + enCarrito + " en el carrito)" : ""));
                 return;
             }
 
-            // 🔁 4. Refrescar y notificar
-            recargarArbol(txtBuscarEtiqueta.getText());
-            ok("✅ Venta registrada. Total: " + NumberFormat.getCurrencyInstance(new Locale("es", "AR")).format(total));
+            carrito.agregar(new ItemCarrito(item.getProductoId(), item.getVarianteId(), descripcion, cantidad, item.getPrecio()));
+            ok("🛒 Agregado: " + descripcion + " x" + cantidad);
+        });
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            error("❌ Error al registrar venta: " + e.getMessage());
+    @FXML
+    private void verCarrito() {
+        NumberFormat formato = NumberFormat.getCurrencyInstance(new Locale("es", "AR"));
+
+        Dialog<ButtonType> dialogo = new Dialog<>();
+        dialogo.setTitle("Carrito");
+        DialogPane pane = dialogo.getDialogPane();
+        pane.getStylesheets().add(getClass().getResource("/Estilos/Estilos.css").toExternalForm());
+        pane.getStyleClass().add("dialog-cuero");
+
+        Label header = new Label();
+        header.getStyleClass().add("dialog-header");
+        pane.setHeader(header);
+
+        ListView<ItemCarrito> lista = new ListView<>(carrito.getItems());
+        lista.setPrefSize(420, 240);
+        lista.setPlaceholder(new Label("El carrito está vacío."));
+        lista.setCellFactory(lv -> new ListCell<>() {
+            @Override
+            protected void updateItem(ItemCarrito it, boolean empty) {
+                super.updateItem(it, empty);
+                setText(empty || it == null ? null
+                        : it.getDescripcion() + "  x" + it.getCantidad() + "  •  " + formato.format(it.getSubtotal()));
+            }
+        });
+
+        Runnable actualizarTotal = () -> header.setText("💰 Total: " + formato.format(carrito.getTotal())
+                + "  (" + carrito.getUnidades() + " u.)");
+        actualizarTotal.run();
+        ListChangeListener<ItemCarrito> alCambiar = c -> actualizarTotal.run();
+        carrito.getItems().addListener(alCambiar);
+
+        Button btnQuitar = new Button("Quitar seleccionado");
+        btnQuitar.disableProperty().bind(lista.getSelectionModel().selectedItemProperty().isNull());
+        btnQuitar.setOnAction(e -> carrito.quitar(lista.getSelectionModel().getSelectedItem()));
+
+        ComboBox<String> comboPago = new ComboBox<>();
+        comboPago.getItems().addAll("Efectivo", "Tarjeta", "Transferencia", "MercadoPago");
+        comboPago.setValue("Efectivo");
+
+        VBox content = new VBox(8, lista, btnQuitar, new Label("Medio de pago:"), comboPago);
+        content.getStyleClass().add("dialog-content");
+        pane.setContent(content);
+
+        ButtonType cobrar = new ButtonType("Cobrar", ButtonBar.ButtonData.OK_DONE);
+        ButtonType vaciar = new ButtonType("Vaciar", ButtonBar.ButtonData.OTHER);
+        ButtonType cerrar = new ButtonType("Cerrar", ButtonBar.ButtonData.CANCEL_CLOSE);
+        pane.getButtonTypes().addAll(cobrar, vaciar, cerrar);
+        pane.lookupButton(cobrar).disableProperty().bind(Bindings.isEmpty(carrito.getItems()));
+
+        Optional<ButtonType> res = dialogo.showAndWait();
+        carrito.getItems().removeListener(alCambiar);
+
+        if (res.isPresent() && res.get() == vaciar) {
+            carrito.vaciar();
+        } else if (res.isPresent() && res.get() == cobrar) {
+            cobrarCarrito(comboPago.getValue());
         }
     }
 
+    private void cobrarCarrito(String medioPago) {
+        List<ItemCarrito> items = List.copyOf(carrito.getItems());
+        BigDecimal total = carrito.getTotal();
+
+        Task<VentaDAO.VentaCarrito> cobroTask = new Task<>() {
+            @Override
+            protected VentaDAO.VentaCarrito call() {
+                return ventaService.cobrarCarrito(items, medioPago);
+            }
+        };
+
+        cobroTask.setOnSucceeded(e -> {
+            VentaDAO.VentaCarrito venta = cobroTask.getValue();
+            if (!venta.isRegistrada()) {
+                StringBuilder sb = new StringBuilder("⚠ Sin stock suficiente:");
+                for (ItemCarrito it : venta.sinStock()) sb.append("\n• ").append(it.getDescripcion());
+                error(sb.toString());
+                return;
+            }
+
+            carrito.vaciar();
+            recargarArbol(inventarioService.getFiltroSincronizado());
+            ok("✅ Venta #" + venta.ventaId() + " registrada (" + items.size() + " ítems). Total: "
+                    + NumberFormat.getCurrencyInstance(new Locale("es", "AR")).format(total));
+        });
+
+        cobroTask.setOnFailed(e -> {
+            Throwable ex = cobroTask.getException();
+            if (ex != null) ex.printStackTrace();
+            error("❌ Error al registrar venta: " + (ex != null ? ex.getMessage() : ""));
+        });
+
+        Tareas.ejecutar(cobroTask);
+    }
 
     private void procesarVenta(Producto producto, int cantidad, BigDecimal total, Long idVariante) {
         boolean actualizado;
@@ -782,7 +1095,7 @@ public class ProductoTreeController {
         String totalFormateado = formato.format(total);
 
         ok("Venta confirmada: " + totalFormateado);
-        recargarArbol(txtBuscarEtiqueta.getText());
+        recargarArbol(inventarioService.getFiltroSincronizado());
     }
 
     // -------------------------------------------------------------------
@@ -818,31 +1131,15 @@ public class ProductoTreeController {
             String nuevo = event.getNewValue();
             String anterior = event.getOldValue();
 
-            try {
-                boolean okDB;
-                if (item.isEsVariante()) {
-                    okDB = inventarioService.actualizarVariante(item.getVarianteId(), campo, nuevo);
-                } else {
-                    okDB = inventarioService.actualizarCampo(item.getProductoId(), campo, nuevo);
-                }
-
-                if (okDB) {
-                    ok("✔ Cambios guardados en " + campo);
-                    switch (campo.toLowerCase()) {
-                        case "nombre" -> item.setNombreProducto(nuevo);
-                        case "color" -> item.setColor(nuevo);
-                        case "talle" -> item.setTalle(nuevo);
-                    }
-                } else {
-                    error("⚠ No se pudo actualizar el campo " + campo);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                error("❌ Error al guardar " + campo + ": " + e.getMessage());
-            } finally {
-                tablaInventarioTree.refresh();
+            switch (campo.toLowerCase()) {
+                case "nombre" -> guardarEdicion(item, campo, nuevo, anterior,
+                        ItemInventario::getNombreProducto, ItemInventario::setNombreProducto, nuevo);
+                case "color" -> guardarEdicion(item, campo, nuevo, anterior,
+                        ItemInventario::getColor, ItemInventario::setColor, nuevo);
+                case "talle" -> guardarEdicion(item, campo, nuevo, anterior,
+                        ItemInventario::getTalle, ItemInventario::setTalle, nuevo);
             }
-
+            indice = null; // cambió un campo de búsqueda
         });
     }
 
@@ -890,30 +1187,13 @@ public class ProductoTreeController {
             BigDecimal nuevo = event.getNewValue();
             BigDecimal anterior = event.getOldValue();
 
-            try {
-                boolean okDB;
-                if (item.isEsVariante()) {
-                    okDB = inventarioService.actualizarVariante(item.getVarianteId(), campo, nuevo.toPlainString());
-                } else {
-                    okDB = inventarioService.actualizarCampo(item.getProductoId(), campo, nuevo.toPlainString());
-                }
-
-                if (okDB) {
-                    ok("✔ " + campo + " actualizado correctamente");
-                    if (campo.equalsIgnoreCase("precio"))
-                        item.setPrecio(nuevo);
-                    else
-                        item.setCosto(nuevo);
-                } else {
-                    error("⚠ No se pudo actualizar el campo " + campo);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                error("❌ Error al actualizar " + campo + ": " + e.getMessage());
-            } finally {
-                tablaInventarioTree.refresh();
+            if (campo.equalsIgnoreCase("precio")) {
+                guardarEdicion(item, campo, nuevo, anterior,
+                        ItemInventario::getPrecio, ItemInventario::setPrecio, nuevo.toPlainString());
+            } else {
+                guardarEdicion(item, campo, nuevo, anterior,
+                        ItemInventario::getCosto, ItemInventario::setCosto, nuevo.toPlainString());
             }
-
         });
     }
 
@@ -951,49 +1231,25 @@ public class ProductoTreeController {
                 return;
             }
 
-            try {
-                boolean okDB;
-                if (item.isEsVariante()) {
-                    okDB = inventarioService.actualizarVariante(item.getVarianteId(), campo, nuevo.toString());
-                } else {
-                    okDB = inventarioService.actualizarCampo(item.getProductoId(), campo, nuevo.toString());
-                }
-
-                if (okDB) {
-                    ok("✔ Stock actualizado correctamente");
-                    item.setStockOnHand(nuevo);
-                } else {
-                    error("⚠ No se pudo actualizar el campo " + campo);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-                error("❌ Error al actualizar " + campo + ": " + e.getMessage());
-            } finally {
-                tablaInventarioTree.refresh();
-            }
-
+            guardarEdicion(item, campo, nuevo, anterior,
+                    ItemInventario::getStockOnHand, ItemInventario::setStockOnHand, nuevo.toString());
         });
     }
 
     private void configurarEdicionCategoria(TreeTableColumn<ItemInventario, String> col) {
         try {
-            // Obtener lista de categorías desde BD
-            CategoriaDAO categoriaDAO = new CategoriaDAO();
-            List<Categoria> categorias = categoriaDAO.findAll(); // o tu método de obtener todas
-            ObservableList<String> opciones = FXCollections.observableArrayList();
-            for (Categoria c : categorias) {
-                opciones.add(c.getNombre());
-            }
+            // Lista de categorías desde BD (llega en segundo plano; el combo usa la misma lista)
+            recargarOpcionesCategoria();
 
-            col.setCellFactory(ComboBoxTreeTableCell.forTreeTableColumn(opciones));
+            col.setCellFactory(ComboBoxTreeTableCell.forTreeTableColumn(opcionesCategoria));
 
             col.setOnEditCommit(event -> {
                 ItemInventario item = event.getRowValue().getValue();
                 String nuevaCategoria = event.getNewValue();
 
-                item.setCategoria(nuevaCategoria);
-                guardarEdicion(item, "categoria", nuevaCategoria);
-                tablaInventarioTree.refresh();
+                guardarEdicion(item, "categoria", nuevaCategoria, event.getOldValue(),
+                        ItemInventario::getCategoria, ItemInventario::setCategoria, nuevaCategoria);
+                indice = null; // cambió un campo de búsqueda
             });
 
         } catch (Exception e) {
@@ -1002,6 +1258,13 @@ public class ProductoTreeController {
         }
     }
 
+    // Relee las categorías del combo de edición (p.ej. cuando otra terminal agrega o renombra una)
+    private void recargarOpcionesCategoria() {
+        Tareas.alTerminar(new CategoriaDAO().findAllAsync(),
+                categorias -> opcionesCategoria.setAll(categorias.stream().map(Categoria::getNombre).toList()),
+                e -> error("No se pudieron cargar las categorías: " + e.getMessage()));
+    }
+
     private void ajustarAnchoColumnas(TreeTableView<ItemInventario> tabla) {
         // Política de ajuste: la última columna se estira para completar el espacio
         tabla.setColumnResizePolicy(TreeTableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
@@ -1115,18 +1378,10 @@ public class ProductoTreeController {
     @FXML
     private void buscarPorEtiqueta() { grupoBusqueda.selectToggle(btnEtiqueta); }
 
-    private TreeItem<ItemInventario> clonarArbol(TreeItem<ItemInventario> original) {
-        if (original == null) return null;
-        TreeItem<ItemInventario> copia = new TreeItem<>(original.getValue());
-        for (TreeItem<ItemInventario> hijo : original.getChildren()) {
-            copia.getChildren().add(clonarArbol(hijo));
-        }
-        return copia;
-    }
     @FXML
     public void restaurarInventarioCompleto() {
         try {
-            recargarArbol(txtBuscarEtiqueta.getText());
+            recargarArbol(inventarioService.getFiltroSincronizado());
             ok("Inventario actualizado.");
         } catch (Exception e) {
             e.printStackTrace();
@@ -1137,27 +1392,23 @@ public class ProductoTreeController {
 
     /**
      * Muestra solo los productos con stock entre 0 y 2.
+     * Es un predicado más sobre el árbol cacheado: no va a la BD ni recrea nodos.
      * Si el checkbox "Expandir auto" está activado, expande los nodos visibles.
      */
     @FXML
     private void mostrarBajoStock() {
         try {
-            // ⚙️ Cargar todo el árbol desde la BD
-            TreeItem<ItemInventario> root = inventarioService.cargarArbol("");
-
-            if (root == null || root.getChildren().isEmpty()) {
+            if (rootCompleto == null || TreeItemFiltrable.hijos(rootCompleto).isEmpty()) {
                 error("No hay productos cargados en el inventario.");
                 return;
             }
 
-            // 📦 Crear copia para filtrar
-            TreeItem<ItemInventario> copia = clonarArbol(root);
+            // 🔍 Filtrar por stock <= 2 (los productos con variantes quedan si alguna cumple)
+            mostrarConPredicado(it -> it.getStockOnHand() <= 2);
 
-            // 🔍 Filtrar recursivamente por stock <= 2
-            filtrarPorStockBajo(copia);
-
-            // 🚫 Si no hay resultados, informar al usuario
-            if (copia.getChildren().isEmpty()) {
+            // 🚫 Si no hay resultados, informar al usuario y volver al filtro de búsqueda
+            if (rootCompleto.getChildren().isEmpty()) {
+                aplicarFiltro();
                 Alert alert = new Alert(Alert.AlertType.INFORMATION);
                 alert.setTitle("Stock bajo");
                 alert.setHeaderText(null);
@@ -1166,14 +1417,6 @@ public class ProductoTreeController {
                 return;
             }
 
-            // ✅ Mostrar la copia filtrada
-            tablaInventarioTree.setRoot(copia);
-            tablaInventarioTree.setShowRoot(false);
-
-            // ⚙️ Si el usuario activó “Expandir auto”, expandir todos los nodos visibles
-            boolean expandir = prefs.getBoolean(PREF_EXPANDIR_NODOS, false);
-            if (expandir) expandirTodo(copia);
-
             ok("📦 Mostrando productos con stock entre 0 y 2.");
 
         } catch (Exception e) {
@@ -1182,34 +1425,6 @@ public class ProductoTreeController {
         }
     }
 
-    /**
-     * Elimina de forma recursiva los nodos cuyo stock > 2.
-     */
-    private boolean filtrarPorStockBajo(TreeItem<ItemInventario> nodo) {
-        if (nodo == null || nodo.getChildren() == null) return false;
-
-        Iterator<TreeItem<ItemInventario>> it = nodo.getChildren().iterator();
-        boolean algunHijoVisible = false;
-
-        while (it.hasNext()) {
-            TreeItem<ItemInventario> hijo = it.next();
-            ItemInventario data = hijo.getValue();
-
-            boolean coincide = false;
-            if (data != null && data.getStockOnHand() <= 2) {
-                coincide = true;
-            }
-
-            boolean hijosCoinciden = filtrarPorStockBajo(hijo);
-            if (!coincide && !hijosCoinciden) {
-                it.remove();
-            } else {
-                algunHijoVisible = true;
-            }
-        }
-
-        return algunHijoVisible;
-    }
     // === dentro de ProductoTreeController ===
 
     // Convierte el TreeTableView visible en una lista plana en orden
@@ -1267,4 +1482,251 @@ public class ProductoTreeController {
         }
     }
 
+    // Exporta leyendo de la base con el texto de búsqueda actual, no lo que está cargado en el árbol
+    @FXML
+    private void exportarDesdeBase() {
+        ExportarController.exportarInventarioDesdeBase(txtBuscarEtiqueta.getText(),
+                tablaInventarioTree.getScene().getWindow());
+    }
+
+    // Lista de precios/stock del proveedor: primero se muestra qué cambiaría y después se aplica todo junto
+    @FXML
+    private void importarPlanilla() {
+        FileChooser fc = new FileChooser();
+        fc.setTitle("Importar lista de precios / stock");
+        fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("Planillas", "*.csv", "*.tsv", "*.txt", "*.xlsx"));
+        File archivo = fc.showOpenDialog(tablaInventarioTree.getScene().getWindow());
+        if (archivo == null) return;
+
+        Task<ImportacionService.Previa> previaTask = new Task<>() {
+            @Override
+            protected ImportacionService.Previa call() throws Exception {
+                return importacionService.previsualizar(archivo.toPath());
+            }
+        };
+
+        previaTask.setOnSucceeded(e -> confirmarImportacion(previaTask.getValue()));
+        previaTask.setOnFailed(e -> {
+            Throwable ex = previaTask.getException();
+            ex.printStackTrace();
+            error("❌ No se pudo leer la planilla: " + ex.getMessage());
+        });
+
+        Tareas.ejecutar(previaTask);
+    }
+
+    private void confirmarImportacion(ImportacionService.Previa previa) {
+        long sinProducto = previa.contar(ImportacionDAO.SIN_PRODUCTO);
+        long aplicables = previa.diferencias().size() - sinProducto;
+
+        StringBuilder detalle = new StringBuilder();
+        for (String err : previa.errores()) detalle.append("⚠ ").append(err).append('\n');
+        int mostradas = 0;
+        for (ImportacionDAO.Diferencia d : previa.diferencias()) {
+            if (mostradas++ == 500) {
+                detalle.append("… y ").append(previa.diferencias().size() - 500).append(" más\n");
+                break;
+            }
+            detalle.append("Fila ").append(d.fila()).append("  ").append(d.etiqueta());
+            if (d.variante()) detalle.append(" [").append(Objects.toString(d.color(), "-"))
+                    .append(" / ").append(Objects.toString(d.talle(), "-")).append(']');
+            detalle.append("  ").append(d.estado().toUpperCase());
+            if (ImportacionDAO.CAMBIA.equals(d.estado())) {
+                if (!Objects.equals(d.precioActual(), d.precioNuevo()))
+                    detalle.append("  precio ").append(d.precioActual()).append(" → ").append(d.precioNuevo());
+                if (!Objects.equals(d.costoActual(), d.costoNuevo()))
+                    detalle.append("  costo ").append(d.costoActual()).append(" → ").append(d.costoNuevo());
+                if (!Objects.equals(d.stockActual(), d.stockNuevo()))
+                    detalle.append("  stock ").append(d.stockActual()).append(" → ").append(d.stockNuevo());
+            }
+            detalle.append('\n');
+        }
+
+        Alert alerta = new Alert(aplicables > 0 ? Alert.AlertType.CONFIRMATION : Alert.AlertType.INFORMATION);
+        alerta.setTitle("Importar planilla");
+        alerta.setHeaderText(previa.archivo().getFileName() + ": " + previa.filas().size() + " filas leídas");
+        alerta.setContentText(String.format(
+                "Cambian: %d  •  Nuevos: %d  •  Sin producto (se ignoran): %d  •  Con errores: %d%n%s",
+                previa.contar(ImportacionDAO.CAMBIA), previa.contar(ImportacionDAO.NUEVO), sinProducto,
+                previa.errores().size(),
+                aplicables > 0 ? "¿Aplicar los cambios?" : "No hay cambios para aplicar."));
+
+        TextArea txt = new TextArea(detalle.toString());
+        txt.setEditable(false);
+        txt.setPrefSize(720, 320);
+        alerta.getDialogPane().setExpandableContent(txt);
+        alerta.getDialogPane().setExpanded(true);
+
+        ButtonType btnImportar = new ButtonType("Importar", ButtonBar.ButtonData.OK_DONE);
+        if (aplicables > 0) alerta.getButtonTypes().setAll(btnImportar, ButtonType.CANCEL);
+
+        if (alerta.showAndWait().orElse(ButtonType.CANCEL) != btnImportar) return;
+
+        Task<ImportacionDAO.ResultadoImportacion> importarTask = new Task<>() {
+            @Override
+            protected ImportacionDAO.ResultadoImportacion call() {
+                return importacionService.importar(previa);
+            }
+        };
+
+        importarTask.setOnSucceeded(e -> {
+            ImportacionDAO.ResultadoImportacion r = importarTask.getValue();
+            ok(String.format("✔ Importación aplicada: %d productos y %d variantes actualizados, %d productos y %d variantes nuevos",
+                    r.productosActualizados(), r.variantesActualizadas(), r.productosNuevos(), r.variantesNuevas()));
+            recargarArbol(inventarioService.getFiltroSincronizado());
+        });
+        importarTask.setOnFailed(e -> {
+            Throwable ex = importarTask.getException();
+            ex.printStackTrace();
+            error("❌ No se aplicó ningún cambio: " + ex.getMessage());
+        });
+
+        Tareas.ejecutar(importarTask);
+    }
+
+    // Aumento/descuento por categoría (con subcategorías): parámetros → vista previa → se aplica en la base
+    @FXML
+    private void ajustarPrecios() {
+        Tareas.alTerminar(Tareas.enBase(ajustePrecioService::listarCategorias), categorias -> {
+            if (categorias.isEmpty()) {
+                error("No hay categorías cargadas.");
+                return;
+            }
+            dialogoAjustePrecios(categorias);
+        }, e -> error("❌ No se pudieron leer las categorías: " + e.getMessage()));
+    }
+
+    private void dialogoAjustePrecios(List<AjustePrecioService.OpcionCategoria> categorias) {
+        ComboBox<AjustePrecioService.OpcionCategoria> cbCategoria = new ComboBox<>(FXCollections.observableArrayList(categorias));
+        cbCategoria.getSelectionModel().selectFirst();
+        ChoiceBox<String> cbModo = new ChoiceBox<>(FXCollections.observableArrayList("Porcentaje (%)", "Monto fijo ($)"));
+        cbModo.getSelectionModel().selectFirst();
+        TextField txtValor = new TextField();
+        txtValor.setPromptText("Ej: 15 o -10");
+        ChoiceBox<AjustePrecioDAO.Redondeo> cbRedondeo = new ChoiceBox<>(
+                FXCollections.observableArrayList(AjustePrecioDAO.Redondeo.values()));
+        cbRedondeo.getSelectionModel().select(AjustePrecioDAO.Redondeo.PESOS);
+        CheckBox chkArriba = new CheckBox("Redondear siempre hacia arriba");
+        CheckBox chkProductos = new CheckBox("Productos");
+        chkProductos.setSelected(true);
+        CheckBox chkVariantes = new CheckBox("Variantes");
+        chkVariantes.setSelected(true);
+
+        GridPane grid = new GridPane();
+        grid.setHgap(10);
+        grid.setVgap(8);
+        grid.addRow(0, new Label("Categoría:"), cbCategoria);
+        grid.addRow(1, new Label("Tipo:"), cbModo);
+        grid.addRow(2, new Label("Valor:"), txtValor);
+        grid.addRow(3, new Label("Redondeo:"), cbRedondeo);
+        grid.add(chkArriba, 1, 4);
+        grid.addRow(5, new Label("Aplicar a:"), chkProductos);
+        grid.add(chkVariantes, 1, 6);
+
+        Dialog<AjustePrecioDAO.AjustePrecio> dialog = new Dialog<>();
+        dialog.setTitle("Ajustar precios por categoría");
+        dialog.setHeaderText("Incluye las subcategorías de la categoría elegida");
+        ButtonType btnPrevia = new ButtonType("Vista previa", ButtonBar.ButtonData.OK_DONE);
+        dialog.getDialogPane().getButtonTypes().setAll(btnPrevia, ButtonType.CANCEL);
+        dialog.getDialogPane().setContent(grid);
+
+        Node btnOk = dialog.getDialogPane().lookupButton(btnPrevia);
+        btnOk.disableProperty().bind(Bindings.createBooleanBinding(
+                () -> txtValor.getText().isBlank() || (!chkProductos.isSelected() && !chkVariantes.isSelected()),
+                txtValor.textProperty(), chkProductos.selectedProperty(), chkVariantes.selectedProperty()));
+
+        dialog.setResultConverter(bt -> {
+            if (bt != btnPrevia) return null;
+            BigDecimal valor;
+            try {
+                valor = new BigDecimal(txtValor.getText().trim().replace(',', '.'));
+            } catch (NumberFormatException e) {
+                error("El valor debe ser un número (ej: 15 o -10).");
+                return null;
+            }
+            return new AjustePrecioDAO.AjustePrecio(
+                    cbCategoria.getValue().id(),
+                    cbModo.getSelectionModel().getSelectedIndex() == 0
+                            ? AjustePrecioDAO.Modo.PORCENTAJE : AjustePrecioDAO.Modo.MONTO,
+                    valor, cbRedondeo.getValue(), chkArriba.isSelected(),
+                    chkProductos.isSelected(), chkVariantes.isSelected());
+        });
+
+        dialog.showAndWait().ifPresent(ajuste -> {
+            Task<List<AjustePrecioDAO.CambioPrecio>> previaTask = new Task<>() {
+                @Override
+                protected List<AjustePrecioDAO.CambioPrecio> call() {
+                    return ajustePrecioService.previsualizar(ajuste);
+                }
+            };
+
+            previaTask.setOnSucceeded(e -> confirmarAjuste(ajuste, cbCategoria.getValue(), previaTask.getValue()));
+            previaTask.setOnFailed(e -> {
+                Throwable ex = previaTask.getException();
+                ex.printStackTrace();
+                error("❌ No se pudo calcular el ajuste: " + ex.getMessage());
+            });
+
+            Tareas.ejecutar(previaTask);
+        });
+    }
+
+    private void confirmarAjuste(AjustePrecioDAO.AjustePrecio ajuste, AjustePrecioService.OpcionCategoria categoria,
+                                 List<AjustePrecioDAO.CambioPrecio> cambios) {
+        NumberFormat moneda = NumberFormat.getCurrencyInstance(new Locale("es", "AR"));
+        StringBuilder detalle = new StringBuilder();
+        int mostradas = 0;
+        for (AjustePrecioDAO.CambioPrecio c : cambios) {
+            if (mostradas++ == 500) {
+                detalle.append("… y ").append(cambios.size() - 500).append(" más\n");
+                break;
+            }
+            detalle.append(Objects.toString(c.etiqueta(), "-")).append("  ").append(c.nombre());
+            if (c.varianteId() != null) detalle.append(" [").append(Objects.toString(c.color(), "-"))
+                    .append(" / ").append(Objects.toString(c.talle(), "-")).append(']');
+            detalle.append("  ")
+                    .append(c.precioActual() == null ? "-" : moneda.format(c.precioActual()))
+                    .append(" → ")
+                    .append(c.precioNuevo() == null ? "-" : moneda.format(c.precioNuevo()))
+                    .append('\n');
+        }
+
+        Alert alerta = new Alert(cambios.isEmpty() ? Alert.AlertType.INFORMATION : Alert.AlertType.CONFIRMATION);
+        alerta.setTitle("Ajustar precios");
+        alerta.setHeaderText(categoria.ruta() + ": " + cambios.size() + " precios cambian");
+        alerta.setContentText(cambios.isEmpty() ? "No hay precios para modificar." : "¿Aplicar el ajuste?");
+
+        TextArea txt = new TextArea(detalle.toString());
+        txt.setEditable(false);
+        txt.setPrefSize(720, 320);
+        alerta.getDialogPane().setExpandableContent(txt);
+        alerta.getDialogPane().setExpanded(true);
+
+        ButtonType btnAplicar = new ButtonType("Aplicar", ButtonBar.ButtonData.OK_DONE);
+        if (!cambios.isEmpty()) alerta.getButtonTypes().setAll(btnAplicar, ButtonType.CANCEL);
+
+        if (alerta.showAndWait().orElse(ButtonType.CANCEL) != btnAplicar) return;
+
+        // Se recalcula sobre los precios vigentes al aplicar (mismos parámetros que la vista previa)
+        Task<AjustePrecioDAO.ResultadoAjuste> aplicarTask = new Task<>() {
+            @Override
+            protected AjustePrecioDAO.ResultadoAjuste call() {
+                return ajustePrecioService.aplicar(ajuste);
+            }
+        };
+
+        aplicarTask.setOnSucceeded(e -> {
+            AjustePrecioDAO.ResultadoAjuste r = aplicarTask.getValue();
+            ok(String.format("✔ Precios ajustados: %d productos y %d variantes", r.productos(), r.variantes()));
+            recargarArbol(inventarioService.getFiltroSincronizado());   // delta: solo trae las filas tocadas
+        });
+        aplicarTask.setOnFailed(e -> {
+            Throwable ex = aplicarTask.getException();
+            ex.printStackTrace();
+            error("❌ No se aplicó ningún cambio: " + ex.getMessage());
+        });
+
+        Tareas.ejecutar(aplicarTask);
+    }
+
 }
@@ -0,0 +1,68 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.DAO.AjustePrecioDAO;
+import com.arielcardales.arielcardales.DAO.AjustePrecioDAO.AjustePrecio;
+import com.arielcardales.arielcardales.DAO.AjustePrecioDAO.CambioPrecio;
+import com.arielcardales.arielcardales.DAO.AjustePrecioDAO.ResultadoAjuste;
+import com.arielcardales.arielcardales.DAO.CategoriaDAO;
+import com.arielcardales.arielcardales.DAO.DaoException;
+import com.arielcardales.arielcardales.Entidades.Categoria;
+
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Ajuste masivo de precios por categoría (con sus subcategorías).
+ * Flujo: previsualizar (no toca la base) → el usuario revisa → aplicar con los mismos parámetros.
+ */
+public class AjustePrecioService {
+
+    /** Categoría para elegir en pantalla, con la ruta completa ("Carteras › Cuero"). */
+    public record OpcionCategoria(long id, String ruta) {
+        @Override public String toString() { return ruta; }
+    }
+
+    private final AjustePrecioDAO ajusteDAO = new AjustePrecioDAO();
+    private final CategoriaDAO categoriaDAO = new CategoriaDAO();
+
+    /** Todas las categorías ordenadas por ruta (padre antes que hijas). */
+    public List<OpcionCategoria> listarCategorias() {
+        Map<Long, Categoria> porId = new HashMap<>();
+        for (Categoria c : categoriaDAO.findAllWithParent()) porId.put(c.getId(), c);
+
+        List<OpcionCategoria> out = new ArrayList<>();
+        for (Categoria c : porId.values()) out.add(new OpcionCategoria(c.getId(), ruta(c, porId)));
+        out.sort(Comparator.comparing(OpcionCategoria::ruta, String.CASE_INSENSITIVE_ORDER));
+        return out;
+    }
+
+    /** Filas cuyo precio cambiaría. Ejecutar fuera del hilo de la UI. */
+    public List<CambioPrecio> previsualizar(AjustePrecio ajuste) {
+        try {
+            return ajusteDAO.previsualizar(ajuste);
+        } catch (SQLException e) {
+            throw new DaoException("Error calculando el ajuste de precios: " + e.getMessage(), e);
+        }
+    }
+
+    /** Aplica el ajuste en una sola transacción. */
+    public ResultadoAjuste aplicar(AjustePrecio ajuste) {
+        try {
+            return ajusteDAO.aplicar(ajuste);
+        } catch (SQLException e) {
+            throw new DaoException("Error aplicando el ajuste de precios: " + e.getMessage(), e);
+        }
+    }
+
+    // ---------------------------------------------------------------
+
+    private static String ruta(Categoria c, Map<Long, Categoria> porId) {
+        Deque<String> partes = new ArrayDeque<>();
+        Set<Long> vistos = new HashSet<>();   // por si hay un ciclo en parentId
+        for (Categoria actual = c; actual != null && vistos.add(actual.getId());
+             actual = actual.getParentId() == null ? null : porId.get(actual.getParentId())) {
+            partes.addFirst(actual.getNombre());
+        }
+        return String.join(" › ", partes);
+    }
+}
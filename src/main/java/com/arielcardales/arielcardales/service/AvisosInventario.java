@@ -0,0 +1,177 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.DAO.Database;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Escucha los avisos de cambios que publican los triggers de V003 (canal inventario_cambios),
+ * para que cada terminal se entere de lo que graban las otras sin consultar la base a cada rato.
+ *
+ * - Un hilo propio con una conexión dedicada (fuera del pool) hace LISTEN y espera avisos.
+ * - Los avisos que llegan juntos se agrupan ~250 ms y se entregan de una vez a los suscriptores
+ *   (desde el hilo "avisos-inventario"; la UI tiene que pasar al FX thread).
+ * - Si se corta la conexión se reintenta cada 5 s; al volver se avisa {@link #RECONEXION}
+ *   porque en el medio se pudieron perder avisos.
+ */
+public final class AvisosInventario {
+
+    public static final String CANAL = "inventario_cambios";
+    /** "Tabla" que se informa cuando se recupera la conexión: conviene refrescar por las dudas. */
+    public static final String RECONEXION = "reconexion";
+
+    /**
+     * Cambios recibidos en una tanda: tabla → el now() más viejo de las transacciones que la tocaron
+     * (null para {@link #RECONEXION}).
+     */
+    public record Cambios(Map<String, Timestamp> tablas) {
+        public boolean incluye(String... nombres) {
+            for (String n : nombres) if (tablas.containsKey(n)) return true;
+            return false;
+        }
+
+        /** Marca desde la que hay que pedir el delta para no perder filas de estas transacciones. */
+        public Timestamp desde() {
+            Timestamp min = null;
+            for (Timestamp t : tablas.values()) {
+                if (t != null && (min == null || t.before(min))) min = t;
+            }
+            return min;
+        }
+    }
+
+    private static final long AGRUPAR_MS = 250;
+    private static final int ESPERA_AVISOS_MS = 10_000;   // cada cuánto se verifica que la conexión siga viva
+    private static final long REINTENTO_MS = 5_000;
+    private static final AvisosInventario INSTANCIA = new AvisosInventario();
+
+    private final List<Consumer<Cambios>> suscriptores = new CopyOnWriteArrayList<>();
+    private final Object lock = new Object();
+    private final Map<String, Timestamp> acumulados = new LinkedHashMap<>();
+    private final ScheduledExecutorService despachador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "avisos-inventario");
+        t.setDaemon(true);
+        return t;
+    });
+    private ScheduledFuture<?> proximo;
+    private Thread escucha;
+    private volatile boolean activo;
+
+    private AvisosInventario() {}
+
+    public static AvisosInventario get() { return INSTANCIA; }
+
+    /**
+     * Registra un suscriptor (y arranca la escucha si es el primero).
+     * Devuelve la acción para darse de baja.
+     */
+    public Runnable suscribir(Consumer<Cambios> suscriptor) {
+        suscriptores.add(suscriptor);
+        iniciar();
+        return () -> suscriptores.remove(suscriptor);
+    }
+
+    public synchronized void iniciar() {
+        if (activo) return;
+        activo = true;
+        escucha = new Thread(this::escuchar, "escucha-inventario");
+        escucha.setDaemon(true);
+        escucha.start();
+    }
+
+    /** Corta la escucha (la conexión dedicada se cierra al salir del bucle). */
+    public synchronized void detener() {
+        activo = false;
+        if (escucha != null) escucha.interrupt();
+        escucha = null;
+    }
+
+    // ---------------------------------------------------------------
+
+    private void escuchar() {
+        boolean reconectando = false;
+        while (activo) {
+            try (Connection cn = Database.abrirConexionDedicada()) {
+                try (Statement st = cn.createStatement()) {
+                    st.execute("listen " + CANAL);
+                }
+                if (reconectando) recibir(RECONEXION, null);
+                reconectando = true;
+
+                PGConnection pg = cn.unwrap(PGConnection.class);
+                while (activo) {
+                    PGNotification[] avisos = pg.getNotifications(ESPERA_AVISOS_MS);
+                    if (avisos == null || avisos.length == 0) {
+                        // Sin novedades: un select tonto detecta si la conexión se cayó
+                        try (Statement st = cn.createStatement()) {
+                            st.execute("select 1");
+                        }
+                        continue;
+                    }
+                    for (PGNotification aviso : avisos) recibir(aviso.getParameter());
+                }
+            } catch (SQLException e) {
+                if (!activo) break;
+                System.err.println("⚠ Escucha de cambios desconectada: " + e.getMessage());
+                reconectando = true;
+                try {
+                    Thread.sleep(REINTENTO_MS);
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // Payload "tabla|epoch_ms" (ver V003)
+    private void recibir(String payload) {
+        if (payload == null) return;
+        int sep = payload.indexOf('|');
+        String tabla = sep < 0 ? payload : payload.substring(0, sep);
+        Timestamp desde = null;
+        if (sep >= 0) {
+            try {
+                // 1 ms antes: el now() viene truncado a milisegundos y el delta compara con ">"
+                desde = new Timestamp(Long.parseLong(payload.substring(sep + 1)) - 1);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        recibir(tabla, desde);
+    }
+
+    private void recibir(String tabla, Timestamp desde) {
+        synchronized (lock) {
+            acumulados.merge(tabla, desde == null ? new Timestamp(Long.MAX_VALUE) : desde,
+                    (a, b) -> a.before(b) ? a : b);
+            if (proximo == null) {
+                proximo = despachador.schedule(this::despachar, AGRUPAR_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void despachar() {
+        Map<String, Timestamp> tanda = new LinkedHashMap<>();
+        synchronized (lock) {
+            acumulados.forEach((tabla, t) -> tanda.put(tabla, t.getTime() == Long.MAX_VALUE ? null : t));
+            acumulados.clear();
+            proximo = null;
+        }
+
+        Cambios cambios = new Cambios(Collections.unmodifiableMap(tanda));
+        for (Consumer<Cambios> s : suscriptores) {
+            try {
+                s.accept(cambios);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
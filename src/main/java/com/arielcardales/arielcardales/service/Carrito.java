@@ -0,0 +1,63 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.Entidades.ItemCarrito;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.math.BigDecimal;
+
+/** Carrito (ticket) de la venta en curso: junta los ítems y se cobra todo junto como una sola venta. */
+public class Carrito {
+
+    private final ObservableList<ItemCarrito> items = FXCollections.observableArrayList();
+
+    public ObservableList<ItemCarrito> getItems() {
+        return items;
+    }
+
+    /** Agrega el ítem o, si ya estaba el mismo producto/variante, suma la cantidad. */
+    public void agregar(ItemCarrito nuevo) {
+        for (int i = 0; i < items.size(); i++) {
+            ItemCarrito it = items.get(i);
+            if (it.mismoArticulo(nuevo)) {
+                it.setCantidad(it.getCantidad() + nuevo.getCantidad());
+                items.set(i, it); // avisa el cambio a la lista de la UI
+                return;
+            }
+        }
+        items.add(nuevo);
+    }
+
+    public void quitar(ItemCarrito item) {
+        items.remove(item);
+    }
+
+    /** Cantidad ya cargada de ese producto/variante (para avisar si supera el stock). */
+    public int cantidadDe(long productoId, Long varianteId) {
+        ItemCarrito buscado = new ItemCarrito(productoId, varianteId, null, 0, BigDecimal.ZERO);
+        for (ItemCarrito it : items) {
+            if (it.mismoArticulo(buscado)) return it.getCantidad();
+        }
+        return 0;
+    }
+
+    public BigDecimal getTotal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for (ItemCarrito it : items) total = total.add(it.getSubtotal());
+        return total;
+    }
+
+    public int getUnidades() {
+        int n = 0;
+        for (ItemCarrito it : items) n += it.getCantidad();
+        return n;
+    }
+
+    public boolean isVacio() {
+        return items.isEmpty();
+    }
+
+    public void vaciar() {
+        items.clear();
+    }
+}
@@ -0,0 +1,75 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.DAO.StockDAO;
+import com.arielcardales.arielcardales.Util.Tareas;
+
+import java.util.concurrent.*;
+
+/**
+ * Vuelca periódicamente el libro de movimientos de stock a la foto (stockOnHand / stock), que es lo que
+ * leen el árbol, las exportaciones y el ABM.
+ *
+ * - Compacta apenas llega el aviso de movimientos nuevos (de esta terminal o de otra) y, por las dudas,
+ *   cada minuto.
+ * - Al actualizar la foto saltan los avisos de producto/variante y el árbol se refresca solo por delta.
+ * - Si dos terminales compactan a la vez, una sola lo hace (advisory lock en StockDAO.compactar).
+ */
+public final class CompactadorStock {
+
+    private static final long PERIODO_S = 60;
+    private static final CompactadorStock INSTANCIA = new CompactadorStock();
+
+    private final StockDAO stockDAO = new StockDAO();
+    private final ScheduledExecutorService ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "compactador-stock");
+        t.setDaemon(true);
+        return t;
+    });
+    private Runnable bajaAvisos;
+    private ScheduledFuture<?> periodico;
+
+    private CompactadorStock() {}
+
+    public static CompactadorStock get() { return INSTANCIA; }
+
+    public synchronized void iniciar() {
+        if (periodico != null) return;
+        bajaAvisos = AvisosInventario.get().suscribir(cambios -> {
+            if (cambios.incluye("stock_movimiento", AvisosInventario.RECONEXION)) pedir();
+        });
+        periodico = ejecutor.scheduleWithFixedDelay(this::compactar, 0, PERIODO_S, TimeUnit.SECONDS);
+    }
+
+    /** Pide una compactación lo antes posible (sin bloquear al que llama). */
+    public void pedir() {
+        ejecutor.execute(this::compactar);
+    }
+
+    /** Deja de compactar; antes intenta volcar lo pendiente (se llama desde App.stop()). */
+    public synchronized void detener() {
+        if (periodico == null) return;   // nunca se inició
+        bajaAvisos.run();
+        periodico.cancel(false);
+        bajaAvisos = null;
+        periodico = null;
+
+        try {
+            ejecutor.submit(this::compactar).get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("⚠ No se pudo compactar el stock al cerrar: " + e.getMessage());
+        }
+    }
+
+    private void compactar() {
+        try {
+            int movimientos = Tareas.conPermiso(stockDAO::compactar);
+            if (movimientos > 0) System.out.println("📦 Stock compactado: " + movimientos + " movimientos");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("⚠ Error compactando stock: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.DAO.Cancelacion;
+import com.arielcardales.arielcardales.Util.Tareas;
+import javafx.animation.PauseTransition;
+import javafx.util.Duration;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Ordena las cargas completas de una vista (p.ej. el árbol del inventario):
+ *
+ * - Cada carga lleva un número de generación; si llega el resultado de una que ya se reemplazó, se descarta.
+ * - Un pedido nuevo con otra carga en curso la cancela de verdad: la consulta se corta en el servidor
+ *   (ver {@link Cancelacion}), no solo se deja de esperar.
+ * - Los pedidos seguidos (ventas o ediciones en ráfaga) se juntan en una sola consulta: sale cuando pasan
+ *   {@link #DEMORA} sin pedidos nuevos, con el último filtro. Si no había nada en marcha, sale enseguida.
+ *
+ * - Opcionalmente la consulta puede adelantar un resultado parcial (las primeras filas): llega a alAdelantar
+ *   solo si la carga sigue vigente y todavía no terminó.
+ *
+ * Se usa desde el FX thread; alAdelantar, alCargar y alFallar también se llaman en él.
+ */
+public class CoordinadorCargas<T> {
+
+    /** La carga en sí: corre en segundo plano, con permiso de base (ver {@link Tareas}). */
+    @FunctionalInterface
+    public interface Consulta<T> {
+        /** {@code adelanto}: para entregar un resultado parcial antes del final (null si no se muestran). */
+        T cargar(String filtro, Consumer<T> adelanto) throws Exception;
+    }
+
+    static final Duration DEMORA = Duration.millis(150);
+
+    private final Consulta<T> consulta;
+    private final BiConsumer<String, T> alAdelantar;   // null = sin resultados parciales
+    private final BiConsumer<String, T> alCargar;
+    private final Consumer<Throwable> alFallar;
+    private final PauseTransition espera = new PauseTransition(DEMORA);
+
+    private long generacion;
+    private Cancelacion enCurso;
+    private String pendiente;            // filtro del pedido que espera salir (null = ninguno)
+
+    public CoordinadorCargas(Consulta<T> consulta, BiConsumer<String, T> alCargar, Consumer<Throwable> alFallar) {
+        this(consulta, null, alCargar, alFallar);
+    }
+
+    public CoordinadorCargas(Consulta<T> consulta, BiConsumer<String, T> alAdelantar,
+                             BiConsumer<String, T> alCargar, Consumer<Throwable> alFallar) {
+        this.consulta = consulta;
+        this.alAdelantar = alAdelantar;
+        this.alCargar = alCargar;
+        this.alFallar = alFallar;
+        espera.setOnFinished(e -> lanzar());
+    }
+
+    /** Pide una carga con este filtro; reemplaza a la que esté en curso o esperando. */
+    public void pedir(String filtro) {
+        boolean quieto = enCurso == null && pendiente == null;
+        pendiente = filtro == null ? "" : filtro;
+        if (quieto) {
+            lanzar();
+            return;
+        }
+        cancelarEnCurso();
+        espera.playFromStart();
+    }
+
+    /** true si hay una carga corriendo o esperando salir. */
+    public boolean isActiva() {
+        return enCurso != null || pendiente != null;
+    }
+
+    /** Descarta lo pedido y corta la carga en curso. */
+    public void cancelar() {
+        pendiente = null;
+        espera.stop();
+        cancelarEnCurso();
+    }
+
+    // ---------------------------------------------------------------
+
+    private void cancelarEnCurso() {
+        if (enCurso == null) return;
+        generacion++;                           // lo que devuelva ya no sirve
+        Cancelacion c = enCurso;
+        enCurso = null;
+        Tareas.FONDO.execute(c::cancelar);      // el cancel habla con el servidor: fuera del FX thread
+    }
+
+    private void lanzar() {
+        String filtro = pendiente;
+        pendiente = null;
+        if (filtro == null) return;
+
+        long gen = ++generacion;
+        Cancelacion c = new Cancelacion();
+        enCurso = c;
+
+        // El parcial sale con runLater antes que el resultado final: nunca llega después de él
+        Consumer<T> adelanto = alAdelantar == null ? null : parcial -> Tareas.enFx(() -> {
+            if (gen == generacion && enCurso == c) alAdelantar.accept(filtro, parcial);
+        });
+
+        Tareas.alTerminar(Tareas.enBase(() -> c.correr(() -> consulta.cargar(filtro, adelanto))), valor -> {
+            if (gen != generacion) return;      // la reemplazó otra carga
+            enCurso = null;
+            alCargar.accept(filtro, valor);
+        }, e -> {
+            if (gen != generacion) return;      // el error de una carga cancelada no interesa
+            enCurso = null;
+            alFallar.accept(e);
+        });
+    }
+}
@@ -0,0 +1,186 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.DAO.InventarioDAO;
+import com.arielcardales.arielcardales.Util.Tareas;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Cola de escritura diferida para las ediciones en línea del inventario.
+ *
+ * - Cada edición se guarda por (entidad, id, campo): si el mismo campo se edita otra vez antes de grabar,
+ *   solo se escribe el último valor.
+ * - Un único hilo de fondo graba ~400 ms después de la primera edición pendiente, agrupando por
+ *   (entidad, campo) en un batch JDBC por grupo.
+ * - Cada edición recibe su Resultado (desde el hilo de fondo). Si un batch falla se reintenta fila por fila
+ *   para que el error quede solo en las filas que lo causan.
+ * - {@link #cerrar(Duration)} graba lo pendiente antes de salir (se llama desde App.stop()).
+ */
+public final class EscrituraDiferida {
+
+    public enum Entidad { PRODUCTO, VARIANTE }
+
+    public record Clave(Entidad entidad, long id, String campo) {}
+
+    /** Resultado de grabar una clave: valor efectivamente enviado y error (null si se guardó). */
+    public record Resultado(Clave clave, String valor, String error) {
+        public boolean ok() { return error == null; }
+    }
+
+    private record Grupo(Entidad entidad, String campo) {}
+
+    // Edición pendiente: último valor y los avisos de todas las ediciones que reemplazó
+    private static final class Pendiente {
+        String valor;
+        final List<Consumer<Resultado>> avisos = new ArrayList<>();
+    }
+
+    private static final long DEMORA_MS = 400;
+    private static final EscrituraDiferida INSTANCIA = new EscrituraDiferida();
+
+    private final Object lock = new Object();
+    private final Map<Clave, Pendiente> pendientes = new LinkedHashMap<>();
+    private final ScheduledExecutorService ejecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "escritura-diferida");
+        t.setDaemon(true);
+        return t;
+    });
+    private ScheduledFuture<?> proximo;
+    private boolean cerrado;
+    private volatile boolean fallaAlCerrar;   // sus reversiones van por el FX thread, que ya no las corre
+
+    private EscrituraDiferida() {}
+
+    public static EscrituraDiferida get() { return INSTANCIA; }
+
+    /**
+     * Deja un cambio en la cola. {@code aviso} se llama desde el hilo de fondo cuando se grabó (o falló);
+     * si el cambio se reemplaza por otro del mismo campo, se avisa igual con el resultado del último valor.
+     */
+    public void encolar(Entidad entidad, long id, String campo, String valor, Consumer<Resultado> aviso) {
+        Clave clave = new Clave(entidad, id, campo.trim().toLowerCase());
+
+        synchronized (lock) {
+            if (cerrado) throw new IllegalStateException("La escritura diferida ya se cerró");
+
+            Pendiente p = pendientes.computeIfAbsent(clave, k -> new Pendiente());
+            p.valor = valor;
+            if (aviso != null) p.avisos.add(aviso);
+
+            if (proximo == null) {
+                proximo = ejecutor.schedule(this::vaciar, DEMORA_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /** Cantidad de cambios esperando ser grabados. */
+    public int getPendientes() {
+        synchronized (lock) {
+            return pendientes.size();
+        }
+    }
+
+    /**
+     * Graba lo pendiente y apaga el hilo. Espera como mucho {@code espera}; devuelve false si no llegó
+     * o si alguna edición falló mientras se cerraba (en pantalla puede quedar un valor que no se grabó).
+     * Después de cerrar no se aceptan más cambios.
+     */
+    public boolean cerrar(Duration espera) throws InterruptedException {
+        synchronized (lock) {
+            if (cerrado) return true;
+            cerrado = true;
+            if (proximo != null) proximo.cancel(false);
+            proximo = null;
+        }
+
+        // Se vacía en el mismo hilo: si había un batch en curso, este queda detrás
+        ejecutor.execute(this::vaciar);
+        ejecutor.shutdown();
+        return ejecutor.awaitTermination(espera.toMillis(), TimeUnit.MILLISECONDS) && !fallaAlCerrar;
+    }
+
+    // ---------------------------------------------------------------
+
+    private void vaciar() {
+        Map<Grupo, List<Map.Entry<Clave, Pendiente>>> grupos = new LinkedHashMap<>();
+        int total;
+
+        synchronized (lock) {
+            proximo = null;
+            total = pendientes.size();
+            for (Map.Entry<Clave, Pendiente> e : pendientes.entrySet()) {
+                Grupo g = new Grupo(e.getKey().entidad(), e.getKey().campo());
+                grupos.computeIfAbsent(g, k -> new ArrayList<>()).add(e);
+            }
+            pendientes.clear();
+        }
+
+        if (total == 0) return;
+        System.out.println("💾 Escritura diferida: " + total + " cambio(s) en " + grupos.size() + " batch");
+
+        try {
+            Tareas.conPermiso(() -> {
+                for (Map.Entry<Grupo, List<Map.Entry<Clave, Pendiente>>> g : grupos.entrySet()) {
+                    grabar(g.getKey(), g.getValue());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            // Solo puede ser la espera del permiso interrumpida (grabar no tira): se avisa como error
+            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+            for (List<Map.Entry<Clave, Pendiente>> filas : grupos.values()) {
+                for (Map.Entry<Clave, Pendiente> fila : filas) avisar(fila, e.toString());
+            }
+        }
+    }
+
+    private void grabar(Grupo grupo, List<Map.Entry<Clave, Pendiente>> filas) {
+        List<Long> ids = new ArrayList<>(filas.size());
+        List<String> valores = new ArrayList<>(filas.size());
+        for (Map.Entry<Clave, Pendiente> e : filas) {
+            ids.add(e.getKey().id());
+            valores.add(e.getValue().valor);
+        }
+
+        try {
+            int[] afectadas = InventarioDAO.updateCampoEnBatch(
+                    grupo.entidad() == Entidad.VARIANTE, grupo.campo(), ids, valores);
+
+            for (int i = 0; i < filas.size(); i++) {
+                boolean existe = afectadas[i] > 0 || afectadas[i] == Statement.SUCCESS_NO_INFO;
+                avisar(filas.get(i), existe ? null : "el registro ya no existe");
+            }
+        } catch (SQLException e) {
+            if (filas.size() == 1) {
+                System.err.println("❌ No se pudo guardar " + filas.get(0).getKey() + ": " + e.getMessage());
+                avisar(filas.get(0), e.getMessage());
+                return;
+            }
+            // El batch se revirtió entero: fila por fila para aislar la que falla
+            for (Map.Entry<Clave, Pendiente> fila : filas) grabar(grupo, List.of(fila));
+        }
+    }
+
+    // Del último aviso al primero: cada edición puede deshacerse en cadena hasta el valor original
+    private void avisar(Map.Entry<Clave, Pendiente> fila, String error) {
+        if (error != null) {
+            synchronized (lock) {
+                if (cerrado) fallaAlCerrar = true;
+            }
+        }
+        Resultado r = new Resultado(fila.getKey(), fila.getValue().valor, error);
+        List<Consumer<Resultado>> avisos = fila.getValue().avisos;
+        for (int i = avisos.size() - 1; i >= 0; i--) {
+            try {
+                avisos.get(i).accept(r);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.DAO.DaoException;
+import com.arielcardales.arielcardales.DAO.InventarioDAO;
+import com.arielcardales.arielcardales.Util.AvanceExportacion;
+import com.arielcardales.arielcardales.Util.ExportadorCSV;
+import com.arielcardales.arielcardales.Util.ExportadorExcel;
+import com.arielcardales.arielcardales.Util.ExportadorPDF;
+
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * Exportación del inventario leyendo directo de la base (cursor), sin pasar por el árbol de la UI:
+ * no hace falta tenerlo cargado y en memoria queda solo la tanda que se está escribiendo.
+ * Sirve tanto desde la pantalla (en un Task) como para una exportación programada (ver main).
+ */
+public class ExportacionService {
+
+    public enum Formato {
+        CSV("csv"), EXCEL("xlsx"), PDF("pdf");
+
+        private final String extension;
+
+        Formato(String extension) { this.extension = extension; }
+
+        public String getExtension() { return extension; }
+    }
+
+    /**
+     * Exporta las filas que devolvería cargarArbol con ese filtro ("" = todo el inventario).
+     * Ejecutar fuera del hilo de la UI.
+     */
+    public void exportarDesdeBase(Formato formato, String filtro, String ruta, AvanceExportacion avance) {
+        try {
+            long total = InventarioDAO.contarFilas(filtro);
+            try (InventarioDAO.CursorInventario filas = InventarioDAO.abrirCursor(filtro)) {
+                switch (formato) {
+                    case CSV -> ExportadorCSV.exportarInventario(filas, total, ruta, avance);
+                    case EXCEL -> ExportadorExcel.exportarInventario(filas, total, ruta, avance);
+                    case PDF -> ExportadorPDF.exportarInventario(filas, total, ruta, avance);
+                }
+            }
+        } catch (SQLException e) {
+            throw new DaoException("Error exportando inventario: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Exportación completa para tareas programadas (sin abrir la app):
+     * java -cp "ArielCardales-1.0.0.jar;libs/*" com.arielcardales.arielcardales.service.ExportacionService csv|excel|pdf ruta [filtro]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Uso: ExportacionService csv|excel|pdf <ruta> [filtro]");
+            System.exit(2);
+        }
+        Formato formato = Formato.valueOf(args[0].toUpperCase(Locale.ROOT));
+        String filtro = args.length > 2 ? args[2] : "";
+
+        long inicio = System.currentTimeMillis();
+        new ExportacionService().exportarDesdeBase(formato, filtro, args[1], AvanceExportacion.NINGUNO);
+        System.out.println("✅ Inventario exportado en " + args[1] +
+                " (" + (System.currentTimeMillis() - inicio) + " ms)");
+        System.exit(0);   // cierra el pool de conexiones
+    }
+}
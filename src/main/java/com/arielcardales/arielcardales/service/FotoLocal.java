@@ -0,0 +1,104 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.DAO.Database;
+import com.arielcardales.arielcardales.Entidades.SnapshotInventario;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.sql.Timestamp;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Última foto del inventario guardada en disco, para mostrar la tabla apenas abre la app
+ * y después ponerla al día con un delta contra la base.
+ *
+ * - Se guarda al cerrar (App.stop) con lo que haya en pantalla: carga completa sin filtro + deltas + ediciones.
+ * - Formato binario propio: encabezado (versión y marca de sincronización) y las columnas
+ *   de {@link SnapshotInventario}. Se lee mapeando el archivo en memoria.
+ * - Un archivo por base (la local de pruebas no pisa la de producción).
+ * - Se escribe a un temporal y se renombra, así un corte a mitad de camino no deja un archivo roto.
+ * - Si el archivo no sirve (otra versión, corrupto) se ignora y se hace la carga de siempre.
+ */
+public final class FotoLocal {
+
+    /** Foto y marca del servidor hasta la que está al día (la de la última sincronización). */
+    public record Guardada(SnapshotInventario foto, Timestamp marca) {}
+
+    private static final int MAGICO = 0x41434956;   // "ACIV"
+    private static final int VERSION = 1;
+    private static final Path ARCHIVO = Paths.get(System.getProperty("user.home"), ".appinventario",
+            Database.esLocal() ? "inventario-local.foto" : "inventario.foto");
+    private static final FotoLocal INSTANCIA = new FotoLocal();
+
+    private volatile Supplier<Guardada> fuente;
+    private boolean leida;
+
+    private FotoLocal() {}
+
+    public static FotoLocal get() { return INSTANCIA; }
+
+    /**
+     * Quién arma la foto al cerrar: la vista de inventario, llamada en el FX thread.
+     * Puede devolver null si no hay nada que valga la pena guardar.
+     */
+    public void setFuente(Supplier<Guardada> fuente) {
+        this.fuente = fuente;
+    }
+
+    public boolean existe() {
+        return Files.isRegularFile(ARCHIVO);
+    }
+
+    /** Guarda la foto actual de la fuente registrada (se llama desde App.stop()). */
+    public void guardar() {
+        Supplier<Guardada> f = fuente;
+        if (f == null) return;
+
+        try {
+            Guardada actual = f.get();
+            if (actual == null || actual.foto() == null || actual.marca() == null) return;
+
+            Files.createDirectories(ARCHIVO.getParent());
+            Path tmp = ARCHIVO.resolveSibling(ARCHIVO.getFileName() + ".tmp");
+            try (FileChannel canal = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer enc = ByteBuffer.allocate(4 + 4 + 8).order(ByteOrder.LITTLE_ENDIAN);
+                enc.putInt(MAGICO).putInt(VERSION).putLong(actual.marca().getTime()).flip();
+                while (enc.hasRemaining()) canal.write(enc);
+                actual.foto().escribir(canal);
+                canal.force(false);
+            }
+            Files.move(tmp, ARCHIVO, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("💾 Foto del inventario guardada: " + actual.foto().filas() + " filas");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠ No se pudo guardar la foto del inventario: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lee la foto guardada (vacío si no hay o no sirve). Solo la primera vez en la sesión:
+     * después la vista ya cargó de la base y el archivo quedó más viejo que cualquier recarga.
+     */
+    public synchronized Optional<Guardada> leer() {
+        if (leida || !existe()) return Optional.empty();
+        leida = true;
+
+        try (FileChannel canal = FileChannel.open(ARCHIVO, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buf.getInt() != MAGICO || buf.getInt() != VERSION) return Optional.empty();
+            Timestamp marca = new Timestamp(buf.getLong());
+
+            return Optional.of(new Guardada(SnapshotInventario.leer(buf), marca));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠ Foto del inventario ilegible, se ignora: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.DAO.DaoException;
+import com.arielcardales.arielcardales.DAO.ImportacionDAO;
+import com.arielcardales.arielcardales.DAO.ImportacionDAO.Diferencia;
+import com.arielcardales.arielcardales.DAO.ImportacionDAO.FilaImportacion;
+import com.arielcardales.arielcardales.Util.LectorPlanilla;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Importación de listas de precios/stock (CSV, TSV o XLSX).
+ * La primera fila es el encabezado; se reconocen por nombre (sin importar mayúsculas ni acentos):
+ * etiqueta (obligatoria), nombre/producto, categoria, variante (S/N), color, talle, costo, precio, stock.
+ * Acepta tal cual los CSV/Excel que genera la exportación del inventario.
+ *
+ * Flujo: previsualizar (no toca la base) → el usuario revisa → importar con las mismas filas.
+ */
+public class ImportacionService {
+
+    /** Resultado de leer la planilla y compararla con la base. */
+    public record Previa(Path archivo, List<FilaImportacion> filas, List<Diferencia> diferencias,
+                         List<String> errores) {
+        public long contar(String estado) {
+            return diferencias.stream().filter(d -> d.estado().equals(estado)).count();
+        }
+    }
+
+    private final ImportacionDAO importacionDAO = new ImportacionDAO();
+
+    /** Lee la planilla y arma el informe de cambios sin modificar nada. Ejecutar fuera del hilo de la UI. */
+    public Previa previsualizar(Path archivo) throws IOException {
+        List<FilaImportacion> filas = new ArrayList<>();
+        List<String> errores = new ArrayList<>();
+        leer(archivo, filas, errores);
+
+        if (filas.isEmpty()) return new Previa(archivo, filas, List.of(), errores);
+        try {
+            return new Previa(archivo, filas, importacionDAO.previsualizar(filas), errores);
+        } catch (SQLException e) {
+            throw new DaoException("Error comparando la planilla: " + e.getMessage(), e);
+        }
+    }
+
+    /** Aplica las filas ya revisadas en una sola transacción. */
+    public ImportacionDAO.ResultadoImportacion importar(Previa previa) {
+        try {
+            return importacionDAO.importar(previa.filas());
+        } catch (SQLException e) {
+            throw new DaoException("Error importando la planilla: " + e.getMessage(), e);
+        }
+    }
+
+    // ---------------------------------------------------------------
+
+    private void leer(Path archivo, List<FilaImportacion> filas, List<String> errores) throws IOException {
+        Map<String, Integer> columnas = new HashMap<>();
+        int[] nro = {0};
+
+        LectorPlanilla.leer(archivo, celdas -> {
+            nro[0]++;
+            if (columnas.isEmpty()) {
+                for (int i = 0; i < celdas.size(); i++) columnas.putIfAbsent(normalizar(celdas.get(i)), i);
+                if (!columnas.containsKey("etiqueta")) {
+                    throw new IllegalArgumentException("La planilla no tiene columna \"Etiqueta\"");
+                }
+                return;
+            }
+
+            try {
+                String etiqueta = celda(celdas, columnas, "etiqueta");
+                if (etiqueta == null) throw new IllegalArgumentException("falta la etiqueta");
+
+                String color = celda(celdas, columnas, "color");
+                String talle = celda(celdas, columnas, "talle");
+                String marca = celda(celdas, columnas, "variante");
+                boolean variante = marca != null
+                        ? marca.equalsIgnoreCase("S") || marca.equalsIgnoreCase("si") || marca.equalsIgnoreCase("sí")
+                        : color != null || talle != null;
+
+                String nombre = celda(celdas, columnas, "nombre");
+                if (nombre == null) nombre = celda(celdas, columnas, "producto");
+                if (nombre != null && nombre.startsWith("• ")) nombre = nombre.substring(2);   // formato del Excel
+
+                Integer stock = null;
+                BigDecimal stockLeido = numero(celda(celdas, columnas, "stock"));
+                if (stockLeido != null) stock = stockLeido.intValueExact();
+                if (stock != null && stock < 0) throw new IllegalArgumentException("stock negativo");
+
+                filas.add(new FilaImportacion(nro[0], etiqueta, variante ? null : nombre,
+                        celda(celdas, columnas, "categoria"), variante, color, talle,
+                        numero(celda(celdas, columnas, "costo")),
+                        numero(celda(celdas, columnas, "precio")),
+                        stock));
+            } catch (ArithmeticException e) {
+                errores.add("Fila " + nro[0] + ": el stock debe ser un número entero");
+            } catch (IllegalArgumentException e) {
+                errores.add("Fila " + nro[0] + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // Texto de la celda o null si no hay columna, está vacía o tiene el guion que ponen las exportaciones
+    private static String celda(List<String> celdas, Map<String, Integer> columnas, String nombre) {
+        Integer i = columnas.get(nombre);
+        if (i == null || i >= celdas.size()) return null;
+        String v = celdas.get(i).trim();
+        return v.isEmpty() || v.equals("—") || v.equals("-") ? null : v;
+    }
+
+    /**
+     * Acepta "1234.5", "1.234,50", "$ 1.234,50" o "1,234.50": el último separador es el decimal,
+     * salvo un único punto seguido de 3 dígitos en un número sin coma ("1.234" = mil doscientos).
+     */
+    static BigDecimal numero(String v) {
+        if (v == null) return null;
+        String limpio = v.replaceAll("[^\\d,.-]", "");
+        if (limpio.isEmpty() || limpio.equals("-")) throw new IllegalArgumentException("número inválido \"" + v + "\"");
+
+        int coma = limpio.lastIndexOf(','), punto = limpio.lastIndexOf('.');
+        if (coma >= 0 && punto >= 0) {
+            limpio = coma > punto
+                    ? limpio.replace(".", "").replace(',', '.')
+                    : limpio.replace(",", "");
+        } else if (coma >= 0) {
+            limpio = limpio.indexOf(',') == coma ? limpio.replace(',', '.') : limpio.replace(",", "");
+        } else if (punto >= 0 && (limpio.indexOf('.') != punto || limpio.length() - punto == 4)) {
+            limpio = limpio.replace(".", "");
+        }
+
+        try {
+            return new BigDecimal(limpio);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("número inválido \"" + v + "\"");
+        }
+    }
+
+    private static String normalizar(String encabezado) {
+        String sinAcentos = Normalizer.normalize(encabezado.trim().toLowerCase(Locale.ROOT), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "");
+        // "Nombre / Variante" (Excel y PDF) es el nombre del producto
+        return sinAcentos.startsWith("nombre") ? "nombre" : sinAcentos;
+    }
+}
@@ -0,0 +1,245 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.Entidades.ItemInventario;
+import com.arielcardales.arielcardales.Util.TreeItemFiltrable;
+import javafx.scene.control.TreeItem;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de búsqueda en memoria sobre el árbol de inventario.
+ *
+ * - Cada fila (producto o variante) es un "doc" con id entero.
+ * - Por campo se guardan los valores distintos ya normalizados (minúsculas, sin acentos)
+ *   y para cada valor la lista de docs que lo tienen.
+ * - Los trigramas apuntan a valores, no a docs: una búsqueda intersecta pocos postings
+ *   y después confirma con contains() sobre los candidatos.
+ *
+ * Se arma una vez por carga (O(filas)) y responde cada tecla sin recorrer ni clonar el árbol:
+ * el resultado se usa como predicado de un {@link TreeItemFiltrable}.
+ */
+public class IndiceInventario {
+
+    public enum Campo {
+        NOMBRE(ItemInventario::getNombreProducto),
+        CATEGORIA(ItemInventario::getCategoria),
+        ETIQUETA(ItemInventario::getEtiquetaProducto),
+        COLOR(ItemInventario::getColor),
+        TALLE(ItemInventario::getTalle);
+
+        private final Function<ItemInventario, String> getter;
+
+        Campo(Function<ItemInventario, String> getter) { this.getter = getter; }
+    }
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+
+    // docs: productos y variantes en preorden
+    private final List<TreeItem<ItemInventario>> nodos = new ArrayList<>();
+    private final Map<ItemInventario, Integer> docDe = new IdentityHashMap<>();
+
+    private final EnumMap<Campo, IndiceCampo> campos = new EnumMap<>(Campo.class);
+
+    private IndiceInventario(TreeItem<ItemInventario> root) {
+        // Se indexa la lista completa de hijos, no solo lo que está visible con el filtro actual
+        for (TreeItem<ItemInventario> producto : TreeItemFiltrable.hijos(root)) {
+            agregarDoc(producto);
+            for (TreeItem<ItemInventario> variante : TreeItemFiltrable.hijos(producto)) {
+                agregarDoc(variante);
+            }
+        }
+
+        for (Campo c : Campo.values()) campos.put(c, new IndiceCampo(c));
+    }
+
+    /** Construye el índice a partir de la raíz cargada por InventarioService.cargarArbol. */
+    public static IndiceInventario construir(TreeItem<ItemInventario> root) {
+        return new IndiceInventario(root == null ? new TreeItem<>() : root);
+    }
+
+    private void agregarDoc(TreeItem<ItemInventario> nodo) {
+        docDe.put(nodo.getValue(), nodos.size());
+        nodos.add(nodo);
+    }
+
+    public int size() { return nodos.size(); }
+
+    /** Minúsculas y sin acentos ("Categoría" → "categoria"). */
+    public static String normalizar(String s) {
+        if (s == null) return "";
+        String n = s.toLowerCase(Locale.ROOT).trim();
+        for (int i = 0; i < n.length(); i++) {
+            if (n.charAt(i) >= 128) {
+                return MARCAS.matcher(Normalizer.normalize(n, Normalizer.Form.NFD)).replaceAll("");
+            }
+        }
+        return n;
+    }
+
+    /** Docs cuyo campo contiene el texto buscado. */
+    public BitSet buscar(Campo campo, String texto) {
+        return campos.get(campo).buscar(normalizar(texto));
+    }
+
+    /** Ids de productos/variantes que coinciden (útil para otras vistas o exportaciones). */
+    public Set<Long> buscarIds(Campo campo, String texto, boolean variantes) {
+        BitSet docs = buscar(campo, texto);
+        Set<Long> out = new LinkedHashSet<>();
+        for (int d = docs.nextSetBit(0); d >= 0; d = docs.nextSetBit(d + 1)) {
+            ItemInventario it = nodos.get(d).getValue();
+            if (variantes && it.isEsVariante()) out.add(it.getVarianteId());
+            if (!variantes && !it.isEsVariante()) out.add(it.getProductoId());
+        }
+        return out;
+    }
+
+    /**
+     * Predicado para {@link TreeItemFiltrable#setPredicado}: true para las filas que coinciden.
+     * El árbol completa la regla de siempre (un producto queda si coincide él o alguna variante).
+     * Las filas que no estaban al armar el índice (variantes de la carga perezosa que llegan al expandir)
+     * se comparan directo contra el campo.
+     */
+    public Predicate<ItemInventario> predicado(Campo campo, String texto) {
+        BitSet docs = buscar(campo, texto);
+        String q = normalizar(texto);
+        return it -> {
+            Integer d = docDe.get(it);
+            if (d != null) return docs.get(d);
+            return q.isEmpty() || normalizar(campo.getter.apply(it)).contains(q);
+        };
+    }
+
+    // ------------------------------------------------------------------
+    // Índice de un campo: diccionario de valores + postings de trigramas
+    // (todo en arrays primitivos tipo CSR para no generar miles de objetos por carga)
+    // ------------------------------------------------------------------
+    private final class IndiceCampo {
+        private final String[] valores;     // valores distintos normalizados
+        private final int[] docsInicio;     // valor v → docs[docsInicio[v] .. docsInicio[v+1])
+        private final int[] docs;
+        private final int[] triClaves;      // trigramas distintos, ordenados
+        private final int[] triInicio;      // trigrama i → triValores[triInicio[i] .. triInicio[i+1])
+        private final int[] triValores;
+
+        IndiceCampo(Campo campo) {
+            int n = nodos.size();
+            Map<String, Integer> idValor = new HashMap<>();
+            Map<String, String> normalizados = new HashMap<>(); // los valores se repiten mucho (categorías, colores)
+            List<String> lista = new ArrayList<>();
+            int[] valorDoc = new int[n];
+
+            for (int d = 0; d < n; d++) {
+                String crudo = campo.getter.apply(nodos.get(d).getValue());
+                String v = crudo == null ? "" : normalizados.computeIfAbsent(crudo, IndiceInventario::normalizar);
+                if (v.isEmpty()) { valorDoc[d] = -1; continue; }
+                Integer id = idValor.get(v);
+                if (id == null) {
+                    id = lista.size();
+                    idValor.put(v, id);
+                    lista.add(v);
+                }
+                valorDoc[d] = id;
+            }
+            valores = lista.toArray(new String[0]);
+
+            // valor → docs (counting sort, los docs quedan ordenados)
+            docsInicio = new int[valores.length + 1];
+            for (int v : valorDoc) if (v >= 0) docsInicio[v + 1]++;
+            for (int v = 0; v < valores.length; v++) docsInicio[v + 1] += docsInicio[v];
+            docs = new int[docsInicio[valores.length]];
+            int[] pos = Arrays.copyOf(docsInicio, valores.length);
+            for (int d = 0; d < n; d++) if (valorDoc[d] >= 0) docs[pos[valorDoc[d]]++] = d;
+
+            // trigrama → valores: pares (clave << 32 | valor) ordenados y sin repetidos
+            int total = 0;
+            for (String v : valores) total += Math.max(0, v.length() - 2);
+            long[] pares = new long[total];
+            int k = 0;
+            for (int v = 0; v < valores.length; v++) {
+                String s = valores[v];
+                for (int i = 0; i + 3 <= s.length(); i++) pares[k++] = ((long) trigrama(s, i) << 32) | v;
+            }
+            Arrays.sort(pares);
+
+            int[] claves = new int[total];
+            int[] inicio = new int[total + 1];
+            int[] vals = new int[total];
+            int nClaves = 0, nVals = 0;
+            long anterior = -1;
+            for (long par : pares) {
+                if (par == anterior) continue;
+                int clave = (int) (par >>> 32);
+                if (nClaves == 0 || claves[nClaves - 1] != clave) {
+                    claves[nClaves] = clave;
+                    inicio[nClaves++] = nVals;
+                }
+                vals[nVals++] = (int) par;
+                anterior = par;
+            }
+            inicio[nClaves] = nVals;
+            triClaves = Arrays.copyOf(claves, nClaves);
+            triInicio = Arrays.copyOf(inicio, nClaves + 1);
+            triValores = Arrays.copyOf(vals, nVals);
+        }
+
+        BitSet buscar(String q) {
+            BitSet out = new BitSet(nodos.size());
+            if (q.isEmpty()) {
+                out.set(0, nodos.size());
+                return out;
+            }
+
+            if (q.length() < 3) {
+                // Consultas cortas: se recorren solo los valores distintos (no las filas)
+                for (int v = 0; v < valores.length; v++) {
+                    if (valores[v].contains(q)) marcar(out, v);
+                }
+                return out;
+            }
+
+            // Intersección de postings, empezando por el trigrama menos frecuente
+            List<int[]> postings = new ArrayList<>();
+            for (int i = 0; i + 3 <= q.length(); i++) {
+                int t = Arrays.binarySearch(triClaves, trigrama(q, i));
+                if (t < 0) return out; // algún trigrama no existe → sin resultados
+                postings.add(Arrays.copyOfRange(triValores, triInicio[t], triInicio[t + 1]));
+            }
+            postings.sort(Comparator.comparingInt(p -> p.length));
+
+            int[] candidatos = postings.get(0);
+            for (int j = 1; j < postings.size() && candidatos.length > 0; j++) {
+                candidatos = intersectar(candidatos, postings.get(j));
+            }
+
+            // Confirmación: la clave del trigrama puede colisionar y además importa el orden
+            for (int v : candidatos) {
+                if (valores[v].contains(q)) marcar(out, v);
+            }
+            return out;
+        }
+
+        private void marcar(BitSet out, int valor) {
+            for (int i = docsInicio[valor]; i < docsInicio[valor + 1]; i++) out.set(docs[i]);
+        }
+    }
+
+    // 3 caracteres en 30 bits (10 por char): exacto para texto latino, con colisiones tolerables fuera de ese rango
+    private static int trigrama(String s, int i) {
+        return ((s.charAt(i) & 0x3FF) << 20) | ((s.charAt(i + 1) & 0x3FF) << 10) | (s.charAt(i + 2) & 0x3FF);
+    }
+
+    private static int[] intersectar(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) { out[n++] = a[i]; i++; j++; }
+            else if (a[i] < b[j]) i++;
+            else j++;
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
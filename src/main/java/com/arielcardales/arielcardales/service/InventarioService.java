@@ -2,12 +2,19 @@ package com.arielcardales.arielcardales.service;
 
 import com.arielcardales.arielcardales.DAO.*;
 import com.arielcardales.arielcardales.Entidades.ItemInventario;
+import com.arielcardales.arielcardales.Entidades.SnapshotInventario;
 import com.arielcardales.arielcardales.Util.Mapper;
+import com.arielcardales.arielcardales.Util.TreeItemFiltrable;
+import com.arielcardales.arielcardales.Util.TreeItemPerezoso;
 import com.arielcardales.arielcardales.controller.ProductoTreeController;
 import javafx.scene.control.TreeItem;
 
 import java.math.BigDecimal;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.Collator;
+import java.util.*;
+import java.util.function.Consumer;
 import java.util.prefs.Preferences;
 
 public class InventarioService {
@@ -16,9 +23,31 @@ public class InventarioService {
     private final InventarioDAO inventarioDAO = new InventarioDAO();
     private final ProductoVarianteDAO varianteDAO = new ProductoVarianteDAO();
 
+    // Estado de la última carga completa, para poder pedir solo el delta
+    private volatile Timestamp marcaSync;
+    private volatile String filtroSync;
+    private volatile SnapshotInventario snapshot;
+
     // 🔹 Cargar todo el árbol del inventario
     public TreeItem<ItemInventario> cargarArbol(String filtro) throws SQLException {
-        TreeItem<ItemInventario> root = inventarioDAO.cargarArbol(filtro);
+        return cargarArbol(filtro, null);
+    }
+
+    /**
+     * Igual que cargarArbol, pero si {@code adelanto} no es null le pasa antes un árbol con las primeras filas
+     * (mientras llega el resto) para tener algo que mostrar enseguida. Se llama en el hilo de la carga.
+     */
+    public TreeItem<ItemInventario> cargarArbol(String filtro, Consumer<TreeItem<ItemInventario>> adelanto)
+            throws SQLException {
+        // La marca se toma ANTES de leer: lo que cambie durante la carga vuelve a venir en el próximo delta
+        Timestamp marca = InventarioDAO.marcaServidor();
+        SnapshotInventario foto = InventarioDAO.cargarSnapshot(filtro,
+                adelanto == null ? null : parcial -> adelanto.accept(arbolParcial(parcial)));
+        TreeItem<ItemInventario> root = new TreeItemFiltrable<>();
+        InventarioDAO.construirArbol(foto, root);
+        snapshot = foto;
+        marcaSync = marca;
+        filtroSync = filtro == null ? "" : filtro.trim();
 
         limpiarCamposPadres(root);
 
@@ -33,40 +62,218 @@ public class InventarioService {
         return root;
     }
 
+    // Árbol de una foto parcial: sin expandir (se reemplaza enseguida por el completo)
+    private TreeItem<ItemInventario> arbolParcial(SnapshotInventario parcial) {
+        TreeItem<ItemInventario> root = new TreeItemFiltrable<>();
+        InventarioDAO.construirArbol(parcial, root);
+        limpiarCamposPadres(root);
+        return root;
+    }
+
+    /**
+     * Carga perezosa: solo los productos; las variantes de cada uno se traen al expandirlo
+     * (ver {@link VariantesPerezosas}). Deja la misma marca de sincronización que cargarArbol.
+     */
+    public TreeItem<ItemInventario> cargarArbolPerezoso(
+            String filtro, Consumer<TreeItemPerezoso<ItemInventario>> cargador) throws SQLException {
+        Timestamp marca = InventarioDAO.marcaServidor();
+        TreeItem<ItemInventario> root = InventarioDAO.cargarProductos(filtro, cargador);
+        snapshot = null;
+        marcaSync = marca;
+        filtroSync = filtro == null ? "" : filtro.trim();
+        return root;
+    }
+
+    /**
+     * Arma el árbol desde la foto guardada en disco (instantáneo, sin ir a la base) y deja la marca
+     * de sincronización en la de la foto: el próximo {@link #cargarDelta()} trae lo que cambió desde que se guardó.
+     * Si la foto es más vieja que las bajas que guarda la base, ese delta vuelve vencido y se hace la carga completa.
+     */
+    public TreeItem<ItemInventario> cargarFotoLocal(FotoLocal.Guardada guardada) {
+        TreeItem<ItemInventario> root = new TreeItemFiltrable<>();
+        InventarioDAO.construirArbol(guardada.foto(), root);
+        snapshot = guardada.foto();
+        marcaSync = guardada.marca();
+        filtroSync = "";
+
+        Preferences prefs = Preferences.userNodeForPackage(ProductoTreeController.class);
+        if (prefs.getBoolean("expandir_nodos_hijos", false)) expandirNodos(root);
+        return root;
+    }
+
+    /**
+     * Foto de lo que muestra el árbol ahora (carga + deltas + ediciones) con la marca de la última
+     * sincronización, para guardarla al cerrar. null si la última carga fue con filtro o perezosa:
+     * esa foto no tiene todo el inventario. Ejecutar en el FX thread.
+     */
+    public FotoLocal.Guardada fotoActual(TreeItem<ItemInventario> root) {
+        if (root == null || snapshot == null || marcaSync == null || !"".equals(filtroSync)) return null;
+
+        SnapshotInventario.Constructor c = new SnapshotInventario.Constructor();
+        for (TreeItem<ItemInventario> producto : TreeItemFiltrable.hijos(root)) {
+            ItemInventario p = producto.getValue();
+            c.producto(p.getProductoId(), p.getEtiquetaProducto(), p.getNombreProducto(), p.getCategoria(),
+                    p.getUnidad(), p.getPrecio(), p.getCosto(), p.getStockOnHand(), p.isActive(), fecha(p));
+            for (TreeItem<ItemInventario> variante : TreeItemFiltrable.hijos(producto)) {
+                ItemInventario v = variante.getValue();
+                c.variante(p.getProductoId(), v.getVarianteId(), v.getColor(), v.getTalle(), v.getPrecio(),
+                        v.getCosto(), v.getStockOnHand(), v.isActive(), fecha(v));
+            }
+        }
+        return new FotoLocal.Guardada(c.construir(), marcaSync);
+    }
+
+    private static Timestamp fecha(ItemInventario it) {
+        return it.getUpdatedAt() == null ? null : Timestamp.valueOf(it.getUpdatedAt());
+    }
+
+    /** Variantes de esos productos con el filtro de la última carga (ejecutar en background). */
+    public Map<Long, List<TreeItem<ItemInventario>>> cargarVariantes(Collection<Long> productoIds) throws SQLException {
+        return InventarioDAO.cargarVariantes(productoIds, filtroSync);
+    }
+
+    /**
+     * Foto por columnas de la última carga completa (null si fue perezosa o no hubo carga).
+     * No incluye lo que llegó después por delta ni las ediciones en pantalla: eso vive en los ítems del árbol.
+     */
+    public SnapshotInventario getSnapshot() {
+        return snapshot;
+    }
+
+    /** true si ya hubo una carga completa con este filtro y se puede refrescar solo con el delta. */
+    public boolean puedeRefrescarDelta(String filtro) {
+        String f = filtro == null ? "" : filtro.trim();
+        return marcaSync != null && f.equals(filtroSync);
+    }
+
+    /** Filtro con el que se hizo la última carga completa (el que usa el delta). */
+    public String getFiltroSincronizado() {
+        return filtroSync;
+    }
+
+    /**
+     * Lleva la marca de sincronización hacia atrás (nunca hacia adelante) para que el próximo delta incluya
+     * lo grabado por transacciones que empezaron antes de la última sincronización pero terminaron después
+     * (su updatedAt es el now() de cuando empezaron). Lo usa el aviso de cambios de otras terminales.
+     */
+    public void retrocederMarca(Timestamp desde) {
+        Timestamp actual = marcaSync;
+        if (desde != null && actual != null && desde.before(actual)) marcaSync = desde;
+    }
+
+    /**
+     * Trae de la BD solo lo que cambió desde la última sincronización (ejecutar en background).
+     * El resultado se aplica luego sobre el árbol con {@link #aplicarDelta}.
+     */
+    public InventarioDAO.DeltaInventario cargarDelta() throws SQLException {
+        if (marcaSync == null) throw new IllegalStateException("No hay carga previa para calcular el delta");
+
+        InventarioDAO.DeltaInventario delta = InventarioDAO.cargarDelta(filtroSync, marcaSync);
+        for (TreeItem<ItemInventario> producto : delta.productos()) {
+            limpiarCamposPadres(producto);
+        }
+        return delta;
+    }
+
+    /**
+     * Reemplaza en el árbol cacheado los productos del delta (ejecutar en el FX thread si el árbol está en pantalla).
+     * - Mantiene la posición y el estado expandido de los productos que ya estaban.
+     * - Los productos nuevos y los renombrados se ubican con la clave del order by de la consulta
+     *   (nombre y después producto_id).
+     * - Los afectados que no vinieron en el delta se quitan (bajas o ya no cumplen el filtro).
+     */
+    public void aplicarDelta(TreeItem<ItemInventario> root, InventarioDAO.DeltaInventario delta) {
+        if (root == null || delta == null || delta.vencido()) return;   // vencido: no avanza la marca
+
+        Preferences prefs = Preferences.userNodeForPackage(ProductoTreeController.class);
+        boolean expandir = prefs.getBoolean("expandir_nodos_hijos", false);
 
+        Map<Long, TreeItem<ItemInventario>> nuevos = new HashMap<>();
+        for (TreeItem<ItemInventario> p : delta.productos()) {
+            nuevos.put(p.getValue().getProductoId(), p);
+        }
+
+        // 1️⃣ Reemplazar o quitar los que ya estaban (sobre la lista completa, no solo lo visible)
+        List<TreeItem<ItemInventario>> ubicar = new ArrayList<>();
+        List<TreeItem<ItemInventario>> hijos = TreeItemFiltrable.hijos(root);
+        for (int i = hijos.size() - 1; i >= 0; i--) {
+            TreeItem<ItemInventario> actual = hijos.get(i);
+            long id = actual.getValue().getProductoId();
+            if (!delta.productosAfectados().contains(id)) continue;
 
-    private void limpiarCamposPadres(TreeItem<ItemInventario> nodo) {
+            TreeItem<ItemInventario> nuevo = nuevos.remove(id);
+            if (nuevo == null) {
+                hijos.remove(i);
+            } else {
+                nuevo.setExpanded(actual.isExpanded() || expandir);
+                if (Objects.equals(nuevo.getValue().getNombreProducto(), actual.getValue().getNombreProducto())) {
+                    hijos.set(i, nuevo);
+                } else {
+                    hijos.remove(i);        // renombrado: su lugar ya no es este
+                    ubicar.add(nuevo);
+                }
+            }
+        }
+
+        // 2️⃣ Insertar las altas y los renombrados en su lugar
+        for (TreeItem<ItemInventario> nuevo : nuevos.values()) {
+            if (expandir) expandirNodos(nuevo);
+            ubicar.add(nuevo);
+        }
+        Comparator<TreeItem<ItemInventario>> orden = ordenArbol();
+        for (TreeItem<ItemInventario> nuevo : ubicar) {
+            int pos = Collections.binarySearch(hijos, nuevo, orden);
+            hijos.add(pos < 0 ? -pos - 1 : pos, nuevo);
+        }
+
+        marcaSync = delta.marca();
+    }
+
+    // Misma clave que el order by de InventarioDAO (producto_nombre, producto_id).
+    // El nombre se compara con el Collator del idioma, que es lo que hace la collation de la base
+    // en una instalación normal (sin distinguir mayúsculas ni acentos en primer término).
+    // Con otra collation (p. ej. "C") solo puede quedar corrida la posición de lo insertado.
+    private static Comparator<TreeItem<ItemInventario>> ordenArbol() {
+        Collator collator = Collator.getInstance();
+        return Comparator.<TreeItem<ItemInventario>, String>comparing(
+                        t -> Objects.toString(t.getValue().getNombreProducto(), ""), collator)
+                .thenComparingLong(t -> t.getValue().getProductoId());
+    }
+
+    // Package-private (igual que expandirNodos) para los benchmarks de src/jmh.
+    // Las filas que vienen de SnapshotInventario ya llegan limpias: solo se toca lo que difiere,
+    // así no se crean properties de gusto.
+    void limpiarCamposPadres(TreeItem<ItemInventario> nodo) {
         if (nodo == null) return;
 
+        List<TreeItem<ItemInventario>> hijos = TreeItemFiltrable.hijos(nodo);
         ItemInventario item = nodo.getValue();
         if (item != null && !item.isEsVariante()) {
-            boolean tieneHijos = nodo.getChildren() != null && !nodo.getChildren().isEmpty();
+            boolean tieneHijos = !hijos.isEmpty();
             if (tieneHijos) {
                 // 🔸 Limpiar todos los campos que no aplican a productos base
-                item.setColor(null);
-                item.setTalle(null);
-                item.setCosto(null);
-                item.setPrecio(null);
-                item.setStockOnHand(0);
+                if (item.getColor() != null) item.setColor(null);
+                if (item.getTalle() != null) item.setTalle(null);
+                if (item.getCosto() != null) item.setCosto(null);
+                if (item.getPrecio() != null) item.setPrecio(null);
+                if (item.getStockOnHand() != 0) item.setStockOnHand(0);
             }
         }
 
         // 🔁 Recurre en todos los hijos
-        if (nodo.getChildren() != null) {
-            for (TreeItem<ItemInventario> hijo : nodo.getChildren()) {
-                limpiarCamposPadres(hijo);
-            }
+        for (TreeItem<ItemInventario> hijo : hijos) {
+            limpiarCamposPadres(hijo);
         }
     }
 
     // 🔽 Expande automáticamente los productos con hijos
-    private void expandirNodos(TreeItem<ItemInventario> nodo) {
+    void expandirNodos(TreeItem<ItemInventario> nodo) {
         if (nodo == null) return;
 
-        boolean tieneHijos = nodo.getChildren() != null && !nodo.getChildren().isEmpty();
-        if (tieneHijos) {
+        List<TreeItem<ItemInventario>> hijos = TreeItemFiltrable.hijos(nodo);
+        if (!hijos.isEmpty()) {
             nodo.setExpanded(true); // 🔓 abre el nodo
-            for (TreeItem<ItemInventario> hijo : nodo.getChildren()) {
+            for (TreeItem<ItemInventario> hijo : hijos) {
                 expandirNodos(hijo); // 🔁 recursivo
             }
         }
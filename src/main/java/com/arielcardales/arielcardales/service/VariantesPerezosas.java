@@ -0,0 +1,133 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.Entidades.ItemInventario;
+import com.arielcardales.arielcardales.Util.Tareas;
+import com.arielcardales.arielcardales.Util.TreeItemPerezoso;
+import javafx.concurrent.Task;
+import javafx.scene.control.TreeItem;
+
+import java.util.*;
+
+/**
+ * Trae las variantes de los productos de la carga perezosa cuando se expanden.
+ *
+ * - En la misma consulta aprovecha y trae las de los productos vecinos (los hermanos que siguen y algunos
+ *   anteriores), que son los que el usuario suele abrir después. Se toman de la lista de hijos y no de las
+ *   filas del viewport: así no depende del skin de la tabla, y como los productos sin cargar están cerrados,
+ *   los hermanos siguientes son en general las filas que se ven debajo.
+ * - Guarda hasta {@link #MAX_CARGADOS} productos con variantes en memoria; al pasarse suelta las de los
+ *   menos usados que estén cerrados (se vuelven a pedir si se abren de nuevo).
+ *
+ * Se usa desde el FX thread; la consulta corre en un hilo virtual de {@link Tareas}.
+ */
+public class VariantesPerezosas {
+
+    static final int MAX_CARGADOS = 500;
+    private static final int VECINOS_SIGUIENTES = 8;
+    private static final int VECINOS_ANTERIORES = 3;
+
+    private final InventarioService inventarioService;
+
+    // Productos con variantes en memoria, del menos al más usado
+    private final Map<TreeItemPerezoso<ItemInventario>, Boolean> cargados = new LinkedHashMap<>(64, 0.75f, true);
+
+    // Sube con cada limpiar(): una consulta de un árbol anterior no toca cargados al terminar
+    private int generacion;
+
+    public VariantesPerezosas(InventarioService inventarioService) {
+        this.inventarioService = inventarioService;
+    }
+
+    /** Cargador para {@link TreeItemPerezoso}: se llama al expandir un producto sin variantes en memoria. */
+    public void cargar(TreeItemPerezoso<ItemInventario> nodo) {
+        List<TreeItemPerezoso<ItemInventario>> pedidos = new ArrayList<>();
+        pedidos.add(nodo);
+        pedidos.addAll(vecinos(nodo));
+        for (TreeItemPerezoso<ItemInventario> p : pedidos) p.marcarCargando();
+
+        List<Long> ids = new ArrayList<>(pedidos.size());
+        for (TreeItemPerezoso<ItemInventario> p : pedidos) ids.add(p.getValue().getProductoId());
+        int gen = generacion;
+
+        Task<Map<Long, List<TreeItem<ItemInventario>>>> tarea = new Task<>() {
+            @Override
+            protected Map<Long, List<TreeItem<ItemInventario>>> call() throws Exception {
+                return inventarioService.cargarVariantes(ids);
+            }
+        };
+
+        tarea.setOnSucceeded(e -> {
+            if (gen != generacion) {         // el árbol de estos nodos ya se descartó: no se guardan
+                for (TreeItemPerezoso<ItemInventario> p : pedidos) p.cancelarCarga();
+                return;
+            }
+            Map<Long, List<TreeItem<ItemInventario>>> variantes = tarea.getValue();
+            for (TreeItemPerezoso<ItemInventario> p : pedidos) {
+                if (p.getEstado() != TreeItemPerezoso.Estado.CARGANDO) continue;
+                p.cargar(variantes.getOrDefault(p.getValue().getProductoId(), List.of()));
+                cargados.put(p, Boolean.TRUE);
+            }
+            cargados.get(nodo);   // el que se abrió queda como el más reciente
+            liberar();
+        });
+
+        tarea.setOnFailed(e -> {
+            for (TreeItemPerezoso<ItemInventario> p : pedidos) p.cancelarCarga();
+            nodo.setExpanded(false);
+            if (tarea.getException() != null) tarea.getException().printStackTrace();
+        });
+
+        Tareas.ejecutar(tarea);
+    }
+
+    /** Olvida todo lo cargado (al reemplazar el árbol por una carga nueva). */
+    public void limpiar() {
+        generacion++;
+        cargados.clear();
+    }
+
+    // ---------------------------------------------------------------
+
+    // Productos sin cargar justo después y antes del nodo entre sus hermanos (mismo padre, filtro aplicado)
+    private List<TreeItemPerezoso<ItemInventario>> vecinos(TreeItemPerezoso<ItemInventario> nodo) {
+        TreeItem<ItemInventario> padre = nodo.getParent();
+        if (padre == null) return List.of();
+
+        List<TreeItem<ItemInventario>> hermanos = padre.getChildren();
+        int pos = hermanos.indexOf(nodo);
+        if (pos < 0) return List.of();
+
+        List<TreeItemPerezoso<ItemInventario>> out = new ArrayList<>();
+        for (int i = pos + 1; i < hermanos.size() && out.size() < VECINOS_SIGUIENTES; i++) {
+            agregarSiFalta(hermanos.get(i), out);
+        }
+        int antes = 0;
+        for (int i = pos - 1; i >= 0 && antes < VECINOS_ANTERIORES; i--) {
+            if (agregarSiFalta(hermanos.get(i), out)) antes++;
+        }
+        return out;
+    }
+
+    private static boolean agregarSiFalta(TreeItem<ItemInventario> t, List<TreeItemPerezoso<ItemInventario>> out) {
+        if (t instanceof TreeItemPerezoso<ItemInventario> p && p.getEstado() == TreeItemPerezoso.Estado.SIN_CARGAR) {
+            out.add(p);
+            return true;
+        }
+        return false;
+    }
+
+    // Suelta las variantes de los menos usados (los abiertos se saltean: están en pantalla)
+    private void liberar() {
+        if (cargados.size() <= MAX_CARGADOS) return;
+
+        Iterator<TreeItemPerezoso<ItemInventario>> it = cargados.keySet().iterator();
+        while (cargados.size() > MAX_CARGADOS && it.hasNext()) {
+            TreeItemPerezoso<ItemInventario> viejo = it.next();
+            if (viejo.getEstado() != TreeItemPerezoso.Estado.CARGADO) {
+                it.remove();                      // ya no está en el árbol o lo descargó otro
+            } else if (viejo.descargar()) {
+                it.remove();
+            }
+        }
+    }
+}
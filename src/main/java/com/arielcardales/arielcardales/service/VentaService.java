@@ -0,0 +1,44 @@
+package com.arielcardales.arielcardales.service;
+
+import com.arielcardales.arielcardales.DAO.DaoException;
+import com.arielcardales.arielcardales.DAO.VentaDAO;
+import com.arielcardales.arielcardales.Entidades.ItemCarrito;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+
+public class VentaService {
+
+    private final VentaDAO ventaDAO = new VentaDAO();
+
+    /**
+     * Registra una venta de un solo ítem: stock, venta y detalle se graban juntos o no se graba nada.
+     * Devuelve vacío si no hay stock suficiente. Ejecutar fuera del hilo de la UI.
+     */
+    public Optional<VentaDAO.VentaRegistrada> registrarVenta(long productoId, Long varianteId, int cantidad,
+                                                             BigDecimal precioUnit, String medioPago) {
+        if (cantidad <= 0) throw new IllegalArgumentException("La cantidad debe ser mayor a 0");
+
+        BigDecimal total = precioUnit.multiply(BigDecimal.valueOf(cantidad));
+        try {
+            return ventaDAO.registrarVentaConStock(productoId, varianteId, cantidad, precioUnit, total,
+                    null, medioPago);
+        } catch (SQLException e) {
+            throw new DaoException("Error registrando venta: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Cobra el carrito como una sola venta (ver VentaDAO.registrarVentaCarrito).
+     * Recibe una copia de los ítems: el carrito de la UI no se toca desde el hilo de fondo.
+     */
+    public VentaDAO.VentaCarrito cobrarCarrito(List<ItemCarrito> items, String medioPago) {
+        try {
+            return ventaDAO.registrarVentaCarrito(items, null, medioPago);
+        } catch (SQLException e) {
+            throw new DaoException("Error registrando venta: " + e.getMessage(), e);
+        }
+    }
+}
@@ -12,6 +12,7 @@ module com.arielcardales.arielcardales {
 
     // JDBC
     requires java.sql;
+    requires org.postgresql.jdbc;          // CopyManager (importación masiva)
 
     // Paquete principal
     opens com.arielcardales.arielcardales to javafx.fxml; // Necesario para App.java
@@ -26,10 +27,12 @@ module com.arielcardales.arielcardales {
     requires org.apache.poi.ooxml;
     requires com.github.librepdf.openpdf;
     requires java.desktop;
+    requires java.xml;                     // Lectura por eventos de XLSX (POI)
     //requires com.arielcardales.arielcardales;
     requires javafx.graphics;
     requires javafx.base;
     requires java.prefs;
+    requires java.management;             // Métricas de consultas por JMX (MetricasSql)
     requires org.json; // Solo si usás logging con SLF4J.
 
     // requires jdk.compiler; // ⚠️ Esto es para generar código dinámicamente (annotation processors, etc.)
@@ -37,6 +40,7 @@ module com.arielcardales.arielcardales {
     // Exportar para que el FXML pueda acceder
     opens com.arielcardales.arielcardales.controller to javafx.fxml; // Necesario para FXML
     opens com.arielcardales.arielcardales.Entidades to javafx.base;  // Necesario para TableView (PropertyValueFactory)
+    exports com.arielcardales.arielcardales.DAO to java.management;  // MXBean de MetricasSql
 
 
 }
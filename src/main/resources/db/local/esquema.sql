@@ -0,0 +1,97 @@
+-- Esquema base para una base local de pruebas (PG_PERFIL=local).
+-- Reproduce las tablas y vistas que usa la app en Supabase; las migraciones (db/migraciones)
+-- se aplican encima igual que en producción.
+--
+--   docker run -d --name pg-ariel -e POSTGRES_PASSWORD=postgres -e POSTGRES_DB=arielcardales -p 5432:5432 postgres:16
+
+create table if not exists categoria (
+    id        bigserial primary key,
+    nombre    text not null,
+    parentId  bigint references categoria (id),
+    createdAt timestamptz not null default now()
+);
+
+create table if not exists unidad (
+    id          bigserial primary key,
+    nombre      text not null,
+    abreviatura text,
+    createdAt   timestamptz not null default now()
+);
+
+create table if not exists producto (
+    id          bigserial primary key,
+    etiqueta    text unique,
+    nombre      text not null,
+    descripcion text,
+    categoriaId bigint references categoria (id),
+    unidadId    bigint references unidad (id),
+    precio      numeric(12,2) not null default 0,
+    costo       numeric(12,2) not null default 0,
+    stockOnHand integer not null default 0,
+    active      boolean not null default true,
+    updatedAt   timestamptz not null default now()
+);
+
+create table if not exists producto_variante (
+    id          bigserial primary key,
+    producto_id bigint not null references producto (id) on delete cascade,
+    color       text,
+    talle       text,
+    precio      numeric(12,2),
+    costo       numeric(12,2),
+    stock       integer not null default 0,
+    etiqueta    text,
+    active      boolean not null default true,
+    createdAt   timestamptz not null default now(),
+    updatedAt   timestamptz not null default now()
+);
+
+create table if not exists venta (
+    id            bigserial primary key,
+    clienteNombre text,
+    fecha         timestamptz not null default now(),
+    medioPago     text,
+    total         numeric(12,2) not null default 0
+);
+
+create table if not exists ventaItem (
+    id         bigserial primary key,
+    ventaId    bigint not null references venta (id) on delete cascade,
+    productoId bigint not null references producto (id),
+    qty        integer not null,
+    precioUnit numeric(12,2) not null,
+    subtotal   numeric(12,2) generated always as (qty * precioUnit) stored
+);
+
+create index if not exists ix_ventaitem_venta on ventaItem (ventaId);
+create index if not exists ix_venta_fecha on venta (fecha);
+
+-- Un producto por fila (ABM y ProductoDAO)
+create or replace view vInventario as
+select p.id, p.etiqueta, p.nombre, p.descripcion,
+       c.nombre as categoria,
+       u.nombre as unidad,
+       p.precio, p.costo, p.stockOnHand, p.active, p.updatedAt
+  from producto p
+  left join categoria c on c.id = p.categoriaId
+  left join unidad u on u.id = p.unidadId;
+
+-- Una fila por variante; los productos sin variantes salen con variante_id null (árbol del inventario)
+create or replace view vInventario_variantes as
+select p.id                              as producto_id,
+       v.id                              as variante_id,
+       p.etiqueta                        as producto_etiqueta,
+       p.nombre                          as producto_nombre,
+       c.nombre                          as categoria,
+       u.nombre                          as unidad,
+       v.color,
+       v.talle,
+       coalesce(v.precio, p.precio)      as precio,
+       coalesce(v.costo, p.costo)        as costo,
+       coalesce(v.stock, p.stockOnHand)  as stockOnHand,
+       coalesce(v.active, p.active)      as active,
+       greatest(p.updatedAt, v.updatedAt) as updatedAt
+  from producto p
+  left join producto_variante v on v.producto_id = p.id
+  left join categoria c on c.id = p.categoriaId
+  left join unidad u on u.id = p.unidadId;
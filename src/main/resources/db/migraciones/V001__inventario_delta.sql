@@ -0,0 +1,54 @@
+-- V001: soporte para refresco incremental (delta) del inventario
+-- - updatedAt se actualiza solo en cada INSERT/UPDATE de producto y producto_variante
+-- - las bajas quedan registradas en inventario_baja (tombstones) para que el cliente las quite del árbol
+
+create or replace function tocar_updated_at() returns trigger as $$
+begin
+    new.updatedAt := now();
+    return new;
+end
+$$ language plpgsql;
+
+drop trigger if exists trg_producto_updated_at on producto;
+create trigger trg_producto_updated_at
+    before insert or update on producto
+    for each row execute function tocar_updated_at();
+
+drop trigger if exists trg_producto_variante_updated_at on producto_variante;
+create trigger trg_producto_variante_updated_at
+    before insert or update on producto_variante
+    for each row execute function tocar_updated_at();
+
+create table if not exists inventario_baja (
+    id           bigserial primary key,
+    producto_id  bigint      not null,
+    variante_id  bigint,
+    eliminadoEn  timestamptz not null default now()
+);
+
+create index if not exists ix_inventario_baja_eliminado on inventario_baja (eliminadoEn);
+create index if not exists ix_producto_updated_at on producto (updatedAt);
+create index if not exists ix_producto_variante_updated_at on producto_variante (updatedAt);
+
+create or replace function registrar_baja_inventario() returns trigger as $$
+begin
+    if tg_table_name = 'producto' then
+        insert into inventario_baja (producto_id, variante_id) values (old.id, null);
+    else
+        insert into inventario_baja (producto_id, variante_id) values (old.producto_id, old.id);
+    end if;
+    -- Los tombstones solo sirven para clientes con caché reciente
+    delete from inventario_baja where eliminadoEn < now() - interval '30 days';
+    return old;
+end
+$$ language plpgsql;
+
+drop trigger if exists trg_producto_baja on producto;
+create trigger trg_producto_baja
+    after delete on producto
+    for each row execute function registrar_baja_inventario();
+
+drop trigger if exists trg_producto_variante_baja on producto_variante;
+create trigger trg_producto_variante_baja
+    after delete on producto_variante
+    for each row execute function registrar_baja_inventario();
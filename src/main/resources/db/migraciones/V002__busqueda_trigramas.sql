@@ -0,0 +1,15 @@
+-- V002: búsqueda del inventario del lado del servidor con pg_trgm
+-- - los índices GIN de trigramas sirven para ILIKE '%x%' y para similarity()/%
+-- - van sobre las tablas base: la vista vInventario_variantes no se puede indexar
+-- - sin CONCURRENTLY porque las migraciones corren dentro de una transacción
+
+create extension if not exists pg_trgm;
+
+create index if not exists ix_producto_nombre_trgm   on producto using gin (nombre gin_trgm_ops);
+create index if not exists ix_producto_etiqueta_trgm on producto using gin (etiqueta gin_trgm_ops);
+
+create index if not exists ix_variante_color_trgm on producto_variante using gin (color gin_trgm_ops);
+create index if not exists ix_variante_talle_trgm on producto_variante using gin (talle gin_trgm_ops);
+
+-- Para unir los productos encontrados con sus variantes
+create index if not exists ix_producto_variante_producto on producto_variante (producto_id);
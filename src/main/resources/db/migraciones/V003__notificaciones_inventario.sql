@@ -0,0 +1,33 @@
+-- V003: aviso de cambios entre terminales con LISTEN/NOTIFY (canal inventario_cambios)
+-- - un aviso por sentencia (no por fila): una importación de miles de filas manda un solo NOTIFY por tabla
+-- - payload "tabla|ms": ms = now() del que escribe en epoch milisegundos, o sea el updatedAt que grabó.
+--   Sirve para que el delta no se saltee filas de una transacción que empezó antes de la última sincronización
+-- - NOTIFY se entrega recién al hacer commit (y nada si hay rollback)
+
+create or replace function notificar_cambio_inventario() returns trigger as $$
+begin
+    perform pg_notify('inventario_cambios',
+                      tg_table_name || '|' || floor(extract(epoch from now()) * 1000)::bigint);
+    return null;
+end
+$$ language plpgsql;
+
+drop trigger if exists trg_producto_notificar on producto;
+create trigger trg_producto_notificar
+    after insert or update or delete on producto
+    for each statement execute function notificar_cambio_inventario();
+
+drop trigger if exists trg_producto_variante_notificar on producto_variante;
+create trigger trg_producto_variante_notificar
+    after insert or update or delete on producto_variante
+    for each statement execute function notificar_cambio_inventario();
+
+drop trigger if exists trg_categoria_notificar on categoria;
+create trigger trg_categoria_notificar
+    after insert or update or delete on categoria
+    for each statement execute function notificar_cambio_inventario();
+
+drop trigger if exists trg_venta_notificar on venta;
+create trigger trg_venta_notificar
+    after insert or update or delete on venta
+    for each statement execute function notificar_cambio_inventario();
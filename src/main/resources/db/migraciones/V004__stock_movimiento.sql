@@ -0,0 +1,38 @@
+-- V004: libro de movimientos de stock (solo inserts)
+-- - cada venta, ajuste, importación o devolución agrega una fila con la cantidad (+ entra, - sale)
+-- - producto.stockOnHand y producto_variante.stock pasan a ser la foto compactada: el compactador
+--   (service.CompactadorStock) suma los movimientos pendientes y los marca como compactados
+-- - stock actual = foto + pendientes (stock_pendiente); stock a una fecha = actual - movimientos posteriores
+-- - las ventas ya no actualizan la fila del producto: dos cajas no se pisan en la misma fila
+
+create table if not exists stock_movimiento (
+    id           bigserial primary key,
+    producto_id  bigint      not null references producto (id) on delete cascade,
+    variante_id  bigint      references producto_variante (id) on delete cascade,
+    cantidad     integer     not null,
+    tipo         text        not null check (tipo in ('venta', 'ajuste', 'importacion', 'devolucion')),
+    venta_id     bigint      references venta (id) on delete set null,
+    nota         text,
+    creadoEn     timestamptz not null default now(),
+    compactado   boolean     not null default false
+);
+
+-- Pendientes de compactar: pocos y consultados en cada lectura de stock actual
+create index if not exists ix_stock_mov_pendiente on stock_movimiento (producto_id, variante_id)
+    where not compactado;
+-- Historial y stock a una fecha
+create index if not exists ix_stock_mov_item_fecha on stock_movimiento (producto_id, variante_id, creadoEn);
+
+-- Suma de movimientos todavía no volcados a la foto (variante null = stock del producto)
+create or replace function stock_pendiente(p_producto bigint, p_variante bigint) returns integer as $$
+    select coalesce(sum(m.cantidad), 0)::integer
+      from stock_movimiento m
+     where not m.compactado
+       and m.producto_id = p_producto
+       and (case when p_variante is null then m.variante_id is null else m.variante_id = p_variante end)
+$$ language sql stable;
+
+drop trigger if exists trg_stock_movimiento_notificar on stock_movimiento;
+create trigger trg_stock_movimiento_notificar
+    after insert on stock_movimiento
+    for each statement execute function notificar_cambio_inventario();
@@ -0,0 +1,47 @@
+-- V005: las vistas del inventario muestran el stock actual (foto + movimientos pendientes)
+-- - desde V004 una venta o importación solo inserta en stock_movimiento: la foto (stockOnHand / stock)
+--   queda atrás hasta que corre el compactador
+-- - mismo resultado que StockDAO.STOCK_PRODUCTO / STOCK_VARIANTE (variante_id null = stock del producto),
+--   pero con un join contra los pendientes agrupados: stock_pendiente() por fila no se puede inlinear y
+--   multiplicaba el tiempo de la carga completa. Los pendientes son pocos (índice ix_stock_mov_pendiente)
+-- - mismas columnas y tipos que antes (create or replace view no admite cambiarlos)
+
+create or replace view vInventario as
+select p.id, p.etiqueta, p.nombre, p.descripcion,
+       c.nombre as categoria,
+       u.nombre as unidad,
+       p.precio, p.costo,
+       p.stockOnHand + coalesce(m.cantidad, 0) as stockOnHand,
+       p.active, p.updatedAt
+  from producto p
+  left join categoria c on c.id = p.categoriaId
+  left join unidad u on u.id = p.unidadId
+  left join (select producto_id, sum(cantidad)::integer as cantidad
+               from stock_movimiento
+              where not compactado and variante_id is null
+              group by producto_id) m on m.producto_id = p.id;
+
+create or replace view vInventario_variantes as
+select p.id                              as producto_id,
+       v.id                              as variante_id,
+       p.etiqueta                        as producto_etiqueta,
+       p.nombre                          as producto_nombre,
+       c.nombre                          as categoria,
+       u.nombre                          as unidad,
+       v.color,
+       v.talle,
+       coalesce(v.precio, p.precio)      as precio,
+       coalesce(v.costo, p.costo)        as costo,
+       coalesce(v.stock, p.stockOnHand) + coalesce(m.cantidad, 0) as stockOnHand,
+       coalesce(v.active, p.active)      as active,
+       greatest(p.updatedAt, v.updatedAt) as updatedAt
+  from producto p
+  left join producto_variante v on v.producto_id = p.id
+  left join categoria c on c.id = p.categoriaId
+  left join unidad u on u.id = p.unidadId
+  -- coalesce(…, 0) y no "is not distinct from": así el join puede ser por hash
+  left join (select producto_id, coalesce(variante_id, 0) as variante_id, sum(cantidad)::integer as cantidad
+               from stock_movimiento
+              where not compactado
+              group by producto_id, coalesce(variante_id, 0)) m
+         on m.producto_id = p.id and m.variante_id = coalesce(v.id, 0);
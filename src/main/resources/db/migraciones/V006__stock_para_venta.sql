@@ -0,0 +1,23 @@
+-- V006: lock y lectura del stock de una venta en una sola llamada (VentaDAO.registrarVentaConStock)
+-- - toma el mismo advisory lock que StockDAO.bloquear (tipo 1 = producto, 2 = variante; clave hashint8(id))
+-- - volatile a propósito: cada consulta de una función volatile lee con una foto nueva, así que la lectura
+--   del stock (segunda consulta) ya ve la venta que se grabó mientras se esperaba el lock. Con el lock en
+--   un CTE, la sentencia entera leería con la foto de antes de esperar y podría vender la última unidad dos veces
+-- - stock = foto + pendientes, igual que StockDAO.STOCK_PRODUCTO / STOCK_VARIANTE
+-- - null si el producto no existe o la variante no es de ese producto
+
+create or replace function stock_para_venta(p_producto bigint, p_variante bigint) returns integer as $$
+    select pg_advisory_xact_lock(case when p_variante is null then 1 else 2 end,
+                                 hashint8(coalesce(p_variante, p_producto)));
+
+    select case
+               when p_variante is null then
+                   (select p.stockOnHand + stock_pendiente(p.id, null)
+                      from producto p
+                     where p.id = p_producto)
+               else
+                   (select pv.stock + stock_pendiente(pv.producto_id, pv.id)
+                      from producto_variante pv
+                     where pv.id = p_variante and pv.producto_id = p_producto)
+           end;
+$$ language sql volatile;